@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2004 IBM Corporation and others.
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,8 @@
  *******************************************************************************/
 package org.eclipse.jdt.core.tests.builder;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 import java.util.Hashtable;
 
 import junit.framework.*;
@@ -20,6 +22,8 @@ import org.eclipse.core.runtime.IPath;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.core.tests.util.Util;
+import org.eclipse.jdt.internal.core.builder.BatchImageBuilder;
+import org.eclipse.jdt.internal.core.builder.JavaBuilder;
 
 /**
  * Basic tests of the image builder.
@@ -193,4 +197,100 @@ public class BasicBuildTests extends Tests {
 		
 		JavaCore.setOptions(options);
 	}
+
+	/*
+	 * A full build compiling the source files with several compilers must give the same output and problems
+	 * as one compiler, and compile each source file once. The packages which referenced each other
+	 * in the last state are compiled by the same compiler.
+	 */
+	public void testParallelBuild() throws JavaModelException {
+		int maxThreads = BatchImageBuilder.MAX_COMPILER_THREADS;
+		int minGroupSize = BatchImageBuilder.MIN_GROUP_SIZE;
+		try {
+			BatchImageBuilder.MAX_COMPILER_THREADS = 2;
+			BatchImageBuilder.MIN_GROUP_SIZE = 1;
+
+			IPath projectPath = env.addProject("Project"); //$NON-NLS-1$
+			env.addExternalJars(projectPath, Util.getJavaClassLibs());
+
+			// remove old package fragment root so that names don't collide
+			env.removePackageFragmentRoot(projectPath, ""); //$NON-NLS-1$
+
+			IPath root = env.addPackageFragmentRoot(projectPath, "src"); //$NON-NLS-1$
+			env.setOutputFolder(projectPath, "bin"); //$NON-NLS-1$
+
+			env.addClass(root, "p2", "A", //$NON-NLS-1$ //$NON-NLS-2$
+				"package p2;\n"+ //$NON-NLS-1$
+				"public class A {\n"+ //$NON-NLS-1$
+				"	Helper helper = new Helper();\n"+ //$NON-NLS-1$
+				"}\n" //$NON-NLS-1$
+				);
+			env.addClass(root, "p1", "B", //$NON-NLS-1$ //$NON-NLS-2$
+				"package p1;\n"+ //$NON-NLS-1$
+				"public class B extends p2.C {\n"+ //$NON-NLS-1$
+				"}\n" //$NON-NLS-1$
+				);
+			env.addClass(root, "p2", "C", //$NON-NLS-1$ //$NON-NLS-2$
+				"package p2;\n"+ //$NON-NLS-1$
+				"public class C {\n"+ //$NON-NLS-1$
+				"}\n"+ //$NON-NLS-1$
+				"class Helper {\n"+ //$NON-NLS-1$
+				"}\n" //$NON-NLS-1$
+				);
+			IPath pathToD = env.addClass(root, "p2", "D", //$NON-NLS-1$ //$NON-NLS-2$
+				"package p2;\n"+ //$NON-NLS-1$
+				"public class D {\n"+ //$NON-NLS-1$
+				"	Missing missing;\n"+ //$NON-NLS-1$
+				"}\n" //$NON-NLS-1$
+				);
+
+			String output = debugFullBuild(projectPath);
+			expectingOnlyProblemsFor(pathToD);
+			expectingPresenceOf(new IPath[] {
+				projectPath.append("bin/p2/A.class"), //$NON-NLS-1$
+				projectPath.append("bin/p1/B.class"), //$NON-NLS-1$
+				projectPath.append("bin/p2/C.class"), //$NON-NLS-1$
+				projectPath.append("bin/p2/Helper.class"), //$NON-NLS-1$
+				projectPath.append("bin/p2/D.class") //$NON-NLS-1$
+			});
+			assertEquals("Should have compiled in groups", 1, count(output, "source files in 2 groups")); //$NON-NLS-1$ //$NON-NLS-2$
+			// a source file compiled twice would write its class files twice
+			assertEquals("Unexpected number of class files written", 5, count(output, "Writing new class file")); //$NON-NLS-1$ //$NON-NLS-2$
+			assertEquals("Should not have written a class file twice", 0, count(output, "Writing changed class file")); //$NON-NLS-1$ //$NON-NLS-2$
+
+			// p1.B references p2.C, so the last state keeps both packages in one group
+			output = debugFullBuild(projectPath);
+			expectingOnlyProblemsFor(pathToD);
+			assertEquals("Should not have compiled in groups", 0, count(output, " groups")); //$NON-NLS-1$ //$NON-NLS-2$
+			assertEquals("Unexpected number of source files compiled", 4, count(output, "About to compile src/")); //$NON-NLS-1$ //$NON-NLS-2$
+		} finally {
+			BatchImageBuilder.MAX_COMPILER_THREADS = maxThreads;
+			BatchImageBuilder.MIN_GROUP_SIZE = minGroupSize;
+		}
+	}
+
+	/*
+	 * Answers what a full build of the given project prints in debug mode.
+	 */
+	private String debugFullBuild(IPath projectPath) {
+		PrintStream out = System.out;
+		boolean debug = JavaBuilder.DEBUG;
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		try {
+			System.setOut(new PrintStream(buffer));
+			JavaBuilder.DEBUG = true;
+			fullBuild(projectPath);
+		} finally {
+			JavaBuilder.DEBUG = debug;
+			System.setOut(out);
+		}
+		return buffer.toString();
+	}
+
+	private int count(String output, String line) {
+		int count = 0;
+		for (int index = output.indexOf(line); index >= 0; index = output.indexOf(line, index + 1))
+			count++;
+		return count;
+	}
 }
@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.core.tests.compiler.regression;
+
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.core.compiler.IProblem;
+import org.eclipse.jdt.core.tests.util.Util;
+import org.eclipse.jdt.internal.compiler.ClassFile;
+import org.eclipse.jdt.internal.compiler.CompilationResult;
+import org.eclipse.jdt.internal.compiler.Compiler;
+import org.eclipse.jdt.internal.compiler.ICompilerRequestor;
+
+import junit.framework.Test;
+
+/**
+ * Compilations using several threads must give the same results, in the same order, as the compilations using one thread.
+ */
+public class ConcurrentCompilationTest extends AbstractRegressionTest {
+
+	static final String[] TEST_FILES = new String[] {
+		"p/A.java",
+		"package p;\n" +
+		"public class A {\n" +
+		"	private int value;\n" +
+		"	class Inner {\n" +
+		"		int get() {\n" +
+		"			return value;\n" +
+		"		}\n" +
+		"	}\n" +
+		"	Class type() {\n" +
+		"		return B.class;\n" +
+		"	}\n" +
+		"}\n",
+		"p/B.java",
+		"package p;\n" +
+		"public class B extends A {\n" +
+		"	Object anonymous() {\n" +
+		"		return new Object() {\n" +
+		"			public String toString() {\n" +
+		"				return \"B\" + new C().count;\n" +
+		"			}\n" +
+		"		};\n" +
+		"	}\n" +
+		"}\n",
+		"p/C.java",
+		"package p;\n" +
+		"public class C {\n" +
+		"	int count;\n" +
+		"	void error() {\n" +
+		"		Missing missing = null;\n" +
+		"	}\n" +
+		"}\n",
+		"p/D.java",
+		"package p;\n" +
+		"public class D {\n" +
+		"	static final String NAME = \"D\" + E.NAME;\n" +
+		"	void loop(int[] values) {\n" +
+		"		for (int i = 0; i < values.length; i++)\n" +
+		"			values[i] = new B().type() == null ? 0 : i;\n" +
+		"	}\n" +
+		"}\n",
+		"p/E.java",
+		"package p;\n" +
+		"public class E {\n" +
+		"	static final String NAME = \"E\";\n" +
+		"	int unused() {\n" +
+		"		int local = 0;\n" +
+		"		return 0;\n" +
+		"	}\n" +
+		"}\n",
+		"p/F.java",
+		"package p;\n" +
+		"public class F extends E {\n" +
+		"	void syntaxError() {\n" +
+		"		int i = ;\n" +
+		"	}\n" +
+		"	int fieldWithoutSemicolon\n" +
+		"}\n"
+	};
+
+	// the supertypes of these binary types are resolved when the reference info of the units is stored
+	static final String[] BINARY_SUPERTYPE_FILES = new String[] {
+		"q/G.java",
+		"package q;\n" +
+		"public class G extends java.util.ArrayList implements Runnable {\n" +
+		"	public void run() {\n" +
+		"		add(new H());\n" +
+		"	}\n" +
+		"}\n",
+		"q/H.java",
+		"package q;\n" +
+		"public class H extends java.util.Hashtable implements Comparable {\n" +
+		"	public int compareTo(Object o) {\n" +
+		"		return new java.util.Properties().size();\n" +
+		"	}\n" +
+		"}\n",
+		"q/I.java",
+		"package q;\n" +
+		"public class I extends java.io.FilterInputStream {\n" +
+		"	I() {\n" +
+		"		super(new java.io.ByteArrayInputStream(new byte[0]));\n" +
+		"	}\n" +
+		"	java.util.Map map() {\n" +
+		"		return new java.util.TreeMap();\n" +
+		"	}\n" +
+		"}\n",
+		"q/J.java",
+		"package q;\n" +
+		"public class J extends java.util.AbstractMap {\n" +
+		"	public java.util.Set entrySet() {\n" +
+		"		return new java.util.LinkedHashSet();\n" +
+		"	}\n" +
+		"	java.util.List list() {\n" +
+		"		return new java.util.Stack();\n" +
+		"	}\n" +
+		"}\n",
+		"q/K.java",
+		"package q;\n" +
+		"public class K extends java.io.PrintWriter {\n" +
+		"	K() {\n" +
+		"		super(new java.io.StringWriter());\n" +
+		"	}\n" +
+		"	Object reader() {\n" +
+		"		return new java.io.LineNumberReader(new java.io.StringReader(\"\"));\n" +
+		"	}\n" +
+		"}\n"
+	};
+
+public ConcurrentCompilationTest(String name) {
+	super(name);
+}
+public static Test suite() {
+	return setupSuite(testClass());
+}
+public static Class testClass() {
+	return ConcurrentCompilationTest.class;
+}
+/*
+ * Answers the file names, problems and class files of the results of the given compiler, in the order they were accepted.
+ */
+private String compile(String[] testFiles, boolean isPipelined, int parallelParseThreads) {
+	final StringBuffer buffer = new StringBuffer();
+	ICompilerRequestor requestor = new ICompilerRequestor() {
+		public void acceptResult(CompilationResult result) {
+			buffer.append(result.getFileName());
+			buffer.append('\n');
+			IProblem[] problems = result.getAllProblems();
+			for (int i = 0, length = problems == null ? 0 : problems.length; i < length; i++) {
+				buffer.append("\tproblem: ");
+				buffer.append(problems[i].getMessage());
+				buffer.append('\n');
+			}
+			// the class files of a result are not ordered
+			ClassFile[] classFiles = result.getClassFiles();
+			String[] lines = new String[classFiles.length];
+			for (int i = 0, length = classFiles.length; i < length; i++) {
+				CRC32 checksum = new CRC32();
+				checksum.update(classFiles[i].getBytes());
+				lines[i] = "\tclass file: " + new String(classFiles[i].fileName()) + ' ' + checksum.getValue() + '\n';
+			}
+			Arrays.sort(lines);
+			for (int i = 0, length = lines.length; i < length; i++)
+				buffer.append(lines[i]);
+			append("qualified reference", qualifiedNames(result.qualifiedReferences), buffer);
+			append("simple name reference", result.simpleNameReferences, buffer);
+			append("resolved type reference", result.resolvedTypeReferences, buffer);
+			append("resolved method reference", result.resolvedMethodReferences, buffer);
+			append("resolved field reference", result.resolvedFieldReferences, buffer);
+			append("type hierarchy", result.typeHierarchy, buffer);
+		}
+	};
+	Compiler compiler = new Compiler(
+		getNameEnvironment(new String[]{}, null),
+		getErrorHandlingPolicy(),
+		getCompilerOptions(),
+		requestor,
+		getProblemFactory());
+	compiler.options.produceReferenceInfo = true;
+	compiler.options.produceResolvedReferenceInfo = true;
+	compiler.options.produceHierarchyInfo = true;
+	compiler.isPipelined = isPipelined;
+	compiler.parallelParseThreads = parallelParseThreads;
+	compiler.compile(Util.compilationUnits(testFiles));
+	return buffer.toString();
+}
+/*
+ * Appends the given names of a result, sorted since they are recorded in the order the compiler meets them.
+ */
+static void append(String kind, char[][] names, StringBuffer buffer) {
+	if (names == null) return;
+	String[] lines = new String[names.length];
+	for (int i = 0, length = names.length; i < length; i++)
+		lines[i] = "\t" + kind + ": " + new String(names[i]) + '\n';
+	Arrays.sort(lines);
+	for (int i = 0, length = lines.length; i < length; i++)
+		buffer.append(lines[i]);
+}
+static char[][] qualifiedNames(char[][][] names) {
+	if (names == null) return null;
+	char[][] qualifiedNames = new char[names.length][];
+	for (int i = 0, length = names.length; i < length; i++)
+		qualifiedNames[i] = CharOperation.concatWith(names[i], '.');
+	return qualifiedNames;
+}
+/*
+ * The code generation of a unit overlaps with the analysis of the next units
+ */
+public void test001() {
+	String expected = compile(TEST_FILES, false, 1);
+	String actual = compile(TEST_FILES, true, 1);
+	assertEquals("Unexpected results of pipelined compilation", expected, actual);
+}
+/*
+ * The units are parsed by several threads, and their type bindings are built in the original order
+ */
+public void test002() {
+	String expected = compile(TEST_FILES, false, 1);
+	String actual = compile(TEST_FILES, false, 3);
+	assertEquals("Unexpected results of parallel parsing", expected, actual);
+	actual = compile(TEST_FILES, true, 3);
+	assertEquals("Unexpected results of parallel parsing and pipelined compilation", expected, actual);
+}
+/*
+ * The reference info of a unit is stored by the thread analysing the units, since walking the supertypes
+ * of binary types may fault new types into the lookup environment
+ */
+public void test003() {
+	String expected = compile(BINARY_SUPERTYPE_FILES, false, 1);
+	assertTrue("Should have stored the reference info", expected.indexOf("qualified reference: java.util.AbstractList") >= 0);
+	String actual = compile(BINARY_SUPERTYPE_FILES, true, 1);
+	assertEquals("Unexpected results of pipelined compilation", expected, actual);
+	actual = compile(BINARY_SUPERTYPE_FILES, true, 3);
+	assertEquals("Unexpected results of parallel parsing and pipelined compilation", expected, actual);
+}
+}
@@ -167,6 +167,9 @@ private static Class[] getAllTestClasses() {
 		// Create search participant tests
 		SearchParticipantTests.class,
 		
+		// Index file tests
+		IndexTests.class,
+		
 		// Class file tests
 		ClassFileTests.class,
 	
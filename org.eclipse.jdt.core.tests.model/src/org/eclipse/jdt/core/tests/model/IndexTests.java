@@ -0,0 +1,312 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.core.tests.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.core.tests.util.Util;
+import org.eclipse.jdt.internal.core.JavaModelManager;
+import org.eclipse.jdt.internal.core.index.CategoryTableCache;
+import org.eclipse.jdt.internal.core.index.DocumentFilter;
+import org.eclipse.jdt.internal.core.index.EntryResult;
+import org.eclipse.jdt.internal.core.index.Index;
+import org.eclipse.jdt.internal.core.search.indexing.IndexManager;
+import org.eclipse.jdt.internal.core.search.indexing.SharedIndexBuilder;
+import org.eclipse.jdt.internal.core.util.SimpleWordSet;
+
+import junit.framework.Test;
+
+/**
+ * Tests the index file format and the queries run against saved indexes.
+ */
+public class IndexTests extends AbstractJavaModelTests {
+
+	static final char[] TYPE_DECL = "typeDecl".toCharArray();
+	static final char[] REF = "ref".toCharArray();
+	static final char[] DOCUMENT_FILTER = "documentFilter".toCharArray();
+	static final int NUMBER_OF_DOCUMENTS = 1000;
+	static final int NUMBER_OF_SHARED_REFS = 7;
+
+	File indexFile;
+
+public IndexTests(String name) {
+	super(name);
+}
+public static Test suite() {
+	return buildTestSuite(IndexTests.class);
+}
+protected void setUp() throws Exception {
+	super.setUp();
+	this.indexFile = File.createTempFile("IndexTests", ".index");
+	this.indexFile.delete();
+}
+protected void tearDown() throws Exception {
+	Index.deleteIndexFiles(this.indexFile.getPath());
+	super.tearDown();
+}
+/*
+ * Each document X<n> declares the type X<n>, references Object and one of the shared types R0..R6.
+ */
+Index createIndex(int numberOfDocuments) throws IOException {
+	Index index = new Index(this.indexFile.getPath(), "/P", false);
+	for (int i = 0; i < numberOfDocuments; i++) {
+		String documentName = documentName(i);
+		index.addIndexEntry(TYPE_DECL, ("X" + i).toCharArray(), documentName);
+		index.addIndexEntry(REF, "Object".toCharArray(), documentName);
+		index.addIndexEntry(REF, ("R" + (i % NUMBER_OF_SHARED_REFS)).toCharArray(), documentName);
+		if (i % 100 == 99)
+			index.save(); // merge with the disk index several times
+	}
+	index.save();
+	return new Index(this.indexFile.getPath(), "/P", true); // reread the saved file
+}
+String documentName(int i) {
+	return "p/X" + i + ".java";
+}
+int countWords(Index index, char[] category, char[] key, int matchRule) throws IOException {
+	EntryResult[] results = index.query(new char[][] {category}, key, matchRule);
+	return results == null ? 0 : results.length;
+}
+int countDocuments(Index index, char[] category, char[] key, int matchRule) throws IOException {
+	EntryResult[] results = index.query(new char[][] {category}, key, matchRule);
+	if (results == null) return 0;
+	int count = 0;
+	for (int i = 0, l = results.length; i < l; i++)
+		count += results[i].getDocumentNames(index).length;
+	return count;
+}
+/*
+ * Ensures that saved indexes answer exact, prefix and pattern queries.
+ */
+public void testQuery() throws IOException {
+	Index index = createIndex(NUMBER_OF_DOCUMENTS);
+	index.startQuery();
+	try {
+		assertEquals("Unexpected references to Object", NUMBER_OF_DOCUMENTS, countDocuments(index, REF, "Object".toCharArray(), SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE));
+		assertEquals("Unexpected types starting with X1", 111, countDocuments(index, TYPE_DECL, "X1".toCharArray(), SearchPattern.R_PREFIX_MATCH | SearchPattern.R_CASE_SENSITIVE));
+		assertEquals("Unexpected references to R*", NUMBER_OF_DOCUMENTS, countDocuments(index, REF, "r*".toCharArray(), SearchPattern.R_PATTERN_MATCH));
+		assertEquals("Unexpected references", 2 * NUMBER_OF_DOCUMENTS, countDocuments(index, REF, null, SearchPattern.R_PATTERN_MATCH));
+		assertEquals("Unexpected document names", 111, index.queryDocumentNames("p/X1").length);
+	} finally {
+		index.stopQuery();
+	}
+}
+/*
+ * Ensures that queries which only read some blocks of the sorted words find the same words as a full scan.
+ */
+public void testQuerySortedWords() throws IOException {
+	Index index = createIndex(NUMBER_OF_DOCUMENTS);
+	int caseSensitive = SearchPattern.R_CASE_SENSITIVE;
+	assertEquals("Unexpected exact match", 1, countWords(index, TYPE_DECL, "X999".toCharArray(), SearchPattern.R_EXACT_MATCH | caseSensitive));
+	assertEquals("Unexpected exact match of a prefix", 0, countWords(index, TYPE_DECL, "X".toCharArray(), SearchPattern.R_EXACT_MATCH | caseSensitive));
+	assertEquals("Unexpected prefix match", 111, countWords(index, TYPE_DECL, "X1".toCharArray(), SearchPattern.R_PREFIX_MATCH | caseSensitive));
+	assertEquals("Unexpected prefix match before the first word", 0, countWords(index, TYPE_DECL, "A".toCharArray(), SearchPattern.R_PREFIX_MATCH | caseSensitive));
+	assertEquals("Unexpected prefix match after the last word", 0, countWords(index, TYPE_DECL, "Z".toCharArray(), SearchPattern.R_PREFIX_MATCH | caseSensitive));
+	assertEquals("Unexpected case insensitive prefix match", 111, countWords(index, TYPE_DECL, "x1".toCharArray(), SearchPattern.R_PREFIX_MATCH));
+	assertEquals("Unexpected pattern match", 11, countWords(index, TYPE_DECL, "X1*9".toCharArray(), SearchPattern.R_PATTERN_MATCH | caseSensitive));
+	assertEquals("Unexpected pattern match with a single character", 10, countWords(index, TYPE_DECL, "X?".toCharArray(), SearchPattern.R_PATTERN_MATCH | caseSensitive));
+}
+/*
+ * Ensures that removed documents are no longer answered once the index is saved.
+ */
+public void testQueryAfterRemove() throws IOException {
+	Index index = createIndex(NUMBER_OF_DOCUMENTS);
+	for (int i = 0; i < NUMBER_OF_DOCUMENTS; i += 2)
+		index.remove(documentName(i));
+	assertEquals("Unexpected references to Object before save", NUMBER_OF_DOCUMENTS / 2, countDocuments(index, REF, "Object".toCharArray(), SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE));
+	index.save();
+	assertEquals("Unexpected references to Object after save", NUMBER_OF_DOCUMENTS / 2, countDocuments(index, REF, "Object".toCharArray(), SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE));
+	assertNull("Unexpected type X0", index.query(new char[][] {TYPE_DECL}, "X0".toCharArray(), SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE));
+}
+/*
+ * Ensures that saving a few changes writes a delta index whose documents replace those of the disk index,
+ * and that compacting the delta indexes keeps the same results.
+ */
+public void testDeltaIndexes() throws IOException {
+	Index index = createIndex(NUMBER_OF_DOCUMENTS);
+	for (int i = 0; i < 10; i++)
+		index.remove(documentName(i));
+	for (int i = 5; i < 10; i++) {
+		index.addIndexEntry(TYPE_DECL, ("X" + i).toCharArray(), documentName(i));
+		index.addIndexEntry(REF, "Changed".toCharArray(), documentName(i));
+	}
+	index.save();
+	assertTrue("Missing delta index", new File(this.indexFile.getPath() + ".delta1").exists());
+	for (int i = 0; i < 4; i++) {
+		String documentName = documentName(NUMBER_OF_DOCUMENTS + i);
+		index.addIndexEntry(TYPE_DECL, ("X" + (NUMBER_OF_DOCUMENTS + i)).toCharArray(), documentName);
+		index.addIndexEntry(REF, "Object".toCharArray(), documentName);
+		index.save(); // one more delta index each time
+	}
+	assertTrue("Should compact", index.shouldCompact());
+
+	for (int n = 0; n < 3; n++) {
+		int exactMatch = SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE;
+		assertEquals("Unexpected references to Object", NUMBER_OF_DOCUMENTS - 10 + 4, countDocuments(index, REF, "Object".toCharArray(), exactMatch));
+		assertEquals("Unexpected references to Changed", 5, countDocuments(index, REF, "Changed".toCharArray(), exactMatch));
+		assertEquals("Unexpected types", NUMBER_OF_DOCUMENTS - 5 + 4, countDocuments(index, TYPE_DECL, null, SearchPattern.R_PATTERN_MATCH));
+		assertNull("Unexpected type X0", index.query(new char[][] {TYPE_DECL}, "X0".toCharArray(), exactMatch));
+		assertEquals("Unexpected document names", NUMBER_OF_DOCUMENTS - 5 + 4, index.queryDocumentNames("p/X").length);
+		if (n == 0) {
+			index = new Index(this.indexFile.getPath(), "/P", true); // reread the disk index and its delta indexes
+		} else if (n == 1) {
+			index.compact();
+			assertFalse("Should not compact", index.shouldCompact());
+			assertFalse("Unexpected delta index", new File(this.indexFile.getPath() + ".delta1").exists());
+		}
+	}
+}
+/*
+ * Ensures that the filter of a document contains all its tokens, few other tokens,
+ * and that it is read back unchanged from a saved index.
+ */
+public void testDocumentFilter() throws IOException {
+	SimpleWordSet tokens = new SimpleWordSet(31);
+	for (int i = 0; i < 200; i++)
+		DocumentFilter.addTokens(("foo" + i + "/0").toCharArray(), tokens);
+	DocumentFilter.addTokens("X/p/C".toCharArray(), tokens);
+	assertEquals("Unexpected tokens", 200 + 4, tokens.elementSize); // the argument count and the 3 parts of the type key
+	char[] filter = DocumentFilter.encode(tokens);
+	for (int i = 0; i < 200; i++)
+		assertTrue("Missing token foo" + i, DocumentFilter.mayContain(filter, ("foo" + i).toCharArray()));
+	assertTrue("Missing tokens", DocumentFilter.mayContainAll(filter, new char[][] {"X".toCharArray(), "p".toCharArray()}));
+	int falsePositives = 0;
+	for (int i = 0; i < 1000; i++)
+		if (DocumentFilter.mayContain(filter, ("bar" + i).toCharArray()))
+			falsePositives++;
+	assertTrue("Too many false positives: " + falsePositives, falsePositives < 100);
+
+	Index index = createIndex(NUMBER_OF_DOCUMENTS);
+	index.addIndexEntry(DOCUMENT_FILTER, filter, documentName(0));
+	index.save();
+	index = new Index(this.indexFile.getPath(), "/P", true);
+	EntryResult[] entries = index.query(new char[][] {DOCUMENT_FILTER}, null, SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE);
+	assertEquals("Unexpected filters", 1, entries.length);
+	assertTrue("Unexpected filter", CharOperation.equals(filter, entries[0].getWord()));
+}
+/*
+ * Ensures that the category tables read by a query are found in the shared cache by the next queries
+ * and that the tables bigger than the space limit of the cache are not cached.
+ */
+public void testCategoryTableCache() throws IOException {
+	Index index = createIndex(NUMBER_OF_DOCUMENTS);
+	CategoryTableCache cache = CategoryTableCache.SHARED_CACHE;
+	int spaceLimit = cache.getSpaceLimit();
+	try {
+		cache.flush();
+		cache.resetStatistics();
+		assertEquals("Unexpected types", NUMBER_OF_DOCUMENTS, countDocuments(index, TYPE_DECL, null, SearchPattern.R_PATTERN_MATCH));
+		assertEquals("Unexpected types from the cache", NUMBER_OF_DOCUMENTS, countDocuments(index, TYPE_DECL, null, SearchPattern.R_PATTERN_MATCH));
+		assertEquals("Unexpected misses", 1, cache.getMissCount());
+		assertEquals("Unexpected hits", 1, cache.getHitCount());
+
+		cache.setSpaceLimit(1);
+		assertEquals("Unexpected evictions", 1, cache.getEvictionCount());
+		assertEquals("Unexpected types without cache", NUMBER_OF_DOCUMENTS, countDocuments(index, TYPE_DECL, null, SearchPattern.R_PATTERN_MATCH));
+		assertEquals("Unexpected types still without cache", NUMBER_OF_DOCUMENTS, countDocuments(index, TYPE_DECL, null, SearchPattern.R_PATTERN_MATCH));
+		assertEquals("Unexpected misses with a small cache", 3, cache.getMissCount());
+		assertEquals("Unexpected hits with a small cache", 1, cache.getHitCount());
+		assertEquals("Unexpected space", 0, cache.getCurrentSpace());
+	} finally {
+		cache.setSpaceLimit(spaceLimit);
+	}
+}
+/*
+ * Ensures that many queries can run at the same time against one index
+ * and that each of them answers the same results as a query run alone.
+ */
+public void testConcurrentQueries() throws Exception {
+	final Index index = createIndex(NUMBER_OF_DOCUMENTS);
+	final ArrayList failures = new ArrayList();
+	Thread[] threads = new Thread[8];
+	for (int i = 0, length = threads.length; i < length; i++) {
+		final int seed = i;
+		threads[i] = new Thread(new Runnable() {
+			public void run() {
+				for (int j = 0; j < 200; j++) {
+					index.monitor.enterRead();
+					index.startQuery();
+					try {
+						int n = (seed * 200 + j) % NUMBER_OF_DOCUMENTS;
+						assertEquals("X" + n, 1, countDocuments(index, TYPE_DECL, ("X" + n).toCharArray(), SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE));
+						assertEquals("R" + (n % NUMBER_OF_SHARED_REFS), NUMBER_OF_DOCUMENTS / NUMBER_OF_SHARED_REFS + (n % NUMBER_OF_SHARED_REFS < NUMBER_OF_DOCUMENTS % NUMBER_OF_SHARED_REFS ? 1 : 0),
+							countDocuments(index, REF, ("R" + (n % NUMBER_OF_SHARED_REFS)).toCharArray(), SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE));
+						assertEquals("X1*", 111, countDocuments(index, TYPE_DECL, "X1".toCharArray(), SearchPattern.R_PREFIX_MATCH | SearchPattern.R_CASE_SENSITIVE));
+						if (j % 10 == 0)
+							assertEquals("all references", 2 * NUMBER_OF_DOCUMENTS, countDocuments(index, REF, null, SearchPattern.R_PATTERN_MATCH));
+					} catch (Throwable e) {
+						synchronized (failures) {
+							failures.add(e);
+						}
+						return;
+					} finally {
+						index.stopQuery();
+						index.monitor.exitRead();
+					}
+				}
+			}
+		}, "IndexQuery-" + i);
+		threads[i].start();
+	}
+	for (int i = 0, length = threads.length; i < length; i++)
+		threads[i].join();
+	if (!failures.isEmpty()) {
+		Throwable failure = (Throwable) failures.get(0);
+		if (failure instanceof Error)
+			throw (Error) failure;
+		throw (Exception) failure;
+	}
+}
+/*
+ * Ensures that the index of a library built into a shared index store is attached instead of indexing the library.
+ */
+public void testSharedIndex() throws Exception {
+	String jarPath = getExternalPath() + "shared.jar";
+	File storeDirectory = new File(getExternalPath(), "sharedIndexes");
+	String previousLocation = IndexManager.SHARED_INDEX_LOCATION;
+	IndexManager indexManager = JavaModelManager.getJavaModelManager().getIndexManager();
+	try {
+		Util.createJar(new String[] {
+			"p/X.java",
+			"package p;\n" +
+			"public class X extends Y {\n" +
+			"}",
+			"p/Y.java",
+			"package p;\n" +
+			"public class Y {\n" +
+			"}"
+		}, jarPath, "1.4");
+		File jarFile = new File(jarPath);
+		File indexFile = SharedIndexBuilder.buildIndex(jarFile, storeDirectory);
+		assertEquals("Unexpected index name", SharedIndexBuilder.sharedIndexName(jarFile), indexFile.getName());
+		long lastModified = indexFile.lastModified();
+		assertEquals("Unexpected index file", indexFile, SharedIndexBuilder.buildIndex(jarFile, storeDirectory));
+		assertEquals("Index should not be built again", lastModified, indexFile.lastModified());
+
+		IndexManager.SHARED_INDEX_LOCATION = storeDirectory.getPath();
+		Index index = indexManager.attachSharedIndex(new Path(jarPath), jarFile);
+		assertNotNull("Shared index should be attached", index);
+		assertTrue("Unexpected index location", !indexFile.equals(index.getIndexFile()));
+		assertEquals("Unexpected types", 2, countDocuments(index, TYPE_DECL, null, SearchPattern.R_PATTERN_MATCH));
+		assertEquals("Unexpected document names", 2, index.queryDocumentNames("p/").length);
+	} finally {
+		IndexManager.SHARED_INDEX_LOCATION = previousLocation;
+		indexManager.removeIndex(new Path(jarPath));
+		deleteFile(storeDirectory);
+		deleteFile(new File(jarPath));
+	}
+}
+}
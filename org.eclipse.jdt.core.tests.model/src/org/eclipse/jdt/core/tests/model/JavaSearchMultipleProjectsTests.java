@@ -776,6 +776,53 @@ public void testPackageReference2() throws CoreException, IOException {
 		deleteProject("JavaSearchMultipleProjects2");
 	}
 }
+/*
+ * Ensures that the indexes which can see the focus of a search are selected again when a classpath changes.
+ */
+public void testReferenceAfterClasspathChange() throws CoreException {
+	try {
+		IJavaProject p1 = createJavaProject("P1", new String[] {""}, new String[] {"JCL_LIB"}, "");
+		createFolder("/P1/p");
+		createFile(
+			"/P1/p/X.java",
+			"package p;\n" +
+			"public class X {\n" +
+			"}"
+		);
+		IJavaProject p2 = createJavaProject("P2", new String[] {""}, new String[] {"JCL_LIB"}, "");
+		createFolder("/P2/q");
+		createFile(
+			"/P2/q/Y.java",
+			"package q;\n" +
+			"public class Y {\n" +
+			"	p.X x;\n" +
+			"}"
+		);
+		IType type = getCompilationUnit("/P1/p/X.java").getType("X");
+		IJavaSearchScope scope = SearchEngine.createWorkspaceScope();
+		JavaSearchResultCollector resultCollector = new JavaSearchResultCollector();
+		search(type, REFERENCES, scope, resultCollector);
+		assertSearchResults(
+			"Unexpected references before classpath change",
+			"",
+			resultCollector);
+
+		IClasspathEntry[] classpath = p2.getRawClasspath();
+		int length = classpath.length;
+		System.arraycopy(classpath, 0, classpath = new IClasspathEntry[length+1], 0, length);
+		classpath[length] = JavaCore.newProjectEntry(p1.getPath());
+		p2.setRawClasspath(classpath, null);
+		resultCollector = new JavaSearchResultCollector();
+		search(type, REFERENCES, scope, resultCollector);
+		assertSearchResults(
+			"Unexpected references after classpath change",
+			"q/Y.java q.Y.x [p.X]",
+			resultCollector);
+	} finally {
+		deleteProject("P1");
+		deleteProject("P2");
+	}
+}
 /**
  * Method reference with 2 working copies in 2 different project.
  * (regression test for bug 57749 Search in working copies doesn't find all matches)
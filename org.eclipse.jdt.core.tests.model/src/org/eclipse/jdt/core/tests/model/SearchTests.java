@@ -12,10 +12,12 @@ package org.eclipse.jdt.core.tests.model;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.StringTokenizer;
 import java.util.Vector;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IncrementalProjectBuilder;
 import org.eclipse.core.resources.IWorkspaceRunnable;
 import org.eclipse.core.runtime.*;
 import org.eclipse.core.runtime.CoreException;
@@ -31,10 +33,17 @@ import org.eclipse.jdt.core.search.IJavaSearchConstants;
 import org.eclipse.jdt.core.search.SearchEngine;
 import org.eclipse.jdt.core.tests.model.Semaphore.TimeOutException;
 import org.eclipse.jdt.core.tests.util.Util;
+import org.eclipse.jdt.internal.compiler.env.AccessRestriction;
 import org.eclipse.jdt.internal.core.JavaElement;
 import org.eclipse.jdt.internal.core.JavaModelManager;
 import org.eclipse.jdt.internal.core.LocalVariable;
+import org.eclipse.jdt.internal.core.search.BasicSearchEngine;
+import org.eclipse.jdt.internal.core.search.IRestrictedAccessTypeRequestor;
+import org.eclipse.jdt.internal.core.search.PatternSearchJob;
+import org.eclipse.jdt.internal.core.search.SearchMetrics;
+import org.eclipse.jdt.internal.core.search.indexing.IIndexConstants;
 import org.eclipse.jdt.internal.core.search.indexing.IndexManager;
+import org.eclipse.jdt.internal.core.search.matching.MatchLocator;
 import org.eclipse.jdt.internal.core.search.processing.IJob;
 
 import junit.framework.Test;
@@ -387,6 +396,323 @@ public void testConcurrentJob() throws CoreException, InterruptedException, IOEx
 		indexManager.enable();
 	}
 }
+/*
+ * Returns the names of all the types in the workspace, in the order they are reported.
+ */
+String searchAllTypeNames() throws JavaModelException {
+	return searchAllTypeNames(0);
+}
+/*
+ * Returns the names of at most the given number of types in the workspace, in the order they are reported.
+ */
+String searchAllTypeNames(int maxResults) throws JavaModelException {
+	final StringBuffer buffer = new StringBuffer();
+	new SearchEngine().searchAllTypeNames(
+		null,
+		null,
+		SearchPattern.R_PATTERN_MATCH, // case insensitive
+		TYPE,
+		SearchEngine.createWorkspaceScope(), 
+		new TypeNameRequestor() {
+			public void acceptType(int modifiers, char[] packageName, char[] simpleTypeName, char[][] enclosingTypeNames, String path) {
+				buffer.append(path);
+				buffer.append('\n');
+			}
+		},
+		maxResults,
+		WAIT_UNTIL_READY_TO_SEARCH,
+		null);
+	return buffer.toString();
+}
+/*
+ * Ensures that searching the indexes with several threads reports the same matches
+ * in the same order as searching them one after the other.
+ */
+public void testSearchIndexesConcurrently() throws CoreException {
+	int maxSearchThreads = PatternSearchJob.MAX_SEARCH_THREADS;
+	try {
+		for (int i = 0; i < 6; i++) {
+			createJavaProject("P" + i);
+			for (int j = 0; j < 10; j++)
+				createFile("/P" + i + "/X" + j + ".java", "public class X" + j + " {}");
+		}
+		waitUntilIndexesReady();
+		PatternSearchJob.MAX_SEARCH_THREADS = 1;
+		String expected = searchAllTypeNames();
+		PatternSearchJob.MAX_SEARCH_THREADS = 4;
+		assertEquals("Unexpected types", expected, searchAllTypeNames());
+	} finally {
+		PatternSearchJob.MAX_SEARCH_THREADS = maxSearchThreads;
+		for (int i = 0; i < 6; i++)
+			deleteProject("P" + i);
+	}
+}
+/*
+ * Returns the references to the method X0.foo() in the given project, in the order they are reported.
+ */
+String searchFooReferences(IJavaProject project) throws CoreException {
+	return searchReferences(project, project.findType("X0").getMethod("foo", new String[0]));
+}
+/*
+ * Ensures that locating the possible matches with several threads reports the same matches
+ * in the same order as locating them one batch after the other.
+ */
+public void testLocateMatchesConcurrently() throws CoreException {
+	int maxLocatorThreads = MatchLocator.MAX_LOCATOR_THREADS;
+	int minPartitionSize = MatchLocator.MIN_PARTITION_SIZE;
+	try {
+		IJavaProject project = createJavaProject("P", new String[] {""}, new String[] {"JCL_LIB"}, "");
+		createFile("/P/X0.java", "public class X0 { void foo() {} }");
+		for (int i = 1; i < 40; i++)
+			createFile("/P/X" + i + ".java", "public class X" + i + " extends X" + (i - 1) + " { void bar() { foo(); new X0().foo(); } }");
+		waitUntilIndexesReady();
+		MatchLocator.MIN_PARTITION_SIZE = 5;
+		MatchLocator.MAX_LOCATOR_THREADS = 1;
+		String expected = searchFooReferences(project);
+		MatchLocator.MAX_LOCATOR_THREADS = 4;
+		assertEquals("Unexpected references", expected, searchFooReferences(project));
+		assertEquals("Unexpected number of references", 78, new StringTokenizer(expected, "\n").countTokens());
+	} finally {
+		MatchLocator.MAX_LOCATOR_THREADS = maxLocatorThreads;
+		MatchLocator.MIN_PARTITION_SIZE = minPartitionSize;
+		deleteProject("P");
+	}
+}
+String searchReferences(IJavaProject project, IJavaElement element) throws CoreException {
+	return searchReferences(project, element, 0);
+}
+String searchReferences(IJavaProject project, IJavaElement element, int maxResults) throws CoreException {
+	final StringBuffer buffer = new StringBuffer();
+	new SearchEngine().search(
+		SearchPattern.createPattern(element, REFERENCES),
+		new SearchParticipant[] {SearchEngine.getDefaultSearchParticipant()},
+		SearchEngine.createJavaSearchScope(new IJavaElement[] {project}),
+		new SearchRequestor() {
+			public void acceptSearchMatch(SearchMatch match) {
+				buffer.append(((JavaElement) match.getElement()).toStringWithAncestors());
+				buffer.append(" [" + match.getOffset() + ", " + match.getLength() + "]\n");
+			}
+		},
+		maxResults,
+		null);
+	return buffer.toString();
+}
+/*
+ * Ensures that a search limited to a number of matches reports the first matches of the unlimited search.
+ */
+public void testSearchWithResultLimit() throws CoreException {
+	try {
+		IJavaProject project = createJavaProject("P", new String[] {""}, new String[] {"JCL_LIB"}, "");
+		createFile("/P/X0.java", "public class X0 { void foo() {} }");
+		for (int i = 1; i < 20; i++)
+			createFile("/P/X" + i + ".java", "public class X" + i + " { void bar() { new X0().foo(); } }");
+		waitUntilIndexesReady();
+		IMethod method = project.findType("X0").getMethod("foo", new String[0]);
+		String expected = searchReferences(project, method);
+		String limited = searchReferences(project, method, 5);
+		assertEquals("Unexpected number of references", 5, new StringTokenizer(limited, "\n").countTokens());
+		assertTrue("Unexpected references:\n" + limited, expected.startsWith(limited));
+		assertEquals("Unexpected references", expected, searchReferences(project, method, 100));
+	} finally {
+		deleteProject("P");
+	}
+}
+/*
+ * Ensures that searching for a limited number of type names reports the first types of the unlimited search.
+ */
+public void testSearchAllTypeNamesWithResultLimit() throws CoreException {
+	try {
+		createJavaProject("P");
+		for (int i = 0; i < 20; i++)
+			createFile("/P/X" + i + ".java", "public class X" + i + " {}");
+		waitUntilIndexesReady();
+		String expected = searchAllTypeNames();
+		String limited = searchAllTypeNames(7);
+		assertEquals("Unexpected number of types", 7, new StringTokenizer(limited, "\n").countTokens());
+		assertTrue("Unexpected types:\n" + limited, expected.startsWith(limited));
+	} finally {
+		deleteProject("P");
+	}
+}
+/*
+ * Ensures that the metrics of a search count its work, and that they are added to the metrics of the session.
+ */
+public void testSearchMetrics() throws CoreException {
+	try {
+		IJavaProject project = createJavaProject("P", new String[] {""}, new String[] {"JCL_LIB"}, "");
+		createFile("/P/X0.java", "public class X0 { void foo() {} }");
+		for (int i = 1; i < 5; i++)
+			createFile("/P/X" + i + ".java", "public class X" + i + " { void bar() { new X0().foo(); } }");
+		createFile("/P/Y.java", "public class Y { void foo() {} void bar() { foo(); } }");
+		waitUntilIndexesReady();
+		IMethod method = project.findType("X0").getMethod("foo", new String[0]);
+		int sessionSearches = BasicSearchEngine.getSessionMetrics().getSearchCount();
+		BasicSearchEngine engine = new BasicSearchEngine();
+		assertNull("Unexpected metrics before searching", engine.getLastSearchMetrics());
+		final int[] matches = new int[1];
+		engine.search(
+			SearchPattern.createPattern(method, REFERENCES),
+			new SearchParticipant[] {SearchEngine.getDefaultSearchParticipant()},
+			SearchEngine.createJavaSearchScope(new IJavaElement[] {project}),
+			new SearchRequestor() {
+				public void acceptSearchMatch(SearchMatch match) {
+					matches[0]++;
+				}
+			},
+			null);
+		SearchMetrics metrics = engine.getLastSearchMetrics();
+		assertEquals("Unexpected matches", 4, matches[0]);
+		assertEquals("Unexpected number of matches", 4, metrics.getCount(SearchMetrics.MATCHES));
+		assertTrue("Unexpected number of indexes queried", metrics.getCount(SearchMetrics.INDEXES_QUERIED) > 0);
+		assertEquals("Unexpected number of candidate documents", 5, metrics.getCount(SearchMetrics.CANDIDATE_DOCUMENTS));
+		long unitsParsed = metrics.getCount(SearchMetrics.UNITS_PARSED);
+		assertTrue("Unexpected number of units parsed: " + unitsParsed, unitsParsed >= 4 && unitsParsed <= 5); // Y may be filtered out
+		assertEquals("Unexpected number of searches", 1, metrics.getSearchCount());
+		assertEquals("Unexpected number of searches in the session", sessionSearches + 1, BasicSearchEngine.getSessionMetrics().getSearchCount());
+	} finally {
+		deleteProject("P");
+	}
+}
+/*
+ * Ensures that searching all type names records the metrics of the search.
+ */
+public void testSearchMetricsOfTypeNames() throws CoreException {
+	try {
+		IJavaProject project = createJavaProject("P", new String[] {""}, new String[] {"JCL_LIB"}, "");
+		for (int i = 0; i < 5; i++)
+			createFile("/P/X" + i + ".java", "public class X" + i + " {}");
+		waitUntilIndexesReady();
+		int sessionSearches = BasicSearchEngine.getSessionMetrics().getSearchCount();
+		BasicSearchEngine engine = new BasicSearchEngine();
+		final int[] types = new int[1];
+		engine.searchAllTypeNames(
+			null,
+			"X".toCharArray(),
+			SearchPattern.R_PREFIX_MATCH | SearchPattern.R_CASE_SENSITIVE,
+			TYPE,
+			SearchEngine.createJavaSearchScope(new IJavaElement[] {project}),
+			new IRestrictedAccessTypeRequestor() {
+				public void acceptType(int modifiers, char[] packageName, char[] simpleTypeName, char[][] enclosingTypeNames, String path, AccessRestriction access) {
+					types[0]++;
+				}
+			},
+			WAIT_UNTIL_READY_TO_SEARCH,
+			null);
+		SearchMetrics metrics = engine.getLastSearchMetrics();
+		assertEquals("Unexpected types", 5, types[0]);
+		assertEquals("Unexpected number of matches", 5, metrics.getCount(SearchMetrics.MATCHES));
+		assertTrue("Unexpected number of indexes queried", metrics.getCount(SearchMetrics.INDEXES_QUERIED) > 0);
+		assertEquals("Unexpected number of searches", 1, metrics.getSearchCount());
+		assertEquals("Unexpected number of searches in the session", sessionSearches + 1, BasicSearchEngine.getSessionMetrics().getSearchCount());
+	} finally {
+		deleteProject("P");
+	}
+}
+/*
+ * Ensures that skipping the documents which do not contain the names required by a search
+ * reports the same matches as locating all the documents, and that documents are actually skipped.
+ */
+public void testDocumentFilter() throws CoreException {
+	boolean indexDocumentFilters = IndexManager.INDEX_DOCUMENT_FILTERS;
+	try {
+		IndexManager.INDEX_DOCUMENT_FILTERS = true;
+		IJavaProject project = createJavaProject("P", new String[] {""}, new String[] {"JCL_LIB"}, "bin");
+		createFile("/P/p/X.java", "package p; public class X {}");
+		createFile("/P/p/W.java", "package p; public class W { X x; }");
+		createFile("/P/q/Z.java", "package q; import p.X; public class Z { X x; }");
+		createFile("/P/r/X.java", "package r; public class X {}");
+		for (int i = 0; i < 10; i++)
+			createFile("/P/r/Y" + i + ".java", "package r; public class Y" + i + " { X x; }");
+		waitUntilIndexesReady();
+
+		IType type = project.findType("p.X");
+		long skipped = BasicSearchEngine.getSessionMetrics().getCount(SearchMetrics.DOCUMENTS_SKIPPED_BY_TOKENS);
+		String references = searchReferences(project, type);
+		assertTrue("No document skipped", BasicSearchEngine.getSessionMetrics().getCount(SearchMetrics.DOCUMENTS_SKIPPED_BY_TOKENS) > skipped);
+		IndexManager.INDEX_DOCUMENT_FILTERS = false;
+		assertEquals("Unexpected references", searchReferences(project, type), references);
+		assertEquals("Unexpected number of references", 3, new StringTokenizer(references, "\n").countTokens());
+	} finally {
+		IndexManager.INDEX_DOCUMENT_FILTERS = indexDocumentFilters;
+		deleteProject("P");
+	}
+}
+/*
+ * Ensures that skipping the units which do not have the resolved references of a precise search
+ * reports the same matches as locating all the units, and that units are actually skipped.
+ */
+public void testResolvedReferenceIndex() throws CoreException {
+	boolean indexResolvedReferences = IndexManager.INDEX_RESOLVED_REFERENCES;
+	try {
+		IndexManager.INDEX_RESOLVED_REFERENCES = true;
+		IJavaProject project = createJavaProject("P", new String[] {""}, new String[] {"JCL_LIB"}, "bin");
+		createFile("/P/X0.java", "public class X0 { int f; void foo() {} }");
+		createFile("/P/Y.java", "public class Y { int f; void foo() {} }");
+		for (int i = 1; i < 20; i++)
+			createFile("/P/X" + i + ".java",
+				i % 2 == 0
+					? "public class X" + i + " extends X0 { void bar() { foo(); f++; } }"
+					: "public class X" + i + " { void bar(Y y) { y.foo(); y.f++; } }");
+		project.getProject().build(IncrementalProjectBuilder.FULL_BUILD, null);
+		waitUntilIndexesReady();
+		IndexManager indexManager = JavaModelManager.getJavaModelManager().getIndexManager();
+		assertNotNull("Missing resolved reference index", indexManager.getResolvedReferenceIndex(project.getPath(), false));
+
+		IType type = project.findType("X0");
+		long skipped = BasicSearchEngine.getSessionMetrics().getCount(SearchMetrics.UNITS_SKIPPED_BY_REFERENCES);
+		String methodReferences = searchReferences(project, type.getMethod("foo", new String[0]));
+		assertTrue("No unit skipped", BasicSearchEngine.getSessionMetrics().getCount(SearchMetrics.UNITS_SKIPPED_BY_REFERENCES) > skipped);
+		String fieldReferences = searchReferences(project, type.getField("f"));
+		String typeReferences = searchReferences(project, type);
+		IndexManager.INDEX_RESOLVED_REFERENCES = false;
+		assertEquals("Unexpected method references", searchReferences(project, type.getMethod("foo", new String[0])), methodReferences);
+		assertEquals("Unexpected field references", searchReferences(project, type.getField("f")), fieldReferences);
+		assertEquals("Unexpected type references", searchReferences(project, type), typeReferences);
+		assertEquals("Unexpected number of method references", 9, new StringTokenizer(methodReferences, "\n").countTokens());
+	} finally {
+		IndexManager.INDEX_RESOLVED_REFERENCES = indexResolvedReferences;
+		deleteProject("P");
+	}
+}
+/*
+ * Ensures that the resolved references recorded by the builder are not used once a project changed,
+ * and that the ones of a deleted unit are removed.
+ */
+public void testResolvedReferenceIndexChanges() throws CoreException, IOException {
+	boolean indexResolvedReferences = IndexManager.INDEX_RESOLVED_REFERENCES;
+	try {
+		IndexManager.INDEX_RESOLVED_REFERENCES = true;
+		IJavaProject project = createJavaProject("P", new String[] {""}, new String[] {"JCL_LIB"}, "bin");
+		createFile("/P/X.java", "public class X { void foo() {} }");
+		createFile("/P/Y.java", "public class Y { void foo() {} }");
+		createFile("/P/Z.java", "public class Z extends Y { void bar() { foo(); } }");
+		project.getProject().build(IncrementalProjectBuilder.FULL_BUILD, null);
+		waitUntilIndexesReady();
+		IMethod foo = project.findType("X").getMethod("foo", new String[0]);
+		long skipped = BasicSearchEngine.getSessionMetrics().getCount(SearchMetrics.UNITS_SKIPPED_BY_REFERENCES);
+		assertEquals("Unexpected references", "", searchReferences(project, foo));
+		assertTrue("No unit skipped", BasicSearchEngine.getSessionMetrics().getCount(SearchMetrics.UNITS_SKIPPED_BY_REFERENCES) > skipped);
+
+		// Z now calls X.foo() without being changed itself
+		editFile("/P/Y.java", "public class Y extends X {}");
+		skipped = BasicSearchEngine.getSessionMetrics().getCount(SearchMetrics.UNITS_SKIPPED_BY_REFERENCES);
+		assertEquals("Unexpected references after a change", "bar() [in Z [in Z.java [in <default> [in <project root> [in P]]]]] [40, 3]\n", searchReferences(project, foo));
+		assertEquals("Unexpected skipped units after a change", skipped, BasicSearchEngine.getSessionMetrics().getCount(SearchMetrics.UNITS_SKIPPED_BY_REFERENCES));
+
+		deleteFile("/P/Z.java");
+		waitUntilIndexesReady();
+		org.eclipse.jdt.internal.core.index.Index index = JavaModelManager.getJavaModelManager().getIndexManager().getResolvedReferenceIndex(project.getPath(), false);
+		org.eclipse.jdt.internal.core.index.EntryResult[] units = index.query(new char[][] {IIndexConstants.RESOLVED_UNIT}, null, SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE);
+		for (int i = 0, length = units == null ? 0 : units.length; i < length; i++) {
+			String[] documentNames = units[i].getDocumentNames(index);
+			for (int j = 0; j < documentNames.length; j++)
+				assertTrue("Resolved references of a deleted unit", !"Z.java".equals(documentNames[j]));
+		}
+	} finally {
+		IndexManager.INDEX_RESOLVED_REFERENCES = indexResolvedReferences;
+		deleteProject("P");
+	}
+}
 /*
  * Ensures that passing a null progress monitor with a CANCEL_IF_NOT_READY_TO_SEARCH
  * waiting policy doesn't throw a NullPointerException but an OperationCanceledException.
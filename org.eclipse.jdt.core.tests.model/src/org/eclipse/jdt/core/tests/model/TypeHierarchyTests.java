@@ -12,14 +12,27 @@ package org.eclipse.jdt.core.tests.model;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 
+import org.eclipse.core.resources.IncrementalProjectBuilder;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
 
 import org.eclipse.jdt.core.*;
+import org.eclipse.jdt.core.search.IJavaSearchScope;
+import org.eclipse.jdt.core.search.SearchEngine;
+import org.eclipse.jdt.core.search.SearchPattern;
 import org.eclipse.jdt.core.tests.util.Util;
+import org.eclipse.jdt.internal.core.JavaModelManager;
+import org.eclipse.jdt.internal.core.hierarchy.HierarchyGraph;
+import org.eclipse.jdt.internal.core.hierarchy.IndexOnlyHierarchyBuilder;
+import org.eclipse.jdt.internal.core.hierarchy.RegionBasedHierarchyBuilder;
+import org.eclipse.jdt.internal.core.hierarchy.TypeHierarchy;
+import org.eclipse.jdt.internal.core.search.indexing.IndexManager;
+import org.eclipse.jdt.internal.core.search.matching.QualifiedSuperTypeReferencePattern;
 
 import junit.framework.Test;
 
@@ -256,6 +269,81 @@ public void testAnonymousType7() throws CoreException {
 	IType[] subtypes = hierarchy.getSubtypes(type);
 	assertEquals("Unexpected key", "Lmy/pkg/Y$1;", subtypes.length < 1 ? null : subtypes[0].getKey());
 }
+/*
+ * Ensures that an approximate hierarchy computed from the indexes only has the same types as a resolved hierarchy
+ * when the supertypes are found using the imports.
+ */
+public void testApproximateHierarchy() throws CoreException {
+	try {
+		IJavaProject project = createJavaProject("P", new String[] {""}, new String[] {"JCL_LIB"}, "bin");
+		createFile("/P/p/X.java", "package p; public class X {}");
+		createFile("/P/p/I.java", "package p; public interface I {}");
+		createFile("/P/p/Y.java", "package p; public class Y extends X implements I { public class Member extends X {} }");
+		createFile("/P/q/X.java", "package q; public class X {}");
+		createFile("/P/q/Z.java", "package q; import p.*; public class Z extends X implements I {}");
+		createFile("/P/q/W.java", "package q; import p.X; public class W extends X {}");
+		createFile("/P/r/V.java", "package r; public class V extends p.Y.Member implements Runnable { public void run() {} }");
+		waitUntilIndexesReady();
+
+		IType x = project.findType("p.X");
+		String expected =
+			"p.Y\n" + 
+			"p.Y$Member\n" + 
+			"q.W\n" + 
+			"r.V\n";
+		assertTypesEqual("Unexpected subtypes of X", expected, x.newTypeHierarchy(null).getAllSubtypes(x));
+		assertTypesEqual("Unexpected approximate subtypes of X", expected, x.newApproximateTypeHierarchy(null).getAllSubtypes(x));
+
+		IType v = project.findType("r.V");
+		assertTypesEqual(
+			"Unexpected supertypes of V",
+			"java.lang.Object\n" + 
+			"java.lang.Runnable\n" + 
+			"p.X\n" + 
+			"p.Y$Member\n",
+			v.newApproximateTypeHierarchy(null).getAllSupertypes(v));
+		IType i = project.findType("p.I");
+		assertTypesEqual(
+			"Unexpected subtypes of I",
+			"p.Y\n" + 
+			"q.Z\n",
+			i.newApproximateTypeHierarchy(null).getAllSubtypes(i));
+	} finally {
+		deleteProject("P");
+	}
+}
+/*
+ * Ensures that an approximate hierarchy reads the qualified super type references of all the types
+ * with one query, instead of one query per type.
+ */
+public void testApproximateHierarchyQueries() throws CoreException {
+	try {
+		IJavaProject project = createJavaProject("P", new String[] {""}, new String[] {"JCL_LIB"}, "bin");
+		createFile("/P/p/X.java", "package p; public class X {}");
+		createFile("/P/p/I.java", "package p; public interface I {}");
+		for (int i = 0; i < 10; i++)
+			createFile("/P/p/Y" + i + ".java", "package p; public class Y" + i + " extends " + (i == 0 ? "X" : "Y" + (i - 1)) + " implements I {}");
+		waitUntilIndexesReady();
+
+		IType x = project.findType("p.X");
+		IJavaSearchScope scope = SearchEngine.createJavaSearchScope(new IJavaElement[] {project});
+		TypeHierarchy hierarchy = new TypeHierarchy(x, null, scope, true);
+		final int[] scans = new int[1];
+		IndexOnlyHierarchyBuilder builder = new IndexOnlyHierarchyBuilder(hierarchy, scope) {
+			protected void query(SearchPattern pattern, ArrayList records, IProgressMonitor monitor) {
+				if (pattern instanceof QualifiedSuperTypeReferencePattern && ((QualifiedSuperTypeReferencePattern) pattern).superSimpleName == null)
+					scans[0]++; // not a prefix query
+				super.query(pattern, records, monitor);
+			}
+		};
+		builder.build(true);
+		assertEquals("Unexpected number of subtypes of X", 10, hierarchy.getAllSubtypes(x).length);
+		assertEquals("Unexpected number of implementors of I", 10, hierarchy.getImplementingClasses(project.findType("p.I")).length);
+		assertEquals("Unexpected number of queries of all the references", 1, scans[0]);
+	} finally {
+		deleteProject("P");
+	}
+}
 /**
  * Ensures that the superclass can be retrieved for a binary inner type.
  */
@@ -487,6 +575,65 @@ public void testGetType() throws JavaModelException {
 	// hierarchy created on a region
 	assertTrue("Unexpected focus type for hierarchy on region", this.typeHierarchy.getType() == null);
 }
+/*
+ * Ensures that a hierarchy built from the supertypes recorded by the builder is the same as a resolved hierarchy.
+ */
+public void testHierarchyGraph() throws CoreException {
+	boolean indexTypeHierarchy = IndexManager.INDEX_TYPE_HIERARCHY;
+	try {
+		IndexManager.INDEX_TYPE_HIERARCHY = true;
+		IJavaProject project = createJavaProject("P", new String[] {""}, new String[] {"JCL_LIB"}, "bin");
+		createFile("/P/p/X.java", "package p; public class X {}");
+		createFile("/P/p/I.java", "package p; public interface I {}");
+		createFile("/P/p/J.java", "package p; public interface J extends I {}");
+		createFile("/P/p/Y.java", "package p; public class Y extends X implements J { public class Member extends X {} }");
+		createFile("/P/q/Z.java", "package q; import p.*; public class Z extends Y implements Runnable { public void run() {} }");
+		createFile("/P/q/W.java", "package q; public abstract class W implements p.I {}");
+		project.getProject().build(IncrementalProjectBuilder.FULL_BUILD, null);
+		waitUntilIndexesReady();
+		HierarchyGraph graph = HierarchyGraph.read(project.getPath(), JavaModelManager.getJavaModelManager().getIndexManager());
+		assertNotNull("Missing hierarchy graph", graph);
+		assertNotNull("Missing types of Z", graph.getTypes(getFile("/P/q/Z.java")));
+
+		IType x = project.findType("p.X");
+		IType i = project.findType("p.I");
+		String xHierarchy = x.newTypeHierarchy(null).toString();
+		String iHierarchy = i.newTypeHierarchy(null).toString();
+		IndexManager.INDEX_TYPE_HIERARCHY = false;
+		assertEquals("Unexpected hierarchy of X", x.newTypeHierarchy(null).toString(), xHierarchy);
+		assertEquals("Unexpected hierarchy of I", i.newTypeHierarchy(null).toString(), iHierarchy);
+		assertTrue("Missing subtype of X:\n" + xHierarchy, xHierarchy.indexOf("Z [in Z.java [in q") != -1);
+	} finally {
+		IndexManager.INDEX_TYPE_HIERARCHY = indexTypeHierarchy;
+		deleteProject("P");
+	}
+}
+/*
+ * Ensures that changing the content of a compilation unit marks the hierarchy graph as stale
+ * until the project is built again.
+ */
+public void testHierarchyGraphStale() throws CoreException {
+	boolean indexTypeHierarchy = IndexManager.INDEX_TYPE_HIERARCHY;
+	try {
+		IndexManager.INDEX_TYPE_HIERARCHY = true;
+		IJavaProject project = createJavaProject("P", new String[] {""}, new String[] {"JCL_LIB"}, "bin");
+		createFile("/P/p/X.java", "package p; public class X {}");
+		createFile("/P/q/Y.java", "package q; import p.*; public class Y extends X {}");
+		project.getProject().build(IncrementalProjectBuilder.FULL_BUILD, null);
+		IndexManager indexManager = JavaModelManager.getJavaModelManager().getIndexManager();
+		assertTrue("Hierarchy graph should be current after a build", !indexManager.isHierarchyGraphStale(project.getPath()));
+
+		// a secondary type X in q now shadows p.X for Y
+		editFile("/P/q/Y.java", "package q; import p.*; public class Y extends X {} class X {}");
+		assertTrue("Hierarchy graph should be stale after a change", indexManager.isHierarchyGraphStale(project.getPath()));
+
+		project.getProject().build(IncrementalProjectBuilder.INCREMENTAL_BUILD, null);
+		assertTrue("Hierarchy graph should be current after a rebuild", !indexManager.isHierarchyGraphStale(project.getPath()));
+	} finally {
+		IndexManager.INDEX_TYPE_HIERARCHY = indexTypeHierarchy;
+		deleteProject("P");
+	}
+}
 /*
  * Ensures that a hierarchy on an type that implements a binary inner interface is correct.
  * (regression test for bug 58440 type hierarchy incomplete when implementing fully qualified interface)
@@ -727,6 +874,64 @@ public void testRegion4() throws CoreException {
 		deleteProjects(new String[] {"P1", "P2", "P3"});
 	}
 }
+/*
+ * Ensures that a type hierarchy on a region resolved with several threads has the same types, supertypes
+ * and subtypes as when resolved with one thread, regardless of the order of the arrays (see #describe(ITypeHierarchy)).
+ */
+public void testRegion5() throws CoreException {
+	int maxResolverThreads = RegionBasedHierarchyBuilder.MAX_RESOLVER_THREADS;
+	int minPartitionSize = RegionBasedHierarchyBuilder.MIN_PARTITION_SIZE;
+	try {
+		IJavaProject project = createJavaProject("P", new String[] {""}, new String[] {"JCL_LIB"}, "");
+		createFile("/P/p/X.java", "package p; public class X {}");
+		createFile("/P/p/I.java", "package p; public interface I {}");
+		createFile("/P/p/Y.java", "package p; public class Y extends X implements I { class Member extends Y {} }");
+		createFile("/P/p/Z.java", "package p; public class Z extends Y implements Runnable, Missing { public void run() { new X() {}; } }");
+		createFile("/P/q/W.java", "package q; public abstract class W extends p.Z implements p.I {}");
+		createFile("/P/q/V.java", "package q; public class V extends Unknown {}");
+		IRegion region = JavaCore.newRegion();
+		region.add(project);
+
+		RegionBasedHierarchyBuilder.MAX_RESOLVER_THREADS = 1;
+		String expected = describe(project.newTypeHierarchy(region, null));
+		RegionBasedHierarchyBuilder.MAX_RESOLVER_THREADS = 3;
+		RegionBasedHierarchyBuilder.MIN_PARTITION_SIZE = 1;
+		assertEquals("Unexpected hierarchy", expected, describe(project.newTypeHierarchy(region, null)));
+	} finally {
+		RegionBasedHierarchyBuilder.MAX_RESOLVER_THREADS = maxResolverThreads;
+		RegionBasedHierarchyBuilder.MIN_PARTITION_SIZE = minPartitionSize;
+		deleteProject("P");
+	}
+}
+private String describe(ITypeHierarchy hierarchy) {
+	IType[] types = hierarchy.getAllTypes();
+	sortTypes(types);
+	StringBuffer buffer = new StringBuffer();
+	for (int i = 0, length = types.length; i < length; i++) {
+		IType type = types[i];
+		buffer.append(type.getFullyQualifiedName());
+		buffer.append(" flags=").append(hierarchy.getCachedFlags(type));
+		IType superclass = hierarchy.getSuperclass(type);
+		buffer.append(" superclass=").append(superclass == null ? null : superclass.getFullyQualifiedName());
+		IType[] superInterfaces = hierarchy.getSuperInterfaces(type);
+		sortTypes(superInterfaces);
+		buffer.append(" superinterfaces=");
+		for (int j = 0; j < superInterfaces.length; j++)
+			buffer.append(superInterfaces[j].getFullyQualifiedName()).append(' ');
+		IType[] subtypes = hierarchy.getSubtypes(type);
+		sortTypes(subtypes);
+		buffer.append(" subtypes=");
+		for (int j = 0; j < subtypes.length; j++)
+			buffer.append(subtypes[j].getFullyQualifiedName()).append(' ');
+		buffer.append('\n');
+	}
+	IType[] roots = hierarchy.getRootClasses();
+	sortTypes(roots);
+	buffer.append("roots=");
+	for (int i = 0; i < roots.length; i++)
+		buffer.append(roots[i].getFullyQualifiedName()).append(' ');
+	return buffer.toString();
+}
 
 /*
  * Ensures that a type hierarchy on a member type with subtypes in another project is correct
@@ -12,12 +12,16 @@ package org.eclipse.jdt.core.tests.performance;
 
 import java.io.PrintStream;
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 
 import junit.framework.*;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.core.*;
 import org.eclipse.jdt.core.search.*;
 import org.eclipse.jdt.internal.core.search.processing.IJob;
 import org.eclipse.test.performance.Performance;
@@ -32,6 +36,7 @@ public class FullSourceWorkspaceSearchTests extends FullSourceWorkspaceTests imp
 	// Tests counters
 	private static int TESTS_COUNT = 0;
 	private final static int ITERATIONS_COUNT = 10;
+	private final static int SCOPE_PATHS_COUNT = 10000;
 
 	// Search stats
 	private static int[] REFERENCES = new int[4];
@@ -224,6 +229,85 @@ public class FullSourceWorkspaceSearchTests extends FullSourceWorkspaceTests imp
 		waitUntilIndexesReady();
 	}
 
+	/**
+	 * Performance tests for search: Scope Paths.
+	 * 
+	 * Measure the lookup of document paths in a scope of 10000 compilation units and class files,
+	 * as done by the search for each index match.
+	 * Half of the paths are enclosed in the scope, the other half are not.
+	 */
+	public void testSearchScopeEncloses() throws CoreException {
+		tagAsSummary("Search>Scope>Encloses", false); // do NOT put in fingerprint
+
+		// Collect scope elements
+		List elements = new ArrayList();
+		for (int i=0, length=ALL_PROJECTS.length; i<length && elements.size()<SCOPE_PATHS_COUNT; i++) {
+			List units = getProjectCompilationUnits(ALL_PROJECTS[i]);
+			for (int j=0, size=units.size(); j<size && elements.size()<SCOPE_PATHS_COUNT; j++) {
+				elements.add(units.get(j));
+			}
+		}
+		HashSet visitedRoots = new HashSet();
+		for (int i=0, length=ALL_PROJECTS.length; i<length && elements.size()<SCOPE_PATHS_COUNT; i++) {
+			IPackageFragmentRoot[] roots = ALL_PROJECTS[i].getPackageFragmentRoots();
+			for (int j=0; j<roots.length && elements.size()<SCOPE_PATHS_COUNT; j++) {
+				if (!roots[j].isArchive() || !visitedRoots.add(roots[j].getPath())) continue;
+				IJavaElement[] packages = roots[j].getChildren();
+				for (int k=0; k<packages.length && elements.size()<SCOPE_PATHS_COUNT; k++) {
+					IClassFile[] classFiles = ((IPackageFragment) packages[k]).getClassFiles();
+					for (int c=0; c<classFiles.length && elements.size()<SCOPE_PATHS_COUNT; c++) {
+						elements.add(classFiles[c]);
+					}
+				}
+			}
+		}
+		int size = elements.size();
+		IJavaElement[] scopeElements = new IJavaElement[size];
+		elements.toArray(scopeElements);
+		IJavaSearchScope scope = SearchEngine.createJavaSearchScope(scopeElements);
+
+		// Document paths of the scope elements, and of missing documents in the same folders
+		String[] documentPaths = new String[2*size];
+		for (int i=0; i<size; i++) {
+			IJavaElement element = scopeElements[i];
+			IPackageFragmentRoot root = (IPackageFragmentRoot) element.getAncestor(IJavaElement.PACKAGE_FRAGMENT_ROOT);
+			String folderPath;
+			if (root.isArchive()) {
+				String packagePath = element.getParent().getElementName().replace('.', '/');
+				folderPath = root.getPath() + IJavaSearchScope.JAR_FILE_ENTRY_SEPARATOR + (packagePath.length() == 0 ? "" : packagePath + '/');
+			} else {
+				folderPath = element.getParent().getPath().toString() + '/';
+			}
+			documentPaths[2*i] = folderPath + element.getElementName();
+			documentPaths[2*i+1] = folderPath + "Missing" + element.getElementName();
+		}
+
+		// Warm up
+		int enclosed = 0;
+		for (int i=0, length=documentPaths.length; i<length; i++) {
+			if (scope.encloses(documentPaths[i])) enclosed++;
+		}
+		assertEquals("Unexpected enclosed paths", size, enclosed);
+
+		// Clean memory
+		runGc();
+
+		// Measures
+		for (int i=0; i<MEASURES_COUNT; i++) {
+			startMeasuring();
+			for (int j=0; j<ITERATIONS_COUNT; j++) {
+				for (int k=0, length=documentPaths.length; k<length; k++) {
+					scope.encloses(documentPaths[k]);
+				}
+			}
+			stopMeasuring();
+		}
+		
+		// Commit
+		commitMeasurements();
+		assertPerformance();
+	}
+
 	/**
 	 * Performance tests for search: Declarations Types Names.
 	 * 
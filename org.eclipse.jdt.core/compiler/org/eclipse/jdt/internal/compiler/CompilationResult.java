@@ -56,6 +56,12 @@ public class CompilationResult {
 	private int maxProblemPerUnit;
 	public char[][][] qualifiedReferences;
 	public char[][] simpleNameReferences;
+	// resolved references, computed if CompilerOptions.produceResolvedReferenceInfo is set (see ResolvedReferenceCollector)
+	public char[][] resolvedTypeReferences;
+	public char[][] resolvedMethodReferences;
+	public char[][] resolvedFieldReferences;
+	// supertypes of the types declared in the unit, computed if CompilerOptions.produceHierarchyInfo is set (see CompilationUnitScope#storeHierarchyInfo)
+	public char[][] typeHierarchy;
 
 	public int lineSeparatorPositions[];
 	public Map compiledTypes = new Hashtable(11);
@@ -41,6 +41,256 @@ public class Compiler implements ITypeRequestor, ProblemSeverities {
 	public int parseThreshold = -1;
 	// number of initial units parsed at once (-1: none)
 
+	// whether the units are resolved and analysed on a helper thread while the code of the previous ones is generated
+	public boolean isPipelined = false;
+	private Pipeline pipeline;
+
+	// number of threads parsing the source units in beginToCompile (1: they are parsed by the compiling thread)
+	// subclasses using a parser of their own (see #initializeParser()) must not change it
+	public int parallelParseThreads = 1;
+
+	/*
+	 * Resolves and analyses the units to process on its own thread, while the compiling thread generates the code of
+	 * the units already analysed and hands their results to the requestor in order. At most DEPTH units are analysed
+	 * ahead of the compiling thread. The code generation reports its problems through a problem reporter of its own.
+	 * Storing the reference and hierarchy info of a unit walks the supertypes of the types it references, which may
+	 * fault binary types into the lookup environment, so it is done by this thread right after the analysis (see #storeInfo).
+	 * The units whose code is generated are handed back to this thread to be cleaned up between two analyses, since
+	 * cleaning up a unit clears the scopes of its types.
+	 */
+	class Pipeline implements Runnable {
+		static final int DEPTH = 2;
+		CompilationUnitDeclaration[] analysedUnits = new CompilationUnitDeclaration[DEPTH];
+		int start = 0, count = 0;
+		boolean isDone = false; // no more unit will be analysed
+		boolean isStopped = false; // the compiling thread no longer takes the analysed units
+		ArrayList abortedResults = new ArrayList(); // results of the units aborted while accepted on the pipeline thread
+		ArrayList generatedUnits = new ArrayList(); // units whose code is generated, to be cleaned up by the pipeline thread
+		CompilationUnitDeclaration failedUnit;
+		Throwable exception;
+		ProblemReporter generationProblemReporter;
+		Thread thread;
+
+		Pipeline() {
+			this.generationProblemReporter = new ProblemReporter(problemReporter.policy, options, problemReporter.problemFactory);
+			this.thread = new Thread(this, "Compiler pipeline"); //$NON-NLS-1$
+			this.thread.setDaemon(true);
+		}
+		synchronized void abort(CompilationResult result) {
+			this.abortedResults.add(result);
+		}
+		/*
+		 * Cleans up the units handed back by the compiling thread. Called by the pipeline thread between two analyses.
+		 */
+		synchronized void cleanUpGeneratedUnits() {
+			for (int i = 0, length = this.generatedUnits.size(); i < length; i++)
+				((CompilationUnitDeclaration) this.generatedUnits.get(i)).cleanUp();
+			this.generatedUnits.clear();
+		}
+		/*
+		 * Hands the given unit back to the pipeline thread to be cleaned up, or cleans it up now if no unit is analysed anymore.
+		 */
+		synchronized void generated(CompilationUnitDeclaration unit) {
+			if (this.isDone)
+				unit.cleanUp();
+			else
+				this.generatedUnits.add(unit);
+		}
+		synchronized CompilationResult[] takeAbortedResults() {
+			if (this.abortedResults.isEmpty()) return null;
+			CompilationResult[] results = new CompilationResult[this.abortedResults.size()];
+			this.abortedResults.toArray(results);
+			this.abortedResults.clear();
+			return results;
+		}
+		/*
+		 * Answers the next analysed unit, or the unit whose analysis failed (see #rethrow()), or null when all the units are analysed.
+		 */
+		synchronized CompilationUnitDeclaration next() {
+			while (this.count == 0 && !this.isDone) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					// ignore
+				}
+			}
+			if (this.count > 0) {
+				CompilationUnitDeclaration unit = this.analysedUnits[this.start];
+				this.analysedUnits[this.start] = null;
+				this.start = (this.start + 1) % DEPTH;
+				this.count--;
+				notifyAll();
+				return unit;
+			}
+			if (this.exception != null && this.failedUnit == null)
+				rethrow();
+			return this.failedUnit;
+		}
+		synchronized boolean put(CompilationUnitDeclaration unit) {
+			while (this.count == DEPTH && !this.isStopped) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					// ignore
+				}
+			}
+			if (this.isStopped) return false;
+			this.analysedUnits[(this.start + this.count) % DEPTH] = unit;
+			this.count++;
+			notifyAll();
+			return true;
+		}
+		void rethrow() {
+			if (this.exception instanceof Error) throw (Error) this.exception;
+			throw (RuntimeException) this.exception;
+		}
+		public void run() {
+			CompilationUnitDeclaration unit = null;
+			try {
+				// units may be added to the ones to process while analysing (see #accept(ICompilationUnit, AccessRestriction))
+				for (int i = 0; i < totalUnits; i++) {
+					unit = unitsToProcess[i];
+					if (options.verbose)
+						System.out.println(
+							Messages.bind(Messages.compilation_process,
+							new String[] {
+								String.valueOf(i + 1),
+								String.valueOf(totalUnits),
+								new String(unit.getFileName())
+							}));
+					cleanUpGeneratedUnits();
+					analyse(unit);
+					storeInfo(unit);
+					unitsToProcess[i] = null; // release reference to processed unit declaration
+					if (!put(unit)) return;
+				}
+				unit = null;
+			} catch (RuntimeException e) {
+				this.failedUnit = unit;
+				this.exception = e;
+			} catch (Error e) {
+				this.failedUnit = unit;
+				this.exception = e;
+			} finally {
+				synchronized (this) {
+					cleanUpGeneratedUnits();
+					this.isDone = true;
+					notifyAll();
+				}
+			}
+		}
+		void stop() {
+			synchronized (this) {
+				this.isStopped = true;
+				notifyAll();
+			}
+			try {
+				this.thread.join();
+			} catch (InterruptedException e) {
+				// ignore
+			}
+		}
+	}
+
+	/*
+	 * Parses the source units given to beginToCompile on several threads, each with a parser and a problem reporter
+	 * of its own. The compiling thread takes the parsed units in the original order to build their type bindings,
+	 * so the result does not depend on the order in which the units are parsed.
+	 */
+	class ParallelParser implements Runnable {
+		ICompilationUnit[] sourceUnits;
+		CompilationUnitDeclaration[] parsedUnits;
+		Throwable[] exceptions; // exceptions thrown while parsing the units, rethrown by the compiling thread
+		boolean[] isParsed;
+		int nextUnit = 0; // index of the next unit to parse
+		boolean isStopped = false;
+		Thread[] threads;
+
+		ParallelParser(ICompilationUnit[] sourceUnits, int threads) {
+			int length = sourceUnits.length;
+			this.sourceUnits = sourceUnits;
+			this.parsedUnits = new CompilationUnitDeclaration[length];
+			this.exceptions = new Throwable[length];
+			this.isParsed = new boolean[length];
+			this.threads = new Thread[threads];
+			for (int i = 0; i < threads; i++) {
+				Thread thread = new Thread(this, "Compiler parser " + (i + 1)); //$NON-NLS-1$
+				thread.setDaemon(true);
+				thread.start();
+				this.threads[i] = thread;
+			}
+		}
+		/*
+		 * Answers the given unit once it is parsed, or rethrows the exception its parsing threw.
+		 */
+		synchronized CompilationUnitDeclaration getParsedUnit(int index) {
+			while (!this.isParsed[index]) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					// ignore
+				}
+			}
+			CompilationUnitDeclaration parsedUnit = this.parsedUnits[index];
+			this.parsedUnits[index] = null;
+			Throwable exception = this.exceptions[index];
+			if (exception instanceof Error) throw (Error) exception;
+			if (exception != null) throw (RuntimeException) exception;
+			return parsedUnit;
+		}
+		synchronized int nextUnit() {
+			if (this.isStopped || this.nextUnit == this.sourceUnits.length) return -1;
+			return this.nextUnit++;
+		}
+		public void run() {
+			Parser unitParser = new Parser(
+				new ProblemReporter(problemReporter.policy, options, problemReporter.problemFactory),
+				options.parseLiteralExpressionsAsConstants);
+			int maxUnits = this.sourceUnits.length;
+			int index;
+			while ((index = nextUnit()) >= 0) {
+				CompilationUnitDeclaration parsedUnit = null;
+				Throwable exception = null;
+				try {
+					CompilationResult unitResult =
+						new CompilationResult(this.sourceUnits[index], index, maxUnits, options.maxProblemsPerUnit);
+					// diet parsing for large collection of units
+					if (index < parseThreshold) {
+						parsedUnit = unitParser.parse(this.sourceUnits[index], unitResult);
+					} else {
+						parsedUnit = unitParser.dietParse(this.sourceUnits[index], unitResult);
+					}
+				} catch (RuntimeException e) {
+					exception = e;
+				} catch (Error e) {
+					exception = e;
+				}
+				synchronized (this) {
+					this.parsedUnits[index] = parsedUnit;
+					this.exceptions[index] = exception;
+					this.isParsed[index] = true;
+					notifyAll();
+				}
+			}
+		}
+		/*
+		 * Stops parsing the units and waits until the threads are done with the units they were parsing,
+		 * since they use the options of the compiler and the source units.
+		 */
+		void stop() {
+			synchronized (this) {
+				this.isStopped = true;
+			}
+			for (int i = 0, length = this.threads.length; i < length; i++) {
+				try {
+					this.threads[i].join();
+				} catch (InterruptedException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
 	/*
 	 * Static requestor reserved to listening compilation results in debug mode,
 	 * so as for example to monitor compiler activity independantly from a particular
@@ -226,7 +476,10 @@ public class Compiler implements ITypeRequestor, ProblemSeverities {
 			// at this point, currentCompilationUnitResult may not be sourceUnit, but some other
 			// one requested further along to resolve sourceUnit.
 			if (unitResult.compilationUnit == sourceUnit) { // only report once
-				requestor.acceptResult(unitResult.tagAsAccepted());
+				if (this.pipeline != null && Thread.currentThread() == this.pipeline.thread)
+					this.pipeline.abort(unitResult.tagAsAccepted()); // handed to the requestor by the compiling thread
+				else
+					requestor.acceptResult(unitResult.tagAsAccepted());
 			} else {
 				throw e; // want to abort enclosing request to compile
 			}
@@ -267,35 +520,49 @@ public class Compiler implements ITypeRequestor, ProblemSeverities {
 		totalUnits = 0;
 		unitsToProcess = new CompilationUnitDeclaration[maxUnits];
 
+		ParallelParser parallelParser = null;
+		if (this.parallelParseThreads > 1 && maxUnits > 1)
+			parallelParser = new ParallelParser(sourceUnits, Math.min(this.parallelParseThreads, maxUnits));
+
 		// Switch the current policy and compilation result for this unit to the requested one.
-		for (int i = 0; i < maxUnits; i++) {
-			CompilationUnitDeclaration parsedUnit;
-			CompilationResult unitResult =
-				new CompilationResult(sourceUnits[i], i, maxUnits, this.options.maxProblemsPerUnit);
-			try {
-				if (options.verbose) {
-					System.out.println(
-						Messages.bind(Messages.compilation_request,
-						new String[] {
-							String.valueOf(i + 1),
-							String.valueOf(maxUnits),
-							new String(sourceUnits[i].getFileName())
-						}));
-				}
-				// diet parsing for large collection of units
-				if (totalUnits < parseThreshold) {
-					parsedUnit = parser.parse(sourceUnits[i], unitResult);
-				} else {
-					parsedUnit = parser.dietParse(sourceUnits[i], unitResult);
+		try {
+			for (int i = 0; i < maxUnits; i++) {
+				CompilationUnitDeclaration parsedUnit;
+				try {
+					if (options.verbose) {
+						System.out.println(
+							Messages.bind(Messages.compilation_request,
+							new String[] {
+								String.valueOf(i + 1),
+								String.valueOf(maxUnits),
+								new String(sourceUnits[i].getFileName())
+							}));
+					}
+					if (parallelParser != null) {
+						parsedUnit = parallelParser.getParsedUnit(i);
+						parsedUnit.problemReporter = this.problemReporter; // instead of the one of its parser
+					} else {
+						CompilationResult unitResult =
+							new CompilationResult(sourceUnits[i], i, maxUnits, this.options.maxProblemsPerUnit);
+						// diet parsing for large collection of units
+						if (totalUnits < parseThreshold) {
+							parsedUnit = parser.parse(sourceUnits[i], unitResult);
+						} else {
+							parsedUnit = parser.dietParse(sourceUnits[i], unitResult);
+						}
+					}
+					// initial type binding creation
+					lookupEnvironment.buildTypeBindings(parsedUnit, null /*no access restriction*/);
+					this.addCompilationUnit(sourceUnits[i], parsedUnit);
+					//} catch (AbortCompilationUnit e) {
+					//	requestor.acceptResult(unitResult.tagAsAccepted());
+				} finally {
+					sourceUnits[i] = null; // no longer hold onto the unit
 				}
-				// initial type binding creation
-				lookupEnvironment.buildTypeBindings(parsedUnit, null /*no access restriction*/);
-				this.addCompilationUnit(sourceUnits[i], parsedUnit);
-				//} catch (AbortCompilationUnit e) {
-				//	requestor.acceptResult(unitResult.tagAsAccepted());
-			} finally {
-				sourceUnits[i] = null; // no longer hold onto the unit
 			}
+		} finally {
+			if (parallelParser != null)
+				parallelParser.stop();
 		}
 		// binding resolution
 		lookupEnvironment.completeTypeBindings();
@@ -324,8 +591,44 @@ public class Compiler implements ITypeRequestor, ProblemSeverities {
 
 			beginToCompile(sourceUnits);
 
+			if (this.isPipelined) {
+				this.pipeline = new Pipeline();
+				this.pipeline.thread.start();
+				while ((unit = this.pipeline.next()) != null) {
+					acceptAbortedResults();
+					if (unit == this.pipeline.failedUnit)
+						this.pipeline.rethrow();
+					try {
+						unit.problemReporter = this.pipeline.generationProblemReporter;
+						generate(unit);
+						if (unit.compilationResult.hasErrors()) {
+							// the info was stored before the code generation, which may report errors too (see #storeInfo)
+							unit.compilationResult.resolvedTypeReferences = null;
+							unit.compilationResult.resolvedMethodReferences = null;
+							unit.compilationResult.resolvedFieldReferences = null;
+							unit.compilationResult.typeHierarchy = null;
+						}
+					} finally {
+						// cleanup compilation unit result, on the pipeline thread while it analyses units
+						this.pipeline.generated(unit);
+					}
+					if( preCompilationProblems != null )
+						includeProblemsFromParticipants(unit, (List)preCompilationProblems.get(unit.compilationResult.compilationUnit));
+					requestor.acceptResult(unit.compilationResult.tagAsAccepted());
+					if (options.verbose)
+						System.out.println(
+							Messages.bind(Messages.compilation_done,
+							new String[] {
+								String.valueOf(++i),
+								String.valueOf(this.totalUnits),
+								new String(unit.getFileName())
+							}));
+				}
+				acceptAbortedResults();
+			}
+
 			// process all units (some more could be injected in the loop by the lookup environment)
-			for (; i < this.totalUnits; i++) {
+			for (; !this.isPipelined && i < this.totalUnits; i++) {
 				unit = unitsToProcess[i];
 				try {
 					if (options.verbose)
@@ -363,6 +666,11 @@ public class Compiler implements ITypeRequestor, ProblemSeverities {
 			this.handleInternalException(e, unit, null);
 			throw e; // rethrow
 		} finally {
+			if (this.pipeline != null) {
+				this.pipeline.stop();
+				acceptAbortedResults();
+				this.pipeline = null;
+			}
 			this.reset();
 		}
 		if (options.verbose) {
@@ -376,6 +684,13 @@ public class Compiler implements ITypeRequestor, ProblemSeverities {
 		}
 	}
 	
+	private void acceptAbortedResults() {
+		CompilationResult[] results = this.pipeline.takeAbortedResults();
+		if (results != null)
+			for (int i = 0, length = results.length; i < length; i++)
+				requestor.acceptResult(results[i]);
+	}
+
 	private void includeProblemsFromParticipants(CompilationUnitDeclaration unit, List problems )
 	{
 		if(problems == null || problems.isEmpty() ) return;
@@ -518,6 +833,15 @@ public class Compiler implements ITypeRequestor, ProblemSeverities {
 	 * Process a compilation unit already parsed and build.
 	 */
 	public void process(CompilationUnitDeclaration unit, int i) {
+		analyse(unit);
+		generate(unit);
+		storeInfo(unit);
+	}
+
+	/**
+	 * Resolve and analyse a compilation unit already parsed and build.
+	 */
+	protected void analyse(CompilationUnitDeclaration unit) {
 
 		this.parser.getMethodBodies(unit);
 
@@ -535,15 +859,32 @@ public class Compiler implements ITypeRequestor, ProblemSeverities {
 		// flow analysis
 		unit.analyseCode();
 
+		// refresh the total number of units known at this stage
+		unit.compilationResult.totalUnitsKnown = totalUnits;
+	}
+
+	/**
+	 * Generate the code of a compilation unit already analysed.
+	 */
+	protected void generate(CompilationUnitDeclaration unit) {
+
 		// code generation
 		unit.generateCode();
+	}
+
+	/**
+	 * Store the reference and hierarchy info of a compilation unit already analysed.
+	 * The resolved reference and hierarchy info are not stored when the unit has errors.
+	 */
+	protected void storeInfo(CompilationUnitDeclaration unit) {
 
 		// reference info
 		if (options.produceReferenceInfo && unit.scope != null)
 			unit.scope.storeDependencyInfo();
-
-		// refresh the total number of units known at this stage
-		unit.compilationResult.totalUnitsKnown = totalUnits;
+		if (options.produceResolvedReferenceInfo && unit.scope != null)
+			unit.scope.storeResolvedReferenceInfo();
+		if (options.produceHierarchyInfo && unit.scope != null)
+			unit.scope.storeHierarchyInfo();
 	}
 	public void reset() {
 		lookupEnvironment.reset();
@@ -241,6 +241,12 @@ public class CompilerOptions implements ProblemReasons, ProblemSeverities, Class
 	// indicates if reference info is desired
 	public boolean produceReferenceInfo = false;
 
+	// indicates if the resolved references of each unit are desired (see CompilationResult#resolvedTypeReferences)
+	public boolean produceResolvedReferenceInfo = false;
+
+	// indicates if the supertypes of the types of each unit are desired (see CompilationResult#typeHierarchy)
+	public boolean produceHierarchyInfo = false;
+
 	// indicates if unused/optimizable local variables need to be preserved (debugging purpose)
 	public boolean preserveAllLocalVariables = false;
 
@@ -756,6 +762,8 @@ public class CompilerOptions implements ProblemReasons, ProblemSeverities, Class
 		buf.append("\n\t- private constructor access: ").append(this.isPrivateConstructorAccessChangingVisibility ? "extra argument" : "make default access"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 		buf.append("\n\t- verbose : ").append(this.verbose ? "ON" : "OFF"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 		buf.append("\n\t- produce reference info : ").append(this.produceReferenceInfo ? "ON" : "OFF"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		buf.append("\n\t- produce resolved reference info : ").append(this.produceResolvedReferenceInfo ? "ON" : "OFF"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		buf.append("\n\t- produce hierarchy info : ").append(this.produceHierarchyInfo ? "ON" : "OFF"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 		buf.append("\n\t- parse literal expressions as constants : ").append(this.parseLiteralExpressionsAsConstants ? "ON" : "OFF"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 		buf.append("\n\t- encoding : ").append(this.defaultEncoding == null ? "<default>" : this.defaultEncoding); //$NON-NLS-1$ //$NON-NLS-2$
 		buf.append("\n\t- task tags: ").append(this.taskTags == null ? "" : new String(CharOperation.concatWith(this.taskTags,',')));  //$NON-NLS-1$ //$NON-NLS-2$
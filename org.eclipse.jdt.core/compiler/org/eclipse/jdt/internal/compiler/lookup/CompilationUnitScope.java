@@ -684,6 +684,49 @@ Binding resolveSingleImport(ImportBinding importBinding) {
 	}
 	return importBinding.resolvedImport;
 }
+/**
+ * Stores the supertypes of the top level and member types of the unit in its compilation result,
+ * unless the unit has errors since its bindings may then be incomplete.
+ * Each type is described by its qualified name, its modifiers, the qualified name of its superclass
+ * (empty for interfaces) and the qualified names of its superinterfaces, e.g. "p.X$Y/1/p.Z/p.I:p.J".
+ */
+public void storeHierarchyInfo() {
+	if (referenceContext.compilationResult.hasErrors()) return;
+	ObjectVector types = new ObjectVector();
+	for (int i = 0, length = topLevelTypes.length; i < length; i++)
+		storeHierarchyInfo(topLevelTypes[i], types);
+	char[][] typeHierarchy = new char[types.size][];
+	types.copyInto(typeHierarchy);
+	referenceContext.compilationResult.typeHierarchy = typeHierarchy;
+}
+private void storeHierarchyInfo(SourceTypeBinding type, ObjectVector types) {
+	StringBuffer buffer = new StringBuffer();
+	buffer.append(CharOperation.concatWith(type.compoundName, '.'));
+	buffer.append('/').append(type.scope.referenceContext.modifiers & (AccJustFlag | AccDeprecated));
+	buffer.append('/');
+	if (!type.isInterface() && type.superclass != null)
+		buffer.append(CharOperation.concatWith(((ReferenceBinding) type.superclass.erasure()).compoundName, '.'));
+	buffer.append('/');
+	ReferenceBinding[] superInterfaces = type.superInterfaces;
+	for (int i = 0, length = superInterfaces == null ? 0 : superInterfaces.length; i < length; i++) {
+		if (i > 0) buffer.append(':');
+		buffer.append(CharOperation.concatWith(((ReferenceBinding) superInterfaces[i].erasure()).compoundName, '.'));
+	}
+	char[] record = new char[buffer.length()];
+	buffer.getChars(0, record.length, record, 0);
+	types.add(record);
+	ReferenceBinding[] memberTypes = type.memberTypes;
+	for (int i = 0, length = memberTypes == null ? 0 : memberTypes.length; i < length; i++)
+		storeHierarchyInfo((SourceTypeBinding) memberTypes[i], types);
+}
+/**
+ * Stores the resolved references of the unit in its compilation result, unless the unit has errors
+ * since its bindings may then be incomplete.
+ */
+public void storeResolvedReferenceInfo() {
+	if (referenceContext.compilationResult.hasErrors()) return;
+	new ResolvedReferenceCollector().collect(referenceContext, referencedTypes);
+}
 public void storeDependencyInfo() {
 	// add the type hierarchy of each referenced supertype
 	// cannot do early since the hierarchy may not be fully resolved
@@ -0,0 +1,313 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.compiler.lookup;
+
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.ASTVisitor;
+import org.eclipse.jdt.internal.compiler.CompilationResult;
+import org.eclipse.jdt.internal.compiler.ast.*;
+import org.eclipse.jdt.internal.compiler.util.HashtableOfObject;
+import org.eclipse.jdt.internal.compiler.util.ObjectVector;
+
+/**
+ * Collects the resolved references of a compilation unit once it is resolved (see
+ * CompilerOptions.produceResolvedReferenceInfo): the qualified names of the types it references,
+ * and the methods and fields it references with the qualified name of their declaring type.
+ * <p>
+ * A method reference is recorded for the declaring type of the method and for all its supertypes,
+ * so that a reference can be found from any method it may override. A type reference is recorded with
+ * its enclosing types. Member types are dot separated, e.g. <code>p.X.Member</code>.
+ * </p><p>
+ * The keys are conservative: a unit which references a type, a method or a field always has its key,
+ * but some keys may come from elements which are only used indirectly.
+ * </p>
+ */
+public class ResolvedReferenceCollector extends ASTVisitor {
+
+	public static final char[] ANY_ARGUMENT_COUNT = new char[] {'*'};
+	static final char[] VALUE = "value".toCharArray(); //$NON-NLS-1$
+
+	HashtableOfObject typeReferences = new HashtableOfObject();
+	HashtableOfObject methodReferences = new HashtableOfObject();
+	HashtableOfObject fieldReferences = new HashtableOfObject();
+
+/**
+ * Answers the key of a reference to the type with the given qualified name.
+ */
+public static char[] typeKey(char[] qualifiedTypeName) {
+	return CharOperation.replaceOnCopy(qualifiedTypeName, '$', '.');
+}
+/**
+ * Answers the key of a reference to a method with the given selector and number of parameters (or ANY_ARGUMENT_COUNT),
+ * declared in or inherited by the type with the given qualified name.
+ */
+public static char[] methodKey(char[] selector, char[] argumentCount, char[] qualifiedTypeName) {
+	return CharOperation.concat(selector, '/', argumentCount, '/', typeKey(qualifiedTypeName));
+}
+/**
+ * Answers the key of a reference to a field with the given name, declared in the type with the given qualified name.
+ */
+public static char[] fieldKey(char[] name, char[] qualifiedTypeName) {
+	return CharOperation.concat(name, typeKey(qualifiedTypeName), '/');
+}
+static char[] qualifiedName(ReferenceBinding type) {
+	return CharOperation.concatWith(type.compoundName, '.');
+}
+static char[][] keys(HashtableOfObject table) {
+	char[][] keys = new char[table.elementSize][];
+	int count = 0;
+	char[][] keyTable = table.keyTable;
+	for (int i = 0, l = keyTable.length; i < l; i++)
+		if (keyTable[i] != null)
+			keys[count++] = keyTable[i];
+	return keys;
+}
+
+/**
+ * Collects the resolved references of the given unit and stores them in its compilation result.
+ * The given referenced types are the ones recorded for the dependency info, if any.
+ */
+void collect(CompilationUnitDeclaration unit, ObjectVector referencedTypes) {
+	if (referencedTypes != null)
+		for (int i = 0, l = referencedTypes.size; i < l; i++)
+			recordType((TypeBinding) referencedTypes.elementAt(i));
+
+	ImportBinding[] imports = unit.scope.imports;
+	if (imports != null) {
+		for (int i = 0, l = imports.length; i < l; i++) {
+			ImportBinding importBinding = imports[i];
+			Binding binding = importBinding.resolvedImport;
+			if (binding instanceof ReferenceBinding) {
+				recordType((ReferenceBinding) binding);
+				if (importBinding.isStatic() && !importBinding.onDemand) {
+					// static import of methods, their number of arguments is unknown
+					char[][] compoundName = importBinding.compoundName;
+					char[] selector = compoundName[compoundName.length - 1];
+					char[] typeName = CharOperation.concatWith(CharOperation.subarray(compoundName, 0, compoundName.length - 1), '.');
+					this.methodReferences.put(methodKey(selector, ANY_ARGUMENT_COUNT, typeName), this);
+				}
+			} else if (binding instanceof FieldBinding) {
+				recordField((FieldBinding) binding);
+			} else if (binding instanceof MethodBinding) {
+				MethodBinding method = (MethodBinding) binding;
+				recordType(method.declaringClass);
+				this.methodReferences.put(methodKey(method.selector, ANY_ARGUMENT_COUNT, qualifiedName(method.declaringClass)), this);
+			}
+		}
+	}
+
+	unit.traverse(this, unit.scope);
+	if (unit.types != null)
+		for (int i = 0, l = unit.types.length; i < l; i++)
+			collectDeclarations(unit.types[i]);
+
+	CompilationResult result = unit.compilationResult;
+	result.resolvedTypeReferences = keys(this.typeReferences);
+	result.resolvedMethodReferences = keys(this.methodReferences);
+	result.resolvedFieldReferences = keys(this.fieldReferences);
+}
+/*
+ * Javadoc comments are not traversed, and field declarations with an initializer are write accesses.
+ */
+void collectDeclarations(TypeDeclaration type) {
+	collectJavadoc(type.javadoc);
+	if (type.fields != null) {
+		for (int i = 0, l = type.fields.length; i < l; i++) {
+			FieldDeclaration field = type.fields[i];
+			collectJavadoc(field.javadoc);
+			if (field.initialization != null)
+				recordField(field.binding);
+		}
+	}
+	if (type.methods != null)
+		for (int i = 0, l = type.methods.length; i < l; i++)
+			collectJavadoc(type.methods[i].javadoc);
+	if (type.memberTypes != null)
+		for (int i = 0, l = type.memberTypes.length; i < l; i++)
+			collectDeclarations(type.memberTypes[i]);
+}
+void collectJavadoc(Javadoc javadoc) {
+	if (javadoc == null) return;
+	collectJavadoc(javadoc.seeReferences);
+	collectJavadoc(javadoc.exceptionReferences);
+	collectJavadoc(javadoc.paramTypeParameters);
+}
+void collectJavadoc(Expression[] references) {
+	if (references == null) return;
+	for (int i = 0, l = references.length; i < l; i++)
+		if (references[i] != null)
+			references[i].traverse(this, (BlockScope) null);
+}
+void recordField(FieldBinding field) {
+	if (field == null || field.declaringClass == null) return;
+	field = field.original();
+	ReferenceBinding declaringClass = (ReferenceBinding) field.declaringClass.erasure();
+	recordType(declaringClass);
+	this.fieldReferences.put(fieldKey(field.name, qualifiedName(declaringClass)), this);
+}
+void recordMethod(MethodBinding method) {
+	if (method == null || method.declaringClass == null) return;
+	method = method.original();
+	ReferenceBinding declaringClass = (ReferenceBinding) method.declaringClass.erasure();
+	recordType(declaringClass);
+	int parameters = method.parameters == null ? 0 : method.parameters.length;
+	recordMethod(method.selector, String.valueOf(parameters).toCharArray(), declaringClass, new HashtableOfObject());
+}
+void recordMethod(char[] selector, char[] argumentCount, ReferenceBinding type, HashtableOfObject visitedTypes) {
+	if (type == null || !type.isValidBinding()) return;
+	char[] typeName = qualifiedName(type);
+	if (visitedTypes.containsKey(typeName)) return;
+	visitedTypes.put(typeName, type);
+
+	this.methodReferences.put(methodKey(selector, argumentCount, typeName), this);
+	recordMethod(selector, argumentCount, type.superclass(), visitedTypes);
+	ReferenceBinding[] interfaces = type.superInterfaces();
+	if (interfaces != null)
+		for (int i = 0, l = interfaces.length; i < l; i++)
+			recordMethod(selector, argumentCount, interfaces[i], visitedTypes);
+}
+void recordType(TypeBinding type) {
+	if (type == null) return;
+	type = type.leafComponentType();
+	if (!(type instanceof ReferenceBinding) || !type.isValidBinding()) return;
+	ReferenceBinding referenceType = (ReferenceBinding) type.erasure();
+	while (referenceType != null && referenceType.compoundName != null) {
+		char[] key = typeKey(qualifiedName(referenceType));
+		if (this.typeReferences.containsKey(key)) return; // enclosing types are recorded too
+		this.typeReferences.put(key, this);
+		referenceType = referenceType.enclosingType();
+	}
+}
+
+public boolean visit(ArrayQualifiedTypeReference typeReference, BlockScope scope) {
+	recordType(typeReference.resolvedType);
+	return true;
+}
+public boolean visit(ArrayQualifiedTypeReference typeReference, ClassScope scope) {
+	recordType(typeReference.resolvedType);
+	return true;
+}
+public boolean visit(ArrayTypeReference typeReference, BlockScope scope) {
+	recordType(typeReference.resolvedType);
+	return true;
+}
+public boolean visit(ArrayTypeReference typeReference, ClassScope scope) {
+	recordType(typeReference.resolvedType);
+	return true;
+}
+public boolean visit(FieldReference fieldReference, BlockScope scope) {
+	recordField(fieldReference.binding);
+	return true;
+}
+public boolean visit(JavadocArrayQualifiedTypeReference typeReference, BlockScope scope) {
+	recordType(typeReference.resolvedType);
+	return true;
+}
+public boolean visit(JavadocArraySingleTypeReference typeReference, BlockScope scope) {
+	recordType(typeReference.resolvedType);
+	return true;
+}
+public boolean visit(JavadocFieldReference fieldReference, BlockScope scope) {
+	recordField(fieldReference.binding);
+	return true;
+}
+public boolean visit(JavadocMessageSend messageSend, BlockScope scope) {
+	recordMethod(messageSend.binding);
+	return true;
+}
+public boolean visit(JavadocQualifiedTypeReference typeReference, BlockScope scope) {
+	recordType(typeReference.resolvedType);
+	return true;
+}
+public boolean visit(JavadocSingleTypeReference typeReference, BlockScope scope) {
+	recordType(typeReference.resolvedType);
+	return true;
+}
+public boolean visit(MemberValuePair pair, BlockScope scope) {
+	recordMethod(pair.binding);
+	return true;
+}
+public boolean visit(MemberValuePair pair, CompilationUnitScope scope) {
+	recordMethod(pair.binding);
+	return true;
+}
+public boolean visit(MessageSend messageSend, BlockScope scope) {
+	recordMethod(messageSend.binding);
+	recordType(messageSend.actualReceiverType);
+	return true;
+}
+public boolean visit(ParameterizedQualifiedTypeReference typeReference, BlockScope scope) {
+	recordType(typeReference.resolvedType);
+	return true;
+}
+public boolean visit(ParameterizedQualifiedTypeReference typeReference, ClassScope scope) {
+	recordType(typeReference.resolvedType);
+	return true;
+}
+public boolean visit(ParameterizedSingleTypeReference typeReference, BlockScope scope) {
+	recordType(typeReference.resolvedType);
+	return true;
+}
+public boolean visit(ParameterizedSingleTypeReference typeReference, ClassScope scope) {
+	recordType(typeReference.resolvedType);
+	return true;
+}
+public boolean visit(QualifiedNameReference nameReference, BlockScope scope) {
+	recordNameReference(nameReference);
+	FieldBinding[] otherBindings = nameReference.otherBindings;
+	if (otherBindings != null)
+		for (int i = 0, l = otherBindings.length; i < l; i++)
+			recordField(otherBindings[i]);
+	return true;
+}
+public boolean visit(QualifiedTypeReference typeReference, BlockScope scope) {
+	recordType(typeReference.resolvedType);
+	return true;
+}
+public boolean visit(QualifiedTypeReference typeReference, ClassScope scope) {
+	recordType(typeReference.resolvedType);
+	return true;
+}
+public boolean visit(SingleMemberAnnotation annotation, BlockScope scope) {
+	recordSingleMemberAnnotation(annotation);
+	return true;
+}
+public boolean visit(SingleMemberAnnotation annotation, CompilationUnitScope scope) {
+	recordSingleMemberAnnotation(annotation);
+	return true;
+}
+public boolean visit(SingleNameReference nameReference, BlockScope scope) {
+	recordNameReference(nameReference);
+	return true;
+}
+public boolean visit(SingleTypeReference typeReference, BlockScope scope) {
+	recordType(typeReference.resolvedType);
+	return true;
+}
+public boolean visit(SingleTypeReference typeReference, ClassScope scope) {
+	recordType(typeReference.resolvedType);
+	return true;
+}
+void recordNameReference(NameReference nameReference) {
+	Binding binding = nameReference.binding;
+	if (binding instanceof FieldBinding)
+		recordField((FieldBinding) binding);
+	else if (binding instanceof TypeBinding)
+		recordType((TypeBinding) binding);
+	recordType(nameReference.actualReceiverType);
+}
+void recordSingleMemberAnnotation(SingleMemberAnnotation annotation) {
+	// the implicit value() method
+	TypeBinding type = annotation.resolvedType;
+	if (type instanceof ReferenceBinding && type.isValidBinding())
+		recordMethod(VALUE, new char[] {'0'}, (ReferenceBinding) type, new HashtableOfObject());
+}
+}
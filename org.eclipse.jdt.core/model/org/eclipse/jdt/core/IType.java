@@ -803,6 +803,26 @@ public interface IType extends IMember {
 	 * @since 2.1
 	 */
 	ITypeHierarchy loadTypeHierachy(InputStream input, IProgressMonitor monitor) throws JavaModelException;
+	/**
+	 * Creates and returns an approximate type hierarchy for this type containing
+	 * this type, all of its supertypes, and all its subtypes in the workspace.
+	 * <p>
+	 * The hierarchy is computed from the indexes only, without parsing nor resolving
+	 * any compilation unit: it is much faster to compute than the one returned by
+	 * <code>newTypeHierarchy(IProgressMonitor)</code>, but the supertypes which
+	 * cannot be determined from the names written in the source (e.g. inherited
+	 * member types) may be missing or wrong. Working copies are not considered,
+	 * and the hierarchy of a local or anonymous type only contains this type.
+	 * </p>
+	 *
+	 * @param monitor the given progress monitor
+	 * @exception JavaModelException if this element does not exist or if an
+	 *		exception occurs while accessing its corresponding resource.
+	 * @return an approximate type hierarchy for this type containing
+	 * this type, all of its supertypes, and all its subtypes in the workspace
+	 * @since 3.1
+	 */
+	ITypeHierarchy newApproximateTypeHierarchy(IProgressMonitor monitor) throws JavaModelException;
 	/**
 	 * Creates and returns a type hierarchy for this type containing
 	 * this type and all of its supertypes.
@@ -701,6 +701,15 @@ public ITypeHierarchy loadTypeHierachy(InputStream input, IProgressMonitor monit
 public ITypeHierarchy loadTypeHierachy(InputStream input, WorkingCopyOwner owner, IProgressMonitor monitor) throws JavaModelException {
 	return TypeHierarchy.load(this, input, owner);
 }
+/*
+ * @see IType#newApproximateTypeHierarchy(IProgressMonitor monitor)
+ */
+public ITypeHierarchy newApproximateTypeHierarchy(IProgressMonitor monitor) throws JavaModelException {
+	CreateTypeHierarchyOperation op= new CreateTypeHierarchyOperation(this, null, SearchEngine.createWorkspaceScope(), true);
+	op.typeHierarchy.indexOnly = true;
+	op.runOperation(monitor);
+	return op.getResult();
+}
 /*
  * @see IType#newSupertypeHierarchy(IProgressMonitor monitor)
  */
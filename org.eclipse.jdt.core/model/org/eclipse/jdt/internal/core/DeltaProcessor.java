@@ -259,6 +259,31 @@ public class DeltaProcessor {
 			addDependentProjects(dependent, projectDependencies, result);
 		}
 	}
+	/*
+	 * Marks as stale the type hierarchy graphs of the given project and of its dependents, since the supertypes
+	 * and the resolved references recorded by their last build may not be the current ones.
+	 */
+	private void hierarchyGraphChanged(IJavaProject project, IndexManager indexManager) {
+		if (!IndexManager.INDEX_TYPE_HIERARCHY && !IndexManager.INDEX_RESOLVED_REFERENCES) return;
+		HashSet projects = new HashSet();
+		projects.add(project);
+		addDependentProjects(project, this.state.projectDependencies, projects);
+		for (Iterator iterator = projects.iterator(); iterator.hasNext();)
+			indexManager.hierarchyGraphChanged(((IJavaProject) iterator.next()).getProject().getFullPath());
+	}
+	/*
+	 * Marks as stale the type hierarchy graphs of all the Java projects, since a library may be on the classpath of any.
+	 */
+	private void hierarchyGraphsChanged(IndexManager indexManager) {
+		if (!IndexManager.INDEX_TYPE_HIERARCHY && !IndexManager.INDEX_RESOLVED_REFERENCES) return;
+		try {
+			IJavaProject[] projects = this.manager.getJavaModel().getJavaProjects();
+			for (int i = 0, length = projects.length; i < length; i++)
+				indexManager.hierarchyGraphChanged(projects[i].getProject().getFullPath());
+		} catch (JavaModelException e) {
+			// java model doesn't exist: ignore
+		}
+	}
 	/*
 	 * Adds the given element to the list of elements used as a scope for external jars refresh.
 	 */
@@ -1230,6 +1255,7 @@ public class DeltaProcessor {
 			JavaWorkspaceScope workspaceScope = this.manager.workspaceScope;
 			if (workspaceScope != null)
 				workspaceScope.processDelta(deltaToNotify);
+			this.manager.visibilityGraph.processDelta(deltaToNotify);
 		}
 			
 		// Notification
@@ -1803,6 +1829,8 @@ public class DeltaProcessor {
 							// workaround for bug 15168 circular errors not reported 
 							this.state.modelProjectsCache = null;
 							this.removedRoots = null;
+							if ((IndexManager.INDEX_TYPE_HIERARCHY || IndexManager.INDEX_RESOLVED_REFERENCES) && this.manager.indexManager != null)
+								this.manager.indexManager.hierarchyGraphChangesProcessed();
 						}
 					}
 					return;
@@ -2301,6 +2329,7 @@ public class DeltaProcessor {
 					JarPackageFragmentRoot root = (JarPackageFragmentRoot)element;
 					// index jar file only once (if the root is in its declaring project)
 					IPath jarPath = root.getPath();
+					hierarchyGraphsChanged(indexManager);
 					switch (delta.getKind()) {
 						case IResourceDelta.ADDED:
 							// index the new jar
@@ -2382,12 +2411,18 @@ public class DeltaProcessor {
 						int flags = delta.getFlags();
 						if ((flags & IResourceDelta.CONTENT) == 0 && (flags & IResourceDelta.ENCODING) == 0)
 							break;
+						indexManager.addBinary(file, binaryFolderPath);
+						// the changed class file may now have other supertypes or member types
+						hierarchyGraphChanged(project, indexManager);
+						break;
 					case IResourceDelta.ADDED :
 						indexManager.addBinary(file, binaryFolderPath);
+						hierarchyGraphChanged(project, indexManager);
 						break;
 					case IResourceDelta.REMOVED :
 						String containerRelativePath = Util.relativePath(file.getFullPath(), binaryFolderPath.segmentCount());
 						indexManager.remove(containerRelativePath, binaryFolderPath);
+						hierarchyGraphChanged(project, indexManager);
 						break;
 				}
 				break;
@@ -2399,11 +2434,18 @@ public class DeltaProcessor {
 						int flags = delta.getFlags();
 						if ((flags & IResourceDelta.CONTENT) == 0 && (flags & IResourceDelta.ENCODING) == 0)
 							break;
+						indexManager.addSource(file, file.getProject().getFullPath());
+						// the changed unit may now declare secondary types or import other packages,
+						// so supertypes of other units may no longer resolve to the recorded ones
+						hierarchyGraphChanged(element.getJavaProject(), indexManager);
+						break;
 					case IResourceDelta.ADDED :
 						indexManager.addSource(file, file.getProject().getFullPath());
+						hierarchyGraphChanged(element.getJavaProject(), indexManager);
 						break;
 					case IResourceDelta.REMOVED :
 						indexManager.remove(Util.relativePath(file.getFullPath(), 1/*remove project segment*/), file.getProject().getFullPath());
+						hierarchyGraphChanged(element.getJavaProject(), indexManager);
 						break;
 				}
 		}
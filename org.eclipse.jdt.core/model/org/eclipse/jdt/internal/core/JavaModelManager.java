@@ -39,6 +39,7 @@ import org.eclipse.jdt.internal.core.hierarchy.TypeHierarchy;
 import org.eclipse.jdt.internal.core.search.AbstractSearchScope;
 import org.eclipse.jdt.internal.core.search.BasicSearchEngine;
 import org.eclipse.jdt.internal.core.search.JavaWorkspaceScope;
+import org.eclipse.jdt.internal.core.search.VisibilityGraph;
 import org.eclipse.jdt.internal.core.search.indexing.IndexManager;
 import org.eclipse.jdt.internal.core.search.processing.JobManager;
 import org.eclipse.jdt.internal.core.util.Messages;
@@ -90,6 +91,11 @@ public class JavaModelManager implements ISaveParticipant {
 	 * The unique workspace scope
 	 */
 	public JavaWorkspaceScope workspaceScope;
+
+	/*
+	 * The projects and libraries that each project can see, used to select the indexes of a search with a focus
+	 */
+	public VisibilityGraph visibilityGraph = new VisibilityGraph();
 	
 	/*
 	 * Pools of symbols used in the Java model.
@@ -616,6 +616,15 @@ public ITypeHierarchy loadTypeHierachy(InputStream input, WorkingCopyOwner owner
 	// TODO monitor should be passed to TypeHierarchy.load(...)
 	return TypeHierarchy.load(this, input, owner);
 }
+/**
+ * @see IType#newApproximateTypeHierarchy(IProgressMonitor)
+ */
+public ITypeHierarchy newApproximateTypeHierarchy(IProgressMonitor monitor) throws JavaModelException {
+	CreateTypeHierarchyOperation op= new CreateTypeHierarchyOperation(this, null, SearchEngine.createWorkspaceScope(), true);
+	op.typeHierarchy.indexOnly = true;
+	op.runOperation(monitor);
+	return op.getResult();
+}
 /**
  * @see IType
  */
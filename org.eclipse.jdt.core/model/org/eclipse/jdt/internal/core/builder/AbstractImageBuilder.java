@@ -20,9 +20,12 @@ import org.eclipse.jdt.internal.compiler.*;
 import org.eclipse.jdt.internal.compiler.ClassFile;
 import org.eclipse.jdt.internal.compiler.Compiler;
 import org.eclipse.jdt.internal.compiler.env.ICompilationUnit;
+import org.eclipse.jdt.internal.compiler.env.INameEnvironment;
 import org.eclipse.jdt.internal.compiler.impl.CompilerOptions;
 import org.eclipse.jdt.internal.compiler.problem.*;
 import org.eclipse.jdt.internal.compiler.util.SuffixConstants;
+import org.eclipse.jdt.internal.core.JavaModelManager;
+import org.eclipse.jdt.internal.core.search.indexing.IndexManager;
 import org.eclipse.jdt.internal.core.util.Messages;
 import org.eclipse.jdt.internal.core.util.Util;
 
@@ -59,6 +62,10 @@ private boolean inCompiler;
 private Map extraDependencyMap;
 
 public static int MAX_AT_ONCE = 1000;
+// whether the compilers generate the code of a unit while the next units are analysed (see Compiler#isPipelined)
+public static boolean PIPELINED_COMPILER = false;
+// number of threads parsing the source files given to a compiler (see Compiler#parallelParseThreads)
+public static int PARSER_THREADS = 1;
 public final static String[] JAVA_PROBLEM_MARKER_ATTRIBUTE_NAMES = {
 					IMarker.MESSAGE, 
 					IMarker.SEVERITY, 
@@ -174,6 +181,13 @@ public void acceptResult(CompilationResult result) {
 					createProblemFor(compilationUnit.resource, null, Messages.build_inconsistentClassFile, JavaCore.ERROR); 
 			}
 		}
+		if (compiler.options.produceResolvedReferenceInfo || compiler.options.produceHierarchyInfo)
+			JavaModelManager.getJavaModelManager().getIndexManager().indexResolvedReferences(
+				compilationUnit.resource,
+				result.resolvedTypeReferences,
+				result.resolvedMethodReferences,
+				result.resolvedFieldReferences,
+				result.typeHierarchy);
 		finishedWith(typeLocator, result, compilationUnit.getMainTypeName(), definedTypeNames, duplicateTypeNames);
 		notifier.compiled(compilationUnit);
 	}
@@ -591,6 +605,25 @@ protected RuntimeException internalException(CoreException t) {
 }
 
 protected Compiler newCompiler() {
+	// called once when the builder is initialized... can override if needed
+	Compiler newCompiler = newCompiler(nameEnvironment, this);
+
+	org.eclipse.jdt.internal.compiler.lookup.LookupEnvironment env = newCompiler.lookupEnvironment;
+	synchronized (env) {
+		// enable shared byte[]'s used by ClassFile to avoid allocating MBs during a build
+		env.sharedArraysUsed = false;
+		env.sharedClassFileHeader = new byte[30000];
+		env.sharedClassFileContents = new byte[30000];
+	}
+
+	return newCompiler;
+}
+
+/*
+ * Answers a compiler with the options of the project being built, which looks up types in the given
+ * name environment and hands its results to the given requestor.
+ */
+Compiler newCompiler(INameEnvironment environment, ICompilerRequestor requestor) {
 	// disable entire javadoc support if not interested in diagnostics
 	Map projectOptions = javaBuilder.javaProject.getOptions(true);
 	String option = (String) projectOptions.get(JavaCore.COMPILER_PB_INVALID_JAVADOC);
@@ -607,25 +640,26 @@ protected Compiler newCompiler() {
 		}
 	}
 	
-	// called once when the builder is initialized... can override if needed
 	Compiler newCompiler = new Compiler(
-		nameEnvironment,
+		environment,
 		DefaultErrorHandlingPolicies.proceedWithAllProblems(),
 		projectOptions,
-		this,
+		requestor,
 		ProblemFactory.getProblemFactory(Locale.getDefault()));
 	CompilerOptions options = newCompiler.options;
 
 	// enable the compiler reference info support
 	options.produceReferenceInfo = true;
-	
-	org.eclipse.jdt.internal.compiler.lookup.LookupEnvironment env = newCompiler.lookupEnvironment;
-	synchronized (env) {
-		// enable shared byte[]'s used by ClassFile to avoid allocating MBs during a build
-		env.sharedArraysUsed = false;
-		env.sharedClassFileHeader = new byte[30000];
-		env.sharedClassFileContents = new byte[30000];
-	}
+
+	// record the resolved references of the compiled units for precise searches
+	options.produceResolvedReferenceInfo = IndexManager.INDEX_RESOLVED_REFERENCES;
+
+	// record the supertypes of the compiled types for type hierarchies
+	options.produceHierarchyInfo = IndexManager.INDEX_TYPE_HIERARCHY;
+
+	// the results are still accepted by the thread running the compiler
+	newCompiler.isPipelined = PIPELINED_COMPILER;
+	newCompiler.parallelParseThreads = PARSER_THREADS;
 
 	return newCompiler;
 }
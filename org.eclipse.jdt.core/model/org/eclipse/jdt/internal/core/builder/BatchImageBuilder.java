@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2004 IBM Corporation and others.
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -16,13 +16,166 @@ import org.eclipse.core.runtime.*;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.compiler.CompilationParticipant;
 import org.eclipse.jdt.core.compiler.CleanCompilationEvent;
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.ClassFile;
+import org.eclipse.jdt.internal.compiler.CompilationResult;
+import org.eclipse.jdt.internal.compiler.Compiler;
+import org.eclipse.jdt.internal.compiler.ICompilerRequestor;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
+import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
+import org.eclipse.jdt.internal.compiler.problem.AbortCompilation;
+import org.eclipse.jdt.internal.compiler.util.SimpleLookupTable;
 import org.eclipse.jdt.internal.core.util.Messages;
+import org.eclipse.jdt.internal.core.util.SimpleSet;
 import org.eclipse.jdt.internal.core.util.Util;
 
 import java.util.*;
 
 public class BatchImageBuilder extends AbstractImageBuilder {
 
+/*
+ * Maximum number of compilers compiling the source files of a full build at once, including the builder thread.
+ * The source files are compiled by one compiler when 1, the default.
+ */
+public static int MAX_COMPILER_THREADS = 1;
+
+/*
+ * Minimum number of source files compiled by one compiler, as each compiler has its own lookup environment.
+ */
+public static int MIN_GROUP_SIZE = 100;
+
+/*
+ * Compiles a group of the source files with its own compiler and lookup environment.
+ * The results are queued to be accepted by the builder thread, which writes the class files and the markers.
+ * The results with errors are kept until all the groups are done (see compileInGroups(SourceFile[][])).
+ */
+class GroupCompiler implements ICompilerRequestor, Runnable {
+	SourceFile[] units;
+	Compiler compiler;
+	ArrayList results;
+	ArrayList resultsWithErrors;
+	SimpleSet missedTypeNames; // the types this group looked up without finding them
+	boolean isStopped; // whether this group needed a type of another group which was not generated yet
+	Throwable exception;
+
+	GroupCompiler(SourceFile[] units, ArrayList results) {
+		this.units = units;
+		this.results = results;
+		this.resultsWithErrors = new ArrayList(3);
+		this.missedTypeNames = new SimpleSet(13);
+		String[] initialTypeNames = new String[units.length];
+		for (int i = 0, l = units.length; i < l; i++)
+			initialTypeNames[i] = units[i].initialTypeName;
+		this.compiler = newCompiler(new GroupNameEnvironment(this, initialTypeNames), this);
+	}
+	public void acceptResult(CompilationResult result) {
+		// a lookup environment may swallow the abort stopping this group, so its next results are dropped as well
+		if (this.isStopped)
+			throw new AbortCompilation(true, null);
+		// the class files are shared with the other groups before the builder thread writes them
+		ClassFile[] classFiles = result.getClassFiles();
+		synchronized (generatedTypes) {
+			for (int i = 0, l = classFiles.length; i < l; i++)
+				generatedTypes.put(new String(classFiles[i].fileName()), classFiles[i].getBytes());
+		}
+		synchronized (this.results) {
+			if (abortGroups)
+				throw new AbortCompilation(true, null); // silently stops the compiler
+			if (result.hasErrors()) {
+				this.resultsWithErrors.add(result);
+			} else {
+				this.results.add(result);
+				this.results.notifyAll();
+			}
+		}
+	}
+	/*
+	 * Answers whether this group looked up a type which another group generated afterwards, such as a secondary type.
+	 */
+	boolean missedGeneratedType() {
+		Object[] names = this.missedTypeNames.values;
+		for (int i = 0, l = names.length; i < l; i++)
+			if (names[i] != null && generatedTypes.containsKey(names[i]))
+				return true;
+		return false;
+	}
+	public void run() {
+		try {
+			this.compiler.compile(this.units);
+		} catch (RuntimeException e) {
+			this.exception = e;
+		} catch (Error e) {
+			this.exception = e;
+		} finally {
+			this.compiler = null;
+			synchronized (this.results) {
+				runningGroups--;
+				this.results.notifyAll();
+			}
+		}
+	}
+}
+
+/*
+ * The name environment of a group compiler. The source files of the other groups are never compiled by this group:
+ * their types are answered from the class files generated by the other groups. When a type of another group
+ * has not been generated yet, the group stops and its remaining source files are left waiting in the work queue.
+ */
+class GroupNameEnvironment extends NameEnvironment {
+	GroupCompiler group;
+
+	GroupNameEnvironment(GroupCompiler group, String[] initialTypeNames) {
+		super(nameEnvironment, initialTypeNames);
+		this.group = group;
+	}
+	public NameEnvironmentAnswer findType(char[][] compoundName) {
+		if (compoundName == null) return null;
+		String qualifiedTypeName = new String(CharOperation.concatWith(compoundName, '/'));
+		NameEnvironmentAnswer answer = findGeneratedType(qualifiedTypeName);
+		if (answer == null)
+			answer = super.findType(compoundName);
+		if (answer == null)
+			this.group.missedTypeNames.add(qualifiedTypeName);
+		return answer;
+	}
+	public NameEnvironmentAnswer findType(char[] typeName, char[][] packageName) {
+		if (typeName == null) return null;
+		String qualifiedTypeName = new String(CharOperation.concatWith(packageName, typeName, '/'));
+		NameEnvironmentAnswer answer = findGeneratedType(qualifiedTypeName);
+		if (answer == null)
+			answer = super.findType(typeName, packageName);
+		if (answer == null)
+			this.group.missedTypeNames.add(qualifiedTypeName);
+		return answer;
+	}
+	private NameEnvironmentAnswer findGeneratedType(String qualifiedTypeName) {
+		Object owner = unitGroups.get(qualifiedTypeName);
+		if (owner == this.group) return null;
+		byte[] bytes;
+		synchronized (generatedTypes) {
+			bytes = (byte[]) generatedTypes.get(qualifiedTypeName);
+		}
+		if (bytes != null) {
+			try {
+				return new NameEnvironmentAnswer(new ClassFileReader(bytes, qualifiedTypeName.toCharArray()), null /*no access restriction*/);
+			} catch (ClassFormatException e) {
+				// the class file was just generated
+			}
+		}
+		if (owner != null) {
+			this.group.isStopped = true;
+			throw new AbortCompilation(true, null); // compiling the source file of another group would compile it twice
+		}
+		return null;
+	}
+}
+
+boolean abortGroups;
+int runningGroups;
+SimpleLookupTable generatedTypes; // qualified type name -> bytes of the class file generated by a group compiler
+SimpleLookupTable unitGroups; // initial type name of a source file -> group compiler which compiles it
+
 protected BatchImageBuilder(JavaBuilder javaBuilder) {
 	super(javaBuilder);
 	this.nameEnvironment.isIncrementalBuild = false;
@@ -61,6 +214,219 @@ public void build() {
 	}
 }
 
+/*
+ * Compiles the given source files with several compilers when they split into enough groups, then compiles the source
+ * files which have not been accepted with this builder's compiler (see compileInGroups(SourceFile[][])).
+ */
+protected void compile(SourceFile[] units) {
+	int groups = Math.min(MAX_COMPILER_THREADS, units.length / MIN_GROUP_SIZE);
+	// the compilation participants see all the source files at once
+	if (groups > 1 && JavaCore.getCompilationParticipants(CompilationParticipant.PRE_BUILD_EVENT, javaBuilder.javaProject).isEmpty()) {
+		SourceFile[][] unitsPerGroup = partition(units, groups);
+		if (unitsPerGroup.length > 1) {
+			compileInGroups(unitsPerGroup);
+			ArrayList waiting = new ArrayList();
+			for (int i = 0, l = units.length; i < l; i++)
+				if (workQueue.isWaiting(units[i]))
+					waiting.add(units[i]);
+			if (waiting.isEmpty()) return;
+			if (JavaBuilder.DEBUG)
+				System.out.println("Compiling " + waiting.size() + " source files again after the parallel compilation"); //$NON-NLS-1$ //$NON-NLS-2$
+			units = new SourceFile[waiting.size()];
+			waiting.toArray(units);
+		}
+	}
+	super.compile(units);
+}
+
+/*
+ * Compiles the given groups of source files at once, each group with its own compiler. The results are accepted
+ * by this thread as they come, except the results with errors: they are accepted once all the groups are done,
+ * unless their group looked up a type which another group generated afterwards, such as a secondary type.
+ * Their source files are then left waiting in the work queue to be compiled again, like the source files
+ * of a group which stopped.
+ */
+void compileInGroups(SourceFile[][] unitsPerGroup) {
+	notifier.aboutToCompile(unitsPerGroup[0][0]); // just to change the message
+	nameEnvironment.setNames(null, null); // reset the caches of the locations shared by the compilers
+
+	ArrayList results = new ArrayList();
+	this.generatedTypes = new SimpleLookupTable();
+	this.unitGroups = new SimpleLookupTable();
+	GroupCompiler[] groupCompilers = new GroupCompiler[unitsPerGroup.length];
+	for (int i = 0, l = groupCompilers.length; i < l; i++) {
+		SourceFile[] group = unitsPerGroup[i];
+		groupCompilers[i] = new GroupCompiler(group, results);
+		for (int j = 0, m = group.length; j < m; j++)
+			this.unitGroups.put(group[j].initialTypeName, groupCompilers[i]);
+	}
+	if (JavaBuilder.DEBUG)
+		System.out.println("About to compile " + this.unitGroups.elementSize + " source files in " + groupCompilers.length + " groups"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+	// the builder thread only accepts the results since it holds the workspace lock to write the class files and markers
+	this.abortGroups = false;
+	this.runningGroups = groupCompilers.length;
+	Thread[] threads = new Thread[groupCompilers.length];
+	for (int i = 0, l = threads.length; i < l; i++) {
+		threads[i] = new Thread(groupCompilers[i], "Java builder compiler - " + i); //$NON-NLS-1$
+		threads[i].setDaemon(true);
+		threads[i].start();
+	}
+	try {
+		while (true) {
+			CompilationResult result;
+			synchronized (results) {
+				if (results.isEmpty()) {
+					if (this.runningGroups == 0) break;
+					try {
+						results.wait(250); // wakes up to check for cancellation
+					} catch (InterruptedException e) {
+						// ignore
+					}
+					result = null;
+				} else {
+					result = (CompilationResult) results.remove(0);
+				}
+			}
+			notifier.checkCancel();
+			if (result != null)
+				acceptResult(result);
+		}
+	} catch (AbortCompilation ignored) {
+		// ignore the AbortCompilation coming from BuildNotifier.checkCancelWithinCompiler()
+	} finally {
+		synchronized (results) {
+			this.abortGroups = true; // when this thread failed
+		}
+		for (int i = 0, l = threads.length; i < l; i++) {
+			try {
+				threads[i].join();
+			} catch (InterruptedException e) {
+				// ignore
+			}
+		}
+	}
+	notifier.checkCancel();
+	for (int i = 0, l = groupCompilers.length; i < l; i++) {
+		GroupCompiler groupCompiler = groupCompilers[i];
+		Throwable exception = groupCompiler.exception;
+		if (exception instanceof Error) throw (Error) exception;
+		// the source files of a group which failed are still waiting, they are compiled again by this builder's compiler
+		if (exception != null && JavaBuilder.DEBUG)
+			exception.printStackTrace();
+		if (groupCompiler.isStopped && JavaBuilder.DEBUG)
+			System.out.println("Group " + i + " stopped on a type of another group"); //$NON-NLS-1$ //$NON-NLS-2$
+		if (!groupCompiler.missedGeneratedType())
+			for (int j = 0, m = groupCompiler.resultsWithErrors.size(); j < m; j++)
+				acceptResult((CompilationResult) groupCompiler.resultsWithErrors.get(j));
+	}
+	this.generatedTypes = null;
+	this.unitGroups = null;
+}
+
+/*
+ * Splits the given source files into at most the given number of groups which reference each other as little as possible.
+ * The source files of a package stay together, and so do the packages which referenced each other in the last state.
+ * Answers fewer groups when the source files do not split.
+ */
+SourceFile[][] partition(SourceFile[] units, int groups) {
+	// each source file starts in the component of its package
+	int length = units.length;
+	int[] components = new int[length];
+	SimpleLookupTable packageComponents = new SimpleLookupTable();
+	SimpleLookupTable unitIndexes = new SimpleLookupTable(length);
+	for (int i = 0; i < length; i++) {
+		String typeName = units[i].initialTypeName;
+		int index = typeName.lastIndexOf('/');
+		String packageName = index == -1 ? "" : typeName.substring(0, index); //$NON-NLS-1$
+		Integer component = (Integer) packageComponents.get(packageName);
+		if (component == null)
+			packageComponents.put(packageName, component = new Integer(i));
+		components[i] = component.intValue();
+		unitIndexes.put(units[i].typeLocator(), new Integer(i));
+	}
+
+	// join the components of the source files which referenced each other
+	State lastState = javaBuilder.lastState;
+	if (lastState != null) {
+		for (int i = 0; i < length; i++) {
+			String typeName = units[i].initialTypeName;
+			int index = typeName.lastIndexOf('/');
+			if (index == -1) continue; // the types of the default package are only visible to each other
+			StringSet qualifiedStrings = new StringSet(1);
+			qualifiedStrings.add(typeName.substring(0, index));
+			StringSet simpleStrings = new StringSet(1);
+			simpleStrings.add(typeName.substring(index + 1));
+			char[][][] qualifiedNames = ReferenceCollection.internQualifiedNames(qualifiedStrings);
+			char[][] simpleNames = ReferenceCollection.internSimpleNames(simpleStrings);
+			if (qualifiedNames.length == 0 || simpleNames.length == 0) continue; // a well known name
+			SimpleSet dependents = lastState.getAffectedTypeLocators(qualifiedNames, simpleNames);
+			Object[] locators = dependents.values;
+			for (int j = 0, m = locators.length; j < m; j++) {
+				if (locators[j] == null) continue;
+				Integer dependent = (Integer) unitIndexes.get(locators[j]);
+				if (dependent != null)
+					join(components, i, dependent.intValue());
+			}
+		}
+	}
+
+	// fill the smallest group with the largest component left
+	int[] sizes = new int[length];
+	int componentCount = 0;
+	for (int i = 0; i < length; i++)
+		if (sizes[root(components, i)]++ == 0)
+			componentCount++;
+	long[] sortedComponents = new long[componentCount]; // size in the high int, root in the low int
+	for (int i = 0, c = 0; i < length; i++)
+		if (sizes[i] > 0)
+			sortedComponents[c++] = ((long) sizes[i] << 32) | i;
+	Arrays.sort(sortedComponents);
+	int[] groupSizes = new int[groups];
+	int[] componentGroups = new int[length];
+	for (int c = componentCount; --c >= 0;) {
+		int component = (int) sortedComponents[c];
+		int smallest = 0;
+		for (int i = 1; i < groups; i++)
+			if (groupSizes[i] < groupSizes[smallest])
+				smallest = i;
+		groupSizes[smallest] += sizes[component];
+		componentGroups[component] = smallest;
+	}
+
+	int count = 0;
+	for (int i = 0; i < groups; i++)
+		if (groupSizes[i] > 0)
+			count++;
+	SourceFile[][] unitsPerGroup = new SourceFile[count][];
+	int[] positions = new int[groups];
+	for (int i = 0, g = 0; i < groups; i++) {
+		if (groupSizes[i] > 0) {
+			unitsPerGroup[g] = new SourceFile[groupSizes[i]];
+			positions[i] = g++;
+		}
+	}
+	int[] filled = new int[count];
+	for (int i = 0; i < length; i++) {
+		int g = positions[componentGroups[root(components, i)]];
+		unitsPerGroup[g][filled[g]++] = units[i];
+	}
+	return unitsPerGroup;
+}
+
+private void join(int[] components, int unit, int otherUnit) {
+	int root = root(components, unit);
+	int otherRoot = root(components, otherUnit);
+	if (root != otherRoot)
+		components[otherRoot] = root;
+}
+
+private int root(int[] components, int unit) {
+	while (components[unit] != unit)
+		unit = components[unit] = components[components[unit]];
+	return unit;
+}
+
 protected void addAllSourceFiles(final ArrayList sourceFiles) throws CoreException {
 	for (int i = 0, l = sourceLocations.length; i < l; i++) {
 		final ClasspathMultiDirectory sourceLocation = sourceLocations[i];
@@ -37,11 +37,12 @@ ClasspathDirectory(IContainer binaryFolder, boolean isOutputFolder, AccessRuleSe
 	this.accessRuleSet = accessRuleSet;
 }
 
-public void cleanup() {
+public synchronized void cleanup() {
 	this.directoryCache = null;
 }
 
-String[] directoryList(String qualifiedPackageName) {
+// synchronized since the location may be shared by the compilers of a parallel build (see BatchImageBuilder)
+synchronized String[] directoryList(String qualifiedPackageName) {
 	String[] dirList = (String[]) directoryCache.get(qualifiedPackageName);
 	if (dirList == missingPackageHolder) return null; // package exists in another classpath directory or jar
 	if (dirList != null) return dirList;
@@ -142,7 +143,7 @@ public boolean isPackage(String qualifiedPackageName) {
 	return directoryList(qualifiedPackageName) != null;
 }
 
-public void reset() {
+public synchronized void reset() {
 	this.directoryCache = new SimpleLookupTable(5);
 }
 
@@ -46,7 +46,7 @@ static SimpleLookupTable PackageCache = new SimpleLookupTable();
  * @param jar The ClasspathJar to use
  * @return A SimpleSet with the all the package names in the zipFile.
  */
-static SimpleSet findPackageSet(ClasspathJar jar) {
+static synchronized SimpleSet findPackageSet(ClasspathJar jar) {
 	String zipFileName = jar.zipFilename;
 	long lastModified = jar.lastModified();
 	long fileSize = new File(zipFileName).length();
@@ -109,7 +109,7 @@ public ClasspathJar(ZipFile zipFile, AccessRuleSet accessRuleSet) {
 	this.accessRuleSet = accessRuleSet;
 }
 
-public void cleanup() {
+public synchronized void cleanup() {
 	if (this.zipFile != null && this.closeZipFileAtEnd) {
 		try {
 			this.zipFile.close();
@@ -152,7 +152,8 @@ public IPath getProjectRelativePath() {
 	return	this.resource.getProjectRelativePath();
 }
 
-public boolean isPackage(String qualifiedPackageName) {
+// synchronized since the location may be shared by the compilers of a parallel build (see BatchImageBuilder)
+public synchronized boolean isPackage(String qualifiedPackageName) {
 	if (this.knownPackageNames != null)
 		return this.knownPackageNames.includes(qualifiedPackageName);
 
@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.core.builder;
+
+import org.eclipse.jdt.internal.compiler.util.SimpleLookupTable;
+
+import java.io.*;
+
+/**
+ * The reference collections of a state read from disk, kept encoded until one of them is needed (see State#getReferenceCollection(String)).
+ * A collection refers to the interned names of the string tables of the state by their ids. Since a state writes these tables
+ * again before any new name, the collections which were never decoded are written back as they were read, unless the tables
+ * are compacted, in which case their ids are translated.
+ */
+public class EncodedReferenceCollections {
+
+byte[] bytes; // the encoded collections one after another, each one starting with its length
+char[][] simpleNames; // interned
+char[][][] qualifiedNames; // interned, as arrays of interned simple names
+
+static final byte REFERENCE_COLLECTION = 1;
+static final byte ADDITIONAL_TYPE_COLLECTION = 2;
+
+EncodedReferenceCollections(byte[] bytes, char[][] simpleNames, char[][][] qualifiedNames) {
+	this.bytes = bytes;
+	this.simpleNames = simpleNames;
+	this.qualifiedNames = qualifiedNames;
+}
+
+/*
+ * Writes the collection encoded at the given offset, as it was read.
+ */
+void copy(int offset, DataOutputStream out) throws IOException {
+	out.write(this.bytes, offset, skip(offset) - offset);
+}
+
+/*
+ * Writes the collection encoded at the given offset, replacing the id of each name by the id at this index in the given arrays.
+ */
+void copy(int offset, int[] simpleNameIds, int[] qualifiedNameIds, DataOutputStream out) throws IOException {
+	ByteArrayOutputStream buffer = new ByteArrayOutputStream(32);
+	DataOutputStream stream = new DataOutputStream(buffer);
+	int[] position = new int[] {offset};
+	readCompressedInt(position); // length of the collection
+	byte kind = this.bytes[position[0]++];
+	stream.writeByte(kind);
+	if (kind == ADDITIONAL_TYPE_COLLECTION) {
+		int start = position[0];
+		int length = readCompressedInt(position);
+		for (int i = 0; i < length; i++) {
+			int nameLength = readCompressedInt(position);
+			for (int j = 0; j < nameLength; j++)
+				readCompressedInt(position);
+		}
+		stream.write(this.bytes, start, position[0] - start); // the defined type names are not interned
+	}
+	int length = readCompressedInt(position);
+	writeCompressedInt(length, stream);
+	for (int i = 0; i < length; i++)
+		writeCompressedInt(qualifiedNameIds[readCompressedInt(position)], stream);
+	length = readCompressedInt(position);
+	writeCompressedInt(length, stream);
+	for (int i = 0; i < length; i++)
+		writeCompressedInt(simpleNameIds[readCompressedInt(position)], stream);
+	writeCompressedInt(buffer.size(), out);
+	buffer.writeTo(out);
+}
+
+/*
+ * Answers the reference collection encoded at the given offset.
+ */
+ReferenceCollection decode(int offset) {
+	int[] position = new int[] {offset};
+	readCompressedInt(position); // length of the collection
+	byte kind = this.bytes[position[0]++];
+	char[][] definedTypeNames = null;
+	if (kind == ADDITIONAL_TYPE_COLLECTION) {
+		definedTypeNames = new char[readCompressedInt(position)][];
+		for (int i = 0, l = definedTypeNames.length; i < l; i++) {
+			char[] name = new char[readCompressedInt(position)];
+			for (int j = 0, m = name.length; j < m; j++)
+				name[j] = (char) readCompressedInt(position);
+			definedTypeNames[i] = name;
+		}
+	}
+	char[][][] qNames = new char[readCompressedInt(position)][][];
+	for (int i = 0, l = qNames.length; i < l; i++)
+		qNames[i] = this.qualifiedNames[readCompressedInt(position)];
+	char[][] sNames = new char[readCompressedInt(position)][];
+	for (int i = 0, l = sNames.length; i < l; i++)
+		sNames[i] = this.simpleNames[readCompressedInt(position)];
+	if (definedTypeNames != null)
+		return new AdditionalTypeCollection(definedTypeNames, qNames, sNames);
+	return new ReferenceCollection(qNames, sNames);
+}
+
+/*
+ * Writes the given collection, referring to its names by the ids of the given tables.
+ */
+static void encode(ReferenceCollection collection, SimpleLookupTable qualifiedNameIds, SimpleLookupTable simpleNameIds, DataOutputStream out) throws IOException {
+	ByteArrayOutputStream buffer = new ByteArrayOutputStream(32);
+	DataOutputStream stream = new DataOutputStream(buffer);
+	if (collection instanceof AdditionalTypeCollection) {
+		stream.writeByte(ADDITIONAL_TYPE_COLLECTION);
+		char[][] definedTypeNames = ((AdditionalTypeCollection) collection).definedTypeNames;
+		writeCompressedInt(definedTypeNames.length, stream);
+		for (int i = 0, l = definedTypeNames.length; i < l; i++) {
+			char[] name = definedTypeNames[i];
+			writeCompressedInt(name.length, stream);
+			for (int j = 0, m = name.length; j < m; j++)
+				writeCompressedInt(name[j], stream);
+		}
+	} else {
+		stream.writeByte(REFERENCE_COLLECTION);
+	}
+	char[][][] qNames = collection.qualifiedNameReferences;
+	writeCompressedInt(qNames.length, stream);
+	for (int i = 0, l = qNames.length; i < l; i++)
+		writeCompressedInt(((Integer) qualifiedNameIds.get(qNames[i])).intValue(), stream);
+	char[][] sNames = collection.simpleNameReferences;
+	writeCompressedInt(sNames.length, stream);
+	for (int i = 0, l = sNames.length; i < l; i++)
+		writeCompressedInt(((Integer) simpleNameIds.get(sNames[i])).intValue(), stream);
+	writeCompressedInt(buffer.size(), out);
+	buffer.writeTo(out);
+}
+
+/*
+ * Marks the ids of the names referenced by the collection encoded at the given offset.
+ */
+void markNames(int offset, boolean[] usedSimpleNames, boolean[] usedQualifiedNames) {
+	int[] position = new int[] {offset};
+	readCompressedInt(position); // length of the collection
+	if (this.bytes[position[0]++] == ADDITIONAL_TYPE_COLLECTION) {
+		int length = readCompressedInt(position);
+		for (int i = 0; i < length; i++) {
+			int nameLength = readCompressedInt(position);
+			for (int j = 0; j < nameLength; j++)
+				readCompressedInt(position);
+		}
+	}
+	int length = readCompressedInt(position);
+	for (int i = 0; i < length; i++)
+		usedQualifiedNames[readCompressedInt(position)] = true;
+	length = readCompressedInt(position);
+	for (int i = 0; i < length; i++)
+		usedSimpleNames[readCompressedInt(position)] = true;
+}
+
+private int readCompressedInt(int[] position) {
+	return readCompressedInt(this.bytes, position);
+}
+
+static int readCompressedInt(byte[] bytes, int[] position) {
+	// must be same encoding as writeCompressedInt()
+	int value = 0;
+	int shift = 0;
+	int b;
+	do {
+		b = bytes[position[0]++] & 0xFF;
+		value |= (b & 0x7F) << shift;
+		shift += 7;
+	} while ((b & 0x80) != 0);
+	return value;
+}
+
+static int readCompressedInt(DataInputStream in) throws IOException {
+	// must be same encoding as writeCompressedInt()
+	int value = 0;
+	int shift = 0;
+	int b;
+	do {
+		b = in.readUnsignedByte();
+		value |= (b & 0x7F) << shift;
+		shift += 7;
+	} while ((b & 0x80) != 0);
+	return value;
+}
+
+/*
+ * Answers the offset of the collection following the one encoded at the given offset.
+ */
+int skip(int offset) {
+	return skip(this.bytes, offset);
+}
+
+/*
+ * Answers the offset following the block of bytes encoded at the given offset, which starts with its length.
+ */
+static int skip(byte[] bytes, int offset) {
+	int[] position = new int[] {offset};
+	int length = readCompressedInt(bytes, position);
+	return position[0] + length;
+}
+
+static void writeCompressedInt(int value, DataOutputStream out) throws IOException {
+	// 7 bits per byte, the high bit is set when more bytes follow
+	while ((value & ~0x7F) != 0) {
+		out.writeByte((value & 0x7F) | 0x80);
+		value >>>= 7;
+	}
+	out.writeByte(value);
+}
+
+public String toString() {
+	return "EncodedReferenceCollections of " + this.bytes.length + " bytes, " + this.simpleNames.length + " simple names and " //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		+ this.qualifiedNames.length + " qualified names"; //$NON-NLS-1$
+}
+}
@@ -21,6 +21,7 @@ import org.eclipse.jdt.internal.compiler.problem.*;
 import org.eclipse.jdt.internal.compiler.util.SimpleLookupTable;
 import org.eclipse.jdt.internal.compiler.util.SuffixConstants;
 import org.eclipse.jdt.internal.core.util.Messages;
+import org.eclipse.jdt.internal.core.util.SimpleSet;
 import org.eclipse.jdt.internal.core.util.Util;
 
 import java.io.*;
@@ -144,12 +145,12 @@ protected void addAffectedSourceFiles() {
 	if (simpleNames.length < simpleStrings.elementSize)
 		simpleNames = null;
 
-	Object[] keyTable = newState.references.keyTable;
-	Object[] valueTable = newState.references.valueTable;
-	next : for (int i = 0, l = valueTable.length; i < l; i++) {
-		ReferenceCollection refs = (ReferenceCollection) valueTable[i];
-		if (refs != null && refs.includes(qualifiedNames, simpleNames)) {
-			String typeLocator = (String) keyTable[i];
+	// look up the source files which reference the names instead of walking all the reference collections
+	SimpleSet affectedLocators = newState.getAffectedTypeLocators(qualifiedNames, simpleNames);
+	Object[] typeLocators = affectedLocators == null ? newState.references.keyTable : affectedLocators.values;
+	next : for (int i = 0, l = typeLocators.length; i < l; i++) {
+		String typeLocator = (String) typeLocators[i];
+		if (typeLocator != null) {
 			IFile file = javaBuilder.currentProject.getFile(typeLocator);
 			if (file.exists()) {
 				ClasspathMultiDirectory md = sourceLocations[0];
@@ -18,6 +18,7 @@ import org.eclipse.jdt.core.compiler.CharOperation;
 import org.eclipse.jdt.core.compiler.CompilationParticipant;
 import org.eclipse.jdt.internal.compiler.util.SimpleLookupTable;
 import org.eclipse.jdt.internal.core.*;
+import org.eclipse.jdt.internal.core.search.indexing.IndexManager;
 import org.eclipse.jdt.internal.core.util.Messages;
 import org.eclipse.jdt.internal.core.util.Util;
 
@@ -177,6 +178,9 @@ protected IProject[] build(int kind, Map ignored, IProgressMonitor monitor) thro
 				}
 			}
 			ok = true;
+			if (IndexManager.INDEX_TYPE_HIERARCHY || IndexManager.INDEX_RESOLVED_REFERENCES)
+				// the supertypes and resolved references recorded for the project are current again
+				JavaModelManager.getJavaModelManager().getIndexManager().hierarchyGraphBuilt(currentProject.getFullPath());
 		}
 	} catch (CoreException e) {
 		Util.log(e, "JavaBuilder handling CoreException while building: " + currentProject.getName()); //$NON-NLS-1$
@@ -220,6 +224,8 @@ protected IProject[] build(int kind, Map ignored, IProgressMonitor monitor) thro
 private void buildAll() {
 	notifier.checkCancel();
 	notifier.subTask(Messages.build_preparingBuild); 
+	if (lastState == null && BatchImageBuilder.MAX_COMPILER_THREADS > 1)
+		lastState = getLastState(currentProject); // its references help to split the source files among the compilers
 	if (DEBUG && lastState != null)
 		System.out.println("Clearing last state : " + lastState); //$NON-NLS-1$
 	clearLastState();
@@ -51,6 +51,17 @@ public NameEnvironment(IJavaProject javaProject) {
 	setNames(null, null);
 }
 
+/*
+ * Answers an environment which shares the classpath locations of the given environment but looks up
+ * its own names, so that several compilers can run at once (see BatchImageBuilder).
+ */
+NameEnvironment(NameEnvironment environment, String[] initialTypeNames) {
+	this.isIncrementalBuild = environment.isIncrementalBuild;
+	this.sourceLocations = environment.sourceLocations;
+	this.binaryLocations = environment.binaryLocations;
+	this.initialTypeNames = initialTypeNames; // the caches of the shared locations are not reset
+}
+
 /* Some examples of resolved class path entries.
 * Remember to search class path in the order that it was defined.
 *
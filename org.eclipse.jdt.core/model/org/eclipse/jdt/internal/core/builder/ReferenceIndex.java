@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.core.builder;
+
+import org.eclipse.jdt.internal.compiler.util.SimpleLookupTable;
+import org.eclipse.jdt.internal.core.util.SimpleSet;
+
+/**
+ * The inverse of the reference collections of a state: the type locators of the source files which reference
+ * each name, so that the source files affected by a change are found without walking all the reference collections.
+ * The names are interned (see ReferenceCollection), thus they are compared by identity.
+ * When the index is read from disk, the locators of each name stay encoded until the name's locators are modified.
+ */
+public class ReferenceIndex {
+
+// keyed by an interned simple name, value is a SimpleSet of the type locators whose collection includes it
+// or the Integer offset of these locators in encodedLocators
+SimpleLookupTable simpleNameDependents;
+// keyed by an interned qualified name, value is a SimpleSet of the type locators whose collection includes it
+// or the Integer offset of these locators in encodedLocators
+SimpleLookupTable qualifiedNameDependents;
+// the sets of locators this index may modify, null if it owns all of them; the others are shared with a copy
+// and are cloned the first time they are modified (see #ownedLocators(SimpleLookupTable, Object))
+SimpleSet ownedSets;
+
+// the locators read from disk, null if none: each list starts with its length in bytes and its size,
+// followed by the ids of its locators in typeLocators
+byte[] encodedLocators;
+String[] typeLocators;
+int encodedCount; // number of Integer values left in the tables
+
+ReferenceIndex() {
+	this.simpleNameDependents = new SimpleLookupTable(7);
+	this.qualifiedNameDependents = new SimpleLookupTable(7);
+}
+
+void add(String typeLocator, ReferenceCollection collection) {
+	char[][][] qNames = collection.qualifiedNameReferences;
+	for (int i = 0, l = qNames.length; i < l; i++)
+		addDependent(this.qualifiedNameDependents, qNames[i], typeLocator);
+	char[][] sNames = collection.simpleNameReferences;
+	for (int i = 0, l = sNames.length; i < l; i++)
+		addDependent(this.simpleNameDependents, sNames[i], typeLocator);
+}
+
+void addDependent(SimpleLookupTable dependents, Object name, String typeLocator) {
+	Object locators = dependents.get(name);
+	if (locators == null) {
+		SimpleSet newLocators = new SimpleSet(3);
+		dependents.put(name, newLocators);
+		if (this.ownedSets != null)
+			this.ownedSets.add(newLocators);
+		newLocators.add(typeLocator);
+	} else if (!includes(locators, typeLocator)) {
+		ownedLocators(dependents, name).add(typeLocator);
+	}
+}
+
+/*
+ * Answers a copy of this index which shares the sets of locators with it. From then on, neither index owns
+ * the shared sets, so each one clones a set before modifying it. The encoded locators are never modified.
+ */
+ReferenceIndex copy() {
+	ReferenceIndex copy = new ReferenceIndex();
+	try {
+		copy.simpleNameDependents = (SimpleLookupTable) this.simpleNameDependents.clone();
+		copy.qualifiedNameDependents = (SimpleLookupTable) this.qualifiedNameDependents.clone();
+	} catch (CloneNotSupportedException e) {
+		// SimpleLookupTable supports clone()
+	}
+	copy.encodedLocators = this.encodedLocators;
+	copy.typeLocators = this.typeLocators;
+	copy.encodedCount = this.encodedCount;
+	this.ownedSets = new SimpleSet(3);
+	copy.ownedSets = new SimpleSet(3);
+	return copy;
+}
+
+/*
+ * Answers the locators encoded at the given offset.
+ */
+private SimpleSet decode(int offset) {
+	int[] position = new int[] {offset};
+	EncodedReferenceCollections.readCompressedInt(this.encodedLocators, position); // length of the list
+	int size = EncodedReferenceCollections.readCompressedInt(this.encodedLocators, position);
+	SimpleSet locators = new SimpleSet(size);
+	for (int i = 0; i < size; i++)
+		locators.add(this.typeLocators[EncodedReferenceCollections.readCompressedInt(this.encodedLocators, position)]);
+	if (--this.encodedCount == 0) {
+		// release the encoded locators once they are all decoded
+		this.encodedLocators = null;
+		this.typeLocators = null;
+	}
+	return locators;
+}
+
+/*
+ * Answers the type locators of the source files which reference one of the given qualified names and one of the given
+ * simple names, as ReferenceCollection#includes(char[][][], char[][]) does. A null collection of names means it contained
+ * a well known name, so only the other collection is considered. Answers null if both are null, i.e. all source files.
+ */
+SimpleSet getDependents(char[][][] qualifiedNames, char[][] simpleNames) {
+	if (qualifiedNames == null && simpleNames == null) return null;
+
+	SimpleSet qualifiedDependents = null;
+	if (qualifiedNames != null) {
+		qualifiedDependents = new SimpleSet(3);
+		for (int i = 0, l = qualifiedNames.length; i < l; i++) {
+			char[][] qualifiedName = qualifiedNames[i];
+			addAll(qualifiedName.length == 1 ? this.simpleNameDependents.get(qualifiedName[0]) : this.qualifiedNameDependents.get(qualifiedName), qualifiedDependents);
+		}
+	}
+	SimpleSet simpleDependents = null;
+	if (simpleNames != null) {
+		simpleDependents = new SimpleSet(3);
+		for (int i = 0, l = simpleNames.length; i < l; i++)
+			addAll(this.simpleNameDependents.get(simpleNames[i]), simpleDependents);
+	}
+	if (qualifiedDependents == null) return simpleDependents;
+	if (simpleDependents == null) return qualifiedDependents;
+
+	// the files must reference both a qualified name and a simple name
+	SimpleSet smaller = qualifiedDependents, larger = simpleDependents;
+	if (smaller.elementSize > larger.elementSize) {
+		smaller = simpleDependents;
+		larger = qualifiedDependents;
+	}
+	SimpleSet dependents = new SimpleSet(smaller.elementSize);
+	Object[] values = smaller.values;
+	for (int i = 0, l = values.length; i < l; i++)
+		if (values[i] != null && larger.includes(values[i]))
+			dependents.add(values[i]);
+	return dependents;
+}
+
+private void addAll(Object locators, SimpleSet result) {
+	if (locators == null) return;
+	if (locators instanceof Integer) {
+		// read the encoded locators without decoding them into a set
+		int[] position = new int[] {((Integer) locators).intValue()};
+		EncodedReferenceCollections.readCompressedInt(this.encodedLocators, position); // length of the list
+		for (int i = EncodedReferenceCollections.readCompressedInt(this.encodedLocators, position); --i >= 0;)
+			result.add(this.typeLocators[EncodedReferenceCollections.readCompressedInt(this.encodedLocators, position)]);
+		return;
+	}
+	Object[] values = ((SimpleSet) locators).values;
+	for (int i = 0, l = values.length; i < l; i++)
+		if (values[i] != null)
+			result.add(values[i]);
+}
+
+/*
+ * Answers the ids of the given locators, as SimpleSet or Integer values of the tables, in the given table of ids.
+ * Answers null if one of them has no id.
+ */
+int[] getIds(Object locators, SimpleLookupTable locatorIds) {
+	int[] ids;
+	if (locators instanceof Integer) {
+		int[] position = new int[] {((Integer) locators).intValue()};
+		EncodedReferenceCollections.readCompressedInt(this.encodedLocators, position); // length of the list
+		ids = new int[EncodedReferenceCollections.readCompressedInt(this.encodedLocators, position)];
+		for (int i = 0, l = ids.length; i < l; i++) {
+			Integer id = (Integer) locatorIds.get(this.typeLocators[EncodedReferenceCollections.readCompressedInt(this.encodedLocators, position)]);
+			if (id == null) return null;
+			ids[i] = id.intValue();
+		}
+	} else {
+		SimpleSet set = (SimpleSet) locators;
+		ids = new int[set.elementSize];
+		Object[] values = set.values;
+		for (int i = 0, j = 0, l = values.length; i < l; i++) {
+			if (values[i] != null) {
+				Integer id = (Integer) locatorIds.get(values[i]);
+				if (id == null) return null;
+				ids[j++] = id.intValue();
+			}
+		}
+	}
+	return ids;
+}
+
+private boolean includes(Object locators, String typeLocator) {
+	if (locators instanceof SimpleSet)
+		return ((SimpleSet) locators).includes(typeLocator);
+	int[] position = new int[] {((Integer) locators).intValue()};
+	EncodedReferenceCollections.readCompressedInt(this.encodedLocators, position); // length of the list
+	for (int i = EncodedReferenceCollections.readCompressedInt(this.encodedLocators, position); --i >= 0;)
+		if (typeLocator.equals(this.typeLocators[EncodedReferenceCollections.readCompressedInt(this.encodedLocators, position)]))
+			return true;
+	return false;
+}
+
+/*
+ * Answers whether the given locators, as a SimpleSet or Integer value of the tables, are empty.
+ */
+boolean isEmpty(Object locators) {
+	if (locators instanceof SimpleSet)
+		return ((SimpleSet) locators).elementSize == 0;
+	int[] position = new int[] {((Integer) locators).intValue()};
+	EncodedReferenceCollections.readCompressedInt(this.encodedLocators, position); // length of the list
+	return EncodedReferenceCollections.readCompressedInt(this.encodedLocators, position) == 0;
+}
+
+/*
+ * Answers the locators of the given name, decoding them first if they are encoded
+ * or cloning them first if they are shared with another index.
+ */
+private SimpleSet ownedLocators(SimpleLookupTable dependents, Object name) {
+	Object locators = dependents.get(name);
+	SimpleSet owned;
+	if (locators instanceof Integer) {
+		owned = decode(((Integer) locators).intValue());
+	} else {
+		if (this.ownedSets == null || this.ownedSets.includes(locators)) return (SimpleSet) locators;
+		try {
+			owned = (SimpleSet) ((SimpleSet) locators).clone();
+		} catch (CloneNotSupportedException e) {
+			// SimpleSet supports clone()
+			owned = (SimpleSet) locators;
+		}
+	}
+	dependents.put(name, owned);
+	if (this.ownedSets != null)
+		this.ownedSets.add(owned);
+	return owned;
+}
+
+/*
+ * Replaces the names referenced by the given type locator, only touching the names which differ.
+ */
+void update(String typeLocator, ReferenceCollection oldCollection, ReferenceCollection newCollection) {
+	if (oldCollection != null) {
+		char[][][] qNames = oldCollection.qualifiedNameReferences;
+		for (int i = 0, l = qNames.length; i < l; i++)
+			if (newCollection == null || !newCollection.includes(qNames[i]))
+				removeDependent(this.qualifiedNameDependents, qNames[i], typeLocator);
+		char[][] sNames = oldCollection.simpleNameReferences;
+		for (int i = 0, l = sNames.length; i < l; i++)
+			if (newCollection == null || !newCollection.includes(sNames[i]))
+				removeDependent(this.simpleNameDependents, sNames[i], typeLocator);
+	}
+	if (newCollection != null)
+		add(typeLocator, newCollection); // names already present are kept
+}
+
+void removeDependent(SimpleLookupTable dependents, Object name, String typeLocator) {
+	Object locators = dependents.get(name);
+	if (locators != null && includes(locators, typeLocator))
+		ownedLocators(dependents, name).remove(typeLocator); // keep an empty set rather than rehashing the table
+}
+
+public String toString() {
+	return "ReferenceIndex of " + this.simpleNameDependents.elementSize + " simple names and " //$NON-NLS-1$ //$NON-NLS-2$
+		+ this.qualifiedNameDependents.elementSize + " qualified names"; //$NON-NLS-1$
+}
+}
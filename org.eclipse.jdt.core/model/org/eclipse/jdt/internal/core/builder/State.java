@@ -18,6 +18,7 @@ import org.eclipse.jdt.internal.compiler.env.AccessRuleSet;
 import org.eclipse.jdt.internal.compiler.env.AccessRule;
 import org.eclipse.jdt.internal.compiler.util.SimpleLookupTable;
 import org.eclipse.jdt.internal.core.ClasspathAccessRule;
+import org.eclipse.jdt.internal.core.util.SimpleSet;
 
 import java.io.*;
 import java.util.*;
@@ -29,9 +30,15 @@ String javaProjectName;
 ClasspathMultiDirectory[] sourceLocations;
 ClasspathLocation[] binaryLocations;
 // keyed by the project relative path of the type (ie. "src1/p1/p2/A.java"), value is a ReferenceCollection or an AdditionalTypeCollection
+// or the Integer offset of a collection which is still encoded (see #getReferenceCollection(String))
 SimpleLookupTable references;
+// the reference collections read from disk, null if none or once they are all decoded
+EncodedReferenceCollections encodedReferences;
+int encodedCount; // number of Integer values left in the references table
 // keyed by qualified type name "p1/p2/A", value is the project relative path which defines this type "src1/p1/p2/A.java"
 SimpleLookupTable typeLocators;
+// the type locators of the references table keyed by the names they reference
+ReferenceIndex referenceIndex;
 
 int buildNumber;
 long lastStructuralBuildTime;
@@ -43,7 +50,7 @@ private long previousStructuralBuildTime;
 private StringSet structurallyChangedTypes;
 public static int MaxStructurallyChangedTypes = 100; // keep track of ? structurally changed types, otherwise consider all to be changed
 
-public static final byte VERSION = 0x0013; // added timestamps to external jars
+public static final byte VERSION = 0x0016; // compact encoding, reference collections and reference index decoded lazily
 
 static final byte SOURCE_FOLDER = 1;
 static final byte BINARY_FOLDER = 2;
@@ -63,6 +70,7 @@ protected State(JavaBuilder javaBuilder) {
 	this.binaryLocations = javaBuilder.nameEnvironment.binaryLocations;
 	this.references = new SimpleLookupTable(7);
 	this.typeLocators = new SimpleLookupTable(7);
+	this.referenceIndex = new ReferenceIndex();
 
 	this.buildNumber = 0; // indicates a full build
 	this.lastStructuralBuildTime = System.currentTimeMillis();
@@ -76,6 +84,9 @@ void copyFrom(State lastState) {
 	this.buildNumber = lastState.buildNumber + 1;
 	this.lastStructuralBuildTime = lastState.lastStructuralBuildTime;
 	this.structuralBuildTimes = lastState.structuralBuildTimes;
+	this.referenceIndex = lastState.referenceIndex.copy();
+	this.encodedReferences = lastState.encodedReferences;
+	this.encodedCount = lastState.encodedCount;
 
 	try {
 		this.references = (SimpleLookupTable) lastState.references.clone();
@@ -98,7 +109,7 @@ void copyFrom(State lastState) {
 }
 
 char[][] getDefinedTypeNamesFor(String typeLocator) {
-	Object c = references.get(typeLocator);
+	Object c = getReferenceCollection(typeLocator);
 	if (c instanceof AdditionalTypeCollection)
 		return ((AdditionalTypeCollection) c).definedTypeNames;
 	return null; // means only one type is defined with the same name as the file... saves space
@@ -144,14 +155,45 @@ boolean isKnownPackage(String qualifiedPackageName) {
 	return false;
 }
 
+/*
+ * Answers the given value of the references table, decoding it if it is still encoded. The caller replaces or removes the value.
+ */
+private ReferenceCollection decode(Object collection) {
+	if (collection instanceof Integer) {
+		ReferenceCollection decoded = this.encodedReferences.decode(((Integer) collection).intValue());
+		if (--this.encodedCount == 0)
+			this.encodedReferences = null; // release the encoded collections and their names once they are all decoded
+		return decoded;
+	}
+	return (ReferenceCollection) collection;
+}
+
+/*
+ * Answers the reference collection of the given type locator, decoding it if it is still encoded. Answers null if none.
+ */
+ReferenceCollection getReferenceCollection(String typeLocator) {
+	Object collection = references.get(typeLocator);
+	if (collection instanceof Integer)
+		references.put(typeLocator, collection = decode(collection));
+	return (ReferenceCollection) collection;
+}
+
+SimpleSet getAffectedTypeLocators(char[][][] qualifiedNames, char[][] simpleNames) {
+	return this.referenceIndex.getDependents(qualifiedNames, simpleNames);
+}
+
 void record(String typeLocator, char[][][] qualifiedRefs, char[][] simpleRefs, char[] mainTypeName, ArrayList typeNames) {
+	ReferenceCollection collection;
 	if (typeNames.size() == 1 && CharOperation.equals(mainTypeName, (char[]) typeNames.get(0))) {
-			references.put(typeLocator, new ReferenceCollection(qualifiedRefs, simpleRefs));
+		collection = new ReferenceCollection(qualifiedRefs, simpleRefs);
 	} else {
 		char[][] definedTypeNames = new char[typeNames.size()][]; // can be empty when no types are defined
 		typeNames.toArray(definedTypeNames);
-		references.put(typeLocator, new AdditionalTypeCollection(definedTypeNames, qualifiedRefs, simpleRefs));
+		collection = new AdditionalTypeCollection(definedTypeNames, qualifiedRefs, simpleRefs);
 	}
+	ReferenceCollection previous = decode(references.get(typeLocator));
+	references.put(typeLocator, collection);
+	referenceIndex.update(typeLocator, previous, collection);
 }
 
 void recordLocatorForType(String qualifiedTypeName, String typeLocator) {
@@ -171,7 +213,7 @@ void recordStructuralDependency(IProject prereqProject, State prereqState) {
 
 void removeLocator(String typeLocatorToRemove) {
 	this.knownPackageNames = null;
-	references.removeKey(typeLocatorToRemove);
+	referenceIndex.update(typeLocatorToRemove, decode(references.removeKey(typeLocatorToRemove)), null);
 	typeLocators.removeValue(typeLocatorToRemove);
 }
 
@@ -255,56 +297,83 @@ static State read(IProject project, DataInputStream in) throws IOException {
 	for (int i = 0; i < length; i++)
 		newState.structuralBuildTimes.put(in.readUTF(), new Long(in.readLong()));
 
-	String[] internedTypeLocators = new String[length = in.readInt()];
+	String[] internedTypeLocators = new String[length = readCompressedInt(in)];
 	for (int i = 0; i < length; i++)
 		internedTypeLocators[i] = in.readUTF();
 
-	newState.typeLocators = new SimpleLookupTable(length = in.readInt());
-	for (int i = 0; i < length; i++)
-		newState.recordLocatorForType(in.readUTF(), internedTypeLocators[in.readInt()]);
+	newState.typeLocators = new SimpleLookupTable(length = readCompressedInt(in));
+	for (int i = 0; i < length; i++) {
+		String typeLocator = internedTypeLocators[readCompressedInt(in)];
+		// in the common case, the type name is a substring of its locator
+		int start = readCompressedInt(in);
+		String qualifiedTypeName = start == 0 ? in.readUTF() : typeLocator.substring(start - 1, start - 1 + readCompressedInt(in));
+		newState.typeLocators.put(qualifiedTypeName, typeLocator);
+	}
 
-	char[][] internedSimpleNames = ReferenceCollection.internSimpleNames(readNames(in), false);
-	char[][][] internedQualifiedNames = new char[length = in.readInt()][][];
+	char[][] internedSimpleNames = new char[length = readCompressedInt(in)][];
+	for (int i = 0; i < length; i++)
+		internedSimpleNames[i] = in.readUTF().toCharArray();
+	internedSimpleNames = ReferenceCollection.internSimpleNames(internedSimpleNames, false);
+	char[][][] internedQualifiedNames = new char[length = readCompressedInt(in)][][];
 	for (int i = 0; i < length; i++) {
-		int qLength = in.readInt();
+		int qLength = readCompressedInt(in);
 		char[][] qName = new char[qLength][];
 		for (int j = 0; j < qLength; j++)
-			qName[j] = internedSimpleNames[in.readInt()];
+			qName[j] = internedSimpleNames[readCompressedInt(in)];
 		internedQualifiedNames[i] = qName;
 	}
 	internedQualifiedNames = ReferenceCollection.internQualifiedNames(internedQualifiedNames);
 
-	newState.references = new SimpleLookupTable(length = in.readInt());
-	for (int i = 0; i < length; i++) {
-		String typeLocator = internedTypeLocators[in.readInt()];
-		ReferenceCollection collection = null;
-		switch (in.readByte()) {
-			case 1 :
-				char[][] additionalTypeNames = readNames(in);
-				char[][][] qualifiedNames = new char[in.readInt()][][];
-				for (int j = 0, m = qualifiedNames.length; j < m; j++)
-					qualifiedNames[j] = internedQualifiedNames[in.readInt()];
-				char[][] simpleNames = new char[in.readInt()][];
-				for (int j = 0, m = simpleNames.length; j < m; j++)
-					simpleNames[j] = internedSimpleNames[in.readInt()];
-				collection = new AdditionalTypeCollection(additionalTypeNames, qualifiedNames, simpleNames);
-				break;
-			case 2 :
-				char[][][] qNames = new char[in.readInt()][][];
-				for (int j = 0, m = qNames.length; j < m; j++)
-					qNames[j] = internedQualifiedNames[in.readInt()];
-				char[][] sNames = new char[in.readInt()][];
-				for (int j = 0, m = sNames.length; j < m; j++)
-					sNames[j] = internedSimpleNames[in.readInt()];
-				collection = new ReferenceCollection(qNames, sNames);
+	// the reference collections are only decoded when needed
+	byte[] bytes = new byte[in.readInt()];
+	in.readFully(bytes);
+	length = internedTypeLocators.length;
+	newState.references = new SimpleLookupTable(length);
+	if (length > 0) {
+		EncodedReferenceCollections encodedReferences = new EncodedReferenceCollections(bytes, internedSimpleNames, internedQualifiedNames);
+		for (int i = 0, offset = 0; i < length; i++) {
+			newState.references.put(internedTypeLocators[i], new Integer(offset));
+			offset = encodedReferences.skip(offset);
 		}
-		newState.references.put(typeLocator, collection);
+		newState.encodedReferences = encodedReferences;
+		newState.encodedCount = length;
+	}
+
+	// so are the locators of each name in the reference index
+	ReferenceIndex referenceIndex = new ReferenceIndex();
+	int[] simpleNameIds = new int[readCompressedInt(in)];
+	for (int i = 0, l = simpleNameIds.length; i < l; i++)
+		simpleNameIds[i] = readCompressedInt(in);
+	int[] qualifiedNameIds = new int[readCompressedInt(in)];
+	for (int i = 0, l = qualifiedNameIds.length; i < l; i++)
+		qualifiedNameIds[i] = readCompressedInt(in);
+	bytes = new byte[in.readInt()];
+	in.readFully(bytes);
+	int offset = 0;
+	referenceIndex.simpleNameDependents = new SimpleLookupTable(simpleNameIds.length);
+	for (int i = 0, l = simpleNameIds.length; i < l; i++) {
+		referenceIndex.simpleNameDependents.put(internedSimpleNames[simpleNameIds[i]], new Integer(offset));
+		offset = EncodedReferenceCollections.skip(bytes, offset);
+	}
+	referenceIndex.qualifiedNameDependents = new SimpleLookupTable(qualifiedNameIds.length);
+	for (int i = 0, l = qualifiedNameIds.length; i < l; i++) {
+		referenceIndex.qualifiedNameDependents.put(internedQualifiedNames[qualifiedNameIds[i]], new Integer(offset));
+		offset = EncodedReferenceCollections.skip(bytes, offset);
+	}
+	if ((referenceIndex.encodedCount = simpleNameIds.length + qualifiedNameIds.length) > 0) {
+		referenceIndex.encodedLocators = bytes;
+		referenceIndex.typeLocators = internedTypeLocators;
 	}
+	newState.referenceIndex = referenceIndex;
 	if (JavaBuilder.DEBUG)
 		System.out.println("Successfully read state for " + newState.javaProjectName); //$NON-NLS-1$
 	return newState;
 }
 
+private static int readCompressedInt(DataInputStream in) throws IOException {
+	return EncodedReferenceCollections.readCompressedInt(in);
+}
+
 private static char[] readName(DataInputStream in) throws IOException {
 	int nLength = in.readInt();
 	char[] name = new char[nLength];
@@ -440,138 +509,255 @@ void write(DataOutputStream out) throws IOException {
  * String		prereq project name
  * int				last structural build number
 */
-	out.writeInt(length = structuralBuildTimes.elementSize);
-	if (length > 0) {
-		keyTable = structuralBuildTimes.keyTable;
-		valueTable = structuralBuildTimes.valueTable;
-		for (int i = 0, l = keyTable.length; i < l; i++) {
-			if (keyTable[i] != null) {
-				length--;
-				out.writeUTF((String) keyTable[i]);
-				out.writeLong(((Long) valueTable[i]).longValue());
-			}
-		}
-		if (JavaBuilder.DEBUG && length != 0)
-			System.out.println("structuralBuildNumbers table is inconsistent"); //$NON-NLS-1$
+	String[] prereqProjectNames = sortedKeys(structuralBuildTimes);
+	out.writeInt(length = prereqProjectNames.length);
+	for (int i = 0; i < length; i++) {
+		out.writeUTF(prereqProjectNames[i]);
+		out.writeLong(((Long) structuralBuildTimes.get(prereqProjectNames[i])).longValue());
 	}
 
 /*
  * String[]		Interned type locators
+ * the tables are written in a sorted order, so rewriting a state which did not change gives the same bytes
  */
-	out.writeInt(length = references.elementSize);
-	ArrayList internedTypeLocators = new ArrayList(length);
-	if (length > 0) {
-		keyTable = references.keyTable;
-		for (int i = 0, l = keyTable.length; i < l; i++) {
-			if (keyTable[i] != null) {
-				length--;
-				String key = (String) keyTable[i];
-				out.writeUTF(key);
-				internedTypeLocators.add(key);
-			}
-		}
-		if (JavaBuilder.DEBUG && length != 0)
-			System.out.println("references table is inconsistent"); //$NON-NLS-1$
+	String[] internedTypeLocators = sortedKeys(references);
+	writeCompressedInt(length = internedTypeLocators.length, out);
+	SimpleLookupTable locatorIds = new SimpleLookupTable(length);
+	for (int i = 0; i < length; i++) {
+		out.writeUTF(internedTypeLocators[i]);
+		locatorIds.put(internedTypeLocators[i], new Integer(i));
 	}
 
 /*
  * Type locators table
- * String		type name
  * int				interned locator id
+ * int				start of the type name in the locator + 1, followed by its length
+ * 					or 0 followed by the String type name
  */
-	out.writeInt(length = typeLocators.elementSize);
-	if (length > 0) {
-		keyTable = typeLocators.keyTable;
-		valueTable = typeLocators.valueTable;
-		for (int i = 0, l = keyTable.length; i < l; i++) {
-			if (keyTable[i] != null) {
-				length--;
-				out.writeUTF((String) keyTable[i]);
-				out.writeInt(internedTypeLocators.indexOf(valueTable[i]));
-			}
+	String[] qualifiedTypeNames = sortedKeys(typeLocators);
+	writeCompressedInt(length = qualifiedTypeNames.length, out);
+	for (int i = 0; i < length; i++) {
+		String qualifiedTypeName = qualifiedTypeNames[i];
+		String typeLocator = (String) typeLocators.get(qualifiedTypeName);
+		Integer locatorId = (Integer) locatorIds.get(typeLocator);
+		if (locatorId == null) // cannot happen since a type is recorded with the references of its locator
+			throw new IOException("typeLocators table is inconsistent"); //$NON-NLS-1$
+		writeCompressedInt(locatorId.intValue(), out);
+		int start = typeLocator.indexOf(qualifiedTypeName);
+		if (start >= 0) {
+			writeCompressedInt(start + 1, out);
+			writeCompressedInt(qualifiedTypeName.length(), out);
+		} else {
+			writeCompressedInt(0, out);
+			out.writeUTF(qualifiedTypeName);
 		}
-		if (JavaBuilder.DEBUG && length != 0)
-			System.out.println("typeLocators table is inconsistent"); //$NON-NLS-1$
 	}
 
 /*
- * char[][][]	Interned qualified names
  * char[][]		Interned simple names
+ * char[][][]	Interned qualified names, as ids of interned simple names
+ * the names of the encoded reference collections keep their ids so these collections are copied as they are,
+ * unless too many of these names are no longer used: all the names are then numbered as if the state was written
+ * from its decoded collections, and the ids of the encoded collections are translated
  */
 	ArrayList internedQualifiedNames = new ArrayList(31);
 	ArrayList internedSimpleNames = new ArrayList(31);
-	valueTable = references.valueTable;
-	for (int i = 0, l = valueTable.length; i < l; i++) {
-		if (valueTable[i] != null) {
-			ReferenceCollection collection = (ReferenceCollection) valueTable[i];
-			char[][][] qNames = collection.qualifiedNameReferences;
-			for (int j = 0, m = qNames.length; j < m; j++) {
-				char[][] qName = qNames[j];
-				if (!internedQualifiedNames.contains(qName)) { // remember the names have been interned
-					internedQualifiedNames.add(qName);
-					for (int k = 0, n = qName.length; k < n; k++) {
-						char[] sName = qName[k];
-						if (!internedSimpleNames.contains(sName)) // remember the names have been interned
-							internedSimpleNames.add(sName);
-					}
-				}
+	SimpleLookupTable qualifiedNameIds = new SimpleLookupTable(31);
+	SimpleLookupTable simpleNameIds = new SimpleLookupTable(31);
+	int[] newSimpleNameIds = null; // the ids of the names of the encoded collections when they are renumbered
+	int[] newQualifiedNameIds = null;
+	boolean renumber = false;
+	if (encodedReferences != null) {
+		char[][] sNames = encodedReferences.simpleNames;
+		for (int i = 0, l = sNames.length; i < l; i++)
+			simpleNameIds.put(sNames[i], new Integer(i));
+		char[][][] qNames = encodedReferences.qualifiedNames;
+		for (int i = 0, l = qNames.length; i < l; i++)
+			qualifiedNameIds.put(qNames[i], new Integer(i));
+
+		// find the names which are still used
+		boolean[] usedSimpleNames = new boolean[sNames.length];
+		boolean[] usedQualifiedNames = new boolean[qNames.length];
+		for (int i = 0, l = internedTypeLocators.length; i < l; i++) {
+			Object collection = references.get(internedTypeLocators[i]);
+			if (collection instanceof Integer) {
+				encodedReferences.markNames(((Integer) collection).intValue(), usedSimpleNames, usedQualifiedNames);
+			} else {
+				char[][][] qualifiedRefs = ((ReferenceCollection) collection).qualifiedNameReferences;
+				for (int j = 0, m = qualifiedRefs.length; j < m; j++)
+					markName(qualifiedRefs[j], qualifiedNameIds, usedQualifiedNames);
+				char[][] simpleRefs = ((ReferenceCollection) collection).simpleNameReferences;
+				for (int j = 0, m = simpleRefs.length; j < m; j++)
+					markName(simpleRefs[j], simpleNameIds, usedSimpleNames);
 			}
-			char[][] sNames = collection.simpleNameReferences;
-			for (int j = 0, m = sNames.length; j < m; j++) {
-				char[] sName = sNames[j];
-				if (!internedSimpleNames.contains(sName)) // remember the names have been interned
-					internedSimpleNames.add(sName);
+		}
+		int unused = 0;
+		for (int i = 0, l = qNames.length; i < l; i++) {
+			if (usedQualifiedNames[i]) {
+				char[][] qName = qNames[i];
+				for (int j = 0, m = qName.length; j < m; j++)
+					markName(qName[j], simpleNameIds, usedSimpleNames);
+			} else {
+				unused++;
+			}
+		}
+		for (int i = 0, l = sNames.length; i < l; i++)
+			if (!usedSimpleNames[i])
+				unused++;
+
+		if (unused > (sNames.length + qNames.length) / 4) {
+			renumber = true;
+			simpleNameIds = new SimpleLookupTable(31);
+			qualifiedNameIds = new SimpleLookupTable(31);
+		} else {
+			for (int i = 0, l = sNames.length; i < l; i++)
+				internedSimpleNames.add(sNames[i]);
+			for (int i = 0, l = qNames.length; i < l; i++)
+				internedQualifiedNames.add(qNames[i]);
+		}
+	}
+	for (int i = 0, l = internedTypeLocators.length; i < l; i++) {
+		Object collection = references.get(internedTypeLocators[i]);
+		if (collection instanceof Integer) {
+			if (!renumber) continue; // the names of the encoded collections are already known
+			collection = encodedReferences.decode(((Integer) collection).intValue());
+		}
+		char[][][] qNames = ((ReferenceCollection) collection).qualifiedNameReferences;
+		for (int j = 0, m = qNames.length; j < m; j++) {
+			char[][] qName = qNames[j];
+			if (!qualifiedNameIds.containsKey(qName)) { // remember the names have been interned
+				addName(qName, internedQualifiedNames, qualifiedNameIds);
+				for (int k = 0, n = qName.length; k < n; k++)
+					addName(qName[k], internedSimpleNames, simpleNameIds);
 			}
 		}
+		char[][] sNames = ((ReferenceCollection) collection).simpleNameReferences;
+		for (int j = 0, m = sNames.length; j < m; j++)
+			addName(sNames[j], internedSimpleNames, simpleNameIds);
+	}
+	if (renumber) {
+		// the new id of each name of the encoded collections, the names which are no longer used are not referenced
+		char[][] sNames = encodedReferences.simpleNames;
+		newSimpleNameIds = new int[sNames.length];
+		for (int i = 0, l = sNames.length; i < l; i++) {
+			Integer id = (Integer) simpleNameIds.get(sNames[i]);
+			if (id != null)
+				newSimpleNameIds[i] = id.intValue();
+		}
+		char[][][] qNames = encodedReferences.qualifiedNames;
+		newQualifiedNameIds = new int[qNames.length];
+		for (int i = 0, l = qNames.length; i < l; i++) {
+			Integer id = (Integer) qualifiedNameIds.get(qNames[i]);
+			if (id != null)
+				newQualifiedNameIds[i] = id.intValue();
+		}
 	}
-	char[][] internedArray = new char[internedSimpleNames.size()][];
-	internedSimpleNames.toArray(internedArray);
-	writeNames(internedArray, out);
+	writeCompressedInt(length = internedSimpleNames.size(), out);
+	for (int i = 0; i < length; i++)
+		out.writeUTF(new String((char[]) internedSimpleNames.get(i)));
 	// now write the interned qualified names as arrays of interned simple names
-	out.writeInt(length = internedQualifiedNames.size());
+	writeCompressedInt(length = internedQualifiedNames.size(), out);
 	for (int i = 0; i < length; i++) {
 		char[][] qName = (char[][]) internedQualifiedNames.get(i);
 		int qLength = qName.length;
-		out.writeInt(qLength);
+		writeCompressedInt(qLength, out);
 		for (int j = 0; j < qLength; j++)
-			out.writeInt(internedSimpleNames.indexOf(qName[j]));
+			writeCompressedInt(((Integer) simpleNameIds.get(qName[j])).intValue(), out);
 	}
 
 /*
  * References table
- * int			interned locator id
- * ReferenceCollection
+ * int			length of the encoded collections
+ * encoded ReferenceCollections (see EncodedReferenceCollections), in the order of the interned locators
 */
-	out.writeInt(length = references.elementSize);
-	if (length > 0) {
-		keyTable = references.keyTable;
-		for (int i = 0, l = keyTable.length; i < l; i++) {
-			if (keyTable[i] != null) {
-				length--;
-				out.writeInt(internedTypeLocators.indexOf(keyTable[i]));
-				ReferenceCollection collection = (ReferenceCollection) valueTable[i];
-				if (collection instanceof AdditionalTypeCollection) {
-					out.writeByte(1);
-					AdditionalTypeCollection atc = (AdditionalTypeCollection) collection;
-					writeNames(atc.definedTypeNames, out);
-				} else {
-					out.writeByte(2);
-				}
-				char[][][] qNames = collection.qualifiedNameReferences;
-				int qLength = qNames.length;
-				out.writeInt(qLength);
-				for (int j = 0; j < qLength; j++)
-					out.writeInt(internedQualifiedNames.indexOf(qNames[j]));
-				char[][] sNames = collection.simpleNameReferences;
-				int sLength = sNames.length;
-				out.writeInt(sLength);
-				for (int j = 0; j < sLength; j++)
-					out.writeInt(internedSimpleNames.indexOf(sNames[j]));
-			}
+	ByteArrayOutputStream encodedCollections = new ByteArrayOutputStream(1024);
+	DataOutputStream collectionsOut = new DataOutputStream(encodedCollections);
+	for (int i = 0, l = internedTypeLocators.length; i < l; i++) {
+		Object collection = references.get(internedTypeLocators[i]);
+		if (!(collection instanceof Integer))
+			EncodedReferenceCollections.encode((ReferenceCollection) collection, qualifiedNameIds, simpleNameIds, collectionsOut);
+		else if (newSimpleNameIds == null)
+			encodedReferences.copy(((Integer) collection).intValue(), collectionsOut);
+		else
+			encodedReferences.copy(((Integer) collection).intValue(), newSimpleNameIds, newQualifiedNameIds, collectionsOut);
+	}
+	out.writeInt(encodedCollections.size());
+	encodedCollections.writeTo(out);
+
+/*
+ * Reference index
+ * int			number of simple names
+ * int[]		interned simple name ids, in increasing order
+ * int			number of qualified names
+ * int[]		interned qualified name ids, in increasing order
+ * int			length of the encoded locators
+ * encoded locators of each name (see ReferenceIndex), with their interned locator ids in increasing order
+ */
+	ByteArrayOutputStream encodedLocators = new ByteArrayOutputStream(1024);
+	DataOutputStream locatorsOut = new DataOutputStream(encodedLocators);
+	writeReferenceIndex(referenceIndex.simpleNameDependents, simpleNameIds, locatorIds, out, locatorsOut);
+	writeReferenceIndex(referenceIndex.qualifiedNameDependents, qualifiedNameIds, locatorIds, out, locatorsOut);
+	out.writeInt(encodedLocators.size());
+	encodedLocators.writeTo(out);
+}
+
+private static void addName(Object name, ArrayList names, SimpleLookupTable nameIds) {
+	if (!nameIds.containsKey(name)) {
+		nameIds.put(name, new Integer(names.size()));
+		names.add(name);
+	}
+}
+
+private static void markName(Object name, SimpleLookupTable nameIds, boolean[] usedNames) {
+	Integer id = (Integer) nameIds.get(name);
+	if (id != null)
+		usedNames[id.intValue()] = true;
+}
+
+private static String[] sortedKeys(SimpleLookupTable table) {
+	String[] keys = new String[table.elementSize];
+	Object[] keyTable = table.keyTable;
+	for (int i = 0, j = 0, l = keyTable.length; i < l; i++)
+		if (keyTable[i] != null)
+			keys[j++] = (String) keyTable[i];
+	Arrays.sort(keys);
+	return keys;
+}
+
+private void writeReferenceIndex(SimpleLookupTable dependents, SimpleLookupTable nameIds, SimpleLookupTable locatorIds, DataOutputStream out, DataOutputStream locatorsOut) throws IOException {
+	// only write the names which are still referenced, in the order of their ids
+	Object[] keyTable = dependents.keyTable;
+	Object[] valueTable = dependents.valueTable;
+	long[] sortedNames = new long[dependents.elementSize]; // id of the name in the high int, its index in the table in the low int
+	int length = 0;
+	for (int i = 0, l = keyTable.length; i < l; i++) {
+		if (keyTable[i] != null && !referenceIndex.isEmpty(valueTable[i])) {
+			Integer id = (Integer) nameIds.get(keyTable[i]);
+			if (id != null)
+				sortedNames[length++] = ((long) id.intValue() << 32) | i;
 		}
-		if (JavaBuilder.DEBUG && length != 0)
-			System.out.println("references table is inconsistent"); //$NON-NLS-1$
 	}
+	Arrays.sort(sortedNames, 0, length);
+	writeCompressedInt(length, out);
+	ByteArrayOutputStream buffer = new ByteArrayOutputStream(32);
+	DataOutputStream stream = new DataOutputStream(buffer);
+	for (int i = 0; i < length; i++) {
+		writeCompressedInt((int) (sortedNames[i] >>> 32), out);
+		int[] ids = referenceIndex.getIds(valueTable[(int) sortedNames[i]], locatorIds);
+		if (ids == null) // cannot happen since the index is updated with the references table
+			throw new IOException("reference index is inconsistent"); //$NON-NLS-1$
+		Arrays.sort(ids);
+		buffer.reset();
+		writeCompressedInt(ids.length, stream);
+		for (int j = 0, m = ids.length; j < m; j++)
+			writeCompressedInt(ids[j], stream);
+		writeCompressedInt(buffer.size(), locatorsOut);
+		buffer.writeTo(locatorsOut);
+	}
+}
+
+private void writeCompressedInt(int value, DataOutputStream out) throws IOException {
+	EncodedReferenceCollections.writeCompressedInt(value, out);
 }
 
 private void writeName(char[] name, DataOutputStream out) throws IOException {
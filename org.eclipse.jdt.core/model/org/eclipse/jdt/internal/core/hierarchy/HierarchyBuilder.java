@@ -63,11 +63,21 @@ public abstract class HierarchyBuilder {
 	protected String focusQualifiedName;
 	
 	public HierarchyBuilder(TypeHierarchy hierarchy) throws JavaModelException {
+		this(hierarchy, true);
+	}
+	/**
+	 * Creates a builder which resolves the types it connects only if specified
+	 * (the name lookup and the hierarchy resolver are null otherwise).
+	 */
+	protected HierarchyBuilder(TypeHierarchy hierarchy, boolean resolveTypes) throws JavaModelException {
 		
 		this.hierarchy = hierarchy;
-		JavaProject project = (JavaProject) hierarchy.javaProject();
-		
 		IType focusType = hierarchy.getType();
+		this.infoToHandle = new HashMap(5);
+		this.focusQualifiedName = focusType == null ? null : focusType.getFullyQualifiedName();
+		if (!resolveTypes) return;
+
+		JavaProject project = (JavaProject) hierarchy.javaProject();
 		org.eclipse.jdt.core.ICompilationUnit unitToLookInside = focusType == null ? null : focusType.getCompilationUnit();
 		org.eclipse.jdt.core.ICompilationUnit[] workingCopies = this.hierarchy.workingCopies;
 		org.eclipse.jdt.core.ICompilationUnit[] unitsToLookInside;
@@ -91,8 +101,6 @@ public abstract class HierarchyBuilder {
 				project.getOptions(true),
 				this,
 				new DefaultProblemFactory());
-		this.infoToHandle = new HashMap(5);
-		this.focusQualifiedName = focusType == null ? null : focusType.getFullyQualifiedName();
 	}
 	
 	public abstract void build(boolean computeSubtypes)
@@ -133,6 +141,18 @@ public abstract class HierarchyBuilder {
 		IType typeHandle,
 		IType superclassHandle,
 		IType[] superinterfaceHandles) {
+		connect(typeHandle, type.getKind(), type.getModifiers(), superclassHandle, superinterfaceHandles);
+	}
+	/**
+	 * Connect the supplied type of the given kind (see IGenericType) to its superclass & superinterfaces,
+	 * and record its modifiers.
+	 */
+	protected void connect(
+		IType typeHandle,
+		int kind,
+		int modifiers,
+		IType superclassHandle,
+		IType[] superinterfaceHandles) {
 
 		/*
 		 * Temporary workaround for 1G2O5WK: ITPJCORE:WINNT - NullPointerException when selecting "Show in Type Hierarchy" for a inner class
@@ -160,7 +180,7 @@ public abstract class HierarchyBuilder {
 			}
 		}
 		// now do the caching
-		switch (type.getKind()) {
+		switch (kind) {
 			case IGenericType.CLASS_DECL :
 			case IGenericType.ENUM_DECL :
 				if (superclassHandle == null) {
@@ -180,7 +200,7 @@ public abstract class HierarchyBuilder {
 		this.hierarchy.cacheSuperInterfaces(typeHandle, superinterfaceHandles);
 		 
 		// record flags
-		this.hierarchy.cacheFlags(typeHandle, type.getModifiers());
+		this.hierarchy.cacheFlags(typeHandle, modifiers);
 	}
 	/**
 	 * Returns a handle for the given generic type or null if not found.
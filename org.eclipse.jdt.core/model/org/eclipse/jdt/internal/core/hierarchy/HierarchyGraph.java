@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.core.hierarchy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.internal.compiler.util.SimpleLookupTable;
+import org.eclipse.jdt.internal.core.index.EntryResult;
+import org.eclipse.jdt.internal.core.index.Index;
+import org.eclipse.jdt.internal.core.search.indexing.IIndexConstants;
+import org.eclipse.jdt.internal.core.search.indexing.IndexManager;
+import org.eclipse.jdt.internal.core.search.indexing.ReadWriteMonitor;
+import org.eclipse.jdt.internal.core.util.Util;
+
+/**
+ * The supertypes of the types of the compilation units of a project, as recorded by its last build
+ * (see IndexManager.INDEX_TYPE_HIERARCHY).
+ * <p>
+ * Each type is described by a record "qualifiedName/modifiers/superclass/superinterface1:superinterface2"
+ * where member type names use '$' (see CompilationUnitScope#storeHierarchyInfo()). The records of a unit are
+ * answered only if they were recorded after its last modification.
+ * </p>
+ */
+public class HierarchyGraph implements IIndexConstants {
+
+	static final int EXACT_RULE = SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE;
+
+	SimpleLookupTable unitStamps = new SimpleLookupTable(); // document name -> modification stamp of the unit when its types were recorded
+	SimpleLookupTable unitTypes = new SimpleLookupTable(); // document name -> ArrayList of type records
+
+/**
+ * Reads the graph of the given project, or answers null if the project has none or if it changed since it was last built.
+ */
+public static HierarchyGraph read(IPath projectPath, IndexManager indexManager) {
+	if (indexManager.isHierarchyGraphStale(projectPath)) return null;
+	Index index = indexManager.getResolvedReferenceIndex(projectPath, false /*don't create if none*/);
+	if (index == null) return null;
+	ReadWriteMonitor monitor = index.monitor;
+	if (monitor == null) return null; // index got deleted since acquired
+
+	HierarchyGraph graph = new HierarchyGraph();
+	try {
+		monitor.enterRead(); // ask permission to read
+		index.startQuery();
+		try {
+			EntryResult[] stale = index.query(new char[][] {HIERARCHY_STALE}, null, EXACT_RULE);
+			if (stale != null && stale.length > 0) return null; // marked stale in a previous session
+			EntryResult[] units = index.query(new char[][] {HIERARCHY_UNIT}, null, EXACT_RULE);
+			if (units == null) return null;
+			for (int i = 0, l = units.length; i < l; i++) {
+				String stamp = new String(units[i].getWord());
+				String[] documentNames = units[i].getDocumentNames(index);
+				for (int j = 0, m = documentNames.length; j < m; j++)
+					graph.unitStamps.put(documentNames[j], stamp);
+			}
+			EntryResult[] types = index.query(new char[][] {HIERARCHY_TYPE}, null, EXACT_RULE);
+			for (int i = 0, l = types == null ? 0 : types.length; i < l; i++) {
+				char[] record = types[i].getWord();
+				String[] documentNames = types[i].getDocumentNames(index);
+				for (int j = 0, m = documentNames.length; j < m; j++) {
+					ArrayList records = (ArrayList) graph.unitTypes.get(documentNames[j]);
+					if (records == null)
+						graph.unitTypes.put(documentNames[j], records = new ArrayList(3));
+					records.add(record);
+				}
+			}
+		} finally {
+			index.stopQuery();
+		}
+	} catch (IOException e) {
+		return null; // all units will be resolved
+	} finally {
+		monitor.exitRead(); // finished reading
+	}
+	return graph;
+}
+/**
+ * Answers the type records of the given source file, or null if they were not recorded since its last modification.
+ */
+public char[][] getTypes(IResource resource) {
+	if (resource == null || resource.getType() != IResource.FILE) return null;
+	String documentName = Util.relativePath(resource.getFullPath(), 1/*remove project segment*/);
+	Object stamp = this.unitStamps.get(documentName);
+	if (stamp == null || !stamp.equals(Long.toString(resource.getModificationStamp())))
+		return null; // unknown or changed since its types were recorded
+	ArrayList records = (ArrayList) this.unitTypes.get(documentName);
+	if (records == null) return new char[0][]; // no types
+	char[][] types = new char[records.size()][];
+	records.toArray(types);
+	return types;
+}
+public String toString() {
+	return "Hierarchy graph of " + this.unitStamps.elementSize + " units"; //$NON-NLS-1$ //$NON-NLS-2$
+}
+}
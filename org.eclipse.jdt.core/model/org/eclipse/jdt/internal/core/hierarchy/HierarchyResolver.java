@@ -71,7 +71,7 @@ public class HierarchyResolver implements ITypeRequestor {
 	
 	private ReferenceBinding focusType;
 	private boolean superTypesOnly;
-	private boolean hasMissingSuperClass;
+	boolean hasMissingSuperClass;
 	LookupEnvironment lookupEnvironment;
 	private CompilerOptions options;
 	HierarchyBuilder builder;
@@ -19,6 +19,8 @@ import org.eclipse.jdt.core.*;
 import org.eclipse.jdt.core.compiler.CharOperation;
 import org.eclipse.jdt.core.search.*;
 import org.eclipse.jdt.internal.compiler.env.AccessRuleSet;
+import org.eclipse.jdt.internal.compiler.env.IConstants;
+import org.eclipse.jdt.internal.compiler.env.IGenericType;
 import org.eclipse.jdt.internal.compiler.env.IBinaryType;
 import org.eclipse.jdt.internal.compiler.env.ICompilationUnit;
 import org.eclipse.jdt.internal.compiler.problem.DefaultProblemFactory;
@@ -57,6 +59,12 @@ public class IndexBasedHierarchyBuilder extends HierarchyBuilder implements Suff
 	 * Cache used to record binaries recreated from index matches
 	 */
 	protected Map binariesFromIndexMatches;
+
+	/**
+	 * The hierarchy graphs recorded by the builder, per project path (null when the project has none)
+	 * @see IndexManager#INDEX_TYPE_HIERARCHY
+	 */
+	protected Map hierarchyGraphs;
 	
 	/**
 	 * Collection used to queue subtype index queries
@@ -249,6 +257,10 @@ private void buildFromPotentialSubtypes(String[] allPotentialSubTypes, HashSet l
 	
 	ArrayList potentialSubtypes = new ArrayList();
 
+	// the source types recorded in a hierarchy graph are connected without being resolved
+	boolean useHierarchyGraphs = IndexManager.INDEX_TYPE_HIERARCHY && !hasUnsavedChanges(workingCopies);
+	ArrayList graphTypes = new ArrayList();
+
 	try {
 		// create element infos for subtypes
 		HandleFactory factory = new HandleFactory();
@@ -271,6 +283,15 @@ private void buildFromPotentialSubtypes(String[] allPotentialSubTypes, HashSet l
 							focusCU :
 							factory.createOpenable(resourcePath, this.scope);
 					if (handle == null) continue; // match is outside classpath
+					if (useHierarchyGraphs && handle != focusCU && !localTypes.contains(resourcePath) && handle instanceof CompilationUnit) {
+						char[][] types = getGraphTypes((CompilationUnit) handle);
+						if (types != null) {
+							for (int j = 0, typesLength = types.length; j < typesLength; j++)
+								graphTypes.add(new Object[] {handle, types[j]});
+							worked(monitor, 2);
+							continue;
+						}
+					}
 				}
 				
 				IJavaProject project = handle.getJavaProject();
@@ -322,6 +343,9 @@ private void buildFromPotentialSubtypes(String[] allPotentialSubTypes, HashSet l
 			}
 		}
 		
+		if (graphTypes.size() > 0)
+			connectGraphTypes(graphTypes, focusType, workingCopies);
+		
 		// Add focus if not already in (case of a type with no explicit super type)
 		if (!this.hierarchy.contains(focusType)) {
 			this.hierarchy.addRootClass(focusType);
@@ -330,6 +354,122 @@ private void buildFromPotentialSubtypes(String[] allPotentialSubTypes, HashSet l
 		if (monitor != null) monitor.done();
 	}
 }
+/*
+ * Connects the given graph types which are subtypes of the focus type, i.e. whose superclass or one of whose
+ * superinterfaces is the focus type or one of its subtypes. Each element is an array of the compilation unit and
+ * of the record of the type (see HierarchyGraph).
+ */
+private void connectGraphTypes(ArrayList graphTypes, IType focusType, org.eclipse.jdt.core.ICompilationUnit[] workingCopies) {
+	int length = graphTypes.size();
+	boolean[] connected = new boolean[length];
+	HashMap knownTypes = new HashMap(); // fully qualified name -> handle of the focus type or of one of its subtypes
+	HashMap nameLookups = new HashMap(); // project -> name lookup of supertypes which are not known types
+	boolean changed = true;
+	while (changed) {
+		changed = false;
+		knownTypes.put(focusType.getFullyQualifiedName(), focusType);
+		IType[] subtypes = this.hierarchy.getAllSubtypes(focusType);
+		for (int i = 0, subtypesLength = subtypes.length; i < subtypesLength; i++)
+			knownTypes.put(subtypes[i].getFullyQualifiedName(), subtypes[i]);
+		for (int i = 0; i < length; i++) {
+			if (connected[i]) continue;
+			Object[] graphType = (Object[]) graphTypes.get(i);
+			CompilationUnit unit = (CompilationUnit) graphType[0];
+			char[][] fields = CharOperation.splitOn('/', (char[]) graphType[1]);
+			if (fields.length != 4) {
+				connected[i] = true; // malformed record
+				continue;
+			}
+			char[] superclassName = fields[2];
+			char[][] superinterfaceNames = CharOperation.splitOn(':', fields[3]);
+			boolean isSubtype = knownTypes.containsKey(new String(superclassName));
+			for (int j = 0, interfacesLength = superinterfaceNames.length; !isSubtype && j < interfacesLength; j++)
+				isSubtype = knownTypes.containsKey(new String(superinterfaceNames[j]));
+			if (!isSubtype) continue;
+
+			connected[i] = changed = true;
+			IType typeHandle = getGraphTypeHandle(unit, new String(fields[0]));
+			if (this.hierarchy.contains(typeHandle)) continue; // already resolved
+			int modifiers = Integer.parseInt(new String(fields[1]));
+			int kind;
+			if ((modifiers & IConstants.AccAnnotation) != 0) {
+				kind = IGenericType.ANNOTATION_TYPE_DECL;
+			} else if ((modifiers & IConstants.AccInterface) != 0) {
+				kind = IGenericType.INTERFACE_DECL;
+			} else if ((modifiers & IConstants.AccEnum) != 0) {
+				kind = IGenericType.ENUM_DECL;
+			} else {
+				kind = IGenericType.CLASS_DECL;
+			}
+			IJavaProject project = unit.getJavaProject();
+			NameLookup lookup = (NameLookup) nameLookups.get(project);
+			if (lookup == null) {
+				try {
+					lookup = ((JavaProject) project).newNameLookup(workingCopies);
+				} catch (JavaModelException e) {
+					continue; // project doesn't exist anymore
+				}
+				nameLookups.put(project, lookup);
+			}
+			IType superclass = superclassName.length == 0 ? null : findGraphSupertype(new String(superclassName), knownTypes, lookup);
+			IType[] superinterfaces = new IType[superinterfaceNames.length];
+			for (int j = 0, interfacesLength = superinterfaceNames.length; j < interfacesLength; j++)
+				superinterfaces[j] = findGraphSupertype(new String(superinterfaceNames[j]), knownTypes, lookup);
+			connect(typeHandle, kind, modifiers, superclass, superinterfaces);
+		}
+	}
+}
+/*
+ * Returns the handle of the given known type, or looks it up in the project of the graph type it is a supertype of.
+ */
+private IType findGraphSupertype(String qualifiedName, HashMap knownTypes, NameLookup lookup) {
+	IType type = (IType) knownTypes.get(qualifiedName);
+	if (type != null) return type;
+	int lastDot = qualifiedName.lastIndexOf('.');
+	String packageName = lastDot == -1 ? IPackageFragment.DEFAULT_PACKAGE_NAME : qualifiedName.substring(0, lastDot);
+	String typeQualifiedName = qualifiedName.substring(lastDot + 1).replace('$', '.');
+	return lookup.findType(typeQualifiedName, packageName, false, NameLookup.ACCEPT_ALL);
+}
+/*
+ * Returns the handle of the type of the given unit with the given qualified name (where member type names use '$').
+ */
+private IType getGraphTypeHandle(CompilationUnit unit, String qualifiedName) {
+	char[][] typeNames = CharOperation.splitOn('$', qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1).toCharArray());
+	IType type = unit.getType(new String(typeNames[0]));
+	for (int i = 1, length = typeNames.length; i < length; i++)
+		type = type.getType(new String(typeNames[i]));
+	return type;
+}
+/*
+ * Returns the recorded types of the given compilation unit, or null if the hierarchy graph of its project doesn't know them.
+ */
+private char[][] getGraphTypes(CompilationUnit unit) {
+	IPath projectPath = unit.getJavaProject().getProject().getFullPath();
+	if (this.hierarchyGraphs == null)
+		this.hierarchyGraphs = new HashMap(3);
+	HierarchyGraph graph;
+	if (this.hierarchyGraphs.containsKey(projectPath)) {
+		graph = (HierarchyGraph) this.hierarchyGraphs.get(projectPath);
+	} else {
+		graph = HierarchyGraph.read(projectPath, JavaModelManager.getJavaModelManager().getIndexManager());
+		this.hierarchyGraphs.put(projectPath, graph);
+	}
+	return graph == null ? null : graph.getTypes(unit.getResource());
+}
+/*
+ * Returns whether one of the given working copies has unsaved changes, which may change the supertypes
+ * of the types recorded in a hierarchy graph.
+ */
+private boolean hasUnsavedChanges(org.eclipse.jdt.core.ICompilationUnit[] workingCopies) {
+	for (int i = 0, length = workingCopies == null ? 0 : workingCopies.length; i < length; i++) {
+		try {
+			if (workingCopies[i].hasUnsavedChanges()) return true;
+		} catch (JavaModelException e) {
+			return true;
+		}
+	}
+	return false;
+}
 protected ICompilationUnit createCompilationUnitFromPath(Openable handle, String osPath) {
 	ICompilationUnit unit = super.createCompilationUnitFromPath(handle, osPath);
 	this.cuToHandle.put(unit, handle);
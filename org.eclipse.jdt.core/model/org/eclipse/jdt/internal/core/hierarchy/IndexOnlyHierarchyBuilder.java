@@ -0,0 +1,358 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.core.hierarchy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.core.search.IJavaSearchConstants;
+import org.eclipse.jdt.core.search.IJavaSearchScope;
+import org.eclipse.jdt.core.search.SearchParticipant;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.internal.compiler.env.AccessRuleSet;
+import org.eclipse.jdt.internal.compiler.env.IGenericType;
+import org.eclipse.jdt.internal.compiler.util.HashtableOfObject;
+import org.eclipse.jdt.internal.core.ClassFile;
+import org.eclipse.jdt.internal.core.JavaModelManager;
+import org.eclipse.jdt.internal.core.Member;
+import org.eclipse.jdt.internal.core.Openable;
+import org.eclipse.jdt.internal.core.search.IndexQueryRequestor;
+import org.eclipse.jdt.internal.core.search.JavaSearchParticipant;
+import org.eclipse.jdt.internal.core.search.PatternSearchJob;
+import org.eclipse.jdt.internal.core.search.indexing.IIndexConstants;
+import org.eclipse.jdt.internal.core.search.indexing.IndexManager;
+import org.eclipse.jdt.internal.core.search.matching.QualifiedSuperTypeReferencePattern;
+import org.eclipse.jdt.internal.core.search.matching.TypeDeclarationPattern;
+import org.eclipse.jdt.internal.core.util.HandleFactory;
+
+/**
+ * Builds an approximate type hierarchy from the type declarations and the qualified super type references
+ * of the indexes only: no compilation unit is parsed and no type is resolved.
+ * <p>
+ * The supertype of a qualified reference is the first of its candidate names which is declared in the indexes
+ * (see QualifiedSuperTypeReferencePattern). Thus the hierarchy may differ from the one computed by
+ * the IndexBasedHierarchyBuilder when a supertype is inherited as a member type, when a package is
+ * named like a type, or when the indexes are not up to date. Local and anonymous types are ignored,
+ * as well as the working copies.
+ * </p>
+ */
+public class IndexOnlyHierarchyBuilder extends HierarchyBuilder implements IIndexConstants {
+
+	static final int EXACT_RULE = SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE;
+
+	/**
+	 * The scope this hierarchy builder should restrain results to.
+	 */
+	protected IJavaSearchScope scope;
+
+	protected IndexManager indexManager;
+	protected HandleFactory factory = new HandleFactory();
+
+	/*
+	 * The declarations of the types whose simple name was queried:
+	 * qualified name (using '$' for member types) -> {document path, TypeDeclarationPattern}
+	 */
+	protected HashtableOfObject declarations = new HashtableOfObject(11);
+	protected HashSet declarationQueries = new HashSet(11);
+
+	/*
+	 * The qualified references to the supertypes whose simple name was queried:
+	 * super simple name -> ArrayList of {document path, QualifiedSuperTypeReferencePattern}
+	 */
+	protected HashtableOfObject references = new HashtableOfObject(11);
+
+	/*
+	 * All the qualified references to supertypes, read once the supertypes of a type are needed (see #getSupertypeReferences):
+	 * qualified name of the referencing type (using '$' for member types) -> ArrayList of {document path, QualifiedSuperTypeReferencePattern}
+	 */
+	protected HashtableOfObject supertypeReferences;
+
+	/*
+	 * The handles of the types met so far: qualified name -> IType (or this map itself if the type has no handle)
+	 */
+	protected Map handles = new HashMap(11);
+
+	/*
+	 * The qualified names of the types which are connected already
+	 */
+	protected HashSet connectedTypes = new HashSet(11);
+
+public IndexOnlyHierarchyBuilder(TypeHierarchy hierarchy, IJavaSearchScope scope) throws JavaModelException {
+	super(hierarchy, false /*don't resolve*/);
+	this.scope = scope;
+	this.indexManager = JavaModelManager.getJavaModelManager().getIndexManager();
+}
+public void build(boolean computeSubtypes) {
+	JavaModelManager manager = JavaModelManager.getJavaModelManager();
+	try {
+		// optimize access to zip files while building hierarchy
+		manager.cacheZipFiles();
+
+		IType focusType = getType();
+		this.hierarchy.initialize(1);
+		if (focusType == null) return;
+		IProgressMonitor monitor = this.hierarchy.progressMonitor;
+		if (monitor != null) monitor.beginTask("", 100); //$NON-NLS-1$
+		try {
+			if (((Member) focusType).getOuterMostLocalContext() != null) {
+				// local and anonymous types are not indexed: the hierarchy only contains the focus type
+				this.hierarchy.addRootClass(focusType);
+				return;
+			}
+			String focusName = focusType.getFullyQualifiedName('$');
+			this.handles.put(focusName, focusType);
+			if (computeSubtypes)
+				buildSubtypes(focusName, monitor);
+			buildSupertypes(focusName, monitor);
+
+			// add focus if not already in (case of a type which is not indexed)
+			if (!this.hierarchy.contains(focusType))
+				this.hierarchy.addRootClass(focusType);
+		} finally {
+			if (monitor != null) monitor.done();
+		}
+	} finally {
+		manager.flushZipFiles();
+	}
+}
+/*
+ * Connects the supertypes of the given type, and recursively their own supertypes.
+ */
+protected void buildSupertypes(String qualifiedName, IProgressMonitor monitor) {
+	String[] supertypeNames = connect(qualifiedName, monitor);
+	for (int i = 0, length = supertypeNames == null ? 0 : supertypeNames.length; i < length; i++)
+		if (supertypeNames[i] != null)
+			buildSupertypes(supertypeNames[i], monitor);
+}
+/*
+ * Connects the subtypes of the given type, and recursively their own subtypes.
+ */
+protected void buildSubtypes(String focusName, IProgressMonitor monitor) {
+	ArrayList queue = new ArrayList();
+	HashSet visited = new HashSet();
+	queue.add(focusName);
+	visited.add(focusName);
+	for (int index = 0; index < queue.size(); index++) {
+		String qualifiedName = (String) queue.get(index);
+		int lastSeparator = Math.max(qualifiedName.lastIndexOf('.'), qualifiedName.lastIndexOf('$'));
+		char[] simpleName = qualifiedName.substring(lastSeparator + 1).toCharArray();
+		ArrayList candidates = getReferences(simpleName, monitor);
+		for (int i = 0, size = candidates.size(); i < size; i++) {
+			Object[] reference = (Object[]) candidates.get(i);
+			QualifiedSuperTypeReferencePattern record = (QualifiedSuperTypeReferencePattern) reference[1];
+			if (!qualifiedName.equals(resolve(record.superTypeNames, monitor))) continue;
+			String subtypeName = getQualifiedName(record.pkgName, record.enclosingTypeName, record.simpleName);
+			if (visited.contains(subtypeName)) continue;
+			Object[] declaration = getDeclaration(subtypeName, monitor);
+			if (declaration == null || !declaration[0].equals(reference[0])) continue; // the reference of a duplicate type
+			visited.add(subtypeName);
+			connect(subtypeName, monitor);
+			queue.add(subtypeName);
+		}
+	}
+}
+/*
+ * Connects the type with the given qualified name to its supertypes,
+ * and answers the qualified names of these supertypes (null for the ones which are not declared).
+ * Answers null if the type is not declared or if it was connected already.
+ */
+protected String[] connect(String qualifiedName, IProgressMonitor monitor) {
+	if (!this.connectedTypes.add(qualifiedName)) return null;
+	Object[] declaration = getDeclaration(qualifiedName, monitor);
+	if (declaration == null) return null;
+	IType typeHandle = getHandle(qualifiedName, monitor);
+	if (typeHandle == null) return null;
+	String documentPath = (String) declaration[0];
+	TypeDeclarationPattern type = (TypeDeclarationPattern) declaration[1];
+
+	// the qualified references of the type, from the document which declares it
+	ArrayList records = getSupertypeReferences(qualifiedName, monitor);
+	String superclassName = null;
+	ArrayList superinterfaceNames = new ArrayList(records.size());
+	for (int i = 0, size = records.size(); i < size; i++) {
+		Object[] reference = (Object[]) records.get(i);
+		if (!documentPath.equals(reference[0])) continue;
+		QualifiedSuperTypeReferencePattern record = (QualifiedSuperTypeReferencePattern) reference[1];
+		String supertypeName = resolve(record.superTypeNames, monitor);
+		if (record.superClassOrInterface == CLASS_SUFFIX)
+			superclassName = supertypeName;
+		else if (!superinterfaceNames.contains(supertypeName))
+			superinterfaceNames.add(supertypeName);
+	}
+	IType superclassHandle = superclassName == null ? null : getHandle(superclassName, monitor);
+	int length = superinterfaceNames.size();
+	IType[] superinterfaceHandles = new IType[length];
+	String[] supertypeNames = new String[length + 1];
+	for (int i = 0; i < length; i++) {
+		String superinterfaceName = (String) superinterfaceNames.get(i);
+		if ((superinterfaceHandles[i] = superinterfaceName == null ? null : getHandle(superinterfaceName, monitor)) != null)
+			supertypeNames[i] = superinterfaceName;
+	}
+	if (superclassHandle != null)
+		supertypeNames[length] = superclassName;
+
+	int kind;
+	switch (type.typeSuffix) {
+		case INTERFACE_SUFFIX :
+			kind = IGenericType.INTERFACE_DECL;
+			break;
+		case ENUM_SUFFIX :
+			kind = IGenericType.ENUM_DECL;
+			break;
+		case ANNOTATION_TYPE_SUFFIX :
+			kind = IGenericType.ANNOTATION_TYPE_DECL;
+			break;
+		default :
+			kind = IGenericType.CLASS_DECL;
+	}
+	connect(typeHandle, kind, type.modifiers, superclassHandle, superinterfaceHandles);
+	return supertypeNames;
+}
+/*
+ * Answers {document path, TypeDeclarationPattern} for the given qualified type name, or null if it is not declared.
+ */
+protected Object[] getDeclaration(String qualifiedName, IProgressMonitor monitor) {
+	int lastSeparator = Math.max(qualifiedName.lastIndexOf('.'), qualifiedName.lastIndexOf('$'));
+	String simpleName = qualifiedName.substring(lastSeparator + 1);
+	if (this.declarationQueries.add(simpleName)) {
+		ArrayList records = new ArrayList();
+		query(new TypeDeclarationPattern(null, null, simpleName.toCharArray(), TYPE_SUFFIX, EXACT_RULE), records, monitor);
+		for (int i = 0, size = records.size(); i < size; i++) {
+			Object[] declaration = (Object[]) records.get(i);
+			TypeDeclarationPattern record = (TypeDeclarationPattern) declaration[1];
+			if (record.enclosingTypeNames == ONE_ZERO_CHAR) continue; // local or anonymous type
+			char[] name = getQualifiedName(record.pkg, CharOperation.concatWith(record.enclosingTypeNames, '$'), record.simpleName).toCharArray();
+			if (this.declarations.get(name) == null) // the first declaration wins
+				this.declarations.put(name, declaration);
+		}
+	}
+	return (Object[]) this.declarations.get(qualifiedName.toCharArray());
+}
+/*
+ * Answers the handle of the given declared type, or null if it cannot be found in the scope.
+ */
+protected IType getHandle(String qualifiedName, IProgressMonitor monitor) {
+	Object handle = this.handles.get(qualifiedName);
+	if (handle == null) {
+		handle = this.handles; // no handle
+		Object[] declaration = getDeclaration(qualifiedName, monitor);
+		if (declaration != null) {
+			Openable openable = this.factory.createOpenable((String) declaration[0], this.scope);
+			if (openable instanceof ICompilationUnit) {
+				TypeDeclarationPattern record = (TypeDeclarationPattern) declaration[1];
+				char[][] enclosingTypeNames = record.enclosingTypeNames;
+				int length = enclosingTypeNames == null ? 0 : enclosingTypeNames.length;
+				IType type = length == 0
+					? ((ICompilationUnit) openable).getType(new String(record.simpleName))
+					: ((ICompilationUnit) openable).getType(new String(enclosingTypeNames[0]));
+				for (int i = 1; i < length; i++)
+					type = type.getType(new String(enclosingTypeNames[i]));
+				if (length > 0)
+					type = type.getType(new String(record.simpleName));
+				handle = type;
+			} else if (openable instanceof ClassFile) {
+				handle = ((ClassFile) openable).getType();
+			}
+		}
+		this.handles.put(qualifiedName, handle);
+	}
+	return handle == this.handles ? null : (IType) handle;
+}
+/*
+ * Answers {document path, QualifiedSuperTypeReferencePattern} for each qualified reference to a supertype with the given simple name.
+ */
+protected ArrayList getReferences(char[] superSimpleName, IProgressMonitor monitor) {
+	ArrayList records = (ArrayList) this.references.get(superSimpleName);
+	if (records == null) {
+		records = new ArrayList();
+		if (this.supertypeReferences == null) // else all the references are known already
+			query(new QualifiedSuperTypeReferencePattern(superSimpleName, EXACT_RULE), records, monitor);
+		this.references.put(superSimpleName, records);
+	}
+	return records;
+}
+/*
+ * Answers {document path, QualifiedSuperTypeReferencePattern} for each qualified reference to a supertype of the given type.
+ * The index keys start with the simple name of the supertype, so the references of a type cannot be queried alone:
+ * all the references are read with one query the first time, and grouped by referencing type and by supertype simple name.
+ */
+protected ArrayList getSupertypeReferences(String qualifiedName, IProgressMonitor monitor) {
+	if (this.supertypeReferences == null) {
+		ArrayList records = new ArrayList();
+		query(new QualifiedSuperTypeReferencePattern(null, EXACT_RULE), records, monitor);
+		this.supertypeReferences = new HashtableOfObject(records.size());
+		this.references = new HashtableOfObject(records.size());
+		for (int i = 0, size = records.size(); i < size; i++) {
+			Object[] reference = (Object[]) records.get(i);
+			QualifiedSuperTypeReferencePattern record = (QualifiedSuperTypeReferencePattern) reference[1];
+			addReference(this.supertypeReferences, getQualifiedName(record.pkgName, record.enclosingTypeName, record.simpleName).toCharArray(), reference);
+			addReference(this.references, record.superSimpleName, reference);
+		}
+	}
+	ArrayList records = (ArrayList) this.supertypeReferences.get(qualifiedName.toCharArray());
+	return records == null ? new ArrayList(0) : records;
+}
+private void addReference(HashtableOfObject table, char[] key, Object[] reference) {
+	ArrayList records = (ArrayList) table.get(key);
+	if (records == null)
+		table.put(key, records = new ArrayList(1));
+	records.add(reference);
+}
+/*
+ * Answers the qualified name of the given type.
+ */
+protected String getQualifiedName(char[] packageName, char[] enclosingTypeName, char[] simpleName) {
+	StringBuffer buffer = new StringBuffer();
+	if (packageName != null && packageName.length > 0)
+		buffer.append(packageName).append('.');
+	if (enclosingTypeName != null && enclosingTypeName.length > 0)
+		buffer.append(enclosingTypeName).append('$');
+	buffer.append(simpleName);
+	return buffer.toString();
+}
+/*
+ * Adds {document path, index record} to the given records for each index entry matching the given pattern.
+ */
+protected void query(SearchPattern pattern, final ArrayList records, IProgressMonitor monitor) {
+	IndexQueryRequestor requestor = new IndexQueryRequestor() {
+		public boolean acceptIndexMatch(String documentPath, SearchPattern indexRecord, SearchParticipant participant, AccessRuleSet access) {
+			synchronized (records) {
+				records.add(new Object[] {documentPath, indexRecord});
+			}
+			return true;
+		}
+		public boolean keepsIndexRecords() {
+			return true;
+		}
+	};
+	PatternSearchJob job = new PatternSearchJob(pattern, new JavaSearchParticipant(), this.scope, requestor);
+	this.indexManager.performConcurrentJob(job, IJavaSearchConstants.WAIT_UNTIL_READY_TO_SEARCH, null); // no sub progress monitor since its too costly for deep hierarchies
+	worked(monitor, 1);
+}
+/*
+ * Answers the first of the given candidate names which is declared, or null if none is.
+ */
+protected String resolve(char[][] candidateNames, IProgressMonitor monitor) {
+	for (int i = 0, length = candidateNames.length; i < length; i++) {
+		String candidateName = new String(candidateNames[i]);
+		if (getDeclaration(candidateName, monitor) != null)
+			return candidateName;
+	}
+	return null;
+}
+}
@@ -12,9 +12,12 @@ package org.eclipse.jdt.internal.core.hierarchy;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.jdt.core.IClassFile;
 import org.eclipse.jdt.core.ICompilationUnit;
@@ -29,6 +32,75 @@ import org.eclipse.jdt.internal.core.JavaProject;
 import org.eclipse.jdt.internal.core.Openable;
 
 public class RegionBasedHierarchyBuilder extends HierarchyBuilder {
+
+	/*
+	 * Maximum number of threads resolving the openables of one project, including the thread building the hierarchy.
+	 * The openables are resolved all at once when 1, the default. With several threads the hierarchy has the same types,
+	 * supertypes and subtypes, but the partitions connect their types in a different order, so the arrays of root classes
+	 * and subtypes may be in a different order.
+	 */
+	public static int MAX_RESOLVER_THREADS = 1;
+
+	/*
+	 * Minimum number of openables resolved by one thread, as each partition of the openables
+	 * has its own hierarchy resolver, thus its own lookup environment and name environment.
+	 */
+	public static int MIN_PARTITION_SIZE = 100;
+
+	/*
+	 * Resolves one partition of the openables of a project with its own hierarchy resolver, in a hierarchy of its own.
+	 * The types it connects are recorded with the simple names of their missing supertypes, so that
+	 * they can be connected in the hierarchy being built once all the partitions are resolved.
+	 */
+	static class PartitionResolver extends HierarchyBuilder implements Runnable {
+		Openable[] openables;
+		IProgressMonitor monitor;
+		ArrayList connectedTypes = new ArrayList(); // type handle, kind, modifiers, superclass handle, superinterface handles and missing types of each connected type
+		Object[] objectType; // java.lang.Object is connected after all the other types, and only if no superclass is missing
+		int missingTypesCount = 0;
+		Throwable exception;
+
+		PartitionResolver(RegionBasedTypeHierarchy partitionHierarchy, Openable[] openables, IProgressMonitor monitor) throws JavaModelException {
+			super(partitionHierarchy);
+			this.openables = openables;
+			this.monitor = monitor;
+		}
+		public void build(boolean computeSubtypes) {
+			// the partition is resolved by resolve()
+		}
+		protected void connect(IType typeHandle, int kind, int modifiers, IType superclassHandle, IType[] superinterfaceHandles) {
+			if (typeHandle == null) return;
+			ArrayList missingTypes = this.hierarchy.missingTypes;
+			int missingLength = missingTypes.size() - this.missingTypesCount;
+			String[] missing = new String[missingLength];
+			for (int i = 0; i < missingLength; i++)
+				missing[i] = (String) missingTypes.get(this.missingTypesCount + i);
+			this.missingTypesCount += missingLength;
+			Object[] connectedType = new Object[] {typeHandle, new Integer(kind), new Integer(modifiers), superclassHandle, superinterfaceHandles, missing};
+			if (superclassHandle == null && typeHandle.getFullyQualifiedName().equals("java.lang.Object")) //$NON-NLS-1$
+				this.objectType = connectedType;
+			else
+				this.connectedTypes.add(connectedType);
+		}
+		void resolve() {
+			try {
+				this.hierarchyResolver.resolve(this.openables, null, this.monitor);
+			} catch (RuntimeException e) { // includes cancellation
+				this.exception = e;
+			} catch (Error e) {
+				this.exception = e;
+			}
+		}
+		public void run() {
+			JavaModelManager manager = JavaModelManager.getJavaModelManager();
+			manager.cacheZipFiles(); // the zip files are cached per thread
+			try {
+				resolve();
+			} finally {
+				manager.flushZipFiles();
+			}
+		}
+	}
 	
 	public RegionBasedHierarchyBuilder(TypeHierarchy hierarchy)
 		throws JavaModelException {
@@ -84,7 +156,13 @@ private void createTypeHierarchyBasedOnRegion(HashMap allOpenablesInRegion, IPro
 			// resolve
 			if (monitor != null) monitor.beginTask("", size * 2/* 1 for build binding, 1 for connect hierarchy*/); //$NON-NLS-1$
 			if (size > 0) {
-				this.hierarchyResolver.resolve(openables, null, monitor);
+				// the openables of a focused hierarchy are resolved at once since the focus type must be known to each resolver
+				int threads = this.hierarchy.focusType == null ? Math.min(MAX_RESOLVER_THREADS, openables.length / MIN_PARTITION_SIZE) : 1;
+				if (threads > 1) {
+					resolveConcurrently(openables, threads, monitor);
+				} else {
+					this.hierarchyResolver.resolve(openables, null, monitor);
+				}
 			}
 		} finally {
 			if (monitor != null) monitor.done();
@@ -92,6 +170,92 @@ private void createTypeHierarchyBasedOnRegion(HashMap allOpenablesInRegion, IPro
 	}
 }
 	
+/*
+ * Resolves the given openables of one project with the given number of threads, each thread resolving a partition of the openables.
+ * The types connected by each partition are then connected in this hierarchy in the partition order. A type is connected once,
+ * and java.lang.Object is connected last unless a superclass is missing, as if all the openables were resolved at once.
+ */
+private void resolveConcurrently(Openable[] openables, int threads, IProgressMonitor monitor) {
+	final IProgressMonitor progressMonitor = monitor;
+	IProgressMonitor partitionMonitor = new NullProgressMonitor() {
+		// the progress is reported once all the partitions are resolved, only the cancellation is checked while resolving
+		public boolean isCanceled() {
+			return progressMonitor != null && progressMonitor.isCanceled();
+		}
+	};
+	int length = openables.length;
+	int partitionSize = (length + threads - 1) / threads;
+	int partitionsLength = (length + partitionSize - 1) / partitionSize;
+	PartitionResolver[] partitions = new PartitionResolver[partitionsLength];
+	RegionBasedTypeHierarchy regionHierarchy = (RegionBasedTypeHierarchy) this.hierarchy;
+	try {
+		for (int i = 0; i < partitionsLength; i++) {
+			int start = i * partitionSize;
+			Openable[] partition = new Openable[Math.min(partitionSize, length - start)];
+			System.arraycopy(openables, start, partition, 0, partition.length);
+			RegionBasedTypeHierarchy partitionHierarchy = new RegionBasedTypeHierarchy(regionHierarchy.region, regionHierarchy.workingCopies, null, true);
+			partitionHierarchy.initialize(partition.length);
+			partitions[i] = new PartitionResolver(partitionHierarchy, partition, partitionMonitor);
+		}
+	} catch (JavaModelException e) {
+		// project doesn't exist any longer: resolve all the openables at once
+		this.hierarchyResolver.resolve(openables, null, monitor);
+		return;
+	}
+
+	// the first partition is resolved by this thread
+	Thread[] helpers = new Thread[partitionsLength - 1];
+	for (int i = 1; i < partitionsLength; i++) {
+		helpers[i - 1] = new Thread(partitions[i], "Type hierarchy resolver - " + i); //$NON-NLS-1$
+		helpers[i - 1].setDaemon(true);
+		helpers[i - 1].start();
+	}
+	partitions[0].resolve();
+	for (int i = 0; i < helpers.length; i++) {
+		try {
+			helpers[i].join();
+		} catch (InterruptedException e) {
+			// ignore
+		}
+	}
+
+	// connect the types in the partition order
+	HashSet connected = new HashSet();
+	Object[] objectType = null;
+	boolean hasMissingSuperClass = this.hierarchyResolver.hasMissingSuperClass;
+	for (int i = 0; i < partitionsLength; i++) {
+		PartitionResolver partition = partitions[i];
+		if (partition.exception instanceof RuntimeException) throw (RuntimeException) partition.exception;
+		if (partition.exception instanceof Error) throw (Error) partition.exception;
+		if (monitor != null && monitor.isCanceled()) throw new OperationCanceledException();
+		for (int j = 0, size = partition.connectedTypes.size(); j < size; j++)
+			connectPartitionType((Object[]) partition.connectedTypes.get(j), connected);
+		if (objectType == null)
+			objectType = partition.objectType;
+		hasMissingSuperClass |= partition.hierarchyResolver.hasMissingSuperClass;
+		worked(monitor, partition.openables.length);
+	}
+	if (!hasMissingSuperClass && objectType != null)
+		connectPartitionType(objectType, connected);
+	this.hierarchyResolver.hasMissingSuperClass = hasMissingSuperClass; // as if the openables were resolved by this hierarchy resolver
+}
+/*
+ * Connects a type recorded by a partition resolver, unless it was connected already.
+ */
+private void connectPartitionType(Object[] connectedType, HashSet connected) {
+	IType typeHandle = (IType) connectedType[0];
+	if (!connected.add(typeHandle)) return;
+	String[] missing = (String[]) connectedType[5];
+	for (int i = 0, length = missing.length; i < length; i++)
+		this.hierarchy.missingTypes.add(missing[i]);
+	connect(
+		typeHandle,
+		((Integer) connectedType[1]).intValue(),
+		((Integer) connectedType[2]).intValue(),
+		(IType) connectedType[3],
+		(IType[]) connectedType[4]);
+}
+	
 	/**
 	 * Returns all of the openables defined in the region of this type hierarchy.
 	 * Returns a map from IJavaProject to ArrayList of Openable
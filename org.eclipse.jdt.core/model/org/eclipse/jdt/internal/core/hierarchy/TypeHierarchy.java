@@ -147,6 +147,11 @@ public class TypeHierarchy implements ITypeHierarchy, IElementChangedListener {
 	 * Whether this hierarchy needs refresh
 	 */
 	public boolean needsRefresh = true;
+
+	/*
+	 * Whether this hierarchy is computed from the indexes only (see IndexOnlyHierarchyBuilder)
+	 */
+	public boolean indexOnly = false;
 	
 	/*
 	 * Collects changes to types
@@ -314,9 +319,13 @@ protected void checkCanceled() {
 protected void compute() throws JavaModelException, CoreException {
 	if (this.focusType != null) {
 		HierarchyBuilder builder = 
-			new IndexBasedHierarchyBuilder(
-				this, 
-				this.scope);
+			this.indexOnly ?
+				(HierarchyBuilder) new IndexOnlyHierarchyBuilder(
+					this, 
+					this.scope) :
+				new IndexBasedHierarchyBuilder(
+					this, 
+					this.scope);
 		builder.build(this.computeSubtypes);
 	} // else a RegionBasedTypeHierarchy should be used
 }
@@ -532,6 +532,29 @@ public class SearchEngine {
 		this.basicEngine.search(pattern, participants, scope, requestor, monitor);
 	}
 
+	/**
+	 * Searches for at most the given number of matches of a given search pattern.
+	 * Unlike {@link #search(SearchPattern, SearchParticipant[], IJavaSearchScope, SearchRequestor, IProgressMonitor)},
+	 * the matches of each index are reported as soon as they are found, and the search stops
+	 * once the maximum number of matches has been reported. This is meant for clients which only
+	 * need the first matches, e.g. to present a bounded list of proposals.
+	 *
+	 * @param pattern the pattern to search
+	 * @param participants the particpants in the search
+	 * @param scope the search scope
+	 * @param requestor the requestor to report the matches to
+	 * @param maxResults the maximum number of matches to report, or <code>0</code> for no limit
+	 * @param monitor the progress monitor used to report progress
+	 * @exception CoreException if the search failed. Reasons include:
+	 *	<ul>
+	 *		<li>the classpath is incorrectly set</li>
+	 *	</ul>
+	 * @since 3.1
+	 */
+	public void search(SearchPattern pattern, SearchParticipant[] participants, IJavaSearchScope scope, SearchRequestor requestor, int maxResults, IProgressMonitor monitor) throws CoreException {
+		this.basicEngine.search(pattern, participants, scope, requestor, maxResults, monitor);
+	}
+
 	/**
 	 * Searches for all top-level types and member types in the given scope.
 	 * The search can be selecting specific types (given a package or a type name
@@ -595,6 +618,30 @@ public class SearchEngine {
 		this.basicEngine.searchAllTypeNames(packageName, typeName, matchRule, searchFor, scope, requestorWrapper, waitingPolicy, progressMonitor);
 	}
 
+	/**
+	 * Searches for at most the given number of top-level types and member types in the given scope.
+	 * The types are reported as soon as they are found in the indexes, and the search stops
+	 * once the maximum number of types has been reported.
+	 * 
+	 * @param maxResults the maximum number of types to report, or <code>0</code> for no limit
+	 * @see #searchAllTypeNames(char[], char[], int, int, IJavaSearchScope, TypeNameRequestor, int, IProgressMonitor)
+	 * @since 3.1
+	 */
+	public void searchAllTypeNames(
+		final char[] packageName, 
+		final char[] typeName,
+		final int matchRule, 
+		int searchFor, 
+		IJavaSearchScope scope, 
+		final TypeNameRequestor nameRequestor,
+		int maxResults,
+		int waitingPolicy,
+		IProgressMonitor progressMonitor)  throws JavaModelException {
+		
+		TypeNameRequestorWrapper requestorWrapper = new TypeNameRequestorWrapper(nameRequestor);
+		this.basicEngine.searchAllTypeNames(packageName, typeName, matchRule, searchFor, scope, requestorWrapper, maxResults, waitingPolicy, progressMonitor);
+	}
+
 	/**
 	 * Searches for all top-level types and member types in the given scope matching any of the given qualifications
 	 * and type names in a case sensitive way.
@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.core.index;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Hashtable;
+
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.util.HashtableOfObject;
+import org.eclipse.jdt.internal.core.util.LRUCache;
+
+/**
+ * The category tables read from disk indexes, shared by all the indexes.
+ * The space of a table is its estimated memory footprint in kilobytes: once the cached tables
+ * exceed the space limit, the least recently used tables are discarded, and a table bigger
+ * than the limit is never cached.
+ * <p>
+ * Unlike its superclass, this cache is thread-safe since queries run concurrently.
+ * </p>
+ */
+public class CategoryTableCache extends LRUCache {
+
+/*
+ * Default space limit in kilobytes: 1/32 of the maximum heap size, at least one megabyte.
+ */
+public static int DEFAULT_SPACE_LIMIT = (int) Math.max(1024, Runtime.getRuntime().maxMemory() / 1024 / 32);
+
+public static final CategoryTableCache SHARED_CACHE = new CategoryTableCache(DEFAULT_SPACE_LIMIT);
+
+private int lastIndexId;
+private int hits;
+private int misses;
+private int evictions;
+
+static class Key {
+	int indexId;
+	char[] categoryName;
+	int hashCode;
+
+	Key(int indexId, char[] categoryName) {
+		this.indexId = indexId;
+		this.categoryName = categoryName;
+		this.hashCode = indexId * 31 + CharOperation.hashCode(categoryName);
+	}
+	public boolean equals(Object o) {
+		if (!(o instanceof Key)) return false;
+		Key other = (Key) o;
+		return this.indexId == other.indexId && CharOperation.equals(this.categoryName, other.categoryName);
+	}
+	public int hashCode() {
+		return this.hashCode;
+	}
+	public String toString() {
+		return this.indexId + "/" + new String(this.categoryName); //$NON-NLS-1$
+	}
+}
+
+static class CachedTable {
+	HashtableOfObject table;
+	int space;
+
+	CachedTable(HashtableOfObject table) {
+		this.table = table;
+		// words & their arrays of document numbers, plus the key & value slots of the table
+		long bytes = 8L * (table.keyTable.length + 4);
+		char[][] words = table.keyTable;
+		Object[] values = table.valueTable;
+		for (int i = 0, l = words.length; i < l; i++) {
+			if (words[i] != null) {
+				bytes += 16 + 2 * words[i].length;
+				bytes += values[i] instanceof int[] ? 16 + 4 * ((int[]) values[i]).length : 16;
+			}
+		}
+		this.space = (int) (bytes / 1024) + 1;
+	}
+	public String toString() {
+		return this.table.elementSize + " words (" + this.space + "KB)"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
+
+public CategoryTableCache(int spaceLimit) {
+	super(spaceLimit);
+	this.fEntryTable = new Hashtable(101); // the limit is a number of kilobytes, not of entries
+}
+/**
+ * Answers the cached category table of the given index, or null if it is not cached.
+ */
+public synchronized HashtableOfObject get(int indexId, char[] categoryName) {
+	CachedTable cachedTable = (CachedTable) get(new Key(indexId, categoryName));
+	if (cachedTable == null) {
+		this.misses++;
+		return null;
+	}
+	this.hits++;
+	return cachedTable.table;
+}
+/**
+ * Caches the given category table of the given index, replacing any previous table.
+ * Tables must not be modified once cached since concurrent queries may be using them.
+ */
+public void put(int indexId, char[] categoryName, HashtableOfObject table) {
+	CachedTable cachedTable = new CachedTable(table); // compute the space outside of the lock
+	synchronized (this) {
+		put(new Key(indexId, categoryName), cachedTable);
+	}
+}
+/**
+ * Discards the tables of the given index, which is no longer used.
+ */
+public synchronized void flushIndex(int indexId) {
+	ArrayList keys = new ArrayList();
+	for (Enumeration e = keys(); e.hasMoreElements();) {
+		Key key = (Key) e.nextElement();
+		if (key.indexId == indexId)
+			keys.add(key);
+	}
+	for (int i = 0, l = keys.size(); i < l; i++)
+		flush(keys.get(i));
+}
+public synchronized void flush() {
+	super.flush();
+}
+/**
+ * Answers the number of lookups which found a cached table since the statistics were reset.
+ */
+public synchronized int getHitCount() {
+	return this.hits;
+}
+/**
+ * Answers the number of lookups which did not find a cached table since the statistics were reset.
+ */
+public synchronized int getMissCount() {
+	return this.misses;
+}
+/**
+ * Answers the number of tables discarded to make space for other tables since the statistics were reset.
+ */
+public synchronized int getEvictionCount() {
+	return this.evictions;
+}
+public synchronized int getCurrentSpace() {
+	return super.getCurrentSpace();
+}
+protected boolean makeSpace(int space) {
+	int size = this.fEntryTable.size();
+	boolean hasSpace = super.makeSpace(space);
+	this.evictions += size - this.fEntryTable.size();
+	return hasSpace;
+}
+/*
+ * Answers a new identifier for the tables of a disk index.
+ */
+synchronized int newIndexId() {
+	return ++this.lastIndexId;
+}
+public synchronized void resetStatistics() {
+	this.hits = 0;
+	this.misses = 0;
+	this.evictions = 0;
+}
+public synchronized void setSpaceLimit(int limit) {
+	super.setSpaceLimit(limit);
+}
+protected int spaceFor(Object value) {
+	return ((CachedTable) value).space;
+}
+public synchronized String toString() {
+	return "Category table cache: " //$NON-NLS-1$
+		+ this.fEntryTable.size() + " tables, " //$NON-NLS-1$
+		+ getCurrentSpace() + "KB of " + getSpaceLimit() + "KB, " //$NON-NLS-1$ //$NON-NLS-2$
+		+ this.hits + " hits, " //$NON-NLS-1$
+		+ this.misses + " misses, " //$NON-NLS-1$
+		+ this.evictions + " evictions"; //$NON-NLS-1$
+}
+}
@@ -11,7 +11,10 @@
 package org.eclipse.jdt.internal.core.index;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
+import org.eclipse.jdt.core.compiler.CharOperation;
 import org.eclipse.jdt.core.search.*;
 import org.eclipse.jdt.internal.core.util.*;
 import org.eclipse.jdt.internal.compiler.util.HashtableOfIntValues;
@@ -26,23 +29,34 @@ private int headerInfoOffset;
 private int numberOfChunks;
 private int sizeOfLastChunk;
 private int[] chunkOffsets;
-private int documentReferenceSize; // 1, 2 or more bytes... depends on # of document names
 private int startOfCategoryTables;
 private HashtableOfIntValues categoryOffsets;
 
+// queries run concurrently without holding a lock while reading the file:
+// cached tables are never modified once published, a new table of tables is published when one is added
+// each chunk of document names is stored in cachedChunks while holding the lock on the array
+// category tables which were read are kept in the shared CategoryTableCache, under the id of this index
 private int cacheUserCount;
-private String[][] cachedChunks; // decompressed chunks of document names
-private HashtableOfObject categoryTables; // category name -> HashtableOfObject(words -> int[] of document #'s) or offset if not read yet
-private char[] cachedCategoryName;
+private volatile String[][] cachedChunks; // decompressed chunks of document names
+private final int cacheId;
+private HashtableOfObject categoryTables; // category name -> HashtableOfObject(words -> int[] of document #'s), only used while writing the file
 
-public static final String SIGNATURE= "INDEX VERSION 1.106"; //$NON-NLS-1$
+private volatile HashtableOfObject categoryWordBlocks; // category name -> WordBlocks, small enough to be kept as long as the index
+private volatile ByteBuffer mappedFile; // read-only view of the whole index file, null if not mapped yet
+private boolean cannotMapFile; // true if the file could not be mapped, the stream reader is used instead
+
+public static final String SIGNATURE= "INDEX VERSION 1.109"; //$NON-NLS-1$
 public static boolean DEBUG = false;
+public static boolean MAP_INDEX_FILES = true; // set to false to always read index files through streams
 
 private static final int RE_INDEXED = -1;
 private static final int DELETED = -2;
 
 private static final int CHUNK_SIZE = 100;
 
+private static ThreadLocal BytesRead = new ThreadLocal(); // long[1] of the bytes read from the index files by each thread
+private static final int WORDS_PER_BLOCK = 32;
+
 class IntList {
 
 int size;
@@ -67,7 +81,166 @@ int[] asArray() {
 }	
 }
 
+/*
+ * The words of a category table are sorted & written in blocks of WORDS_PER_BLOCK words.
+ * Only the first word of each block & the offset of the block are needed to find the block of a given word.
+ */
+static class WordBlocks {
+
+int size; // number of words in the category table
+char[][] firstWords;
+int[] offsets;
+
+WordBlocks(int size, int numberOfBlocks) {
+	this.size = size;
+	this.firstWords = new char[numberOfBlocks][];
+	this.offsets = new int[numberOfBlocks];
+}
+int findBlock(char[] word) {
+	// answers the last block whose first word is not greater than word, or 0 if there is none
+	int low = 0;
+	int high = this.firstWords.length - 1;
+	int block = 0;
+	while (low <= high) {
+		int mid = (low + high) >>> 1;
+		if (Util.compare(this.firstWords[mid], word) <= 0) {
+			block = mid;
+			low = mid + 1;
+		} else {
+			high = mid - 1;
+		}
+	}
+	return block;
+}
+int numberOfWords(int block) {
+	return block == this.firstWords.length - 1 ? this.size - block * WORDS_PER_BLOCK : WORDS_PER_BLOCK;
+}
+}
+
+/*
+ * Iterates over the sorted document numbers of a word.
+ * Arrays which were not read with their category table are decoded from the file as the numbers are requested.
+ */
+static class DocumentNumberIterator {
+
+int[] numbers; // null if the numbers are decoded from the stream
+DataInputStream stream;
+int size;
+int index;
+int previous;
+
+DocumentNumberIterator(int[] numbers) {
+	this.numbers = numbers;
+	this.size = numbers.length;
+}
+DocumentNumberIterator(DataInputStream stream) throws IOException {
+	this.stream = stream;
+	this.size = stream.readInt();
+}
+void close() throws IOException {
+	if (this.stream != null) {
+		this.stream.close();
+		this.stream = null;
+	}
+}
+boolean hasNext() {
+	return this.index < this.size;
+}
+int next() throws IOException {
+	if (this.numbers != null)
+		return this.numbers[this.index++];
+	this.index++;
+	return this.previous += readCompressedInt(this.stream);
+}
+int size() {
+	return this.size;
+}
+}
+
+/*
+ * Reads the bytes of a mapped index file, starting at the position of the given buffer.
+ * Closing the stream does not release the mapping, it records the bytes read (see #getBytesRead()).
+ */
+static class MappedFileInputStream extends InputStream {
 
+ByteBuffer buffer;
+int start;
+
+MappedFileInputStream(ByteBuffer buffer) {
+	this.buffer = buffer;
+	this.start = buffer.position();
+}
+public int available() {
+	return this.buffer.remaining();
+}
+public void close() {
+	int position = this.buffer.position();
+	addBytesRead(position - this.start);
+	this.start = position;
+}
+public int read() {
+	if (!this.buffer.hasRemaining()) return -1;
+	return this.buffer.get() & 0xFF;
+}
+public int read(byte[] bytes, int offset, int length) {
+	int remaining = this.buffer.remaining();
+	if (remaining == 0) return length == 0 ? 0 : -1;
+	if (length > remaining)
+		length = remaining;
+	this.buffer.get(bytes, offset, length);
+	return length;
+}
+public long skip(long n) {
+	if (n <= 0) return 0;
+	int remaining = this.buffer.remaining();
+	int skipped = n < remaining ? (int) n : remaining;
+	this.buffer.position(this.buffer.position() + skipped);
+	this.start += skipped; // not read
+	return skipped;
+}
+}
+
+/*
+ * Reads an index file through a stream, and records the bytes read when closed (see #getBytesRead()).
+ */
+static class CountingInputStream extends FilterInputStream {
+
+long count;
+
+CountingInputStream(InputStream stream) {
+	super(stream);
+}
+public void close() throws IOException {
+	addBytesRead(this.count);
+	this.count = 0;
+	super.close();
+}
+public int read() throws IOException {
+	int b = super.read();
+	if (b != -1) this.count++;
+	return b;
+}
+public int read(byte[] bytes, int offset, int length) throws IOException {
+	int read = super.read(bytes, offset, length);
+	if (read > 0) this.count += read;
+	return read;
+}
+}
+
+
+static void addBytesRead(long bytes) {
+	long[] bytesRead = (long[]) BytesRead.get();
+	if (bytesRead == null)
+		BytesRead.set(bytesRead = new long[1]);
+	bytesRead[0] += bytes;
+}
+/*
+ * Answers the number of bytes read from the index files by the current thread since it started.
+ */
+static long getBytesRead() {
+	long[] bytesRead = (long[]) BytesRead.get();
+	return bytesRead == null ? 0 : bytesRead[0];
+}
 DiskIndex(String fileName) {
 	this.fileName = fileName;
 
@@ -76,125 +249,168 @@ DiskIndex(String fileName) {
 	this.numberOfChunks = -1;
 	this.sizeOfLastChunk = -1;
 	this.chunkOffsets = null;
-	this.documentReferenceSize = -1;
 	this.cacheUserCount = -1;
 	this.cachedChunks = null;
+	this.cacheId = CategoryTableCache.SHARED_CACHE.newIndexId();
 	this.categoryTables = null;
-	this.cachedCategoryName = null;
 	this.categoryOffsets = null;
+	this.mappedFile = null;
+	this.cannotMapFile = !MAP_INDEX_FILES;
 }
-SimpleSet addDocumentNames(String substring, MemoryIndex memoryIndex) throws IOException {
-	// must skip over documents which have been added/changed/deleted in the memory index
+SimpleSet addDocumentNames(String substring, SimpleLookupTable[] newerDocuments) throws IOException {
+	// must skip over documents which have been added/changed/deleted in the newer indexes
 	String[] docNames = readAllDocumentNames();
 	SimpleSet results = new SimpleSet(docNames.length);
 	if (substring == null) {
-		if (memoryIndex == null) {
+		if (newerDocuments == null) {
 			for (int i = 0, l = docNames.length; i < l; i++)
 				results.add(docNames[i]);
 		} else {
-			SimpleLookupTable docsToRefs = memoryIndex.docsToReferences;
 			for (int i = 0, l = docNames.length; i < l; i++) {
 				String docName = docNames[i];
-				if (!docsToRefs.containsKey(docName))
+				if (!isReplaced(docName, newerDocuments))
 					results.add(docName);
 			}
 		}
 	} else {
-		if (memoryIndex == null) {
+		if (newerDocuments == null) {
 			for (int i = 0, l = docNames.length; i < l; i++)
 				if (docNames[i].startsWith(substring, 0))
 					results.add(docNames[i]);
 		} else {
-			SimpleLookupTable docsToRefs = memoryIndex.docsToReferences;
 			for (int i = 0, l = docNames.length; i < l; i++) {
 				String docName = docNames[i];
-				if (docName.startsWith(substring, 0) && !docsToRefs.containsKey(docName))
+				if (docName.startsWith(substring, 0) && !isReplaced(docName, newerDocuments))
 					results.add(docName);
 			}
 		}
 	}
 	return results;
 }
-private HashtableOfObject addQueryResult(HashtableOfObject results, char[] word, HashtableOfObject wordsToDocNumbers, MemoryIndex memoryIndex) throws IOException {
-	// must skip over documents which have been added/changed/deleted in the memory index
+/*
+ * Adds the documents of this index to the given memory index, except the documents it already contains.
+ * Adding the documents of several indexes from the newest one thus keeps the most recent version of each document.
+ * The documents with an entry in the removed documents category are removed from the memory index.
+ */
+void addDocumentsTo(MemoryIndex memoryIndex) throws IOException {
+	if (this.categoryOffsets == null) return; // file is empty
+
+	String[] docNames = readAllDocumentNames();
+	boolean[] isReplaced = new boolean[docNames.length];
+	SimpleLookupTable docsToRefs = memoryIndex.docsToReferences;
+	for (int i = 0, l = docNames.length; i < l; i++)
+		isReplaced[i] = docsToRefs.containsKey(docNames[i]);
+
+	char[][] categoryNames = this.categoryOffsets.keyTable;
+	for (int i = 0, l = categoryNames.length; i < l; i++) {
+		char[] categoryName = categoryNames[i];
+		if (categoryName == null) continue;
+
+		boolean isRemovedCategory = CharOperation.equals(categoryName, Index.REMOVED_DOCUMENTS);
+		HashtableOfObject wordsToDocs = readCategoryTable(categoryName, true, false);
+		char[][] words = wordsToDocs.keyTable;
+		Object[] values = wordsToDocs.valueTable;
+		for (int j = 0, m = words.length; j < m; j++) {
+			if (words[j] == null) continue;
+			int[] docNumbers = (int[]) values[j];
+			for (int k = 0, n = docNumbers.length; k < n; k++) {
+				int docNumber = docNumbers[k];
+				if (isReplaced[docNumber]) continue;
+				if (isRemovedCategory)
+					memoryIndex.remove(docNames[docNumber]); // removed documents have no other entry
+				else
+					memoryIndex.addIndexEntry(categoryName, words[j], docNames[docNumber]);
+			}
+		}
+	}
+}
+private HashtableOfObject addQueryResult(HashtableOfObject results, char[] word, HashtableOfObject wordsToDocNumbers, SimpleLookupTable[] newerDocuments) throws IOException {
+	// must skip over documents which have been added/changed/deleted in the newer indexes
 	if (results == null)
 		results = new HashtableOfObject(13);
 	EntryResult result = (EntryResult) results.get(word);
-	if (memoryIndex == null) {
+	if (newerDocuments == null) {
 		if (result == null)
 			results.put(word, new EntryResult(word, wordsToDocNumbers));
 		else
 			result.addDocumentTable(wordsToDocNumbers);
 	} else {
-		SimpleLookupTable docsToRefs = memoryIndex.docsToReferences;
 		if (result == null)
 			result = new EntryResult(word, null);
-		int[] docNumbers = readDocumentNumbers(wordsToDocNumbers.get(word));
-		for (int i = 0, l = docNumbers.length; i < l; i++) {
-			String docName = readDocumentName(docNumbers[i]);
-			if (!docsToRefs.containsKey(docName))
-				result.addDocumentName(docName);
+		DocumentNumberIterator docNumbers = iterateDocumentNumbers(wordsToDocNumbers.get(word));
+		try {
+			while (docNumbers.hasNext()) {
+				String docName = readDocumentName(docNumbers.next());
+				if (!isReplaced(docName, newerDocuments))
+					result.addDocumentName(docName);
+			}
+		} finally {
+			docNumbers.close();
 		}
 		if (!result.isEmpty())
 			results.put(word, result);
 	}
 	return results;
 }
-HashtableOfObject addQueryResults(char[][] categories, char[] key, int matchRule, MemoryIndex memoryIndex) throws IOException {
+HashtableOfObject addQueryResults(char[][] categories, char[] key, int matchRule, SimpleLookupTable[] newerDocuments, HashtableOfObject results) throws IOException {
 	// assumes sender has called startQuery() & will call stopQuery() when finished
-	if (this.categoryOffsets == null) return null; // file is empty
+	// newerDocuments holds the tables of documents which replace the documents of this index, if null then the
+	// document tables are added to the results and the document names are only read when the results are used
+	if (this.categoryOffsets == null) return results; // file is empty
 
-	HashtableOfObject results = null; // initialized if needed
 	if (key == null) {
+		boolean hasResults = false;
 		for (int i = 0, l = categories.length; i < l; i++) {
 			HashtableOfObject wordsToDocNumbers = readCategoryTable(categories[i], true); // cache if key is null since its a definite match
 			if (wordsToDocNumbers != null) {
+				hasResults = true;
 				char[][] words = wordsToDocNumbers.keyTable;
 				if (results == null)
 					results = new HashtableOfObject(wordsToDocNumbers.elementSize);
 				for (int j = 0, m = words.length; j < m; j++)
 					if (words[j] != null)
-						results = addQueryResult(results, words[j], wordsToDocNumbers, memoryIndex);
+						results = addQueryResult(results, words[j], wordsToDocNumbers, newerDocuments);
 			}
 		}
-		if (results != null && this.cachedChunks == null)
+		if (hasResults && this.cachedChunks == null)
 			cacheDocumentNames();
 	} else if (matchRule == SearchPattern.R_EXACT_MATCH + SearchPattern.R_CASE_SENSITIVE) {
 		for (int i = 0, l = categories.length; i < l; i++) {
-			HashtableOfObject wordsToDocNumbers = readCategoryTable(categories[i], false);
+			HashtableOfObject wordsToDocNumbers = readCategoryTable(categories[i], key, true);
 			if (wordsToDocNumbers != null && wordsToDocNumbers.containsKey(key))
-				results = addQueryResult(results, key, wordsToDocNumbers, memoryIndex);
+				results = addQueryResult(results, key, wordsToDocNumbers, newerDocuments);
 		}
 	} else {
+		char[] prefix = matchingPrefix(key, matchRule); // only the words starting with prefix can match
 		for (int i = 0, l = categories.length; i < l; i++) {
-			HashtableOfObject wordsToDocNumbers = readCategoryTable(categories[i], false);
+			HashtableOfObject wordsToDocNumbers = prefix == null
+				? readCategoryTable(categories[i], false)
+				: readCategoryTable(categories[i], prefix, false);
 			if (wordsToDocNumbers != null) {
 				char[][] words = wordsToDocNumbers.keyTable;
 				for (int j = 0, m = words.length; j < m; j++) {
 					char[] word = words[j];
 					if (word != null && Index.isMatch(key, word, matchRule))
-						results = addQueryResult(results, word, wordsToDocNumbers, memoryIndex);
+						results = addQueryResult(results, word, wordsToDocNumbers, newerDocuments);
 				}
 			}
 		}
 	}
-
-	if (results == null) return null;
 	return results;
 }
 private void cacheDocumentNames() throws IOException {
 	// will need all document names so get them now
-	this.cachedChunks = new String[this.numberOfChunks][];
-	DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(getIndexFile()), this.numberOfChunks > 5 ? 4096 : 2048));
+	String[][] chunks = new String[this.numberOfChunks][];
+	DataInputStream stream = openStream(this.chunkOffsets[0], this.numberOfChunks > 5 ? 4096 : 2048);
 	try {
-		stream.skip(this.chunkOffsets[0]);
 		for (int i = 0; i < this.numberOfChunks; i++) {
 			int size = i == this.numberOfChunks - 1 ? this.sizeOfLastChunk : CHUNK_SIZE;
-			readChunk(this.cachedChunks[i] = new String[size], stream, 0, size);
+			readChunk(chunks[i] = new String[size], stream, 0, size);
 		}
 	} finally {
 		stream.close();
 	}
+	this.cachedChunks = chunks; // publish once every chunk is read
 }
 private String[] computeDocumentNames(String[] onDiskNames, int[] positions, SimpleLookupTable indexedDocuments, MemoryIndex memoryIndex) {
 	int onDiskLength = onDiskNames.length;
@@ -316,11 +532,97 @@ private void copyQueryResults(HashtableOfObject categoryToWords, int newPosition
 		}
 	}
 }
+private synchronized void cacheWordBlocks(char[] categoryName, WordBlocks blocks) {
+	// never change a published table of blocks since concurrent queries could be looking at it
+	HashtableOfObject allBlocks = this.categoryWordBlocks;
+	HashtableOfObject newBlocks = new HashtableOfObject(allBlocks == null ? 3 : allBlocks.elementSize + 1);
+	if (allBlocks != null) {
+		char[][] names = allBlocks.keyTable;
+		Object[] values = allBlocks.valueTable;
+		for (int i = 0, l = names.length; i < l; i++)
+			if (names[i] != null)
+				newBlocks.put(names[i], values[i]);
+	}
+	newBlocks.put(categoryName, blocks);
+	this.categoryWordBlocks = newBlocks;
+}
+/*
+ * Deletes the file of this index, which is no longer used.
+ */
+void delete() {
+	deleteIndexFile(getIndexFile());
+	CategoryTableCache.SHARED_CACHE.flushIndex(this.cacheId);
+}
+private boolean deleteIndexFile(File indexFile) {
+	if (indexFile.delete()) return true;
+	if (this.mappedFile == null) return false;
+
+	// some platforms refuse to delete a mapped file, the mapping is only released once the buffer is garbage collected
+	this.mappedFile = null;
+	System.gc();
+	System.runFinalization();
+	return indexFile.delete();
+}
+/*
+ * Answers the prefix shared by every word which matches the key, or null if the whole category must be searched.
+ */
+private static char[] matchingPrefix(char[] key, int matchRule) {
+	switch (matchRule) {
+		case SearchPattern.R_PREFIX_MATCH + SearchPattern.R_CASE_SENSITIVE :
+			return key.length == 0 ? null : key;
+		case SearchPattern.R_PATTERN_MATCH + SearchPattern.R_CASE_SENSITIVE :
+			int length = 0;
+			while (length < key.length && key[length] != '*' && key[length] != '?')
+				length++;
+			return length == 0 ? null : CharOperation.subarray(key, 0, length);
+	}
+	return null;
+}
+static boolean isReplaced(String docName, SimpleLookupTable[] newerDocuments) {
+	for (int i = 0, l = newerDocuments.length; i < l; i++)
+		if (newerDocuments[i].containsKey(docName))
+			return true;
+	return false;
+}
+DocumentNumberIterator iterateDocumentNumbers(Object arrayOffset) throws IOException {
+	// arrayOffset is either a cached array of docNumbers or an Integer offset in the file
+	if (arrayOffset instanceof int[])
+		return new DocumentNumberIterator((int[]) arrayOffset);
+	return new DocumentNumberIterator(openStream(((Integer) arrayOffset).intValue(), 2048));
+}
 File getIndexFile() {
 	if (this.fileName == null) return null;
 
 	return new File(this.fileName);
 }
+private ByteBuffer getMappedFile() {
+	ByteBuffer buffer = this.mappedFile;
+	if (buffer != null || this.cannotMapFile) return buffer;
+
+	synchronized (this) {
+		if (this.mappedFile != null || this.cannotMapFile) return this.mappedFile;
+
+		RandomAccessFile file = null;
+		try {
+			file = new RandomAccessFile(this.fileName, "r"); //$NON-NLS-1$
+			FileChannel channel = file.getChannel();
+			this.mappedFile = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // mapping stays valid once the file is closed
+		} catch (IOException e) {
+			if (DEBUG)
+				System.out.println("getMappedFile - Failed to map index " + this.fileName + ", using streams instead"); //$NON-NLS-1$ //$NON-NLS-2$
+			this.cannotMapFile = true;
+		} finally {
+			if (file != null) {
+				try {
+					file.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+		return this.mappedFile;
+	}
+}
 void initialize(boolean reuseExistingFile) throws IOException {
 	File indexFile = getIndexFile();
 	if (indexFile.exists()) {
@@ -393,7 +695,7 @@ private void mergeCategory(char[] categoryName, DiskIndex onDisk, int[] position
 	if (wordsToDocs == null)
 		wordsToDocs = new HashtableOfObject(3);
 
-	HashtableOfObject oldWordsToDocs = onDisk.readCategoryTable(categoryName, true);
+	HashtableOfObject oldWordsToDocs = onDisk.readCategoryTable(categoryName, true, false);
 	if (oldWordsToDocs != null) {
 		char[][] oldWords = oldWordsToDocs.keyTable;
 		Object[] oldArrayOffsets = oldWordsToDocs.valueTable;
@@ -430,12 +732,21 @@ private void mergeCategory(char[] categoryName, DiskIndex onDisk, int[] position
 				}
 			}
 		}
-		onDisk.categoryTables.put(categoryName, null); // flush cached table
 	}
 	writeCategoryTable(categoryName, wordsToDocs, stream);
 }
 DiskIndex mergeWith(MemoryIndex memoryIndex) throws IOException {
  	// assume write lock is held
+	return mergeWith(memoryIndex, this.fileName);
+}
+/*
+ * Writes the merge of this index with the given memory index to the given file, and answers the new index.
+ * This index is obsolete once merged into its own file, otherwise it is not modified and it can still be
+ * queried while the merge is written, as long as the memory index is not modified.
+ */
+DiskIndex mergeWith(MemoryIndex memoryIndex, String newFileName) throws IOException {
+	boolean isSameFile = newFileName.equals(this.fileName);
+
 	// compute & write out new docNames
 	String[] docNames = readAllDocumentNames();
 	int previousLength = docNames.length;
@@ -443,15 +754,19 @@ DiskIndex mergeWith(MemoryIndex memoryIndex) throws IOException {
 	SimpleLookupTable indexedDocuments = new SimpleLookupTable(3); // for each new/changed document in the memoryIndex
 	docNames = computeDocumentNames(docNames, positions, indexedDocuments, memoryIndex);
 	if (docNames.length == 0) {
-		if (previousLength == 0) return this; // nothing to do... memory index contained deleted documents that had never been saved
+		if (previousLength == 0 && isSameFile) return this; // nothing to do... memory index contained deleted documents that had never been saved
 
 		// index is now empty since all the saved documents were removed
-		DiskIndex newDiskIndex = new DiskIndex(this.fileName);
+		if (isSameFile) {
+			this.mappedFile = null; // release the mapping before the file is deleted
+			CategoryTableCache.SHARED_CACHE.flushIndex(this.cacheId);
+		}
+		DiskIndex newDiskIndex = new DiskIndex(newFileName);
 		newDiskIndex.initialize(false);
 		return newDiskIndex;
 	}
 
-	DiskIndex newDiskIndex = new DiskIndex(this.fileName + ".tmp"); //$NON-NLS-1$
+	DiskIndex newDiskIndex = new DiskIndex(newFileName + ".tmp"); //$NON-NLS-1$
 	File newIndexFile = newDiskIndex.getIndexFile();
 	try {
 		newDiskIndex.initializeFrom(this, newIndexFile);
@@ -487,16 +802,16 @@ DiskIndex mergeWith(MemoryIndex memoryIndex) throws IOException {
 		newDiskIndex.writeOffsetToHeader(offsetToHeader);
 
 		// rename file by deleting previous index file & renaming temp one
-		File old = getIndexFile();
-		if (!old.delete()) {
+		File old = new File(newFileName);
+		if (isSameFile ? !deleteIndexFile(old) : old.exists() && !old.delete()) {
 			if (DEBUG)
-				System.out.println("mergeWith - Failed to delete " + this.fileName); //$NON-NLS-1$
-			throw new IOException("Failed to delete index file " + this.fileName); //$NON-NLS-1$
+				System.out.println("mergeWith - Failed to delete " + newFileName); //$NON-NLS-1$
+			throw new IOException("Failed to delete index file " + newFileName); //$NON-NLS-1$
 		}
 		if (!newIndexFile.renameTo(old)) {
 			if (DEBUG)
-				System.out.println("mergeWith - Failed to rename " + this.fileName); //$NON-NLS-1$
-			throw new IOException("Failed to rename index file " + this.fileName); //$NON-NLS-1$
+				System.out.println("mergeWith - Failed to rename " + newFileName); //$NON-NLS-1$
+			throw new IOException("Failed to rename index file " + newFileName); //$NON-NLS-1$
 		}
 	} catch (IOException e) {
 		if (newIndexFile.exists() && !newIndexFile.delete())
@@ -505,16 +820,38 @@ DiskIndex mergeWith(MemoryIndex memoryIndex) throws IOException {
 		throw e;
 	}
 
-	newDiskIndex.fileName = this.fileName;
+	newDiskIndex.fileName = newFileName;
+	if (isSameFile) {
+		this.mappedFile = null;
+		CategoryTableCache.SHARED_CACHE.flushIndex(this.cacheId); // the tables of this index are obsolete
+	}
 	return newDiskIndex;
 }
-private synchronized String[] readAllDocumentNames() throws IOException {
+/*
+ * Answers the number of documents in this index.
+ */
+int numberOfDocuments() {
+	if (this.numberOfChunks <= 0) return 0;
+	return (this.numberOfChunks - 1) * CHUNK_SIZE + this.sizeOfLastChunk;
+}
+private DataInputStream openStream(int offset, int bufferSize) throws IOException {
+	ByteBuffer buffer = getMappedFile();
+	if (buffer != null) {
+		ByteBuffer view = buffer.duplicate(); // each stream needs its own position
+		view.position(offset);
+		return new DataInputStream(new MappedFileInputStream(view));
+	}
+
+	DataInputStream stream = new DataInputStream(new BufferedInputStream(new CountingInputStream(new FileInputStream(getIndexFile())), bufferSize));
+	stream.skip(offset);
+	return stream;
+}
+private String[] readAllDocumentNames() throws IOException {
 	if (this.numberOfChunks <= 0)
 		return new String[0];
 
-	DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(getIndexFile()), this.numberOfChunks > 5 ? 4096 : 2048));
+	DataInputStream stream = openStream(this.chunkOffsets[0], this.numberOfChunks > 5 ? 4096 : 2048);
 	try {
-		stream.skip(this.chunkOffsets[0]);
 		int lastIndex = this.numberOfChunks - 1;
 		String[] docNames = new String[lastIndex * CHUNK_SIZE + sizeOfLastChunk];
 		for (int i = 0; i < this.numberOfChunks; i++)
@@ -524,80 +861,89 @@ private synchronized String[] readAllDocumentNames() throws IOException {
 		stream.close();
 	}
 }
-private synchronized HashtableOfObject readCategoryTable(char[] categoryName, boolean readDocNumbers) throws IOException {
+private HashtableOfObject readCategoryTable(char[] categoryName, boolean readDocNumbers) throws IOException {
+	return readCategoryTable(categoryName, readDocNumbers, true);
+}
+private HashtableOfObject readCategoryTable(char[] categoryName, boolean readDocNumbers, boolean cacheTable) throws IOException {
 	// result will be null if categoryName is unknown
 	int offset = this.categoryOffsets.get(categoryName);
 	if (offset == HashtableOfIntValues.NO_VALUE)
 		return null;
 
-	if (this.categoryTables == null) {
-		this.categoryTables = new HashtableOfObject(3);
-	} else {
-		HashtableOfObject cachedTable = (HashtableOfObject) this.categoryTables.get(categoryName);
+	if (cacheTable) {
+		HashtableOfObject cachedTable = CategoryTableCache.SHARED_CACHE.get(this.cacheId, categoryName);
 		if (cachedTable != null) {
 			if (readDocNumbers) { // must cache remaining document number arrays
 				Object[] arrayOffsets = cachedTable.valueTable;
-				for (int i = 0, l = arrayOffsets.length; i < l; i++)
-					if (arrayOffsets[i] instanceof Integer)
-						arrayOffsets[i] = readDocumentNumbers(arrayOffsets[i]);
+				for (int i = 0, l = arrayOffsets.length; i < l; i++) {
+					if (arrayOffsets[i] instanceof Integer) {
+						// the cached table may be in use by another query so replace it with a copy
+						char[][] words = cachedTable.keyTable;
+						HashtableOfObject fullTable = new HashtableOfObject(cachedTable.elementSize);
+						for (int j = 0; j < l; j++)
+							if (words[j] != null)
+								fullTable.put(words[j], readDocumentNumbers(arrayOffsets[j]));
+						CategoryTableCache.SHARED_CACHE.put(this.cacheId, categoryName, fullTable);
+						return fullTable;
+					}
+				}
 			}
 			return cachedTable;
 		}
 	}
 
-	DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(getIndexFile()), 2048));
-	HashtableOfObject categoryTable = null;
-	char[][] matchingWords = null;
-	int count = 0;
-	int firstOffset = -1;
-	try {
-		stream.skip(offset);
-		int size = stream.readInt();
-		categoryTable = new HashtableOfObject(size);
-		int largeArraySize = 256;
-		for (int i = 0; i < size; i++) {
-			char[] word = Util.readUTF(stream);
-			int arrayOffset = stream.readInt();
-			// if arrayOffset is:
-			//		<= 0 then the array size == 1 with the value -> -arrayOffset
-			//		> 1 & < 256 then the size of the array is > 1 & < 256, the document array follows immediately
-			//		256 if the array size >= 256 followed by another int which is the offset to the array (written prior to the table)
-			if (arrayOffset <= 0) {
-				categoryTable.put(word, new int[] {-arrayOffset}); // store 1 element array by negating documentNumber
-			} else if (arrayOffset < largeArraySize) {
-				categoryTable.put(word, readDocumentArray(stream, arrayOffset)); // read in-lined array providing size
-			} else {
-				arrayOffset = stream.readInt(); // read actual offset
-				if (readDocNumbers) {
-					if (matchingWords == null)
-						matchingWords = new char[size][];
-					if (count == 0)
-						firstOffset = arrayOffset;
-					matchingWords[count++] = word;
-				}
-				categoryTable.put(word, new Integer(arrayOffset)); // offset to array in the file
+	WordBlocks blocks = readWordBlocks(categoryName, offset);
+	HashtableOfObject categoryTable = new HashtableOfObject(blocks.size);
+	for (int i = 0, l = blocks.firstWords.length; i < l; i++)
+		readWordBlock(blocks, i, null, false, categoryTable);
+
+	if (readDocNumbers) {
+		char[][] matchingWords = null;
+		int count = 0;
+		char[][] words = categoryTable.keyTable;
+		Object[] values = categoryTable.valueTable;
+		for (int i = 0, l = words.length; i < l; i++) {
+			if (values[i] instanceof Integer) {
+				if (matchingWords == null)
+					matchingWords = new char[categoryTable.elementSize][];
+				matchingWords[count++] = words[i];
 			}
 		}
-		this.categoryTables.put(categoryName, categoryTable);
-		// cache the table as long as its not too big
-		// in practise, some tables can be greater than 500K when the contain more than 10K elements
-		this.cachedCategoryName = categoryTable.elementSize < 10000 ? categoryName : null;
-	} finally {
-		stream.close();
-	}
-
-	if (count > 0) {
-		stream = new DataInputStream(new BufferedInputStream(new FileInputStream(getIndexFile()), 2048));
-		try {
-			stream.skip(firstOffset);
-			for (int i = 0; i < count; i++) // each array follows the previous one
-				categoryTable.put(matchingWords[i], readDocumentArray(stream, stream.readInt()));
-		} finally {
-			stream.close();
+		if (count > 0) {
+			// large arrays were written in the same order as the sorted words, each array follows the previous one
+			System.arraycopy(matchingWords, 0, matchingWords = new char[count][], 0, count);
+			Util.sort(matchingWords);
+			DataInputStream stream = openStream(((Integer) categoryTable.get(matchingWords[0])).intValue(), 2048);
+			try {
+				for (int i = 0; i < count; i++)
+					categoryTable.put(matchingWords[i], readDocumentArray(stream, stream.readInt()));
+			} finally {
+				stream.close();
+			}
 		}
 	}
+	if (cacheTable)
+		CategoryTableCache.SHARED_CACHE.put(this.cacheId, categoryName, categoryTable); // only publish the table once its complete
 	return categoryTable;
 }
+private HashtableOfObject readCategoryTable(char[] categoryName, char[] prefix, boolean exactMatch) throws IOException {
+	// answers a table which contains at least the words starting with prefix (or equal to it if exactMatch)
+	// only the blocks of sorted words which can contain these words are read, unless the whole table is cached
+	int offset = this.categoryOffsets.get(categoryName);
+	if (offset == HashtableOfIntValues.NO_VALUE)
+		return null;
+
+	HashtableOfObject cachedTable = CategoryTableCache.SHARED_CACHE.get(this.cacheId, categoryName);
+	if (cachedTable != null)
+		return cachedTable;
+
+	WordBlocks blocks = readWordBlocks(categoryName, offset);
+	HashtableOfObject matchingWords = new HashtableOfObject(exactMatch ? 1 : 13);
+	for (int i = blocks.findBlock(prefix), l = blocks.firstWords.length; i < l; i++)
+		if (!readWordBlock(blocks, i, prefix, exactMatch, matchingWords))
+			break;
+	return matchingWords;
+}
 private void readChunk(String[] docNames, DataInputStream stream, int index, int size) throws IOException {
 	String current = stream.readUTF();
 	docNames[index++] = current;
@@ -620,72 +966,177 @@ private void readChunk(String[] docNames, DataInputStream stream, int index, int
 		current = next;
 	}
 }
+private Object readDocumentInfo(DataInputStream stream, boolean skip) throws IOException {
+	// answers an int[] of document numbers or an Integer offset to the array in the file
+	int arrayOffset = stream.readInt();
+	// if arrayOffset is:
+	//		<= 0 then the array size == 1 with the value -> -arrayOffset
+	//		> 1 & < 256 then the size of the array is > 1 & < 256, the document array follows immediately
+	//		256 if the array size >= 256 followed by another int which is the offset to the array (written prior to the table)
+	if (arrayOffset <= 0) {
+		return skip ? null : new int[] {-arrayOffset}; // store 1 element array by negating documentNumber
+	} else if (arrayOffset < 256) {
+		if (!skip)
+			return readDocumentArray(stream, arrayOffset); // read in-lined array providing size
+		for (int i = 0; i < arrayOffset; i++)
+			readCompressedInt(stream);
+		return null;
+	}
+	arrayOffset = stream.readInt(); // read actual offset
+	return skip ? null : new Integer(arrayOffset); // offset to array in the file
+}
+static int readCompressedInt(DataInputStream stream) throws IOException {
+	// must be same encoding as writeCompressedInt()
+	int value = 0;
+	int shift = 0;
+	int b;
+	do {
+		b = stream.readUnsignedByte();
+		value |= (b & 0x7F) << shift;
+		shift += 7;
+	} while ((b & 0x80) != 0);
+	return value;
+}
 private int[] readDocumentArray(DataInputStream stream, int arraySize) throws IOException {
+	// document numbers are sorted & stored as the difference with the previous number
 	int[] result = new int[arraySize];
-	switch (this.documentReferenceSize) {
-		case 1 :
-			for (int i = 0; i < arraySize; i++)
-				result[i] = stream.readUnsignedByte();
-			break;
-		case 2 :
-			for (int i = 0; i < arraySize; i++)
-				result[i] = stream.readUnsignedShort();
-			break;
-		default :
-			for (int i = 0; i < arraySize; i++)
-				result[i] = stream.readInt();
-			break;
-	}
+	int previous = 0;
+	for (int i = 0; i < arraySize; i++)
+		result[i] = previous += readCompressedInt(stream);
 	return result;
 }
-synchronized String readDocumentName(int docNumber) throws IOException {
-	if (this.cachedChunks == null)
-		this.cachedChunks = new String[this.numberOfChunks][];
+String readDocumentName(int docNumber) throws IOException {
+	String[][] chunks = this.cachedChunks;
+	if (chunks == null) {
+		synchronized (this) {
+			if ((chunks = this.cachedChunks) == null)
+				this.cachedChunks = chunks = new String[this.numberOfChunks][];
+		}
+	}
 
 	int chunkNumber = docNumber / CHUNK_SIZE;
-	String[] chunk = this.cachedChunks[chunkNumber];
+	String[] chunk;
+	synchronized (chunks) {
+		chunk = chunks[chunkNumber];
+	}
 	if (chunk == null) {
 		boolean isLastChunk = chunkNumber == this.numberOfChunks - 1;
 		int start = this.chunkOffsets[chunkNumber];
 		int numberOfBytes = (isLastChunk ? this.startOfCategoryTables : this.chunkOffsets[chunkNumber + 1]) - start;
 		if (numberOfBytes < 0)
 			throw new IllegalArgumentException();
-		byte[] bytes = new byte[numberOfBytes];
-		FileInputStream file = new FileInputStream(getIndexFile());
+		DataInputStream stream;
+		if (getMappedFile() != null) {
+			stream = openStream(start, numberOfBytes);
+		} else {
+			byte[] bytes = new byte[numberOfBytes];
+			FileInputStream file = new FileInputStream(getIndexFile());
+			try {
+				file.skip(start);
+				if (file.read(bytes, 0, numberOfBytes) != numberOfBytes)
+					throw new IOException();
+				addBytesRead(numberOfBytes);
+			} finally {
+				file.close();
+			}
+			stream = new DataInputStream(new ByteArrayInputStream(bytes));
+		}
+		int numberOfNames = isLastChunk ? this.sizeOfLastChunk : CHUNK_SIZE;
+		chunk = new String[numberOfNames];
 		try {
-			file.skip(start);
-			if (file.read(bytes, 0, numberOfBytes) != numberOfBytes)
-				throw new IOException();
+			readChunk(chunk, stream, 0, numberOfNames);
 		} finally {
-			file.close();
+			stream.close();
+		}
+		synchronized (chunks) {
+			if (chunks[chunkNumber] == null)
+				chunks[chunkNumber] = chunk;
+			else
+				chunk = chunks[chunkNumber]; // another query read the same chunk
 		}
-		DataInputStream stream = new DataInputStream(new ByteArrayInputStream(bytes));
-		int numberOfNames = isLastChunk ? this.sizeOfLastChunk : CHUNK_SIZE;
-		chunk = this.cachedChunks[chunkNumber] = new String[numberOfNames];
-		readChunk(chunk, stream, 0, numberOfNames);
 	}
 	return chunk[docNumber - (chunkNumber * CHUNK_SIZE)];
 }
-synchronized int[] readDocumentNumbers(Object arrayOffset) throws IOException {
+private int[] readDocumentNumbers(Object arrayOffset) throws IOException {
 	// arrayOffset is either a cached array of docNumbers or an Integer offset in the file
 	if (arrayOffset instanceof int[])
 		return (int[]) arrayOffset;
 
-	DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(getIndexFile()), 2048));
+	DataInputStream stream = openStream(((Integer) arrayOffset).intValue(), 2048);
 	try {
-		stream.skip(((Integer) arrayOffset).intValue());
 		return readDocumentArray(stream, stream.readInt());
 	} finally {
 		stream.close();
 	}
 }
+private WordBlocks readWordBlocks(char[] categoryName, int offset) throws IOException {
+	HashtableOfObject allBlocks = this.categoryWordBlocks;
+	if (allBlocks != null) {
+		WordBlocks blocks = (WordBlocks) allBlocks.get(categoryName);
+		if (blocks != null)
+			return blocks;
+	}
+
+	// must be same order as writeCategoryTable()
+	DataInputStream stream = openStream(offset, 2048);
+	WordBlocks blocks;
+	try {
+		int size = stream.readInt();
+		int numberOfBlocks = stream.readInt();
+		blocks = new WordBlocks(size, numberOfBlocks);
+		for (int i = 0; i < numberOfBlocks; i++) {
+			blocks.firstWords[i] = Util.readUTF(stream);
+			blocks.offsets[i] = stream.readInt();
+		}
+	} finally {
+		stream.close();
+	}
+	cacheWordBlocks(categoryName, blocks);
+	return blocks;
+}
+private boolean readWordBlock(WordBlocks blocks, int block, char[] prefix, boolean exactMatch, HashtableOfObject results) throws IOException {
+	// adds the words of the block which start with prefix (or every word if prefix is null) to results
+	// answers false if the following blocks cannot contain any more words starting with prefix
+	DataInputStream stream = openStream(blocks.offsets[block], 2048);
+	try {
+		char[] word = blocks.firstWords[block];
+		for (int i = 0, l = blocks.numberOfWords(block); i < l; i++) {
+			if (i > 0) {
+				// each word is written as the number of characters shared with the previous word followed by the remaining characters
+				int sharedLength = stream.readUnsignedByte();
+				char[] suffix = Util.readUTF(stream);
+				char[] next = new char[sharedLength + suffix.length];
+				System.arraycopy(word, 0, next, 0, sharedLength);
+				System.arraycopy(suffix, 0, next, sharedLength, suffix.length);
+				word = next;
+			}
+			if (prefix == null) {
+				results.put(word, readDocumentInfo(stream, false));
+			} else if (CharOperation.prefixEquals(prefix, word)) {
+				if (exactMatch) {
+					// words are sorted so the exact word cannot follow a longer word starting with it
+					if (word.length == prefix.length)
+						results.put(word, readDocumentInfo(stream, false));
+					return false;
+				}
+				results.put(word, readDocumentInfo(stream, false));
+			} else if (Util.compare(word, prefix) > 0) {
+				return false; // words are sorted so no other word can start with prefix
+			} else {
+				readDocumentInfo(stream, true);
+			}
+		}
+	} finally {
+		stream.close();
+	}
+	return true;
+}
 private void readHeaderInfo(RandomAccessFile file) throws IOException {
 	file.seek(this.headerInfoOffset);
 
 	// must be same order as writeHeaderInfo()
 	this.numberOfChunks = file.readInt();
 	this.sizeOfLastChunk = file.readUnsignedByte();
-	this.documentReferenceSize = file.readUnsignedByte();
 
 	this.chunkOffsets = new int[this.numberOfChunks];
 	for (int i = 0; i < this.numberOfChunks; i++)
@@ -697,25 +1148,35 @@ private void readHeaderInfo(RandomAccessFile file) throws IOException {
 	this.categoryOffsets = new HashtableOfIntValues(size);
 	for (int i = 0; i < size; i++)
 		this.categoryOffsets.put(Util.readUTF(file), file.readInt()); // cache offset to category table
-	this.categoryTables = new HashtableOfObject(3);
+}
+/*
+ * Replaces the file of the given index with the file of this index, the given index is no longer used.
+ */
+void replace(DiskIndex oldIndex) throws IOException {
+	File oldFile = oldIndex.getIndexFile();
+	if (!oldIndex.deleteIndexFile(oldFile)) {
+		if (DEBUG)
+			System.out.println("replace - Failed to delete " + oldIndex.fileName); //$NON-NLS-1$
+		throw new IOException("Failed to delete index file " + oldIndex.fileName); //$NON-NLS-1$
+	}
+	if (!getIndexFile().renameTo(oldFile)) {
+		if (DEBUG)
+			System.out.println("replace - Failed to rename " + this.fileName); //$NON-NLS-1$
+		throw new IOException("Failed to rename index file " + this.fileName); //$NON-NLS-1$
+	}
+	this.fileName = oldIndex.fileName;
+	this.mappedFile = null; // not mapped yet, the file was renamed anyway
+	oldIndex.mappedFile = null;
+	CategoryTableCache.SHARED_CACHE.flushIndex(oldIndex.cacheId);
 }
 synchronized void startQuery() {
 	this.cacheUserCount++;
 }
 synchronized void stopQuery() {
 	if (--this.cacheUserCount < 0) {
-		// clear cached items
+		// clear cached items, the category tables stay in the shared cache until they are evicted
 		this.cacheUserCount = -1;
 		this.cachedChunks = null;
-		if (this.categoryTables != null) {
-			if (this.cachedCategoryName == null) {
-				this.categoryTables = null;
-			} else if (this.categoryTables.elementSize > 1) {
-				HashtableOfObject newTables = new HashtableOfObject(3);
-				newTables.put(this.cachedCategoryName, this.categoryTables.get(this.cachedCategoryName));
-				this.categoryTables = newTables;
-			}
-		}
 	}
 }
 private void writeAllDocumentNames(String[] sortedDocNames, DataOutputStream stream) throws IOException {
@@ -735,7 +1196,6 @@ private void writeAllDocumentNames(String[] sortedDocNames, DataOutputStream str
 		this.numberOfChunks--;
 		this.sizeOfLastChunk = CHUNK_SIZE;
 	}
-	this.documentReferenceSize = size <= 0x7F ? 1 : (size <= 0x7FFF ? 2 : 4); // number of bytes used to encode a reference
 
 	this.chunkOffsets = new int[this.numberOfChunks];
 	int lastIndex = this.numberOfChunks - 1;
@@ -785,73 +1245,105 @@ private void writeCategories(DataOutputStream stream) throws IOException {
 }
 private void writeCategoryTable(char[] categoryName, HashtableOfObject wordsToDocs, DataOutputStream stream) throws IOException {
 	// the format of a category table is as follows:
-	// any document number arrays with >= 256 elements are written before the table (the offset to each array is remembered)
-	// then the number of word->int[] pairs in the table is written
-	// for each word -> int[] pair, the word is written followed by:
+	// any document number arrays with >= 256 elements are written before the table, in the order of their sorted words (the offset to each array is remembered)
+	// then the words are sorted & written in blocks of WORDS_PER_BLOCK words
+	// the first word of a block is not written in the block, every other word is written as the number of characters it shares
+	// with the previous word (a byte) followed by its remaining characters
+	// each word is followed by:
 	//		an int <= 0 if the array size == 1
 	//		an int > 1 & < 256 for the size of the array if its > 1 & < 256, the document array follows immediately
 	//		256 if the array size >= 256 followed by another int which is the offset to the array (written prior to the table)
+	// then the table header is written: the number of words, the number of blocks & for each block, its first word & its offset
 
-	int largeArraySize = 256;
+	char[][] keys = wordsToDocs.keyTable;
 	Object[] values = wordsToDocs.valueTable;
+	char[][] words = new char[wordsToDocs.elementSize][];
+	int size = 0;
 	for (int i = 0, l = values.length; i < l; i++) {
 		Object o = values[i];
 		if (o != null) {
 			if (o instanceof IntList)
-				o = values[i] = ((IntList) values[i]).asArray();
+				values[i] = ((IntList) o).asArray();
+			words[size++] = keys[i];
+		}
+	}
+	if (size < words.length)
+		System.arraycopy(words, 0, words = new char[size][], 0, size);
+	Util.sort(words);
+
+	int largeArraySize = 256;
+	Object[] documents = new Object[size];
+	for (int i = 0; i < size; i++) {
+		int[] documentNumbers = (int[]) wordsToDocs.get(words[i]);
+		if (documentNumbers.length >= largeArraySize) {
+			documents[i] = new Integer(stream.size());
+			writeDocumentNumbers(documentNumbers, stream);
+		} else {
+			documents[i] = documentNumbers;
+		}
+	}
+
+	int numberOfBlocks = (size + WORDS_PER_BLOCK - 1) / WORDS_PER_BLOCK;
+	int[] blockOffsets = new int[numberOfBlocks];
+	for (int i = 0; i < size; i++) {
+		char[] word = words[i];
+		if (i % WORDS_PER_BLOCK == 0) {
+			blockOffsets[i / WORDS_PER_BLOCK] = stream.size(); // the first word of a block is only written in the table header
+		} else {
+			char[] previous = words[i - 1];
+			int max = previous.length < word.length ? previous.length : word.length;
+			if (max > 255) max = 255;
+			int sharedLength = 0;
+			while (sharedLength < max && previous[sharedLength] == word[sharedLength])
+				sharedLength++;
+			stream.writeByte(sharedLength);
+			Util.writeUTF(stream, CharOperation.subarray(word, sharedLength, word.length));
+		}
+		Object o = documents[i];
+		if (o instanceof int[]) {
 			int[] documentNumbers = (int[]) o;
-			if (documentNumbers.length >= largeArraySize) {
-				values[i] = new Integer(stream.size());
+			if (documentNumbers.length == 1)
+				stream.writeInt(-documentNumbers[0]); // store an array of 1 element by negating the documentNumber (can be zero)
+			else
 				writeDocumentNumbers(documentNumbers, stream);
-			}
+		} else {
+			stream.writeInt(largeArraySize); // mark to identify that an offset follows
+			stream.writeInt(((Integer) o).intValue()); // offset in the file of the array of document numbers
 		}
 	}
 
-	this.categoryOffsets.put(categoryName, stream.size()); // remember the offset to the start of the table
-	this.categoryTables.put(categoryName, null); // flush cached table
-	stream.writeInt(wordsToDocs.elementSize);
-	char[][] words = wordsToDocs.keyTable;
-	for (int i = 0, l = words.length; i < l; i++) {
-		Object o = values[i];
-		if (o != null) {
-			Util.writeUTF(stream, words[i]);
-			if (o instanceof int[]) {
-				int[] documentNumbers = (int[]) o;
-				if (documentNumbers.length == 1)
-					stream.writeInt(-documentNumbers[0]); // store an array of 1 element by negating the documentNumber (can be zero)
-				else
-					writeDocumentNumbers(documentNumbers, stream);
-			} else {
-				stream.writeInt(largeArraySize); // mark to identify that an offset follows
-				stream.writeInt(((Integer) o).intValue()); // offset in the file of the array of document numbers
-			}
-		}
+	this.categoryOffsets.put(categoryName, stream.size()); // remember the offset to the table header
+	this.categoryTables.put(categoryName, null); // free the table once written
+	stream.writeInt(size);
+	stream.writeInt(numberOfBlocks);
+	for (int i = 0; i < numberOfBlocks; i++) {
+		Util.writeUTF(stream, words[i * WORDS_PER_BLOCK]);
+		stream.writeInt(blockOffsets[i]);
 	}
 }
+private static void writeCompressedInt(int value, DataOutputStream stream) throws IOException {
+	// 7 bits per byte, the high bit is set when more bytes follow
+	while ((value & ~0x7F) != 0) {
+		stream.writeByte((value & 0x7F) | 0x80);
+		value >>>= 7;
+	}
+	stream.writeByte(value);
+}
 private void writeDocumentNumbers(int[] documentNumbers, DataOutputStream stream) throws IOException {
 	// must store length as a positive int to detect in-lined array of 1 element
+	// the numbers are sorted & each one is stored as its difference with the previous one, so most fit in 1 byte
 	int length = documentNumbers.length;
 	stream.writeInt(length);
 	Util.sort(documentNumbers);
-	switch (this.documentReferenceSize) {
-		case 1 :
-			for (int i = 0; i < length; i++)
-				stream.writeByte(documentNumbers[i]);
-			break;
-		case 2 :
-			for (int i = 0; i < length; i++)
-				stream.writeShort(documentNumbers[i]);
-			break;
-		default :
-			for (int i = 0; i < length; i++)
-				stream.writeInt(documentNumbers[i]);
-			break;
+	int previous = 0;
+	for (int i = 0; i < length; i++) {
+		writeCompressedInt(documentNumbers[i] - previous, stream);
+		previous = documentNumbers[i];
 	}
 }
 private void writeHeaderInfo(DataOutputStream stream) throws IOException {
 	stream.writeInt(this.numberOfChunks);
 	stream.writeByte(this.sizeOfLastChunk);
-	stream.writeByte(this.documentReferenceSize);
 
 	// apend the file with chunk offsets
 	for (int i = 0; i < this.numberOfChunks; i++)
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.core.index;
+
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.core.util.SimpleWordSet;
+
+/**
+ * A bloom filter of the identifier tokens of a document, encoded as an index word so that
+ * it is stored with the other entries of the document (see IIndexConstants.DOCUMENT_FILTER).
+ * <p>
+ * A filter answers false only for tokens which are not in the document, and answers true for
+ * about 3% of the other tokens. Each character of the encoded filter holds 6 bits, so that it
+ * is written as a single byte.
+ * </p>
+ */
+public class DocumentFilter {
+
+	static final int BITS_PER_TOKEN = 8;
+	static final int NUMBER_OF_HASHES = 3;
+	static final int BITS_PER_CHAR = 6;
+	static final char FIRST_CHAR = '0';
+	static final int MIN_LENGTH = 4;
+
+/**
+ * Answers the encoded filter of the given tokens.
+ */
+public static char[] encode(SimpleWordSet tokens) {
+	int length = Math.max(MIN_LENGTH, (tokens.elementSize * BITS_PER_TOKEN + BITS_PER_CHAR - 1) / BITS_PER_CHAR);
+	int[] bits = new int[length];
+	int numberOfBits = length * BITS_PER_CHAR;
+	char[][] words = tokens.words;
+	for (int i = 0, l = words.length; i < l; i++) {
+		char[] token = words[i];
+		if (token == null) continue;
+		int hash1 = CharOperation.hashCode(token);
+		int hash2 = secondHash(token);
+		for (int j = 0; j < NUMBER_OF_HASHES; j++) {
+			int bit = bitIndex(hash1, hash2, j, numberOfBits);
+			bits[bit / BITS_PER_CHAR] |= 1 << (bit % BITS_PER_CHAR);
+		}
+	}
+	char[] filter = new char[length];
+	for (int i = 0; i < length; i++)
+		filter[i] = (char) (FIRST_CHAR + bits[i]);
+	return filter;
+}
+/**
+ * Answers whether the document of the given filter may contain the given token.
+ */
+public static boolean mayContain(char[] filter, char[] token) {
+	int numberOfBits = filter.length * BITS_PER_CHAR;
+	int hash1 = CharOperation.hashCode(token);
+	int hash2 = secondHash(token);
+	for (int j = 0; j < NUMBER_OF_HASHES; j++) {
+		int bit = bitIndex(hash1, hash2, j, numberOfBits);
+		if (((filter[bit / BITS_PER_CHAR] - FIRST_CHAR) & (1 << (bit % BITS_PER_CHAR))) == 0)
+			return false;
+	}
+	return true;
+}
+/**
+ * Answers whether the document of the given filter may contain all the given tokens.
+ */
+public static boolean mayContainAll(char[] filter, char[][] tokens) {
+	for (int i = 0, l = tokens.length; i < l; i++)
+		if (!mayContain(filter, tokens[i]))
+			return false;
+	return true;
+}
+/**
+ * Adds the identifier tokens of the given index key to the given set, e.g. <code>foo</code> for the key <code>foo/0</code>.
+ */
+public static void addTokens(char[] key, SimpleWordSet tokens) {
+	int start = -1;
+	for (int i = 0, length = key.length; i <= length; i++) {
+		if (i < length && Character.isJavaIdentifierPart(key[i])) {
+			if (start < 0) start = i;
+		} else if (start >= 0) {
+			tokens.add(start == 0 && i == length ? key : CharOperation.subarray(key, start, i));
+			start = -1;
+		}
+	}
+}
+private static int bitIndex(int hash1, int hash2, int i, int numberOfBits) {
+	return ((hash1 + i * hash2) & 0x7FFFFFFF) % numberOfBits;
+}
+private static int secondHash(char[] token) {
+	int hash = 0x811C9DC5;
+	for (int i = 0, length = token.length; i < length; i++)
+		hash = (hash ^ token[i]) * 0x01000193;
+	return hash | 1;
+}
+}
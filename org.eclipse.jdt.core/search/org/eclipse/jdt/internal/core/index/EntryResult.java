@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2004 IBM Corporation and others.
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -46,18 +46,26 @@ public String[] getDocumentNames(Index index) throws java.io.IOException {
 		int length = this.documentTables.length;
 		if (length == 1 && this.documentNames == null) { // have a single table
 			Object offset = this.documentTables[0].get(word);
-			int[] numbers = index.diskIndex.readDocumentNumbers(offset);
-			String[] names = new String[numbers.length];
-			for (int i = 0, l = numbers.length; i < l; i++)
-				names[i] = index.diskIndex.readDocumentName(numbers[i]);
-			return names;
+			DiskIndex.DocumentNumberIterator numbers = index.diskIndex.iterateDocumentNumbers(offset);
+			try {
+				String[] names = new String[numbers.size()];
+				for (int i = 0; numbers.hasNext(); i++)
+					names[i] = index.diskIndex.readDocumentName(numbers.next());
+				return names;
+			} finally {
+				numbers.close();
+			}
 		}
 
 		for (int i = 0; i < length; i++) {
 			Object offset = this.documentTables[i].get(word);
-			int[] numbers = index.diskIndex.readDocumentNumbers(offset);
-			for (int j = 0, k = numbers.length; j < k; j++)
-				addDocumentName(index.diskIndex.readDocumentName(numbers[j]));
+			DiskIndex.DocumentNumberIterator numbers = index.diskIndex.iterateDocumentNumbers(offset);
+			try {
+				while (numbers.hasNext())
+					addDocumentName(index.diskIndex.readDocumentName(numbers.next()));
+			} finally {
+				numbers.close();
+			}
 		}
 	}
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2004 IBM Corporation and others.
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,10 +11,12 @@
 package org.eclipse.jdt.internal.core.index;
 
 import java.io.*;
+import java.util.Arrays;
 
 import org.eclipse.jdt.core.compiler.CharOperation;
 import org.eclipse.jdt.core.search.*;
 import org.eclipse.jdt.internal.compiler.util.HashtableOfObject;
+import org.eclipse.jdt.internal.compiler.util.SimpleLookupTable;
 import org.eclipse.jdt.internal.core.util.*;
 import org.eclipse.jdt.internal.core.search.indexing.ReadWriteMonitor;
 
@@ -23,7 +25,13 @@ import org.eclipse.jdt.internal.core.search.indexing.ReadWriteMonitor;
  * 
  * Queries can search a single category or several at the same time.
  * 
- * Indexes are not synchronized structures and should only be queried/updated one at a time.
+ * Indexes are not synchronized structures and should only be updated by one writer at a time.
+ * Several queries can run at the same time while they hold the read lock of the index monitor.
+ * 
+ * Saving a few changes writes them to a new delta index next to the disk index, instead of rewriting
+ * the whole disk index. Queries consult the disk index, then each delta index from the oldest, then
+ * the memory index: the documents of a newer index replace the same documents of the older ones.
+ * The delta indexes are merged into the disk index by compact(), or by save() once there are too many.
  */
 
 public class Index {
@@ -32,8 +40,23 @@ public String containerPath;
 public ReadWriteMonitor monitor;
 
 protected DiskIndex diskIndex;
+protected DiskIndex[] deltaIndexes; // from the oldest to the newest
 protected MemoryIndex memoryIndex;
 
+private SimpleLookupTable[] deltaDocuments; // for each delta index, its document names mapped to themselves or to null if removed
+private SimpleLookupTable[] newerDeltaDocuments; // for the disk index then each delta index, the documents of the newer delta indexes
+private int lastDeltaNumber;
+
+public static boolean WRITE_DELTA_INDEXES = true; // set to false to always rewrite the disk index when saving
+public static int MAX_DELTA_INDEXES = 8; // once reached, the delta indexes are merged into the disk index when saving
+public static int COMPACTION_THRESHOLD = 4; // number of delta indexes which should be compacted in the background
+
+static final String DELTA_SUFFIX = ".delta"; //$NON-NLS-1$
+static final String COMPACT_SUFFIX = ".compact"; //$NON-NLS-1$
+static final char[] REMOVED_DOCUMENTS = "removedDocuments".toCharArray(); //$NON-NLS-1$
+static final char[][] REMOVED_DOCUMENTS_CATEGORY = new char[][] {REMOVED_DOCUMENTS};
+static final SimpleLookupTable[] NO_DOCUMENTS = new SimpleLookupTable[0];
+
 /**
  * Mask used on match rule for indexing.
  */
@@ -74,10 +97,92 @@ public Index(String fileName, String containerPath, boolean reuseExistingFile) t
 	this.memoryIndex = new MemoryIndex();
 	this.diskIndex = new DiskIndex(fileName);
 	this.diskIndex.initialize(reuseExistingFile);
+	initializeDeltaIndexes(fileName, reuseExistingFile);
+}
+private void addDeltaIndex() throws IOException {
+	// a delta index only holds the changed documents, so the removed ones are recorded with an entry in a reserved category
+	Object[] docNames = this.memoryIndex.docsToReferences.keyTable;
+	Object[] referenceTables = this.memoryIndex.docsToReferences.valueTable;
+	for (int i = 0, l = docNames.length; i < l; i++)
+		if (docNames[i] != null && referenceTables[i] == null)
+			this.memoryIndex.addIndexEntry(REMOVED_DOCUMENTS, REMOVED_DOCUMENTS, (String) docNames[i]);
+
+	DiskIndex deltaIndex = new DiskIndex(this.diskIndex.fileName + DELTA_SUFFIX + (++this.lastDeltaNumber));
+	deltaIndex.initialize(false);
+	deltaIndex = deltaIndex.mergeWith(this.memoryIndex);
+
+	int length = this.deltaIndexes.length;
+	System.arraycopy(this.deltaIndexes, 0, this.deltaIndexes = new DiskIndex[length + 1], 0, length);
+	System.arraycopy(this.deltaDocuments, 0, this.deltaDocuments = new SimpleLookupTable[length + 1], 0, length);
+	this.deltaIndexes[length] = deltaIndex;
+	this.deltaDocuments[length] = readDeltaDocuments(deltaIndex);
+	computeNewerDeltaDocuments();
 }
 public void addIndexEntry(char[] category, char[] key, String containerRelativePath) {
 	this.memoryIndex.addIndexEntry(category, key, containerRelativePath);
 }
+/**
+ * Merges the delta indexes into the disk index.
+ * The new disk index is written while holding the read lock of the monitor, so queries can run meanwhile.
+ * The write lock is only held to replace the disk index and to delete the merged delta indexes.
+ * Does nothing if the disk index is rewritten by save() in the meantime.
+ */
+public void compact() throws IOException {
+	ReadWriteMonitor readWriteMonitor = this.monitor;
+	DiskIndex previousDiskIndex;
+	DiskIndex newDiskIndex;
+	int numberOfDeltaIndexes;
+	readWriteMonitor.enterRead();
+	try {
+		previousDiskIndex = this.diskIndex;
+		DiskIndex[] deltas = this.deltaIndexes;
+		numberOfDeltaIndexes = deltas.length;
+		if (numberOfDeltaIndexes == 0) return;
+
+		MemoryIndex changes = new MemoryIndex();
+		for (int i = numberOfDeltaIndexes; --i >= 0;)
+			deltas[i].addDocumentsTo(changes); // from the newest so that it replaces the older versions of its documents
+		newDiskIndex = previousDiskIndex.mergeWith(changes, previousDiskIndex.fileName + COMPACT_SUFFIX);
+	} finally {
+		readWriteMonitor.exitRead();
+	}
+
+	readWriteMonitor.enterWrite();
+	try {
+		if (this.diskIndex != previousDiskIndex) {
+			newDiskIndex.delete(); // already merged by save()
+			return;
+		}
+		newDiskIndex.replace(previousDiskIndex);
+		this.diskIndex = newDiskIndex;
+		removeDeltaIndexes(numberOfDeltaIndexes); // delta indexes added meanwhile are kept
+	} finally {
+		readWriteMonitor.exitWrite();
+	}
+}
+private void computeNewerDeltaDocuments() {
+	int length = this.deltaIndexes.length;
+	this.newerDeltaDocuments = new SimpleLookupTable[length + 1];
+	SimpleLookupTable newerDocuments = null;
+	for (int i = length; --i >= 0;) {
+		SimpleLookupTable documents = this.deltaDocuments[i];
+		if (newerDocuments == null) {
+			newerDocuments = documents;
+		} else {
+			SimpleLookupTable allDocuments = new SimpleLookupTable(newerDocuments.elementSize + documents.elementSize);
+			Object[] names = newerDocuments.keyTable;
+			for (int j = 0, m = names.length; j < m; j++)
+				if (names[j] != null)
+					allDocuments.put(names[j], names[j]);
+			names = documents.keyTable;
+			for (int j = 0, m = names.length; j < m; j++)
+				if (names[j] != null)
+					allDocuments.put(names[j], names[j]);
+			newerDocuments = allDocuments;
+		}
+		this.newerDeltaDocuments[i] = newerDocuments; // the documents of delta index i replace those of the disk index or the delta index i - 1
+	}
+}
 public String containerRelativePath(String documentPath) {
 	int index = documentPath.indexOf(IJavaSearchScope.JAR_FILE_ENTRY_SEPARATOR);
 	if (index == -1) {
@@ -87,14 +192,100 @@ public String containerRelativePath(String documentPath) {
 	}
 	return documentPath.substring(index + 1);
 }
+/**
+ * Deletes the file of an index and the files of its delta indexes.
+ */
+public static void deleteIndexFiles(String fileName) {
+	File indexFile = new File(fileName);
+	if (indexFile.exists())
+		indexFile.delete();
+	String[] deltaNames = deltaIndexNames(indexFile);
+	for (int i = 0, l = deltaNames.length; i < l; i++)
+		if (deltaNames[i] != null)
+			new File(indexFile.getParentFile(), deltaNames[i]).delete();
+}
+private static String[] deltaIndexNames(File indexFile) {
+	// delta indexes are named after their disk index followed by their number
+	File directory = indexFile.getAbsoluteFile().getParentFile();
+	String[] names = directory == null ? null : directory.list();
+	if (names == null) return new String[0];
+
+	String prefix = indexFile.getName() + DELTA_SUFFIX;
+	for (int i = 0, l = names.length; i < l; i++)
+		if (deltaIndexNumber(names[i], prefix) < 0)
+			names[i] = null;
+	return names;
+}
+private static int deltaIndexNumber(String name, String prefix) {
+	if (!name.startsWith(prefix) || name.length() == prefix.length()) return -1;
+	for (int i = prefix.length(), l = name.length(); i < l; i++)
+		if (!Character.isDigit(name.charAt(i)))
+			return -1;
+	return Integer.parseInt(name.substring(prefix.length()));
+}
+/**
+ * Answers the number of bytes read from the index files by the current thread since it started,
+ * so that the bytes read by a query are the difference between the values before and after it.
+ */
+public static long getBytesRead() {
+	return DiskIndex.getBytesRead();
+}
 public File getIndexFile() {
 	if (this.diskIndex == null) return null;
 
 	return this.diskIndex.getIndexFile();
 }
+/**
+ * Answers the file name of the index to which the given index file belongs: the name of the disk index
+ * if the file is one of its delta indexes, the given name otherwise.
+ */
+public static String getIndexFileName(String fileName) {
+	int index = fileName.lastIndexOf(DELTA_SUFFIX);
+	if (index == -1 || deltaIndexNumber(fileName, fileName.substring(0, index + DELTA_SUFFIX.length())) < 0)
+		return fileName;
+	return fileName.substring(0, index);
+}
 public boolean hasChanged() {
 	return this.memoryIndex.hasChanged();
 }
+private void initializeDeltaIndexes(String fileName, boolean reuseExistingFiles) throws IOException {
+	File indexFile = new File(fileName);
+	String prefix = indexFile.getName() + DELTA_SUFFIX;
+	String[] deltaNames = deltaIndexNames(indexFile);
+	int[] numbers = new int[deltaNames.length];
+	int count = 0;
+	for (int i = 0, l = deltaNames.length; i < l; i++) {
+		if (deltaNames[i] == null) continue;
+		if (reuseExistingFiles)
+			numbers[count++] = deltaIndexNumber(deltaNames[i], prefix);
+		else
+			new File(indexFile.getAbsoluteFile().getParentFile(), deltaNames[i]).delete();
+	}
+	Arrays.sort(numbers, 0, count);
+
+	this.deltaIndexes = new DiskIndex[count];
+	this.deltaDocuments = new SimpleLookupTable[count];
+	for (int i = 0; i < count; i++) {
+		this.deltaIndexes[i] = new DiskIndex(fileName + DELTA_SUFFIX + numbers[i]);
+		this.deltaIndexes[i].initialize(true);
+		this.deltaDocuments[i] = readDeltaDocuments(this.deltaIndexes[i]);
+	}
+	this.lastDeltaNumber = count == 0 ? 0 : numbers[count - 1];
+	computeNewerDeltaDocuments();
+}
+private SimpleLookupTable[] newerDocuments(int index, SimpleLookupTable memoryDocuments) {
+	// answers the tables of the documents which replace those of the disk index (index 0) or of the delta index (index - 1)
+	// the answer is never null for a delta index since the document names of its query results must be read (see EntryResult)
+	SimpleLookupTable deltaDocuments = this.newerDeltaDocuments[index];
+	if (deltaDocuments == null) {
+		if (memoryDocuments != null)
+			return new SimpleLookupTable[] {memoryDocuments};
+		return index == 0 ? null : NO_DOCUMENTS;
+	}
+	if (memoryDocuments != null)
+		return new SimpleLookupTable[] {deltaDocuments, memoryDocuments};
+	return new SimpleLookupTable[] {deltaDocuments};
+}
 /**
  * Returns the entries containing the given key in a group of categories, or null if no matches are found.
  * The matchRule dictates whether its an exact, prefix or pattern match, as well as case sensitive or insensitive.
@@ -109,15 +300,14 @@ public EntryResult[] query(char[][] categories, char[] key, int matchRule) throw
 		}
 	}
 
-	HashtableOfObject results;
 	int rule = matchRule & MATCH_RULE_INDEX_MASK;
-	if (this.memoryIndex.hasChanged()) {
-		results = this.diskIndex.addQueryResults(categories, key, rule, this.memoryIndex);
+	SimpleLookupTable memoryDocuments = this.memoryIndex.hasChanged() ? this.memoryIndex.docsToReferences : null;
+	HashtableOfObject results = this.diskIndex.addQueryResults(categories, key, rule, newerDocuments(0, memoryDocuments), null);
+	for (int i = 0, l = this.deltaIndexes.length; i < l; i++)
+		results = this.deltaIndexes[i].addQueryResults(categories, key, rule, newerDocuments(i + 1, memoryDocuments), results);
+	if (memoryDocuments != null)
 		results = this.memoryIndex.addQueryResults(categories, key, rule, results);
-	} else {
-		results = this.diskIndex.addQueryResults(categories, key, rule, null);
-	}
-	if (results == null) return null;
+	if (results == null || results.elementSize == 0) return null;
 
 	EntryResult[] entryResults = new EntryResult[results.elementSize];
 	int count = 0;
@@ -133,13 +323,19 @@ public EntryResult[] query(char[][] categories, char[] key, int matchRule) throw
  * Returns the document names that contain the given substring, if null then returns all of them.
  */
 public String[] queryDocumentNames(String substring) throws IOException {
-	SimpleSet results;
-	if (this.memoryIndex.hasChanged()) {
-		results = this.diskIndex.addDocumentNames(substring, this.memoryIndex);
-		this.memoryIndex.addDocumentNames(substring, results);
-	} else {
-		results = this.diskIndex.addDocumentNames(substring, null);
+	SimpleLookupTable memoryDocuments = this.memoryIndex.hasChanged() ? this.memoryIndex.docsToReferences : null;
+	SimpleSet results = this.diskIndex.addDocumentNames(substring, newerDocuments(0, memoryDocuments));
+	for (int i = 0, l = this.deltaIndexes.length; i < l; i++) {
+		SimpleLookupTable[] newerDocuments = newerDocuments(i + 1, memoryDocuments);
+		Object[] names = this.deltaDocuments[i].valueTable; // removed documents are mapped to null
+		for (int j = 0, m = names.length; j < m; j++) {
+			String name = (String) names[j];
+			if (name != null && (substring == null || name.startsWith(substring, 0)) && !DiskIndex.isReplaced(name, newerDocuments))
+				results.add(name);
+		}
 	}
+	if (memoryDocuments != null)
+		this.memoryIndex.addDocumentNames(substring, results);
 	if (results.elementSize == 0) return null;
 
 	String[] documentNames = new String[results.elementSize];
@@ -150,26 +346,69 @@ public String[] queryDocumentNames(String substring) throws IOException {
 			documentNames[count++] = (String) paths[i];
 	return documentNames;
 }
+private SimpleLookupTable readDeltaDocuments(DiskIndex deltaIndex) throws IOException {
+	SimpleSet names = deltaIndex.addDocumentNames(null, null);
+	SimpleLookupTable documents = new SimpleLookupTable(names.elementSize);
+	Object[] values = names.values;
+	for (int i = 0, l = values.length; i < l; i++)
+		if (values[i] != null)
+			documents.put(values[i], values[i]);
+
+	HashtableOfObject results = deltaIndex.addQueryResults(REMOVED_DOCUMENTS_CATEGORY, REMOVED_DOCUMENTS, SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE, NO_DOCUMENTS, null);
+	EntryResult removed = results == null ? null : (EntryResult) results.get(REMOVED_DOCUMENTS);
+	if (removed != null) {
+		String[] removedNames = removed.getDocumentNames(this);
+		for (int i = 0, l = removedNames.length; i < l; i++)
+			documents.put(removedNames[i], null);
+	}
+	return documents;
+}
 public void remove(String containerRelativePath) {
 	this.memoryIndex.remove(containerRelativePath);
 }
+private void removeDeltaIndexes(int count) {
+	// removes the given number of the oldest delta indexes, once they are merged into the disk index
+	for (int i = 0; i < count; i++)
+		this.deltaIndexes[i].delete();
+	int length = this.deltaIndexes.length - count;
+	System.arraycopy(this.deltaIndexes, count, this.deltaIndexes = new DiskIndex[length], 0, length);
+	System.arraycopy(this.deltaDocuments, count, this.deltaDocuments = new SimpleLookupTable[length], 0, length);
+	computeNewerDeltaDocuments();
+}
 public void save() throws IOException {
 	// must own the write lock of the monitor
 	if (!hasChanged()) return;
 
 	int numberOfChanges = this.memoryIndex.docsToReferences.elementSize;
-	this.diskIndex = this.diskIndex.mergeWith(this.memoryIndex);
+	if (WRITE_DELTA_INDEXES && this.deltaIndexes.length < MAX_DELTA_INDEXES && numberOfChanges * 10 <= this.diskIndex.numberOfDocuments()) {
+		addDeltaIndex(); // only write the changed documents
+	} else {
+		for (int i = this.deltaIndexes.length; --i >= 0;)
+			this.deltaIndexes[i].addDocumentsTo(this.memoryIndex); // the documents of the memory index are newer
+		this.diskIndex = this.diskIndex.mergeWith(this.memoryIndex);
+		removeDeltaIndexes(this.deltaIndexes.length);
+	}
 	this.memoryIndex = new MemoryIndex();
 	if (numberOfChanges > 1000)
 		System.gc(); // reclaim space if the MemoryIndex was very BIG
 }
+/**
+ * Answers whether enough changes were saved in delta indexes to compact them.
+ */
+public boolean shouldCompact() {
+	return this.deltaIndexes.length >= COMPACTION_THRESHOLD;
+}
 public void startQuery() {
 	if (this.diskIndex != null)
 		this.diskIndex.startQuery();
+	for (int i = 0, l = this.deltaIndexes.length; i < l; i++)
+		this.deltaIndexes[i].startQuery();
 }
 public void stopQuery() {
 	if (this.diskIndex != null)
 		this.diskIndex.stopQuery();
+	for (int i = 0, l = this.deltaIndexes.length; i < l; i++)
+		this.deltaIndexes[i].stopQuery();
 }
 public String toString() {
 	return "Index for " + this.containerPath; //$NON-NLS-1$
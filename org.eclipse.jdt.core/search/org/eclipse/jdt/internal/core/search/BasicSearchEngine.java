@@ -63,6 +63,12 @@ public class BasicSearchEngine {
 	 */	
 	public static boolean VERBOSE = false;
 
+	/*
+	 * The metrics of the last search of this engine, and of all the searches of the session.
+	 */
+	private SearchMetrics lastSearchMetrics;
+	private static SearchMetrics SessionMetrics = new SearchMetrics();
+
 	/*
 	 * Creates a new search basic engine.
 	 */
@@ -177,6 +183,9 @@ public class BasicSearchEngine {
 		}
 	
 		IndexManager indexManager = JavaModelManager.getJavaModelManager().getIndexManager();
+		SearchMetrics metrics = new SearchMetrics();
+		SearchMetrics previousMetrics = SearchMetrics.setCurrent(metrics);
+		long start = System.currentTimeMillis();
 		try {
 			requestor.beginReporting();
 			for (int i = 0, l = participants == null ? 0 : participants.length; i < l; i++) {
@@ -189,6 +198,11 @@ public class BasicSearchEngine {
 					if (subMonitor != null) subMonitor.subTask(Messages.bind(Messages.engine_searching_indexing, new String[] {participant.getDescription()})); 
 					participant.beginSearching();
 					requestor.enterParticipant(participant);
+					if (requestor instanceof LimitedSearchRequestor) {
+						// locate the matches of each index as soon as it is queried, so that the search stops once enough matches are found
+						locateMatchesByIndex(pattern, participant, scope, requestor, subMonitor);
+						continue;
+					}
 					PathCollector pathCollector = new PathCollector();
 					indexManager.performConcurrentJob(
 						new PatternSearchJob(pattern, participant, scope, pathCollector),
@@ -198,12 +212,15 @@ public class BasicSearchEngine {
 	
 					// locate index matches if any (note that all search matches could have been issued during index querying)
 					if (subMonitor != null) subMonitor.subTask(Messages.bind(Messages.engine_searching_matching, new String[] {participant.getDescription()})); 
+					long collectionStart = System.currentTimeMillis();
 					String[] indexMatchPaths = pathCollector.getPaths();
 					pathCollector = null; // release
 					int indexMatchLength = indexMatchPaths == null ? 0 : indexMatchPaths.length;
 					SearchDocument[] indexMatches = new SearchDocument[indexMatchLength];
 					for (int j = 0; j < indexMatchLength; j++)
 						indexMatches[j] = participant.getDocument(indexMatchPaths[j]);
+					metrics.addTime(SearchMetrics.PATH_COLLECTION, System.currentTimeMillis() - collectionStart);
+					metrics.addCount(SearchMetrics.CANDIDATE_DOCUMENTS, indexMatchLength);
 					SearchDocument[] matches = MatchLocator.addWorkingCopies(pattern, indexMatches, getWorkingCopies(), participant);
 					participant.locateMatches(matches, pattern, scope, requestor, subMonitor);
 				} finally {		
@@ -215,8 +232,77 @@ public class BasicSearchEngine {
 			requestor.endReporting();
 			if (monitor != null)
 				monitor.done();
+			endSearch(metrics, previousMetrics, start);
+		}
+	}
+	/*
+	 * Ends a search whose metrics were made the current metrics of this thread, making the given ones current again.
+	 * The metrics of the search are kept as the last ones of this engine and added to the metrics of the session.
+	 */
+	private void endSearch(SearchMetrics metrics, SearchMetrics previousMetrics, long start) {
+		SearchMetrics.setCurrent(previousMetrics);
+		metrics.addSearch(System.currentTimeMillis() - start);
+		this.lastSearchMetrics = metrics;
+		SessionMetrics.add(metrics);
+		if (VERBOSE)
+			System.out.println(metrics);
+	}
+	/*
+	 * Locates the matches of the working copies, then the matches of the documents of each index in turn.
+	 * Documents found in several indexes are located once.
+	 */
+	private void locateMatchesByIndex(SearchPattern pattern, SearchParticipant participant, IJavaSearchScope scope, SearchRequestor requestor, IProgressMonitor monitor) throws CoreException {
+		HashSet locatedPaths = new HashSet();
+		SearchDocument[] workingCopies = MatchLocator.addWorkingCopies(pattern, new SearchDocument[0], getWorkingCopies(), participant);
+		for (int i = 0, length = workingCopies.length; i < length; i++)
+			locatedPaths.add(workingCopies[i].getPath());
+		if (workingCopies.length > 0)
+			participant.locateMatches(workingCopies, pattern, scope, requestor, monitor);
+
+		IndexManager indexManager = JavaModelManager.getJavaModelManager().getIndexManager();
+		SearchMetrics metrics = SearchMetrics.current();
+		long start = System.currentTimeMillis();
+		IPath[] indexLocations = participant.selectIndexes(pattern, scope);
+		metrics.addTime(SearchMetrics.INDEX_SELECTION, System.currentTimeMillis() - start);
+		for (int i = 0, length = indexLocations.length; i < length; i++) {
+			if (monitor != null && monitor.isCanceled()) throw new OperationCanceledException();
+			PathCollector pathCollector = new PathCollector();
+			indexManager.performConcurrentJob(
+				new PatternSearchJob(pattern, participant, scope, new IPath[] {indexLocations[i]}, pathCollector),
+				IJavaSearchConstants.WAIT_UNTIL_READY_TO_SEARCH,
+				monitor);
+			start = System.currentTimeMillis();
+			String[] indexMatchPaths = pathCollector.getPaths();
+			ArrayList documents = new ArrayList(indexMatchPaths.length);
+			for (int j = 0, pathsLength = indexMatchPaths.length; j < pathsLength; j++) {
+				if (locatedPaths.add(indexMatchPaths[j]))
+					documents.add(participant.getDocument(indexMatchPaths[j]));
+			}
+			metrics.addTime(SearchMetrics.PATH_COLLECTION, System.currentTimeMillis() - start);
+			metrics.addCount(SearchMetrics.CANDIDATE_DOCUMENTS, documents.size());
+			if (documents.size() > 0) {
+				SearchDocument[] indexMatches = new SearchDocument[documents.size()];
+				documents.toArray(indexMatches);
+				participant.locateMatches(indexMatches, pattern, scope, requestor, monitor);
+			}
 		}
 	}
+	/**
+	 * Returns the metrics of the last search run by this engine (see {@link #findMatches} and the <code>searchAllTypeNames</code> methods),
+	 * or <code>null</code> if it has run none.
+	 */
+	public SearchMetrics getLastSearchMetrics() {
+		return this.lastSearchMetrics;
+	}
+	/**
+	 * Returns the metrics of all the searches run since the session started.
+	 * The metrics answered are a copy which is not updated by the following searches.
+	 */
+	public static SearchMetrics getSessionMetrics() {
+		SearchMetrics metrics = new SearchMetrics();
+		metrics.add(SessionMetrics);
+		return metrics;
+	}
 	/**
 	 * Returns a new default Java search participant.
 	 * 
@@ -424,6 +510,42 @@ public class BasicSearchEngine {
 		findMatches(pattern, participants, scope, requestor, monitor);
 	}
 
+	/**
+	 * Searches for at most the given number of matches of a given search pattern.
+	 * The matches of each index are located and reported as soon as the index has been queried
+	 * (the matches of the working copies being reported first), and the index queries and the match location
+	 * stop once the maximum number of matches has been reported.
+	 *
+	 * @param pattern the pattern to search
+	 * @param participants the particpants in the search
+	 * @param scope the search scope
+	 * @param requestor the requestor to report the matches to
+	 * @param maxResults the maximum number of matches to report, or <code>0</code> for no limit
+	 * @param monitor the progress monitor used to report progress
+	 * @exception CoreException if the search failed. Reasons include:
+	 *	<ul>
+	 *		<li>the classpath is incorrectly set</li>
+	 *	</ul>
+	 * @see #search(SearchPattern, SearchParticipant[], IJavaSearchScope, SearchRequestor, IProgressMonitor)
+	 */
+	public void search(SearchPattern pattern, SearchParticipant[] participants, IJavaSearchScope scope, SearchRequestor requestor, int maxResults, IProgressMonitor monitor) throws CoreException {
+		if (VERBOSE) {
+			System.out.println("BasicSearchEngine.search(SearchPattern, SearchParticipant[], IJavaSearchScope, SearchRequestor, int, IProgressMonitor)"); //$NON-NLS-1$
+			System.out.println("	- max results: "+maxResults); //$NON-NLS-1$
+		}
+		if (maxResults <= 0) {
+			findMatches(pattern, participants, scope, requestor, monitor);
+			return;
+		}
+		LimitedSearchRequestor limitedRequestor = new LimitedSearchRequestor(requestor, maxResults);
+		try {
+			findMatches(pattern, participants, scope, limitedRequestor, monitor);
+		} catch (SearchLimitReachedException e) {
+			if (e.requestor != limitedRequestor) throw e;
+			// enough matches have been reported
+		}
+	}
+
 	/**
 	 * Searches for all top-level types and member types in the given scope.
 	 * The search can be selecting specific types (given a package or a type name
@@ -534,6 +656,8 @@ public class BasicSearchEngine {
 			}
 		}
 	
+		final SearchMetrics metrics = new SearchMetrics();
+		final IRestrictedAccessTypeRequestor measuredRequestor = new MeasuredTypeNameRequestor(nameRequestor, metrics);
 		IndexQueryRequestor searchRequestor = new IndexQueryRequestor(){
 			public boolean acceptIndexMatch(String documentPath, SearchPattern indexRecord, SearchParticipant participant, AccessRuleSet access) {
 				TypeDeclarationPattern record = (TypeDeclarationPattern)indexRecord;
@@ -562,13 +686,15 @@ public class BasicSearchEngine {
 						}
 					}
 					if (match(record.typeSuffix, record.modifiers)) {
-						nameRequestor.acceptType(record.modifiers, record.pkg, record.simpleName, record.enclosingTypeNames, documentPath, accessRestriction);
+						measuredRequestor.acceptType(record.modifiers, record.pkg, record.simpleName, record.enclosingTypeNames, documentPath, accessRestriction);
 					}
 				}
 				return true;
 			}
 		};
 	
+		SearchMetrics previousMetrics = SearchMetrics.setCurrent(metrics);
+		long start = System.currentTimeMillis();
 		try {
 			if (progressMonitor != null) {
 				progressMonitor.beginTask(Messages.engine_searching, 100); 
@@ -614,7 +740,7 @@ public class BasicSearchEngine {
 								kind = IGenericType.INTERFACE_DECL;
 							}
 							if (match(typeSuffix, packageName, typeName, matchRule, kind, packageDeclaration, simpleName)) {
-								nameRequestor.acceptType(type.getFlags(), packageDeclaration, simpleName, enclosingTypeNames, path, null);
+								measuredRequestor.acceptType(type.getFlags(), packageDeclaration, simpleName, enclosingTypeNames, path, null);
 							}
 						}
 					} else {
@@ -644,7 +770,7 @@ public class BasicSearchEngine {
 								}
 								public boolean visit(TypeDeclaration typeDeclaration, CompilationUnitScope compilationUnitScope) {
 									if (match(typeSuffix, packageName, typeName, matchRule, typeDeclaration.kind(), packageDeclaration, typeDeclaration.name)) {
-										nameRequestor.acceptType(typeDeclaration.modifiers, packageDeclaration, typeDeclaration.name, CharOperation.NO_CHAR_CHAR, path, null);
+										measuredRequestor.acceptType(typeDeclaration.modifiers, packageDeclaration, typeDeclaration.name, CharOperation.NO_CHAR_CHAR, path, null);
 									}
 									return true;
 								}
@@ -662,7 +788,7 @@ public class BasicSearchEngine {
 											}
 										}
 										// report
-										nameRequestor.acceptType(memberTypeDeclaration.modifiers, packageDeclaration, memberTypeDeclaration.name, enclosingTypeNames, path, null);
+										measuredRequestor.acceptType(memberTypeDeclaration.modifiers, packageDeclaration, memberTypeDeclaration.name, enclosingTypeNames, path, null);
 									}
 									return true;
 								}
@@ -676,6 +802,39 @@ public class BasicSearchEngine {
 			if (progressMonitor != null) {
 				progressMonitor.done();
 			}
+			endSearch(metrics, previousMetrics, start);
+		}
+	}
+
+	/**
+	 * Searches for at most the given number of top-level types and member types in the given scope.
+	 * The types are reported as soon as an index yields them, and the index queries stop
+	 * once the maximum number of types has been reported.
+	 * 
+	 * @param maxResults the maximum number of types to report, or <code>0</code> for no limit
+	 * @see #searchAllTypeNames(char[], char[], int, int, IJavaSearchScope, IRestrictedAccessTypeRequestor, int, IProgressMonitor)
+	 */
+	public void searchAllTypeNames(
+		char[] packageName, 
+		char[] typeName,
+		int matchRule, 
+		int searchFor, 
+		IJavaSearchScope scope, 
+		IRestrictedAccessTypeRequestor nameRequestor,
+		int maxResults,
+		int waitingPolicy,
+		IProgressMonitor progressMonitor)  throws JavaModelException {
+
+		if (maxResults <= 0) {
+			searchAllTypeNames(packageName, typeName, matchRule, searchFor, scope, nameRequestor, waitingPolicy, progressMonitor);
+			return;
+		}
+		LimitedTypeNameRequestor limitedRequestor = new LimitedTypeNameRequestor(nameRequestor, maxResults);
+		try {
+			searchAllTypeNames(packageName, typeName, matchRule, searchFor, scope, limitedRequestor, waitingPolicy, progressMonitor);
+		} catch (SearchLimitReachedException e) {
+			if (e.requestor != limitedRequestor) throw e;
+			// enough types have been reported
 		}
 	}
 
@@ -758,6 +917,8 @@ public class BasicSearchEngine {
 			}
 		}
 
+		final SearchMetrics metrics = new SearchMetrics();
+		final IRestrictedAccessTypeRequestor measuredRequestor = new MeasuredTypeNameRequestor(nameRequestor, metrics);
 		IndexQueryRequestor searchRequestor = new IndexQueryRequestor(){
 			public boolean acceptIndexMatch(String documentPath, SearchPattern indexRecord, SearchParticipant participant, AccessRuleSet access) {
 				if (!workingCopyPaths.contains(documentPath)) { // filter out working copies
@@ -784,12 +945,14 @@ public class BasicSearchEngine {
 							accessRestriction = access.getViolatedRestriction(path);
 						}
 					}
-					nameRequestor.acceptType(record.modifiers, record.getPackageName(), record.simpleName, record.getEnclosingTypeNames(), documentPath, accessRestriction);
+					measuredRequestor.acceptType(record.modifiers, record.getPackageName(), record.simpleName, record.getEnclosingTypeNames(), documentPath, accessRestriction);
 				}
 				return true;
 			}
 		};
 	
+		SearchMetrics previousMetrics = SearchMetrics.setCurrent(metrics);
+		long start = System.currentTimeMillis();
 		try {
 			if (progressMonitor != null) {
 				progressMonitor.beginTask(Messages.engine_searching, 100); 
@@ -837,7 +1000,7 @@ public class BasicSearchEngine {
 								suffix = IIndexConstants.ANNOTATION_TYPE_SUFFIX;
 							}
 							if (pattern.matchesDecodedKey(new QualifiedTypeDeclarationPattern(qualification, simpleName, suffix, matchRule))) {
-								nameRequestor.acceptType(type.getFlags(), packageDeclaration, simpleName, enclosingTypeNames, path, null);
+								measuredRequestor.acceptType(type.getFlags(), packageDeclaration, simpleName, enclosingTypeNames, path, null);
 							}
 						}
 					} else {
@@ -871,7 +1034,7 @@ public class BasicSearchEngine {
 									SearchPattern decodedPattern =
 										new QualifiedTypeDeclarationPattern(packageDeclaration, typeDeclaration.name, convertTypeKind(typeDeclaration.kind()), matchRule);
 									if (pattern.matchesDecodedKey(decodedPattern)) {
-										nameRequestor.acceptType(typeDeclaration.modifiers, packageDeclaration, typeDeclaration.name, CharOperation.NO_CHAR_CHAR, path, null);
+										measuredRequestor.acceptType(typeDeclaration.modifiers, packageDeclaration, typeDeclaration.name, CharOperation.NO_CHAR_CHAR, path, null);
 									}
 									return true;
 								}
@@ -892,7 +1055,7 @@ public class BasicSearchEngine {
 									SearchPattern decodedPattern =
 										new QualifiedTypeDeclarationPattern(qualification, memberTypeDeclaration.name, convertTypeKind(memberTypeDeclaration.kind()), matchRule);
 									if (pattern.matchesDecodedKey(decodedPattern)) {
-										nameRequestor.acceptType(memberTypeDeclaration.modifiers, packageDeclaration, memberTypeDeclaration.name, enclosingTypeNames, path, null);
+										measuredRequestor.acceptType(memberTypeDeclaration.modifiers, packageDeclaration, memberTypeDeclaration.name, enclosingTypeNames, path, null);
 									}
 									return true;
 								}
@@ -906,6 +1069,7 @@ public class BasicSearchEngine {
 			if (progressMonitor != null) {
 				progressMonitor.done();
 			}
+			endSearch(metrics, previousMetrics, start);
 		}
 	}
 	
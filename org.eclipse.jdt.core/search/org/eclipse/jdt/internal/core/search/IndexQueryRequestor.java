@@ -22,4 +22,9 @@ public abstract class IndexQueryRequestor {
 	// answer false if requesting cancel
 	public abstract boolean acceptIndexMatch(String documentPath, SearchPattern indexRecord, SearchParticipant participant, AccessRuleSet access);
 	
+	// answer true if the index records are kept after acceptIndexMatch returned, 
+	// in which case a new record is decoded for each matching index entry
+	public boolean keepsIndexRecords() {
+		return false;
+	}
 }
@@ -28,6 +28,7 @@ import org.eclipse.jdt.core.IOpenable;
 import org.eclipse.jdt.core.IPackageFragmentRoot;
 import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.internal.compiler.env.AccessRuleSet;
+import org.eclipse.jdt.internal.compiler.util.SimpleLookupTable;
 import org.eclipse.jdt.internal.core.*;
 import org.eclipse.jdt.internal.core.JavaElement;
 import org.eclipse.jdt.internal.core.JavaModelManager;
@@ -51,6 +52,11 @@ public class JavaSearchScope extends AbstractSearchScope {
 	private int pathsCount;
 	private int threshold;
 	
+	/* The indexes of the paths keyed by their full path (container path + '/' + relative path),
+	   so that the paths enclosing a resource are found by looking up its parent paths
+	   instead of comparing it with all the paths (see #indexOf(String, String)) */
+	private SimpleLookupTable pathIndexes;
+	
 	private IPath[] enclosingProjectsAndJars;
 	public final static AccessRuleSet NOT_ENCLOSED = new AccessRuleSet(null);
 	
@@ -259,6 +265,16 @@ private void add(String relativePath, String containerPath, boolean withSubFolde
 	this.paths[index] = relativePath;
 	this.containerPaths[index] = containerPath;
 	this.pathWithSubFolders[index] = withSubFolders;
+	String key = fullPath(relativePath, containerPath);
+	int[] indexes = (int[]) this.pathIndexes.get(key);
+	if (indexes == null) {
+		indexes = new int[] {index};
+	} else {
+		int length = indexes.length;
+		System.arraycopy(indexes, 0, indexes = new int[length+1], 0, length);
+		indexes[length] = index;
+	}
+	this.pathIndexes.put(key, indexes);
 	if (this.pathRestrictions != null)
 		this.pathRestrictions[index] = access;
 	else if (access != null) {
@@ -283,31 +299,53 @@ public boolean encloses(String resourcePathString) {
 	return indexOf(resourcePathString, null) >= 0;
 }
 
+/*
+ * Returns the key of the given path in the path indexes table: the path relative to the container
+ * appended to the container path, without trailing separator.
+ */
+private String fullPath(String relativePath, String containerPath) {
+	int length = relativePath.length();
+	if (length > 0 && relativePath.charAt(length-1) == '/')
+		relativePath = relativePath.substring(0, --length);
+	if (length == 0) 
+		return containerPath;
+	return containerPath + '/' + relativePath;
+}
+
 /**
  * Returns paths list index of given path or -1 if not found.
+ * If the container path is null, the given path is the full path of the resource.
  */
 private int indexOf(String relativePath, String containerPath) {
+	// a path of this scope can only enclose the given path if it is this path or one of its parents:
+	// look up these parents from the deepest one, and check the paths found with their subfolders semantic
+	String path;
+	int limit;
 	if (containerPath != null) {
-		// if container path is known, use the hash to get faster comparison
-		int index = (containerPath.hashCode()& 0x7FFFFFFF) % this.paths.length;
-		String currentContainerPath;
-		while ((currentContainerPath = this.containerPaths[index]) != null) {
-			if (currentContainerPath.equals(containerPath)) {
+		path = fullPath(relativePath, containerPath);
+		limit = containerPath.length(); // don't look above the container
+	} else {
+		path = relativePath;
+		limit = 0;
+	}
+	int end = path.length();
+	while (end >= limit) {
+		int[] indexes = (int[]) this.pathIndexes.get(end == path.length() ? path : path.substring(0, end));
+		if (indexes != null) {
+			for (int i = 0, length = indexes.length; i < length; i++) {
+				int index = indexes[i];
 				String scopePath = this.paths[index];
-				if (encloses(scopePath, relativePath, index))
+				if (scopePath == null) continue; // removed
+				if (containerPath != null) {
+					if (this.containerPaths[index].equals(containerPath) && encloses(scopePath, relativePath, index))
+						return index;
+				} else if (encloses(this.containerPaths[index] + '/' + scopePath, relativePath, index)) {
 					return index;
+				}
 			}
-			index = (index + 1) % this.paths.length;
 		}
-		return -1;
-	}
-	
-	// fallback to sequentially looking at all known paths
-	for (int i = 0, length = this.paths.length; i < length; i++) {
-		String scopePath = this.paths[i];
-		if (scopePath == null) continue;
-		if (encloses(this.containerPaths[i] + '/' + scopePath, relativePath, i))
-			return i;
+		if (end == limit) break;
+		end = path.lastIndexOf('/', end - 1);
 	}
 	return -1;
 }
@@ -422,6 +460,7 @@ protected void initialize(int size) {
 	this.containerPaths = new String[extraRoom];
 	this.pathWithSubFolders = new boolean[extraRoom];
 	this.pathRestrictions = null; // null to optimize case where no access rules are used
+	this.pathIndexes = new SimpleLookupTable(extraRoom);
 
 	this.enclosingProjectsAndJars = new IPath[0];
 }
@@ -479,6 +518,7 @@ private void rehash() {
 	this.containerPaths = newScope.containerPaths;
 	this.pathWithSubFolders = newScope.pathWithSubFolders;
 	this.pathRestrictions = newScope.pathRestrictions;
+	this.pathIndexes = newScope.pathIndexes;
 	this.threshold = newScope.threshold;
 }
 
@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.core.search;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jdt.core.search.SearchMatch;
+import org.eclipse.jdt.core.search.SearchParticipant;
+import org.eclipse.jdt.core.search.SearchRequestor;
+
+/**
+ * Reports the matches to another requestor until a maximum number of matches is reached,
+ * then stops the search by throwing a <code>SearchLimitReachedException</code>.
+ */
+public class LimitedSearchRequestor extends SearchRequestor {
+
+SearchRequestor requestor;
+int maxResults;
+int resultCount = 0;
+
+public LimitedSearchRequestor(SearchRequestor requestor, int maxResults) {
+	this.requestor = requestor;
+	this.maxResults = maxResults;
+}
+public void acceptSearchMatch(SearchMatch match) throws CoreException {
+	if (this.resultCount >= this.maxResults)
+		throw new SearchLimitReachedException(this);
+	this.requestor.acceptSearchMatch(match);
+	if (++this.resultCount == this.maxResults)
+		throw new SearchLimitReachedException(this);
+}
+public void beginReporting() {
+	this.requestor.beginReporting();
+}
+public void endReporting() {
+	this.requestor.endReporting();
+}
+public void enterParticipant(SearchParticipant participant) {
+	this.requestor.enterParticipant(participant);
+}
+public void exitParticipant(SearchParticipant participant) {
+	this.requestor.exitParticipant(participant);
+}
+/**
+ * Answers whether the maximum number of matches has been reported.
+ */
+public boolean isFull() {
+	return this.resultCount >= this.maxResults;
+}
+}
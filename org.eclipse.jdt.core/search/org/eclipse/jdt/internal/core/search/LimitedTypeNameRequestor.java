@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.core.search;
+
+import org.eclipse.jdt.internal.compiler.env.AccessRestriction;
+
+/**
+ * Reports the types to another requestor until a maximum number of types is reached,
+ * then stops the search by throwing a <code>SearchLimitReachedException</code>.
+ */
+public class LimitedTypeNameRequestor implements IRestrictedAccessTypeRequestor {
+
+IRestrictedAccessTypeRequestor requestor;
+int maxResults;
+int resultCount = 0;
+
+public LimitedTypeNameRequestor(IRestrictedAccessTypeRequestor requestor, int maxResults) {
+	this.requestor = requestor;
+	this.maxResults = maxResults;
+}
+public void acceptType(int modifiers, char[] packageName, char[] simpleTypeName, char[][] enclosingTypeNames, String path, AccessRestriction access) {
+	if (this.resultCount >= this.maxResults)
+		throw new SearchLimitReachedException(this);
+	this.requestor.acceptType(modifiers, packageName, simpleTypeName, enclosingTypeNames, path, access);
+	if (++this.resultCount == this.maxResults)
+		throw new SearchLimitReachedException(this);
+}
+}
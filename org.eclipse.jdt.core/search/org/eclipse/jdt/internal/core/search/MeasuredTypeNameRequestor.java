@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.core.search;
+
+import org.eclipse.jdt.internal.compiler.env.AccessRestriction;
+
+/**
+ * Reports the types to another requestor, adding the time spent in this requestor and the number of types
+ * reported to the metrics of a search (see SearchMetrics).
+ */
+public class MeasuredTypeNameRequestor implements IRestrictedAccessTypeRequestor {
+
+IRestrictedAccessTypeRequestor requestor;
+SearchMetrics metrics;
+
+public MeasuredTypeNameRequestor(IRestrictedAccessTypeRequestor requestor, SearchMetrics metrics) {
+	this.requestor = requestor;
+	this.metrics = metrics;
+}
+public void acceptType(int modifiers, char[] packageName, char[] simpleTypeName, char[][] enclosingTypeNames, String path, AccessRestriction access) {
+	long start = System.currentTimeMillis();
+	try {
+		this.requestor.acceptType(modifiers, packageName, simpleTypeName, enclosingTypeNames, path, access);
+	} finally {
+		this.metrics.addTime(SearchMetrics.REPORTING, System.currentTimeMillis() - start);
+		this.metrics.addCount(SearchMetrics.MATCHES, 1);
+	}
+}
+}
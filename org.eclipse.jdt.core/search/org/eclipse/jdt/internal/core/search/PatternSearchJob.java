@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2004 IBM Corporation and others.
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,11 +11,13 @@
 package org.eclipse.jdt.internal.core.search;
 
 import java.io.IOException;
+import java.util.ArrayList;
 
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.jdt.core.search.*;
+import org.eclipse.jdt.internal.compiler.env.AccessRuleSet;
 import org.eclipse.jdt.internal.core.JavaModelManager;
 import org.eclipse.jdt.internal.core.index.Index;
 import org.eclipse.jdt.internal.core.search.indexing.IndexManager;
@@ -27,12 +29,20 @@ import org.eclipse.jdt.internal.core.util.Util;
 
 public class PatternSearchJob implements IJob {
 
+/*
+ * Maximum number of threads searching the indexes of one job, including the thread running the job.
+ * The indexes are searched one after the other when 1, the default.
+ */
+public static int MAX_SEARCH_THREADS = 1;
+
 protected SearchPattern pattern;
 protected IJavaSearchScope scope;
 protected SearchParticipant participant;
 protected IndexQueryRequestor requestor;
+protected IPath[] indexLocations; // null if the indexes are selected by the participant
 protected boolean areIndexesReady;
 protected long executionTime = 0;
+protected SearchMetrics metrics = SearchMetrics.current(); // metrics of the search creating this job
 
 public PatternSearchJob(SearchPattern pattern, SearchParticipant participant, IJavaSearchScope scope, IndexQueryRequestor requestor) {
 	this.pattern = pattern;
@@ -40,6 +50,13 @@ public PatternSearchJob(SearchPattern pattern, SearchParticipant participant, IJ
 	this.scope = scope;
 	this.requestor = requestor;
 }
+/*
+ * Creates a job searching the given indexes only, instead of the indexes selected by the participant.
+ */
+public PatternSearchJob(SearchPattern pattern, SearchParticipant participant, IJavaSearchScope scope, IPath[] indexLocations, IndexQueryRequestor requestor) {
+	this(pattern, participant, scope, requestor);
+	this.indexLocations = indexLocations;
+}
 public boolean belongsTo(String jobFamily) {
 	return true;
 }
@@ -60,11 +77,16 @@ public boolean execute(IProgressMonitor progressMonitor) {
 		int max = indexes.length;
 		if (progressMonitor != null)
 			progressMonitor.beginTask("", max); //$NON-NLS-1$
-		for (int i = 0; i < max; i++) {
-			isComplete &= search(indexes[i], progressMonitor);
-			if (progressMonitor != null) {
-				if (progressMonitor.isCanceled()) throw new OperationCanceledException();
-				progressMonitor.worked(1);
+		int threads = Math.min(MAX_SEARCH_THREADS, max);
+		if (threads > 1 && this.pattern != null && MatchLocator.canQueryIndexesConcurrently(this.pattern) && canBeQueriedConcurrently(this.scope)) {
+			isComplete = new ConcurrentSearch(indexes, threads - 1, progressMonitor).execute();
+		} else {
+			for (int i = 0; i < max; i++) {
+				isComplete &= search(indexes[i], progressMonitor);
+				if (progressMonitor != null) {
+					if (progressMonitor.isCanceled()) throw new OperationCanceledException();
+					progressMonitor.worked(1);
+				}
 			}
 		}
 		if (JobManager.VERBOSE)
@@ -75,9 +97,22 @@ public boolean execute(IProgressMonitor progressMonitor) {
 			progressMonitor.done();
 	}
 }
+/*
+ * Answers whether the given scope may be asked whether it encloses a path or an element by several threads at once.
+ * A Java search scope is built before the search starts (a workspace scope is initialized when its indexes are selected),
+ * while other scopes, e.g. a hierarchy scope, initialize themselves lazily the first time they are asked.
+ */
+public static boolean canBeQueriedConcurrently(IJavaSearchScope scope) {
+	return scope instanceof JavaSearchScope;
+}
 public Index[] getIndexes(IProgressMonitor progressMonitor) {
 	// acquire the in-memory indexes on the fly
-	IPath[] indexLocations = this.participant.selectIndexes(this.pattern, this.scope);
+	IPath[] indexLocations = this.indexLocations;
+	if (indexLocations == null) {
+		long start = System.currentTimeMillis();
+		indexLocations = this.participant.selectIndexes(this.pattern, this.scope);
+		this.metrics.addTime(SearchMetrics.INDEX_SELECTION, System.currentTimeMillis() - start);
+	}
 	int length = indexLocations.length;
 	Index[] indexes = new Index[length];
 	int count = 0;
@@ -103,6 +138,13 @@ public Index[] getIndexes(IProgressMonitor progressMonitor) {
 	return indexes;
 }	
 public boolean search(Index index, IProgressMonitor progressMonitor) {
+	return search(index, this.requestor, progressMonitor);
+}
+/*
+ * Searches the given index and reports its matches to the given requestor.
+ * May be called by several threads at the same time, each with its own index and requestor.
+ */
+protected boolean search(Index index, IndexQueryRequestor queryRequestor, IProgressMonitor progressMonitor) {
 	if (index == null) return COMPLETE;
 	if (progressMonitor != null && progressMonitor.isCanceled()) throw new OperationCanceledException();
 
@@ -111,8 +153,15 @@ public boolean search(Index index, IProgressMonitor progressMonitor) {
 	try {
 		monitor.enterRead(); // ask permission to read
 		long start = System.currentTimeMillis();
-		MatchLocator.findIndexMatches(this.pattern, index, requestor, this.participant, this.scope, progressMonitor);
-		executionTime += System.currentTimeMillis() - start;
+		long bytesRead = Index.getBytesRead();
+		MatchLocator.findIndexMatches(this.pattern, index, queryRequestor, this.participant, this.scope, progressMonitor);
+		long time = System.currentTimeMillis() - start;
+		synchronized (this) {
+			this.executionTime += time;
+		}
+		this.metrics.addTime(SearchMetrics.INDEX_QUERY, time);
+		this.metrics.addCount(SearchMetrics.INDEXES_QUERIED, 1);
+		this.metrics.addCount(SearchMetrics.BYTES_READ, Index.getBytesRead() - bytesRead);
 		return COMPLETE;
 	} catch (IOException e) {
 		if (e instanceof java.io.EOFException)
@@ -125,4 +174,150 @@ public boolean search(Index index, IProgressMonitor progressMonitor) {
 public String toString() {
 	return "searching " + pattern.toString(); //$NON-NLS-1$
 }
+/*
+ * Searches the indexes of this job with several threads.
+ * The thread running the job takes the indexes in order and reports their matches directly to the requestor,
+ * while the other threads search the following indexes into buffers that are replayed in the index order.
+ * Thus the requestor is only called by the thread running the job and it gets the matches in the same order
+ * as if the indexes were searched one after the other.
+ */
+class ConcurrentSearch implements Runnable {
+	Index[] indexes;
+	int workers;
+	IProgressMonitor progressMonitor;
+	MatchBuffer[] buffers; // buffers of the indexes searched by the other threads
+	int nextIndex = 0; // next index which is not searched yet
+	int currentIndex = 0; // index which is being reported to the requestor
+	int maxIndexesAhead; // bound the number of buffered indexes
+	volatile boolean stopped = false;
+
+	ConcurrentSearch(Index[] indexes, int workers, IProgressMonitor progressMonitor) {
+		this.indexes = indexes;
+		this.workers = workers;
+		this.progressMonitor = progressMonitor;
+		this.buffers = new MatchBuffer[indexes.length];
+		this.maxIndexesAhead = 2 * workers;
+	}
+	boolean execute() {
+		Thread[] threads = new Thread[this.workers];
+		for (int i = 0; i < this.workers; i++) {
+			threads[i] = new Thread(this, "Java search - " + i); //$NON-NLS-1$
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+		boolean isComplete = COMPLETE;
+		try {
+			for (int i = 0, max = this.indexes.length; i < max; i++) {
+				MatchBuffer buffer = null;
+				synchronized (this) {
+					this.currentIndex = i;
+					if (this.nextIndex == i) {
+						this.nextIndex++; // search it in this thread
+					} else {
+						notifyAll(); // other threads can search further
+						buffer = this.buffers[i];
+						while (!buffer.isDone) {
+							if (this.progressMonitor != null && this.progressMonitor.isCanceled()) throw new OperationCanceledException();
+							try {
+								wait(100);
+							} catch (InterruptedException e) {
+								// ignore
+							}
+						}
+						this.buffers[i] = null;
+					}
+				}
+				if (buffer == null)
+					isComplete &= search(this.indexes[i], PatternSearchJob.this.requestor, this.progressMonitor);
+				else
+					isComplete &= buffer.replay();
+				if (this.progressMonitor != null) {
+					if (this.progressMonitor.isCanceled()) throw new OperationCanceledException();
+					this.progressMonitor.worked(1);
+				}
+			}
+		} finally {
+			synchronized (this) {
+				this.stopped = true;
+				notifyAll();
+			}
+			// the other threads may still hold read locks on indexes, wait until they have released them
+			for (int i = 0; i < this.workers; i++) {
+				try {
+					threads[i].join();
+				} catch (InterruptedException e) {
+					// ignore
+				}
+			}
+		}
+		return isComplete;
+	}
+	public void run() {
+		while (true) {
+			int index;
+			MatchBuffer buffer;
+			synchronized (this) {
+				while (!this.stopped && this.nextIndex < this.indexes.length && this.nextIndex > this.currentIndex + this.maxIndexesAhead) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						// ignore
+					}
+				}
+				if (this.stopped || this.nextIndex >= this.indexes.length) return;
+				index = this.nextIndex++;
+				buffer = this.buffers[index] = new MatchBuffer(this);
+			}
+			try {
+				buffer.isComplete = search(this.indexes[index], buffer, this.progressMonitor);
+			} catch (RuntimeException e) { // includes cancellation
+				buffer.exception = e;
+			} catch (Error e) {
+				buffer.exception = e;
+			}
+			synchronized (this) {
+				buffer.isDone = true;
+				notifyAll();
+			}
+		}
+	}
+}
+/*
+ * Records the matches of one index until they can be reported to the requestor.
+ */
+class MatchBuffer extends IndexQueryRequestor {
+	ConcurrentSearch search;
+	ArrayList matches = new ArrayList(); // document path, index record, participant and access rule set of each match
+	boolean isComplete = COMPLETE;
+	boolean isDone = false;
+	Throwable exception;
+
+	MatchBuffer(ConcurrentSearch search) {
+		this.search = search;
+	}
+	public boolean acceptIndexMatch(String documentPath, SearchPattern indexRecord, SearchParticipant searchParticipant, AccessRuleSet access) {
+		if (this.search.stopped) return false;
+		this.matches.add(documentPath);
+		this.matches.add(indexRecord);
+		this.matches.add(searchParticipant);
+		this.matches.add(access);
+		return true;
+	}
+	public boolean keepsIndexRecords() {
+		return true;
+	}
+	boolean replay() {
+		if (this.exception instanceof RuntimeException) throw (RuntimeException) this.exception;
+		if (this.exception instanceof Error) throw (Error) this.exception;
+		for (int i = 0, length = this.matches.size(); i < length; i += 4) {
+			boolean accepted = PatternSearchJob.this.requestor.acceptIndexMatch(
+				(String) this.matches.get(i),
+				(SearchPattern) this.matches.get(i + 1),
+				(SearchParticipant) this.matches.get(i + 2),
+				(AccessRuleSet) this.matches.get(i + 3));
+			if (!accepted) throw new OperationCanceledException();
+		}
+		return this.isComplete;
+	}
+}
 }
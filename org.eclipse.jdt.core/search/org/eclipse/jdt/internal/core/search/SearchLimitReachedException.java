@@ -0,0 +1,30 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.core.search;
+
+/**
+ * Thrown by a requestor limiting the number of search results once the limit is reached.
+ * It unwinds the index queries and the match location like a cancellation, but the search engine
+ * which installed the limiting requestor catches it and ends the search normally.
+ */
+public class SearchLimitReachedException extends RuntimeException {
+
+private static final long serialVersionUID = 1L; // backward compatible
+
+/*
+ * The requestor which reached its limit.
+ */
+public Object requestor;
+
+public SearchLimitReachedException(Object requestor) {
+	this.requestor = requestor;
+}
+}
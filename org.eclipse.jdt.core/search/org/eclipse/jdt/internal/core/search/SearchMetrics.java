@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.core.search;
+
+/**
+ * The time spent in each phase of a search and the amount of work it did.
+ * <p>
+ * The metrics of the last search of an engine are answered by BasicSearchEngine#getLastSearchMetrics(),
+ * and the metrics of all the searches since the session started by BasicSearchEngine#getSessionMetrics().
+ * While a search runs, its metrics are the current metrics of the thread running it (see #current()),
+ * and they are given explicitly to the threads helping it. Times are in ms, and they are summed over
+ * all the threads of a search, so their sum may exceed the elapsed time.
+ * </p>
+ */
+public class SearchMetrics {
+
+	/* Phases */
+	public static final int INDEX_SELECTION = 0; // selecting the indexes of the scope (see SearchParticipant#selectIndexes)
+	public static final int INDEX_QUERY = 1; // querying the indexes, including the collection of the matching paths
+	public static final int PATH_COLLECTION = 2; // sorting the matching paths and creating their documents
+	public static final int PARSING = 3; // parsing the units and building their bindings (see MatchLocator#parseAndBuildBindings)
+	public static final int RESOLUTION = 4; // resolving the units (see MatchLocator#process)
+	public static final int REPORTING = 5; // reporting the matches to the requestor
+	static final String[] PHASE_NAMES = {
+		"index selection", //$NON-NLS-1$
+		"index query", //$NON-NLS-1$
+		"path collection", //$NON-NLS-1$
+		"parsing", //$NON-NLS-1$
+		"resolution", //$NON-NLS-1$
+		"reporting" //$NON-NLS-1$
+	};
+
+	/* Counters */
+	public static final int INDEXES_QUERIED = 0;
+	public static final int CANDIDATE_DOCUMENTS = 1; // documents of the index matches, before being filtered
+	public static final int UNITS_PARSED = 2;
+	public static final int UNITS_RESOLVED = 3;
+	public static final int MATCHES = 4;
+	public static final int BYTES_READ = 5; // bytes read from the index files
+	public static final int UNITS_SKIPPED_BY_REFERENCES = 6; // units not located since they miss the resolved references of the pattern
+	public static final int DOCUMENTS_SKIPPED_BY_TOKENS = 7; // documents not located since they miss the names required by the pattern
+	static final String[] COUNTER_NAMES = {
+		"indexes queried", //$NON-NLS-1$
+		"candidate documents", //$NON-NLS-1$
+		"units parsed", //$NON-NLS-1$
+		"units resolved", //$NON-NLS-1$
+		"matches", //$NON-NLS-1$
+		"bytes read", //$NON-NLS-1$
+		"units skipped by resolved references", //$NON-NLS-1$
+		"documents skipped by names" //$NON-NLS-1$
+	};
+
+	private static ThreadLocal Current = new ThreadLocal();
+
+	private long[] times = new long[PHASE_NAMES.length];
+	private long[] counts = new long[COUNTER_NAMES.length];
+	private long elapsedTime;
+	private int searches;
+
+/**
+ * Answers the metrics of the search running in the current thread, or new metrics which are not recorded
+ * if no search is running, so that the callers do not have to check.
+ */
+public static SearchMetrics current() {
+	SearchMetrics metrics = (SearchMetrics) Current.get();
+	return metrics == null ? new SearchMetrics() : metrics;
+}
+/*
+ * Sets the metrics of the search running in the current thread, and answers the previous ones (may be null).
+ */
+static SearchMetrics setCurrent(SearchMetrics metrics) {
+	SearchMetrics previous = (SearchMetrics) Current.get();
+	Current.set(metrics);
+	return previous;
+}
+/**
+ * Adds the given metrics to these metrics.
+ */
+public synchronized void add(SearchMetrics metrics) {
+	synchronized (metrics) {
+		for (int i = 0, length = this.times.length; i < length; i++)
+			this.times[i] += metrics.times[i];
+		for (int i = 0, length = this.counts.length; i < length; i++)
+			this.counts[i] += metrics.counts[i];
+		this.elapsedTime += metrics.elapsedTime;
+		this.searches += metrics.searches;
+	}
+}
+public synchronized void addCount(int counter, long count) {
+	this.counts[counter] += count;
+}
+public synchronized void addTime(int phase, long time) {
+	this.times[phase] += time;
+}
+synchronized void addSearch(long time) {
+	this.elapsedTime += time;
+	this.searches++;
+}
+public synchronized long getCount(int counter) {
+	return this.counts[counter];
+}
+/**
+ * Answers the time between the beginning and the end of the searches, in ms.
+ */
+public synchronized long getElapsedTime() {
+	return this.elapsedTime;
+}
+/**
+ * Answers the number of searches of these metrics.
+ */
+public synchronized int getSearchCount() {
+	return this.searches;
+}
+public synchronized long getTime(int phase) {
+	return this.times[phase];
+}
+public synchronized String toString() {
+	StringBuffer buffer = new StringBuffer("Search metrics of "); //$NON-NLS-1$
+	buffer.append(this.searches);
+	buffer.append(" search(es): "); //$NON-NLS-1$
+	buffer.append(this.elapsedTime);
+	buffer.append("ms"); //$NON-NLS-1$
+	for (int i = 0, length = this.times.length; i < length; i++) {
+		buffer.append("\n\t- "); //$NON-NLS-1$
+		buffer.append(PHASE_NAMES[i]);
+		buffer.append(": "); //$NON-NLS-1$
+		buffer.append(this.times[i]);
+		buffer.append("ms"); //$NON-NLS-1$
+	}
+	for (int i = 0, length = this.counts.length; i < length; i++) {
+		buffer.append("\n\t- "); //$NON-NLS-1$
+		buffer.append(COUNTER_NAMES[i]);
+		buffer.append(": "); //$NON-NLS-1$
+		buffer.append(this.counts[i]);
+	}
+	return buffer.toString();
+}
+}
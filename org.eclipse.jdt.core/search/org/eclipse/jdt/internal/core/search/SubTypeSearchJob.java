@@ -28,12 +28,14 @@ public void finished() {
 		if (values[i] != null)
 			((Index) values[i]).stopQuery();
 }
-public boolean search(Index index, IProgressMonitor progressMonitor) {
+protected boolean search(Index index, IndexQueryRequestor queryRequestor, IProgressMonitor progressMonitor) {
 	if (index == null) return COMPLETE;
-	if (!indexes.includes(index)) {
-		indexes.add(index);
-		index.startQuery();
+	synchronized (this.indexes) {
+		if (!this.indexes.includes(index)) {
+			this.indexes.add(index);
+			index.startQuery();
+		}
 	}
-	return super.search(index, progressMonitor);
+	return super.search(index, queryRequestor, progressMonitor);
 }
 }
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.core.search;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.internal.compiler.util.SimpleLookupTable;
+import org.eclipse.jdt.internal.core.JavaModelManager;
+import org.eclipse.jdt.internal.core.JavaProject;
+import org.eclipse.jdt.internal.core.util.SimpleSet;
+
+/**
+ * The projects and libraries that each Java project of the workspace can see through its classpath,
+ * so that the indexes which can see a focus are selected without walking the classpaths (see IndexSelector).
+ * <p>
+ * The graph is computed lazily and it is reset when the classpath of a project changes, or when a project is
+ * added, removed, opened or closed (see DeltaProcessor).
+ * </p>
+ */
+public class VisibilityGraph {
+
+	/*
+	 * A snapshot of the classpaths of the Java projects of the workspace
+	 */
+	static class Classpaths {
+		SimpleLookupTable projects = new SimpleLookupTable(); // project path -> JavaProject
+		SimpleLookupTable requiredProjects = new SimpleLookupTable(); // project path -> SimpleSet of the paths of the projects on its expanded classpath
+		SimpleLookupTable expandedLibraries = new SimpleLookupTable(); // project path -> SimpleSet of the paths of the libraries on its expanded classpath
+		SimpleLookupTable referencingProjects = new SimpleLookupTable(); // library path -> SimpleSet of the paths of the projects which have it on their resolved classpath
+	}
+
+	Classpaths classpaths;
+	int generation = 0; // incremented each time the graph is reset
+
+/*
+ * Answers whether the given project can see the given focus (an IJavaProject or a JarPackageFragmentRoot)
+ * either because the focus is the project, or because it is accessible through the project's classpath,
+ * or in the case of a polymorphic search because the project is on the focus project's classpath.
+ */
+boolean canSeeFocus(Classpaths snapshot, IJavaElement focus, IPath focusProjectPath, boolean isPolymorphicSearch, IPath projectPath) {
+	if (focus instanceof IJavaProject && focusProjectPath.equals(projectPath))
+		return true;
+	if (isPolymorphicSearch && includes(snapshot.requiredProjects, focusProjectPath, projectPath))
+		return true;
+	if (focus instanceof IJavaProject)
+		return includes(snapshot.requiredProjects, projectPath, focusProjectPath);
+	return includes(snapshot.expandedLibraries, projectPath, focus.getPath());
+}
+/*
+ * Answers the paths of the projects of the given snapshot which have the given library on their resolved classpath.
+ */
+IPath[] getReferencingProjects(Classpaths snapshot, IPath libraryPath) {
+	SimpleSet projectPaths = (SimpleSet) snapshot.referencingProjects.get(libraryPath);
+	if (projectPaths == null) return new IPath[0];
+	IPath[] result = new IPath[projectPaths.elementSize];
+	Object[] values = projectPaths.values;
+	int count = 0;
+	for (int i = 0, length = values.length; i < length; i++)
+		if (values[i] != null)
+			result[count++] = (IPath) values[i];
+	return result;
+}
+/*
+ * Answers a snapshot of the classpaths of the Java projects, computing it if it was reset.
+ * The lock is not held while computing since resolving a classpath may run a container initializer.
+ */
+Classpaths getClasspaths() {
+	int currentGeneration;
+	synchronized (this) {
+		if (this.classpaths != null) return this.classpaths;
+		currentGeneration = this.generation;
+	}
+	Classpaths snapshot = new Classpaths();
+	try {
+		IJavaProject[] allProjects = JavaModelManager.getJavaModelManager().getJavaModel().getJavaProjects();
+		for (int i = 0, length = allProjects.length; i < length; i++) {
+			JavaProject project = (JavaProject) allProjects[i];
+			IPath projectPath = project.getPath();
+			snapshot.projects.put(projectPath, project);
+			SimpleSet requiredProjects = new SimpleSet(3);
+			SimpleSet expandedLibraries = new SimpleSet(3);
+			snapshot.requiredProjects.put(projectPath, requiredProjects);
+			snapshot.expandedLibraries.put(projectPath, expandedLibraries);
+			try {
+				IClasspathEntry[] entries = project.getExpandedClasspath(true);
+				for (int j = 0, length2 = entries.length; j < length2; j++) {
+					IClasspathEntry entry = entries[j];
+					switch (entry.getEntryKind()) {
+						case IClasspathEntry.CPE_PROJECT :
+							requiredProjects.add(entry.getPath());
+							break;
+						case IClasspathEntry.CPE_LIBRARY :
+							expandedLibraries.add(entry.getPath());
+							break;
+					}
+				}
+				entries = project.getResolvedClasspath(true/*ignoreUnresolvedEntry*/, false/*don't generateMarkerOnError*/, false/*don't returnResolutionInProgress*/);
+				for (int j = 0, length2 = entries.length; j < length2; j++) {
+					IClasspathEntry entry = entries[j];
+					if (entry.getEntryKind() == IClasspathEntry.CPE_LIBRARY) {
+						SimpleSet referencingProjects = (SimpleSet) snapshot.referencingProjects.get(entry.getPath());
+						if (referencingProjects == null)
+							snapshot.referencingProjects.put(entry.getPath(), referencingProjects = new SimpleSet(3));
+						referencingProjects.add(projectPath);
+					}
+				}
+			} catch (JavaModelException e) {
+				// the project cannot see anything
+			}
+		}
+	} catch (JavaModelException e) {
+		// no project
+	}
+	synchronized (this) {
+		if (currentGeneration == this.generation) // no classpath changed while computing the snapshot
+			this.classpaths = snapshot;
+	}
+	return snapshot;
+}
+private boolean includes(SimpleLookupTable table, IPath key, IPath path) {
+	SimpleSet paths = (SimpleSet) table.get(key);
+	return paths != null && paths.includes(path);
+}
+/*
+ * Resets the graph if the given delta changes the classpath of a project.
+ */
+public void processDelta(IJavaElementDelta delta) {
+	if (affectsClasspaths(delta))
+		reset();
+}
+private boolean affectsClasspaths(IJavaElementDelta delta) {
+	switch (delta.getElement().getElementType()) {
+		case IJavaElement.JAVA_MODEL:
+			IJavaElementDelta[] children = delta.getAffectedChildren();
+			for (int i = 0, length = children.length; i < length; i++)
+				if (affectsClasspaths(children[i]))
+					return true;
+			return false;
+		case IJavaElement.JAVA_PROJECT:
+			switch (delta.getKind()) {
+				case IJavaElementDelta.ADDED:
+				case IJavaElementDelta.REMOVED:
+					return true;
+				case IJavaElementDelta.CHANGED:
+					int flags = delta.getFlags();
+					if ((flags & (IJavaElementDelta.F_CLOSED | IJavaElementDelta.F_OPENED | IJavaElementDelta.F_CLASSPATH_CHANGED)) != 0)
+						return true;
+					children = delta.getAffectedChildren();
+					for (int i = 0, length = children.length; i < length; i++)
+						if (affectsClasspaths(children[i]))
+							return true;
+			}
+			return false;
+		case IJavaElement.PACKAGE_FRAGMENT_ROOT:
+			switch (delta.getKind()) {
+				case IJavaElementDelta.ADDED:
+				case IJavaElementDelta.REMOVED:
+					return true;
+				case IJavaElementDelta.CHANGED:
+					int flags = delta.getFlags();
+					return (flags & (IJavaElementDelta.F_ADDED_TO_CLASSPATH | IJavaElementDelta.F_REMOVED_FROM_CLASSPATH)) != 0;
+			}
+			return false;
+	}
+	return false;
+}
+public synchronized void reset() {
+	this.classpaths = null;
+	this.generation++;
+}
+public String toString() {
+	Classpaths snapshot = this.classpaths;
+	return "Visibility graph of " + (snapshot == null ? "<not computed>" : snapshot.projects.elementSize + " projects"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+}
+}
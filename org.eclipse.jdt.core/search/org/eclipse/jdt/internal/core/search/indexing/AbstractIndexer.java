@@ -14,11 +14,14 @@ import org.eclipse.jdt.core.Signature;
 import org.eclipse.jdt.core.compiler.CharOperation;
 import org.eclipse.jdt.core.search.SearchDocument;
 import org.eclipse.jdt.internal.compiler.lookup.TypeConstants;
+import org.eclipse.jdt.internal.core.index.DocumentFilter;
 import org.eclipse.jdt.internal.core.search.matching.*;
+import org.eclipse.jdt.internal.core.util.SimpleWordSet;
 
 public abstract class AbstractIndexer implements IIndexConstants {
 
 	SearchDocument document;
+	SimpleWordSet documentTokens = IndexManager.INDEX_DOCUMENT_FILTERS ? new SimpleWordSet(31) : null; // the identifier tokens of the index keys, for the document filter
 
 	public AbstractIndexer(SearchDocument document) {
 		this.document = document;
@@ -109,8 +112,25 @@ public abstract class AbstractIndexer implements IIndexConstants {
 	public void addFieldReference(char[] fieldName) {
 		addNameReference(fieldName);
 	}
+	/*
+	 * Adds the bloom filter of the tokens of all the entries added so far (see DocumentFilter).
+	 * Called once the document is indexed.
+	 */
+	protected void addDocumentFilter() {
+		if (this.documentTokens != null && this.documentTokens.elementSize > 0)
+			this.document.addIndexEntry(DOCUMENT_FILTER, DocumentFilter.encode(this.documentTokens));
+	}
+	/*
+	 * Adds the identifier tokens of the given name to the document filter only, e.g. the name of the package declaration.
+	 */
+	protected void addDocumentTokens(char[] name) {
+		if (this.documentTokens != null)
+			DocumentFilter.addTokens(name, this.documentTokens);
+	}
 	protected void addIndexEntry(char[] category, char[] key) {
 		this.document.addIndexEntry(category, key);
+		if (this.documentTokens != null)
+			DocumentFilter.addTokens(key, this.documentTokens);
 	}
 	public void addInterfaceDeclaration(int modifiers, char[] packageName, char[] name, char[][] enclosingTypeNames, char[][] superinterfaces, char[][] typeParameterSignatures) {
 		addIndexEntry(TYPE_DECL, TypeDeclarationPattern.createIndexKey(modifiers, name, packageName, enclosingTypeNames));
@@ -126,6 +146,17 @@ public abstract class AbstractIndexer implements IIndexConstants {
 			}
 		}
 	}
+	/*
+	 * Adds the reference of the given type to its supertype, which has one of the given fully qualified names
+	 * (see QualifiedSuperTypeReferencePattern). The names are not tokens of the document filter since the document
+	 * may not reference them.
+	 */
+	public void addQualifiedSuperTypeReference(int modifiers, char[] packageName, char[] name, char[][] enclosingTypeNames, char classOrInterface, char[][] superTypeNames, char superClassOrInterface) {
+		this.document.addIndexEntry(
+			QUALIFIED_SUPER_REF,
+			QualifiedSuperTypeReferencePattern.createIndexKey(
+				modifiers, packageName, name, enclosingTypeNames, classOrInterface, superTypeNames, superClassOrInterface));
+	}
 	public void addMethodDeclaration(char[] methodName, char[][] parameterTypes, char[] returnType, char[][] exceptionTypes) {
 		int argCount = parameterTypes == null ? 0 : parameterTypes.length;
 		addIndexEntry(METHOD_DECL, MethodPattern.createIndexKey(methodName, argCount));
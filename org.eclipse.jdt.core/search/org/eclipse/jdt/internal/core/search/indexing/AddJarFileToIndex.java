@@ -10,7 +10,9 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.core.search.indexing;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Enumeration;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -155,6 +157,16 @@ class AddJarFileToIndex extends IndexRequest {
 				}
 
 				// Index the jar for the first time or reindex the jar in case the previous index file has been corrupted
+				// prefer a pre-built index of the same jar if the shared index store has one
+				File jarFile = this.resource != null ? this.resource.getLocation().toFile() : this.containerPath.toFile();
+				if (this.manager.attachSharedIndex(this.containerPath, jarFile) != null) {
+					if (JobManager.VERBOSE)
+						org.eclipse.jdt.internal.core.util.Util.verbose("-> attached shared index of " //$NON-NLS-1$
+							+ zip.getName() + " (" //$NON-NLS-1$
+							+ (System.currentTimeMillis() - initialTime) + "ms)"); //$NON-NLS-1$
+					return true;
+				}
+
 				// index already existed: recreate it so that we forget about previous entries
 				SearchParticipant participant = SearchEngine.getDefaultSearchParticipant();
 				index = manager.recreateIndex(this.containerPath);
@@ -164,6 +176,9 @@ class AddJarFileToIndex extends IndexRequest {
 					return false;
 				}
 
+				// the class file bytes are only read by the binary indexer while their entry is indexed,
+				// thus a single buffer is used for all the entries of the jar
+				byte[] buffer = new byte[8192];
 				for (Enumeration e = zip.entries(); e.hasMoreElements();) {
 					if (this.isCancelled) {
 						if (JobManager.VERBOSE)
@@ -174,8 +189,8 @@ class AddJarFileToIndex extends IndexRequest {
 					// iterate each entry to index it
 					ZipEntry ze = (ZipEntry) e.nextElement();
 					if (Util.isClassFileName(ze.getName())) {
-						final byte[] classFileBytes = org.eclipse.jdt.internal.compiler.util.Util.getZipEntryByteContent(ze, zip);
-						JavaSearchDocument entryDocument = new JavaSearchDocument(ze, zipFilePath, classFileBytes, participant);
+						buffer = readEntry(ze, zip, buffer);
+						JavaSearchDocument entryDocument = new JavaSearchDocument(ze, zipFilePath, buffer, participant);
 						this.manager.indexDocument(entryDocument, participant, index, this.containerPath);
 					}
 				}
@@ -202,6 +217,30 @@ class AddJarFileToIndex extends IndexRequest {
 		}
 		return true;
 	}
+	/*
+	 * Reads the content of the given entry into the given buffer, or into a bigger buffer if it is too small.
+	 * Answers the buffer containing the entry content, followed by unrelated bytes if the content is shorter.
+	 */
+	static byte[] readEntry(ZipEntry ze, ZipFile zip, byte[] buffer) throws IOException {
+		int size = (int) ze.getSize();
+		if (size > buffer.length)
+			buffer = new byte[size];
+		InputStream stream = zip.getInputStream(ze);
+		try {
+			int length = 0;
+			int read;
+			while ((read = stream.read(buffer, length, buffer.length - length)) != -1) {
+				length += read;
+				if (length == buffer.length) {
+					if (length == size) break; // no need to check for the end of the stream
+					System.arraycopy(buffer, 0, buffer = new byte[length * 2], 0, length); // size was unknown
+				}
+			}
+		} finally {
+			stream.close();
+		}
+		return buffer;
+	}
 	protected Integer updatedIndexState() {
 		return IndexManager.REBUILDING_STATE;
 	}
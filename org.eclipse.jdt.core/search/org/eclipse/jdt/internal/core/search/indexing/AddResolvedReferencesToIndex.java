@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.core.search.indexing;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.internal.core.index.Index;
+import org.eclipse.jdt.internal.core.util.Util;
+
+/*
+ * Records the resolved references and the supertypes of the types of a compiled source file in the resolved reference
+ * index of its project. The modification stamp of the file is recorded with each kind of information, so that it is
+ * ignored once the file changes. This index is independent of the project index, whose state this job leaves untouched.
+ */
+class AddResolvedReferencesToIndex extends IndexRequest implements IIndexConstants {
+	IFile resource;
+	long modificationStamp;
+	char[][] typeKeys, methodKeys, fieldKeys;
+	char[][] typeHierarchy;
+
+	public AddResolvedReferencesToIndex(IFile resource, char[][] typeKeys, char[][] methodKeys, char[][] fieldKeys, char[][] typeHierarchy, IndexManager manager) {
+		super(resource.getProject().getFullPath(), manager);
+		this.resource = resource;
+		this.modificationStamp = resource.getModificationStamp();
+		this.typeKeys = typeKeys;
+		this.methodKeys = methodKeys;
+		this.fieldKeys = fieldKeys;
+		this.typeHierarchy = typeHierarchy;
+	}
+	public void cancel() {
+		this.isCancelled = true; // the project index is not affected
+	}
+	public void ensureReadyToRun() {
+		// the project index is not affected
+	}
+	public boolean execute(IProgressMonitor progressMonitor) {
+
+		if (this.isCancelled || progressMonitor != null && progressMonitor.isCanceled()) return true;
+
+		Index index = this.manager.getResolvedReferenceIndex(this.containerPath, this.typeKeys != null || this.typeHierarchy != null /*create if none*/);
+		if (index == null) return true;
+		ReadWriteMonitor monitor = index.monitor;
+		if (monitor == null) return true; // index got deleted since acquired
+
+		String documentName = Util.relativePath(this.resource.getFullPath(), 1/*remove project segment*/);
+		try {
+			monitor.enterWrite(); // ask permission to write
+			index.remove(documentName);
+			char[] stamp = Long.toString(this.modificationStamp).toCharArray();
+			if (this.typeKeys != null) {
+				index.addIndexEntry(RESOLVED_UNIT, stamp, documentName);
+				addEntries(index, RESOLVED_TYPE_REF, this.typeKeys, documentName);
+				addEntries(index, RESOLVED_METHOD_REF, this.methodKeys, documentName);
+				addEntries(index, RESOLVED_FIELD_REF, this.fieldKeys, documentName);
+			}
+			if (this.typeHierarchy != null) {
+				index.addIndexEntry(HIERARCHY_UNIT, stamp, documentName);
+				addEntries(index, HIERARCHY_TYPE, this.typeHierarchy, documentName);
+			}
+		} finally {
+			monitor.exitWrite(); // free write lock
+		}
+		return true;
+	}
+	private void addEntries(Index index, char[] category, char[][] keys, String documentName) {
+		if (keys == null) return;
+		for (int i = 0, l = keys.length; i < l; i++)
+			index.addIndexEntry(category, keys[i], documentName);
+	}
+	public String toString() {
+		return "recording resolved references of " + this.resource.getFullPath(); //$NON-NLS-1$
+	}
+}
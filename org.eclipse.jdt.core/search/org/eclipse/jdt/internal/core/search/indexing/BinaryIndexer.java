@@ -14,11 +14,8 @@ import org.eclipse.jdt.core.Signature;
 import org.eclipse.jdt.core.compiler.CharOperation;
 import org.eclipse.jdt.core.search.SearchDocument;
 import org.eclipse.jdt.internal.compiler.classfmt.ClassFileConstants;
-import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
 import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
-import org.eclipse.jdt.internal.compiler.classfmt.FieldInfo;
-import org.eclipse.jdt.internal.compiler.classfmt.MethodInfo;
-import org.eclipse.jdt.internal.compiler.env.IGenericType;
+import org.eclipse.jdt.internal.compiler.codegen.AttributeNamesConstants;
 import org.eclipse.jdt.internal.compiler.util.SuffixConstants;
 
 public class BinaryIndexer extends AbstractIndexer implements SuffixConstants {
@@ -33,6 +30,10 @@ public class BinaryIndexer extends AbstractIndexer implements SuffixConstants {
 	private static final char[] VOID = "void".toCharArray(); //$NON-NLS-1$
 	private static final char[] INIT = "<init>".toCharArray(); //$NON-NLS-1$
 
+	// bytes of the class file being indexed, they may be followed by unrelated bytes
+	private byte[] contents;
+	private int[] constantPoolOffsets;
+
 	public BinaryIndexer(SearchDocument document) {
 		super(document);
 	}
@@ -363,30 +364,27 @@ public class BinaryIndexer extends AbstractIndexer implements SuffixConstants {
 		}
 		return parameterTypesCounter;
 	}
-	private char[] extractClassName(int[] constantPoolOffsets, ClassFileReader reader, int index) {
+	private char[] extractClassName(int index) {
 		// the entry at i has to be a field ref or a method/interface method ref.
-		int class_index = reader.u2At(constantPoolOffsets[index] + 1);
-		int utf8Offset = constantPoolOffsets[reader.u2At(constantPoolOffsets[class_index] + 1)];
-		return reader.utf8At(utf8Offset + 3, reader.u2At(utf8Offset + 1));
+		int class_index = u2At(this.constantPoolOffsets[index] + 1);
+		return classNameAt(class_index);
 	}
-	private char[] extractName(int[] constantPoolOffsets, ClassFileReader reader, int index) {
-		int nameAndTypeIndex = reader.u2At(constantPoolOffsets[index] + 3);
-		int utf8Offset = constantPoolOffsets[reader.u2At(constantPoolOffsets[nameAndTypeIndex] + 1)];
-		return reader.utf8At(utf8Offset + 3, reader.u2At(utf8Offset + 1));
+	private char[] extractName(int index) {
+		int nameAndTypeIndex = u2At(this.constantPoolOffsets[index] + 3);
+		return utf8At(u2At(this.constantPoolOffsets[nameAndTypeIndex] + 1));
 	}
-	private char[] extractClassReference(int[] constantPoolOffsets, ClassFileReader reader, int index) {
+	private char[] extractClassReference(int index) {
 		// the entry at i has to be a class ref.
-		int utf8Offset = constantPoolOffsets[reader.u2At(constantPoolOffsets[index] + 1)];
-		return reader.utf8At(utf8Offset + 3, reader.u2At(utf8Offset + 1));
+		return classNameAt(index);
 	}
 	/**
 	 * Extract all type, method, field and interface method references from the constant pool
 	 */
-	private void extractReferenceFromConstantPool(byte[] contents, ClassFileReader reader) throws ClassFormatException {
-		int[] constantPoolOffsets = reader.getConstantPoolOffsets();
-		int constantPoolCount = constantPoolOffsets.length;
+	private void extractReferenceFromConstantPool() throws ClassFormatException {
+		int[] offsets = this.constantPoolOffsets;
+		int constantPoolCount = offsets.length;
 		for (int i = 1; i < constantPoolCount; i++) {
-			int tag = reader.u1At(constantPoolOffsets[i]);
+			int tag = u1At(offsets[i]);
 			/**
 			 * u1 tag
 			 * u2 class_index
@@ -397,18 +395,18 @@ public class BinaryIndexer extends AbstractIndexer implements SuffixConstants {
 			switch (tag) {
 				case ClassFileConstants.FieldRefTag :
 					// add reference to the class/interface and field name and type
-					name = extractName(constantPoolOffsets, reader, i);
+					name = extractName(i);
 					addFieldReference(name);
 					break;
 				case ClassFileConstants.MethodRefTag :
 					// add reference to the class and method name and type
 				case ClassFileConstants.InterfaceMethodRefTag :
 					// add reference to the interface and method name and type
-					name = extractName(constantPoolOffsets, reader, i);
-					type = extractType(constantPoolOffsets, reader, i);
+					name = extractName(i);
+					type = extractType(i);
 					if (CharOperation.equals(INIT, name)) {
 						// add a constructor reference
-						char[] className = replace('/', '.', extractClassName(constantPoolOffsets, reader, i)); // so that it looks like java.lang.String
+						char[] className = replace('/', '.', extractClassName(i)); // so that it looks like java.lang.String
 						addConstructorReference(className, extractArgCount(type));
 					} else {
 						// add a method reference
@@ -417,7 +415,7 @@ public class BinaryIndexer extends AbstractIndexer implements SuffixConstants {
 					break;
 				case ClassFileConstants.ClassTag :
 					// add a type reference
-					name = extractClassReference(constantPoolOffsets, reader, i);
+					name = extractClassReference(i);
 					if (name.length > 0 && name[0] == '[')
 						break; // skip over array references
 					name = replace('/', '.', name); // so that it looks like java.lang.String
@@ -432,18 +430,143 @@ public class BinaryIndexer extends AbstractIndexer implements SuffixConstants {
 			}
 		}
 	}
-	private char[] extractType(int[] constantPoolOffsets, ClassFileReader reader, int index) {
-		int constantPoolIndex = reader.u2At(constantPoolOffsets[index] + 3);
-		int utf8Offset = constantPoolOffsets[reader.u2At(constantPoolOffsets[constantPoolIndex] + 3)];
-		return reader.utf8At(utf8Offset + 3, reader.u2At(utf8Offset + 1));
+	private char[] extractType(int index) {
+		int constantPoolIndex = u2At(this.constantPoolOffsets[index] + 3);
+		return utf8At(u2At(this.constantPoolOffsets[constantPoolIndex] + 3));
+	}
+	/*
+	 * Answers the exception type names of the method at the given offset, using '/' as separator.
+	 */
+	private char[][] extractExceptionTypeNames(int methodOffset) {
+		int attributesCount = u2At(methodOffset + 6);
+		int readOffset = methodOffset + 8;
+		for (int i = 0; i < attributesCount; i++) {
+			if (utf8Equals(u2At(readOffset), AttributeNamesConstants.ExceptionsName)) {
+				int entriesNumber = u2At(readOffset + 6);
+				if (entriesNumber == 0) break;
+				readOffset += 8;
+				char[][] exceptionNames = new char[entriesNumber][];
+				for (int j = 0; j < entriesNumber; j++) {
+					exceptionNames[j] = classNameAt(u2At(readOffset));
+					readOffset += 2;
+				}
+				return exceptionNames;
+			}
+			readOffset += (6 + u4At(readOffset + 2));
+		}
+		return CharOperation.NO_CHAR_CHAR;
+	}
+	/*
+	 * Reads the offsets of the constant pool entries and answers the offset of the access flags which follow the constant pool.
+	 * Only the items of the class file which are needed to compute index entries are read afterward,
+	 * instead of building a ClassFileReader with all the fields, methods and attributes of the type.
+	 */
+	private int readConstantPoolOffsets() {
+		int constantPoolCount = u2At(8);
+		int[] offsets = this.constantPoolOffsets = new int[constantPoolCount];
+		int readOffset = 10;
+		for (int i = 1; i < constantPoolCount; i++) {
+			offsets[i] = readOffset;
+			switch (u1At(readOffset)) {
+				case ClassFileConstants.Utf8Tag :
+					readOffset += u2At(readOffset + 1) + ClassFileConstants.ConstantUtf8FixedSize;
+					break;
+				case ClassFileConstants.IntegerTag :
+					readOffset += ClassFileConstants.ConstantIntegerFixedSize;
+					break;
+				case ClassFileConstants.FloatTag :
+					readOffset += ClassFileConstants.ConstantFloatFixedSize;
+					break;
+				case ClassFileConstants.LongTag :
+					readOffset += ClassFileConstants.ConstantLongFixedSize;
+					i++;
+					break;
+				case ClassFileConstants.DoubleTag :
+					readOffset += ClassFileConstants.ConstantDoubleFixedSize;
+					i++;
+					break;
+				case ClassFileConstants.ClassTag :
+					readOffset += ClassFileConstants.ConstantClassFixedSize;
+					break;
+				case ClassFileConstants.StringTag :
+					readOffset += ClassFileConstants.ConstantStringFixedSize;
+					break;
+				case ClassFileConstants.FieldRefTag :
+					readOffset += ClassFileConstants.ConstantFieldRefFixedSize;
+					break;
+				case ClassFileConstants.MethodRefTag :
+					readOffset += ClassFileConstants.ConstantMethodRefFixedSize;
+					break;
+				case ClassFileConstants.InterfaceMethodRefTag :
+					readOffset += ClassFileConstants.ConstantInterfaceMethodRefFixedSize;
+					break;
+				case ClassFileConstants.NameAndTypeTag :
+					readOffset += ClassFileConstants.ConstantNameAndTypeFixedSize;
+					break;
+				default :
+					offsets[i] = 0;
+			}
+		}
+		return readOffset;
+	}
+	/*
+	 * Answers the offset following the fields or methods which start at the given offset.
+	 */
+	private int skipMembers(int readOffset) {
+		int membersCount = u2At(readOffset);
+		readOffset += 2;
+		for (int i = 0; i < membersCount; i++) {
+			int attributesCount = u2At(readOffset + 6);
+			readOffset += 8;
+			for (int j = 0; j < attributesCount; j++)
+				readOffset += (6 + u4At(readOffset + 2));
+		}
+		return readOffset;
 	}
 	public void indexDocument() {
 		try {
-			byte[] contents = this.document.getByteContents();
-			ClassFileReader reader = new ClassFileReader(contents, this.document.getPath().toCharArray());
-	
+			this.contents = this.document.getByteContents();
+			if (this.contents == null) return;
+
+			// read the structure of the class file
+			int readOffset, accessFlags, classNameIndex, superclassNameIndex, interfacesOffset, fieldsOffset, methodsOffset;
+			int innerInfoOffset = -1;
+			char[] genericSignature = null;
+			try {
+				readOffset = readConstantPoolOffsets();
+				accessFlags = u2At(readOffset);
+				classNameIndex = u2At(readOffset + 2);
+				superclassNameIndex = u2At(readOffset + 4);
+				interfacesOffset = readOffset + 6;
+				fieldsOffset = interfacesOffset + 2 + 2 * u2At(interfacesOffset);
+				methodsOffset = skipMembers(fieldsOffset);
+				readOffset = skipMembers(methodsOffset);
+				int attributesCount = u2At(readOffset);
+				readOffset += 2;
+				for (int i = 0; i < attributesCount; i++) {
+					int attributeNameIndex = u2At(readOffset);
+					if (utf8Equals(attributeNameIndex, AttributeNamesConstants.DeprecatedName)) {
+						accessFlags |= ClassFileConstants.AccDeprecated;
+					} else if (utf8Equals(attributeNameIndex, AttributeNamesConstants.SyntheticName)) {
+						accessFlags |= ClassFileConstants.AccSynthetic;
+					} else if (utf8Equals(attributeNameIndex, AttributeNamesConstants.SignatureName)) {
+						genericSignature = utf8At(u2At(readOffset + 6));
+					} else if (utf8Equals(attributeNameIndex, AttributeNamesConstants.InnerClassName)) {
+						int innerOffset = readOffset + 8;
+						for (int j = 0, length = u2At(readOffset + 6); j < length; j++) {
+							if (u2At(innerOffset) == classNameIndex)
+								innerInfoOffset = innerOffset;
+							innerOffset += 8;
+						}
+					}
+					readOffset += (6 + u4At(readOffset + 2));
+				}
+			} catch (RuntimeException e) {
+				throw new ClassFormatException(ClassFormatException.ErrTruncatedInput);
+			}
+
 			// first add type references
-			char[] className = replace('/', '.', reader.getName()); // looks like java/lang/String
+			char[] className = replace('/', '.', classNameAt(classNameIndex)); // looks like java/lang/String
 			// need to extract the package name and the simple name
 			int packageNameIndex = CharOperation.lastIndexOf('.', className);
 			char[] packageName = null;
@@ -456,16 +579,21 @@ public class BinaryIndexer extends AbstractIndexer implements SuffixConstants {
 				name = className;
 			}
 			char[] enclosingTypeName = null;
-			if (reader.isNestedType()) {
-				if (reader.isAnonymous()) {
+			int modifiers = accessFlags;
+			if (innerInfoOffset != -1) { // nested type
+				int innerNameIndex = u2At(innerInfoOffset + 4);
+				int outerClassNameIndex = u2At(innerInfoOffset + 2);
+				char[] innerName = innerNameIndex == 0 ? null : utf8At(innerNameIndex);
+				boolean isAnonymous = innerName == null || innerName.length == 0;
+				if (isAnonymous) {
 					name = CharOperation.NO_CHAR;
 				} else {
-					name = reader.getInnerSourceName();
+					name = innerName;
 				}
-				if (reader.isLocal() || reader.isAnonymous()) {
+				if (isAnonymous || outerClassNameIndex == 0) { // local or anonymous
 					enclosingTypeName = ONE_ZERO;
 				} else {
-					char[] fullEnclosingName = reader.getEnclosingTypeName();
+					char[] fullEnclosingName = classNameAt(outerClassNameIndex);
 					int nameLength = fullEnclosingName.length - packageNameIndex - 1;
 					if (nameLength <= 0) {
 						// See PR 1GIR345: ITPJCORE:ALL - Indexer: NegativeArraySizeException
@@ -474,70 +602,151 @@ public class BinaryIndexer extends AbstractIndexer implements SuffixConstants {
 					enclosingTypeName = new char[nameLength]; 
 					System.arraycopy(fullEnclosingName, packageNameIndex + 1, enclosingTypeName, 0, nameLength);
 				}
+				modifiers = u2At(innerInfoOffset + 6) | (accessFlags & ClassFileConstants.AccDeprecated);
 			}
 			// type parameters
 			char[][] typeParameterSignatures = null;
-			char[] genericSignature = reader.getGenericSignature();
 			if (genericSignature != null) {
 				CharOperation.replace(genericSignature, '/', '.');
 				typeParameterSignatures = Signature.getTypeParameters(genericSignature);
 			}
 			
-			// eliminate invalid innerclasses (1G4KCF7)
-			if (name == null) return;
-			
-			char[][] superinterfaces = replace('/', '.', reader.getInterfaceNames());
+			int interfacesCount = u2At(interfacesOffset);
+			char[][] superinterfaces = null;
+			if (interfacesCount != 0) {
+				superinterfaces = new char[interfacesCount][];
+				for (int i = 0; i < interfacesCount; i++)
+					superinterfaces[i] = replace('/', '.', classNameAt(u2At(interfacesOffset + 2 + 2 * i)));
+			}
 			char[][] enclosingTypeNames = enclosingTypeName == null ? null : new char[][] {enclosingTypeName};
-			switch (reader.getKind()) {
-				case IGenericType.CLASS_DECL :
-					char[] superclass = replace('/', '.', reader.getSuperclassName());
-					addClassDeclaration(reader.getModifiers(), packageName, name, enclosingTypeNames, superclass, superinterfaces, typeParameterSignatures);
+			char[] superclass = null;
+			char classOrInterface;
+			switch (modifiers & (ClassFileConstants.AccInterface | ClassFileConstants.AccAnnotation | ClassFileConstants.AccEnum)) {
+				case ClassFileConstants.AccInterface :
+					addInterfaceDeclaration(modifiers, packageName, name, enclosingTypeNames, superinterfaces, typeParameterSignatures);
+					classOrInterface = INTERFACE_SUFFIX;
 					break;
-				case IGenericType.INTERFACE_DECL :
-					addInterfaceDeclaration(reader.getModifiers(), packageName, name, enclosingTypeNames, superinterfaces, typeParameterSignatures);
+				case ClassFileConstants.AccInterface | ClassFileConstants.AccAnnotation :
+					addAnnotationTypeDeclaration(modifiers, packageName, name, enclosingTypeNames);
+					classOrInterface = ANNOTATION_TYPE_SUFFIX;
 					break;
-				case IGenericType.ENUM_DECL :
-					addEnumDeclaration(reader.getModifiers(), packageName, name, enclosingTypeNames, superinterfaces);
+				case ClassFileConstants.AccEnum :
+					addEnumDeclaration(modifiers, packageName, name, enclosingTypeNames, superinterfaces);
+					superclass = superclassNameIndex == 0 ? null : replace('/', '.', classNameAt(superclassNameIndex));
+					classOrInterface = ENUM_SUFFIX;
 					break;
-				case IGenericType.ANNOTATION_TYPE_DECL :
-					addAnnotationTypeDeclaration(reader.getModifiers(), packageName, name, enclosingTypeNames);
-					break;
-			}			
+				default :
+					superclass = superclassNameIndex == 0 ? null : replace('/', '.', classNameAt(superclassNameIndex));
+					addClassDeclaration(modifiers, packageName, name, enclosingTypeNames, superclass, superinterfaces, typeParameterSignatures);
+					classOrInterface = CLASS_SUFFIX;
+			}
+			// the supertype names of a class file are qualified already
+			if (enclosingTypeName != ONE_ZERO) { // local and anonymous types cannot have subtypes outside their class file
+				if (superclass != null)
+					addQualifiedSuperTypeReference(modifiers, packageName, name, enclosingTypeNames, classOrInterface, new char[][] {superclass}, CLASS_SUFFIX);
+				for (int i = 0; i < interfacesCount; i++)
+					addQualifiedSuperTypeReference(modifiers, packageName, name, enclosingTypeNames, classOrInterface, new char[][] {superinterfaces[i]}, INTERFACE_SUFFIX);
+			}
 	
 			// first reference all methods declarations and field declarations
-			MethodInfo[] methods = (MethodInfo[]) reader.getMethods();
-			if (methods != null) {
-				for (int i = 0, max = methods.length; i < max; i++) {
-					MethodInfo method = methods[i];
-					char[] descriptor = method.getMethodDescriptor();
-					char[][] parameterTypes = decodeParameterTypes(descriptor);
-					char[] returnType = decodeReturnType(descriptor);
-					char[][] exceptionTypes = replace('/', '.', method.getExceptionTypeNames());
-					if (method.isConstructor()) {
-						addConstructorDeclaration(className, parameterTypes, exceptionTypes);
-					} else {
-						if (!method.isClinit()) {
-							addMethodDeclaration(method.getSelector(), parameterTypes, returnType, exceptionTypes);
-						}
+			readOffset = methodsOffset + 2;
+			for (int i = 0, max = u2At(methodsOffset); i < max; i++) {
+				char[] selector = utf8At(u2At(readOffset + 2));
+				char[] descriptor = utf8At(u2At(readOffset + 4));
+				char[][] parameterTypes = decodeParameterTypes(descriptor);
+				char[] returnType = decodeReturnType(descriptor);
+				char[][] exceptionTypes = replace('/', '.', extractExceptionTypeNames(readOffset));
+				if (selector[0] == '<' && selector.length == 6) { // <init>
+					addConstructorDeclaration(className, parameterTypes, exceptionTypes);
+				} else {
+					if (selector[0] != '<' || selector.length != 8) { // not <clinit>
+						addMethodDeclaration(selector, parameterTypes, returnType, exceptionTypes);
 					}
 				}
+				readOffset = skipAttributes(readOffset + 6);
 			}
-			FieldInfo[] fields = (FieldInfo[]) reader.getFields();
-			if (fields != null) {
-				for (int i = 0, max = fields.length; i < max; i++) {
-					FieldInfo field = fields[i];
-					char[] fieldName = field.getName();
-					char[] fieldType = decodeFieldType(replace('/', '.', field.getTypeName()));
-					addFieldDeclaration(fieldType, fieldName);
-				}
+			readOffset = fieldsOffset + 2;
+			for (int i = 0, max = u2At(fieldsOffset); i < max; i++) {
+				char[] fieldName = utf8At(u2At(readOffset + 2));
+				char[] fieldType = decodeFieldType(replace('/', '.', utf8At(u2At(readOffset + 4))));
+				addFieldDeclaration(fieldType, fieldName);
+				readOffset = skipAttributes(readOffset + 6);
 			}
 	
 			// record all references found inside the .class file
-			extractReferenceFromConstantPool(contents, reader);
+			extractReferenceFromConstantPool();
+			addDocumentFilter();
 		} catch (ClassFormatException e) {
 			// ignore
+		} finally {
+			this.contents = null;
+			this.constantPoolOffsets = null;
 		}
 	}
+	/*
+	 * Answers the offset following the attributes which start at the given offset.
+	 */
+	private int skipAttributes(int readOffset) {
+		int attributesCount = u2At(readOffset);
+		readOffset += 2;
+		for (int i = 0; i < attributesCount; i++)
+			readOffset += (6 + u4At(readOffset + 2));
+		return readOffset;
+	}
+	private int u1At(int offset) {
+		return this.contents[offset] & 0xFF;
+	}
+	private int u2At(int offset) {
+		return ((this.contents[offset] & 0xFF) << 8) + (this.contents[offset + 1] & 0xFF);
+	}
+	private int u4At(int offset) {
+		return ((this.contents[offset] & 0xFF) << 24) + ((this.contents[offset + 1] & 0xFF) << 16) + ((this.contents[offset + 2] & 0xFF) << 8) + (this.contents[offset + 3] & 0xFF);
+	}
+	/*
+	 * Answers the characters of the utf8 entry at the given index of the constant pool.
+	 */
+	private char[] utf8At(int constantPoolIndex) {
+		int readOffset = this.constantPoolOffsets[constantPoolIndex];
+		int length = u2At(readOffset + 1);
+		readOffset += 3;
+		char[] result = new char[length];
+		int resultLength = 0;
+		while (length != 0) {
+			int x = this.contents[readOffset++] & 0xFF;
+			length--;
+			if ((0x80 & x) != 0) {
+				if ((x & 0x20) != 0) {
+					length -= 2;
+					x = ((x & 0xF) << 12) | ((this.contents[readOffset++] & 0x3F) << 6) | (this.contents[readOffset++] & 0x3F);
+				} else {
+					length--;
+					x = ((x & 0x1F) << 6) | (this.contents[readOffset++] & 0x3F);
+				}
+			}
+			result[resultLength++] = (char) x;
+		}
+		if (resultLength != result.length)
+			System.arraycopy(result, 0, result = new char[resultLength], 0, resultLength);
+		return result;
+	}
+	/*
+	 * Answers whether the utf8 entry at the given index of the constant pool is the given ascii name.
+	 */
+	private boolean utf8Equals(int constantPoolIndex, char[] name) {
+		int readOffset = this.constantPoolOffsets[constantPoolIndex];
+		int length = name.length;
+		if (u2At(readOffset + 1) != length) return false;
+		readOffset += 3;
+		for (int i = 0; i < length; i++)
+			if (this.contents[readOffset + i] != name[i]) return false;
+		return true;
+	}
+	/*
+	 * Answers the name of the class entry at the given index of the constant pool.
+	 */
+	private char[] classNameAt(int constantPoolIndex) {
+		return utf8At(u2At(this.constantPoolOffsets[constantPoolIndex] + 1));
+	}
 	/*
 	 * Modify the array by replacing all occurences of toBeReplaced with newChar
 	 */
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.core.search.indexing;
+
+import java.io.IOException;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.internal.core.index.Index;
+import org.eclipse.jdt.internal.core.search.processing.JobManager;
+import org.eclipse.jdt.internal.core.util.Util;
+
+/*
+ * Merge the delta indexes of a container into its disk index.
+ * The write lock of the index is only held once the new disk index is written.
+ */
+public class CompactIndex extends IndexRequest {
+	public CompactIndex(IPath containerPath, IndexManager manager) {
+		super(containerPath, manager);
+	}
+	public boolean equals(Object o) {
+		if (o instanceof CompactIndex)
+			return this.containerPath.equals(((CompactIndex) o).containerPath);
+		return false;
+	}
+	public int hashCode() {
+		return this.containerPath.hashCode();
+	}
+	public boolean execute(IProgressMonitor progressMonitor) {
+
+		if (this.isCancelled || progressMonitor != null && progressMonitor.isCanceled()) return true;
+
+		Index index = this.manager.getIndex(this.containerPath, true /*reuse index file*/, false /*don't create if none*/);
+		if (index == null) return true;
+		ReadWriteMonitor monitor = index.monitor;
+		if (monitor == null) return true; // index got deleted since acquired
+
+		try {
+			index.compact();
+			monitor.enterWrite(); // ask permission to write
+			try {
+				this.manager.saveIndex(index);
+			} finally {
+				monitor.exitWrite(); // free write lock
+			}
+		} catch (IOException e) {
+			if (JobManager.VERBOSE) {
+				Util.verbose("-> failed to compact index " + this.containerPath + " because of the following exception:", System.err); //$NON-NLS-1$ //$NON-NLS-2$
+				e.printStackTrace();
+			}
+			return false;
+		}
+		return true;
+	}
+	public String toString() {
+		return "compacting index for " + this.containerPath; //$NON-NLS-1$
+	}
+}
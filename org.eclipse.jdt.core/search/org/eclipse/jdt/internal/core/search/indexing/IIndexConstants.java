@@ -24,6 +24,18 @@ public interface IIndexConstants {
 	char[] CONSTRUCTOR_DECL= "constructorDecl".toCharArray(); //$NON-NLS-1$
 	char[] FIELD_DECL= "fieldDecl".toCharArray(); //$NON-NLS-1$
 	char[] OBJECT = "Object".toCharArray(); //$NON-NLS-1$
+	char[] DOCUMENT_FILTER = "documentFilter".toCharArray(); //$NON-NLS-1$
+	char[] QUALIFIED_SUPER_REF = "qualifiedSuperRef".toCharArray(); //$NON-NLS-1$
+
+	/* resolved reference index encoding (see ResolvedReferenceCollector) */
+	char[] RESOLVED_UNIT = "resolvedUnit".toCharArray(); //$NON-NLS-1$
+	char[] RESOLVED_TYPE_REF = "resolvedTypeRef".toCharArray(); //$NON-NLS-1$
+	char[] RESOLVED_METHOD_REF = "resolvedMethodRef".toCharArray(); //$NON-NLS-1$
+	char[] RESOLVED_FIELD_REF = "resolvedFieldRef".toCharArray(); //$NON-NLS-1$
+	/* type hierarchy graph encoding, also in the resolved reference index (see CompilationUnitScope#storeHierarchyInfo) */
+	char[] HIERARCHY_UNIT = "hierarchyUnit".toCharArray(); //$NON-NLS-1$
+	char[] HIERARCHY_TYPE = "hierarchyType".toCharArray(); //$NON-NLS-1$
+	char[] HIERARCHY_STALE = "hierarchyStale".toCharArray(); //$NON-NLS-1$
 	char[][] COUNTS= 
 		new char[][] { new char[] {'/', '0'}, new char[] {'/', '1'}, new char[] {'/', '2'}, new char[] {'/', '3'}, new char[] {'/', '4'},
 			new char[] {'/', '5'}, new char[] {'/', '6'}, new char[] {'/', '7'}, new char[] {'/', '8'}, new char[] {'/', '9'}
@@ -53,6 +53,43 @@ public class IndexManager extends JobManager implements IIndexConstants {
 	public static Integer UNKNOWN_STATE = new Integer(2);
 	public static Integer REBUILDING_STATE = new Integer(3);
 
+	/*
+	 * Directory of a read-only store of pre-built library indexes (see SharedIndexBuilder), or null if none.
+	 * Typically a cache shared by several workspaces or machines.
+	 */
+	public static String SHARED_INDEX_LOCATION = System.getProperty("org.eclipse.jdt.core.sharedIndexLocation"); //$NON-NLS-1$
+	/* library path -> String[] {last modification and length of the library, name of its index in the shared index store} */
+	private SimpleLookupTable sharedIndexNames = new SimpleLookupTable(3);
+
+	/*
+	 * Whether the indexers store a bloom filter of the names of each document, which searches requiring several names
+	 * use to skip the documents which cannot contain all of them (see DocumentTokenFilter).
+	 * Documents indexed without filter are never skipped.
+	 */
+	public static boolean INDEX_DOCUMENT_FILTERS = Boolean.getBoolean("org.eclipse.jdt.core.indexDocumentFilters"); //$NON-NLS-1$
+
+	/*
+	 * Whether the builder records the resolved references of the compiled units of each project in a secondary index,
+	 * which precise reference searches use to skip the units which cannot match (see ResolvedReferenceFilter).
+	 * The recorded references are the ones of the last build: a unit modified since is always located, and the references
+	 * of a project are ignored from a change to the project or to one of its prerequisites until the project is built again.
+	 */
+	public static boolean INDEX_RESOLVED_REFERENCES = Boolean.getBoolean("org.eclipse.jdt.core.indexResolvedReferences"); //$NON-NLS-1$
+	static final String RESOLVED_REFERENCE_INDEX_SUFFIX = ".refs"; //$NON-NLS-1$
+
+	/*
+	 * Whether the builder records the supertypes of the types of the compiled units of each project in its resolved
+	 * reference index, which type hierarchies use instead of resolving these units again (see HierarchyGraph).
+	 * The graph of a project is ignored from a change to the project or to one of its prerequisites until the project
+	 * is built again, and the supertypes of a unit are ignored once the unit is modified.
+	 */
+	public static boolean INDEX_TYPE_HIERARCHY = Boolean.getBoolean("org.eclipse.jdt.core.indexTypeHierarchy"); //$NON-NLS-1$
+
+	/* paths of the projects whose type hierarchy graph and resolved references changed since their last build */
+	private HashSet staleHierarchyGraphs = new HashSet(5);
+	/* paths of the projects built during the current workspace operation, whose changes are already in their graph */
+	private HashSet builtHierarchyGraphs = new HashSet(5);
+
 public synchronized void aboutToUpdateIndex(IPath containerPath, Integer newIndexState) {
 	// newIndexState is either UPDATING_STATE or REBUILDING_STATE
 	// must tag the index as inconsistent, in case we exit before the update job is started
@@ -120,7 +157,7 @@ public void cleanUpIndexes() {
 		File[] indexesFiles = indexesDirectory.listFiles();
 		if (indexesFiles != null) {
 			for (int i = 0, indexesFilesLength = indexesFiles.length; i < indexesFilesLength; i++) {
-				String fileName = indexesFiles[i].getAbsolutePath();
+				String fileName = Index.getIndexFileName(indexesFiles[i].getAbsolutePath()); // delta indexes belong to their index
 				if (!knownPaths.containsKey(fileName) && fileName.toLowerCase().endsWith(".index")) { //$NON-NLS-1$
 					if (VERBOSE)
 						Util.verbose("Deleting index file " + indexesFiles[i]); //$NON-NLS-1$
@@ -130,7 +167,71 @@ public void cleanUpIndexes() {
 		}
 	}
 }
-public String computeIndexLocation(IPath containerPath) {
+/**
+ * Copies the pre-built index of the given library from the shared index store, if the store has one,
+ * and records it as the saved index of the library, keeping the read-write monitor of the index it replaces.
+ * Returns null if no shared index store is set or if it has no valid index for the library.
+ * The library is hashed and the index is copied without holding the lock of the manager, which is only
+ * held to record the copied index.
+ */
+public Index attachSharedIndex(IPath containerPath, File libraryFile) {
+	if (SHARED_INDEX_LOCATION == null || !libraryFile.isFile()) return null;
+
+	String indexLocation = computeIndexLocation(containerPath);
+	String containerPathString = containerPath.getDevice() == null ? containerPath.toString() : containerPath.toOSString();
+	File indexFile = new File(indexLocation);
+	File copyFile = null;
+	try {
+		File sharedIndexFile = new File(SHARED_INDEX_LOCATION, sharedIndexName(libraryFile));
+		if (!sharedIndexFile.isFile()) return null;
+
+		if (VERBOSE)
+			Util.verbose("-> attach shared index: "+sharedIndexFile+" path: "+containerPathString); //$NON-NLS-1$ //$NON-NLS-2$
+		copyFile = File.createTempFile(indexFile.getName(), ".copy", indexFile.getParentFile()); //$NON-NLS-1$
+		copyFile(sharedIndexFile, copyFile);
+		synchronized (this) {
+			Index.deleteIndexFiles(indexLocation);
+			if (indexFile.exists() || !copyFile.renameTo(indexFile)) {
+				copyFile.delete();
+				return null;
+			}
+			Index index = (Index) this.indexes.get(indexLocation);
+			ReadWriteMonitor monitor = index == null ? null : index.monitor;
+			index = new Index(indexLocation, containerPathString, true /*reuse index file*/);
+			if (monitor != null)
+				index.monitor = monitor;
+			this.indexes.put(indexLocation, index);
+			updateIndexState(indexLocation, SAVED_STATE);
+			return index;
+		}
+	} catch (IOException e) {
+		// the shared index cannot be read or has an unexpected signature
+		if (VERBOSE)
+			Util.verbose("-> cannot attach shared index for path: "+containerPathString); //$NON-NLS-1$
+		if (copyFile != null)
+			copyFile.delete();
+		return null;
+	}
+}
+/*
+ * Answers the name of the index of the given library in the shared index store, hashing the library
+ * only if it changed since the last call.
+ */
+private String sharedIndexName(File libraryFile) throws IOException {
+	String path = libraryFile.getPath();
+	String stamp = libraryFile.lastModified() + "/" + libraryFile.length(); //$NON-NLS-1$
+	synchronized (this.sharedIndexNames) {
+		String[] name = (String[]) this.sharedIndexNames.get(path);
+		if (name != null && name[0].equals(stamp))
+			return name[1];
+	}
+	String name = SharedIndexBuilder.sharedIndexName(libraryFile);
+	synchronized (this.sharedIndexNames) {
+		this.sharedIndexNames.put(path, new String[] {stamp, name});
+	}
+	return name;
+}
+public synchronized String computeIndexLocation(IPath containerPath) {
 	String indexLocation = (String) this.indexLocations.get(containerPath);
 	if (indexLocation == null) {
 		String pathString = containerPath.toOSString();
@@ -144,6 +245,13 @@ public String computeIndexLocation(IPath containerPath) {
 	}
 	return indexLocation;
 }
+/*
+ * The resolved reference index of a project lives next to its index.
+ */
+public synchronized String computeResolvedReferenceIndexLocation(IPath projectPath) {
+	String indexLocation = computeIndexLocation(projectPath);
+	return indexLocation.substring(0, indexLocation.length() - ".index".length()) + RESOLVED_REFERENCE_INDEX_SUFFIX; //$NON-NLS-1$
+}
 /*
  * Creates an empty index at the given location, for the given container path, if none exist.
  */
@@ -232,6 +340,40 @@ public synchronized Index getIndex(IPath containerPath, String indexLocation, bo
 	//System.out.println(" index name: " + path.toOSString() + " <----> " + index.getIndexFile().getName());	
 	return index;
 }
+/**
+ * Returns the resolved reference index of the given project, reading it from disk if needed.
+ * Answers null if the project has none and createIfMissing is false.
+ * Unlike the project index, this index is never rebuilt: units are added to it as the builder compiles them.
+ */
+public synchronized Index getResolvedReferenceIndex(IPath projectPath, boolean createIfMissing) {
+	String indexLocation = computeResolvedReferenceIndexLocation(projectPath);
+	Index index = (Index) this.indexes.get(indexLocation);
+	if (index != null) return index;
+
+	String projectPathString = projectPath.toString();
+	if (new File(indexLocation).exists()) {
+		try {
+			index = new Index(indexLocation, projectPathString, true /*reuse index file*/);
+			this.indexes.put(indexLocation, index);
+			return index;
+		} catch (IOException e) {
+			// corrupt or no longer compatible, start a new one
+			if (VERBOSE)
+				Util.verbose("-> cannot reuse existing resolved reference index: " + indexLocation); //$NON-NLS-1$
+			Index.deleteIndexFiles(indexLocation);
+		}
+	}
+	if (!createIfMissing) return null;
+	try {
+		index = new Index(indexLocation, projectPathString, false /*do not reuse index file*/);
+		this.indexes.put(indexLocation, index);
+		return index;
+	} catch (IOException e) {
+		if (VERBOSE)
+			Util.verbose("-> unable to create resolved reference index: " + indexLocation); //$NON-NLS-1$
+		return null;
+	}
+}
 public synchronized Index getIndex(String indexLocation) {
 	return (Index) indexes.get(indexLocation); // is null if unknown, call if the containerPath must be computed
 }
@@ -265,7 +407,7 @@ private SimpleLookupTable getIndexStates() {
 				File[] files = indexesDirectory.listFiles();
 				if (files != null) {
 					for (int i = 0, l = files.length; i < l; i++) {
-						String fileName = files[i].getAbsolutePath();
+						String fileName = Index.getIndexFileName(files[i].getAbsolutePath());
 						if (fileName.toLowerCase().endsWith(".index")) { //$NON-NLS-1$
 							if (VERBOSE)
 								Util.verbose("Deleting index file " + files[i]); //$NON-NLS-1$
@@ -362,7 +504,7 @@ public void indexSourceFolder(JavaProject javaProject, IPath sourceFolder, char[
 
 	this.request(new AddFolderToIndex(sourceFolder, project, inclusionPatterns, exclusionPatterns, this));
 }
-public void jobWasCancelled(IPath containerPath) {
+public synchronized void jobWasCancelled(IPath containerPath) {
 	String indexLocation = computeIndexLocation(containerPath);
 	Object o = this.indexes.get(indexLocation);
 	if (o instanceof Index) {
@@ -371,6 +513,14 @@ public void jobWasCancelled(IPath containerPath) {
 	}
 	updateIndexState(indexLocation, UNKNOWN_STATE);
 }
+/*
+ * Jobs indexing different containers update different indexes, they can be executed at the same time.
+ */
+protected Object concurrentJobKey(IJob job) {
+	if (job instanceof AddJarFileToIndex || job instanceof IndexAllProject || job instanceof IndexBinaryFolder || job instanceof CompactIndex)
+		return ((IndexRequest) job).containerPath;
+	return null;
+}
 /**
  * Advance to the next available job, once the current one has been completed.
  * Note: clients awaiting until the job count is zero are still waiting at this point.
@@ -410,9 +560,9 @@ private void rebuildIndex(String indexLocation, IPath containerPath) {
 	} else if (target instanceof IFolder) {
 		request = new IndexBinaryFolder((IFolder) target, this);
 	} else if (target instanceof IFile) {
-		request = new AddJarFileToIndex((IFile) target, this);
+		request = new AddJarFileToIndex((IFile) target, this); // attaches the shared index of the jar if any
 	} else if (target instanceof java.io.File) {
-		request = new AddJarFileToIndex(containerPath, this);
+		request = new AddJarFileToIndex(containerPath, this); // attaches the shared index of the jar if any
 	}
 	if (request != null)
 		request(request);
@@ -447,6 +597,46 @@ public synchronized Index recreateIndex(IPath containerPath) {
 		return null;
 	}
 }
+/**
+ * Trigger the update of the resolved references of a compiled source file, or their removal if the keys are null.
+ * Note: the actual operation is performed in background
+ */
+public void indexResolvedReferences(IFile resource, char[][] typeKeys, char[][] methodKeys, char[][] fieldKeys, char[][] typeHierarchy) {
+	if (JavaCore.getPlugin() == null) return;
+	request(new AddResolvedReferencesToIndex(resource, typeKeys, methodKeys, fieldKeys, typeHierarchy, this));
+}
+/**
+ * Marks the type hierarchy graph of the given project as stale until the project is built again.
+ * Note: the mark is persisted in background
+ */
+public synchronized void hierarchyGraphChanged(IPath projectPath) {
+	if (this.builtHierarchyGraphs.contains(projectPath)) return; // the change was built before being notified (autobuild)
+	if (this.staleHierarchyGraphs.add(projectPath))
+		request(new UpdateHierarchyGraphState(projectPath, true /*stale*/, this));
+}
+/**
+ * Marks the type hierarchy graph of the given project as current since the project has just been built.
+ * Note: the mark is persisted in background
+ */
+public synchronized void hierarchyGraphBuilt(IPath projectPath) {
+	this.staleHierarchyGraphs.remove(projectPath);
+	this.builtHierarchyGraphs.add(projectPath);
+	request(new UpdateHierarchyGraphState(projectPath, false /*current*/, this));
+}
+/**
+ * Forgets the projects built during the workspace operation whose changes have just been processed,
+ * so that further changes to these projects mark their type hierarchy graph as stale again.
+ */
+public synchronized void hierarchyGraphChangesProcessed() {
+	this.builtHierarchyGraphs.clear();
+}
+/**
+ * Returns whether the given project changed since its last build in this session.
+ * A graph marked stale in a previous session is known from its index.
+ */
+public synchronized boolean isHierarchyGraphStale(IPath projectPath) {
+	return this.staleHierarchyGraphs.contains(projectPath);
+}
 /**
  * Trigger removal of a resource to an index
  * Note: the actual operation is performed in background
@@ -462,14 +652,18 @@ public synchronized void removeIndex(IPath containerPath) {
 	if (VERBOSE)
 		Util.verbose("removing index " + containerPath); //$NON-NLS-1$
 	String indexLocation = computeIndexLocation(containerPath);
-	File indexFile = new File(indexLocation);
-	if (indexFile.exists())
-		indexFile.delete();
+	Index.deleteIndexFiles(indexLocation);
 	Object o = this.indexes.get(indexLocation);
 	if (o instanceof Index)
 		((Index) o).monitor = null;
 	this.indexes.remove(indexLocation);
 	updateIndexState(indexLocation, null);
+
+	String resolvedIndexLocation = computeResolvedReferenceIndexLocation(containerPath);
+	Index.deleteIndexFiles(resolvedIndexLocation);
+	o = this.indexes.remove(resolvedIndexLocation);
+	if (o instanceof Index)
+		((Index) o).monitor = null;
 }
 /**
  * Removes all indexes whose paths start with (or are equal to) the given path. 
@@ -525,11 +719,21 @@ public void saveIndex(Index index) throws IOException {
 	}
 	// TODO should use getJavaPluginWorkingLocation()+index simple name to avoid bugs such as https://bugs.eclipse.org/bugs/show_bug.cgi?id=62267
 	String indexLocation = index.getIndexFile().getPath();
+	if (indexLocation.endsWith(RESOLVED_REFERENCE_INDEX_SUFFIX)) return; // has no state, and is not compacted
+	if (index.shouldCompact()) {
+		// merge the delta indexes in the background, queries can still run meanwhile
+		Object containerPath = this.indexLocations.keyForValue(indexLocation);
+		if (containerPath != null) {
+			CompactIndex request = new CompactIndex((IPath) containerPath, this);
+			if (!isJobWaiting(request))
+				request(request);
+		}
+	}
 	if (this.jobEnd > this.jobStart) {
 		Object containerPath = this.indexLocations.keyForValue(indexLocation);
 		if (containerPath != null) {
 			synchronized(this) {
-				for (int i = this.jobEnd; i > this.jobStart; i--) { // skip the current job
+				for (int i = this.jobEnd, first = this.jobStart + Math.max(this.startedJobs, 1); i >= first; i--) { // skip the current jobs
 					IJob job = this.awaitingJobs[i];
 					if (job instanceof IndexRequest)
 						if (((IndexRequest) job).containerPath.equals(containerPath)) return;
@@ -621,6 +825,22 @@ public String toString() {
 	return buffer.toString();
 }
 
+private void copyFile(File source, File destination) throws IOException {
+	InputStream input = new FileInputStream(source);
+	try {
+		OutputStream output = new FileOutputStream(destination);
+		try {
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = input.read(buffer)) != -1)
+				output.write(buffer, 0, read);
+		} finally {
+			output.close();
+		}
+	} finally {
+		input.close();
+	}
+}
 private char[] readIndexState() {
 	try {
 		return org.eclipse.jdt.internal.compiler.util.Util.getFileCharContent(savedIndexNamesFile, null);
@@ -37,6 +37,19 @@ class RemoveFromIndex extends IndexRequest {
 		} finally {
 			monitor.exitWrite(); // free write lock
 		}
+		if (IndexManager.INDEX_RESOLVED_REFERENCES || IndexManager.INDEX_TYPE_HIERARCHY) {
+			// forget what the builder recorded for the removed unit
+			index = this.manager.getResolvedReferenceIndex(this.containerPath, false /*don't create if none*/);
+			if (index == null) return true;
+			monitor = index.monitor;
+			if (monitor == null) return true; // index got deleted since acquired
+			try {
+				monitor.enterWrite(); // ask permission to write
+				index.remove(resourceName);
+			} finally {
+				monitor.exitWrite(); // free write lock
+			}
+		}
 		return true;
 	}
 	public String toString() {
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.core.search.indexing;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.internal.compiler.util.Util;
+import org.eclipse.jdt.internal.core.index.DiskIndex;
+import org.eclipse.jdt.internal.core.index.Index;
+import org.eclipse.jdt.internal.core.search.JavaSearchDocument;
+
+/**
+ * Builds the indexes of libraries into a shared index store, outside of any workspace.
+ * Workspaces started with the system property <code>org.eclipse.jdt.core.sharedIndexLocation</code>
+ * pointing to the store copy these indexes instead of indexing the libraries themselves
+ * (see <code>IndexManager.SHARED_INDEX_LOCATION</code>).
+ * <p>
+ * Usage: <code>java org.eclipse.jdt.internal.core.search.indexing.SharedIndexBuilder &lt;store directory&gt; &lt;library&gt;...</code>
+ * </p><p>
+ * The index of a library is named after the digest of the index signature and of the library contents,
+ * so it is found whatever the location of the library is, and it is ignored once the index format changes.
+ * </p>
+ */
+public class SharedIndexBuilder {
+
+	static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+
+public static void main(String[] args) {
+	if (args.length < 2) {
+		System.err.println("Usage: SharedIndexBuilder <store directory> <library>..."); //$NON-NLS-1$
+		System.exit(1);
+	}
+	File storeDirectory = new File(args[0]);
+	if (!storeDirectory.isDirectory() && !storeDirectory.mkdirs()) {
+		System.err.println("Cannot create the store directory " + storeDirectory); //$NON-NLS-1$
+		System.exit(1);
+	}
+	int failures = 0;
+	for (int i = 1, length = args.length; i < length; i++) {
+		File libraryFile = new File(args[i]);
+		try {
+			long start = System.currentTimeMillis();
+			File indexFile = buildIndex(libraryFile, storeDirectory);
+			System.out.println(libraryFile + " -> " + indexFile.getName() + " (" + (System.currentTimeMillis() - start) + "ms)"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		} catch (IOException e) {
+			System.err.println("Cannot index " + libraryFile + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+			failures++;
+		}
+	}
+	if (failures > 0)
+		System.exit(1);
+}
+/**
+ * Builds the index of the given library into the given store directory, unless the store already has it.
+ * Answers the index file in the store.
+ */
+public static File buildIndex(File libraryFile, File storeDirectory) throws IOException {
+	File indexFile = new File(storeDirectory, sharedIndexName(libraryFile));
+	if (indexFile.exists()) return indexFile; // built by a previous run
+
+	// the index is written aside and renamed once complete, so that readers of the store never see a partial index
+	File partFile = new File(storeDirectory, indexFile.getName() + ".part"); //$NON-NLS-1$
+	ZipFile zip = new ZipFile(libraryFile);
+	try {
+		Path zipFilePath = new Path(libraryFile.getPath());
+		Index index = new Index(partFile.getPath(), zipFilePath.toOSString(), false /*do not reuse index file*/);
+		byte[] buffer = new byte[8192];
+		for (Enumeration e = zip.entries(); e.hasMoreElements();) {
+			ZipEntry ze = (ZipEntry) e.nextElement();
+			if (Util.isClassFileName(ze.getName())) {
+				buffer = AddJarFileToIndex.readEntry(ze, zip, buffer);
+				JavaSearchDocument entryDocument = new JavaSearchDocument(ze, zipFilePath, buffer, null);
+				((InternalSearchDocument) entryDocument).index = index;
+				new BinaryIndexer(entryDocument).indexDocument();
+			}
+		}
+		index.save();
+		if (!partFile.renameTo(indexFile) && !indexFile.exists()) // another builder may have stored the same index meanwhile
+			throw new IOException("Failed to rename index file " + partFile); //$NON-NLS-1$
+	} finally {
+		zip.close();
+		partFile.delete();
+	}
+	return indexFile;
+}
+/**
+ * Answers the name of the index of the given library in a shared index store.
+ */
+public static String sharedIndexName(File libraryFile) throws IOException {
+	MessageDigest digest;
+	try {
+		digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+	} catch (NoSuchAlgorithmException e) {
+		throw new IOException(e.getMessage());
+	}
+	digest.update(DiskIndex.SIGNATURE.getBytes("UTF8")); //$NON-NLS-1$
+	InputStream stream = new FileInputStream(libraryFile);
+	try {
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = stream.read(buffer)) != -1)
+			digest.update(buffer, 0, read);
+	} finally {
+		stream.close();
+	}
+	byte[] bytes = digest.digest();
+	char[] name = new char[bytes.length * 2];
+	for (int i = 0, length = bytes.length; i < length; i++) {
+		name[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+		name[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xF];
+	}
+	return new String(name) + ".index"; //$NON-NLS-1$
+}
+}
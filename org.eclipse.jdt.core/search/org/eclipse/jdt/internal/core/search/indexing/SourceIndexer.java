@@ -84,5 +84,6 @@ public class SourceIndexer extends AbstractIndexer implements SuffixConstants {
 				e.printStackTrace();
 			}
 		}
+		addDocumentFilter();
 	}
 }
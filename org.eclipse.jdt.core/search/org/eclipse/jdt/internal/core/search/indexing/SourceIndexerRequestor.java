@@ -10,10 +10,13 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.core.search.indexing;
 
+import java.util.ArrayList;
+
 import org.eclipse.jdt.core.Signature;
 import org.eclipse.jdt.core.compiler.*;
 import org.eclipse.jdt.core.compiler.IProblem;
 import org.eclipse.jdt.internal.compiler.ISourceElementRequestor;
+import org.eclipse.jdt.internal.compiler.env.IConstants;
 import org.eclipse.jdt.internal.compiler.env.IGenericType;
 import org.eclipse.jdt.internal.core.search.processing.JobManager;
 
@@ -29,6 +32,16 @@ public class SourceIndexerRequestor implements ISourceElementRequestor, IIndexCo
 	int depth = 0;
 	int methodDepth = 0;
 	
+	// the imports, to qualify the supertype names (see #qualifiedSuperTypeNames(char[]))
+	ArrayList singleTypeImports = new ArrayList(); // type names, where the names of static imports use '$'
+	ArrayList onDemandImports = new ArrayList(); // package or type names, where the names of static imports use '$'
+
+	static final char[] JAVA_LANG = "java.lang".toCharArray(); //$NON-NLS-1$
+	static final char[] JAVA_LANG_DOT = "java.lang.".toCharArray(); //$NON-NLS-1$
+	static final char[] JAVA_LANG_OBJECT = "java.lang.Object".toCharArray(); //$NON-NLS-1$
+	static final char[] JAVA_LANG_ENUM = "java.lang.Enum".toCharArray(); //$NON-NLS-1$
+	static final char[] JAVA_LANG_ANNOTATION_ANNOTATION = "java.lang.annotation.Annotation".toCharArray(); //$NON-NLS-1$
+	
 public SourceIndexerRequestor(SourceIndexer indexer) {
 	this.indexer = indexer;
 }
@@ -62,6 +75,22 @@ public void acceptImport(int declarationStart, int declarationEnd, char[] name,
 	for (int i = 0, length = qualification.length; i < length; i++) {
 		this.indexer.addNameReference(qualification[i]);
 	}
+	if ((modifiers & IConstants.AccStatic) != 0) {
+		// a static import imports member types
+		if (onDemand) {
+			this.onDemandImports.add(CharOperation.replaceOnCopy(name, '.', '$'));
+		} else {
+			int lastDot = CharOperation.lastIndexOf('.', name);
+			if (lastDot > 0) {
+				char[] memberName = CharOperation.concat(CharOperation.subarray(name, 0, lastDot), CharOperation.subarray(name, lastDot + 1, -1), '$');
+				this.singleTypeImports.add(memberName);
+			}
+		}
+	} else if (onDemand) {
+		this.onDemandImports.add(name);
+	} else {
+		this.singleTypeImports.add(name);
+	}
 }
 /**
  * @see ISourceElementRequestor#acceptLineSeparatorPositions(int[])
@@ -80,6 +109,7 @@ public void acceptMethodReference(char[] methodName, int argCount, int sourcePos
  */
 public void acceptPackage(int declarationStart, int declarationEnd, char[] name) {
 	this.packageName = name;
+	this.indexer.addDocumentTokens(name); // a unit without type, e.g. package-info.java, may still reference the types of its package
 }
 /**
  * @see ISourceElementRequestor#acceptProblem(IProblem)
@@ -137,13 +167,40 @@ private void enterAnnotationType(TypeInfo typeInfo) {
 		typeNames = ONE_ZERO_CHAR;
 	} else {
 		typeNames = this.enclosingTypeNames();
+		this.indexer.addQualifiedSuperTypeReference(typeInfo.modifiers, this.packageName, typeInfo.name, typeNames, ANNOTATION_TYPE_SUFFIX, new char[][] {JAVA_LANG_ANNOTATION_ANNOTATION}, INTERFACE_SUFFIX);
 	}
 	this.indexer.addAnnotationTypeDeclaration(typeInfo.modifiers, packageName, typeInfo.name, typeNames);
 	this.pushTypeName(typeInfo.name);	
 }
+/*
+ * Adds the qualified references of the given type to its supertypes, given by their possible qualified names
+ * for the superclass and by their source names for the superinterfaces.
+ * Note: local and anonymous types are left out since they cannot have subtypes outside their compilation unit.
+ */
+private void addQualifiedSuperTypeReferences(TypeInfo typeInfo, char[][] typeNames, char classOrInterface, char[][] superclassNames, char[][] superinterfaces) {
+	if (superclassNames != null) {
+		this.indexer.addQualifiedSuperTypeReference(typeInfo.modifiers, this.packageName, typeInfo.name, typeNames, classOrInterface, superclassNames, CLASS_SUFFIX);
+	}
+	if (superinterfaces != null) {
+		for (int i = 0, length = superinterfaces.length; i < length; i++) {
+			this.indexer.addQualifiedSuperTypeReference(typeInfo.modifiers, this.packageName, typeInfo.name, typeNames, classOrInterface, qualifiedSuperTypeNames(superinterfaces[i]), INTERFACE_SUFFIX);
+		}
+	}
+}
 
 private void enterClass(TypeInfo typeInfo) {
 
+	if (this.methodDepth == 0) {
+		char[][] superclassNames;
+		if (typeInfo.superclass != null)
+			superclassNames = qualifiedSuperTypeNames(typeInfo.superclass);
+		else if (this.depth == 0 && CharOperation.equals(typeInfo.name, OBJECT) && CharOperation.equals(this.packageName, JAVA_LANG))
+			superclassNames = null; // java.lang.Object has no superclass
+		else
+			superclassNames = new char[][] {JAVA_LANG_OBJECT};
+		addQualifiedSuperTypeReferences(typeInfo, this.enclosingTypeNames(), CLASS_SUFFIX, superclassNames, typeInfo.superinterfaces);
+	}
+
 	// eliminate possible qualifications, given they need to be fully resolved again
 	if (typeInfo.superclass != null) {
 		typeInfo.superclass = getSimpleName(typeInfo.superclass);
@@ -188,6 +245,8 @@ public void enterConstructor(MethodInfo methodInfo) {
 	this.methodDepth++;
 }
 private void enterEnum(TypeInfo typeInfo) {
+	if (this.methodDepth == 0)
+		addQualifiedSuperTypeReferences(typeInfo, this.enclosingTypeNames(), ENUM_SUFFIX, new char[][] {JAVA_LANG_ENUM}, typeInfo.superinterfaces);
 	// eliminate possible qualifications, given they need to be fully resolved again
 	if (typeInfo.superinterfaces != null){
 		for (int i = 0, length = typeInfo.superinterfaces.length; i < length; i++){
@@ -217,6 +276,8 @@ public void enterInitializer(int declarationSourceStart, int modifiers) {
 	this.methodDepth++;
 }
 private void enterInterface(TypeInfo typeInfo) {
+	if (this.methodDepth == 0)
+		addQualifiedSuperTypeReferences(typeInfo, this.enclosingTypeNames(), INTERFACE_SUFFIX, null, typeInfo.superinterfaces);
 	// eliminate possible qualifications, given they need to be fully resolved again
 	if (typeInfo.superinterfaces != null){
 		for (int i = 0, length = typeInfo.superinterfaces.length; i < length; i++){
@@ -337,6 +398,88 @@ private char[] getSimpleName(char[] typeName) {
 	}
 	return  CharOperation.subarray(typeName, lastDot + 1, lastGenericStart);
 }
+/*
+ * Returns the fully qualified names (where member type names use '$') that the given supertype name may have,
+ * in the order of precedence of the Java scoping rules (JLS 6.5.5): the member types of the enclosing types,
+ * the single-type imports, the types of the package, the on-demand imports and java.lang.
+ * The member types inherited by the enclosing types are not known, and a qualified name is assumed to start with
+ * a package name if its first name is lower case.
+ */
+char[][] qualifiedSuperTypeNames(char[] typeName) {
+	typeName = erasure(typeName);
+	ArrayList names = new ArrayList();
+	int firstDot = CharOperation.indexOf('.', typeName);
+	char[] firstName = firstDot == -1 ? typeName : CharOperation.subarray(typeName, 0, firstDot);
+	char[] memberNames = firstDot == -1 ? null : CharOperation.replaceOnCopy(CharOperation.subarray(typeName, firstDot + 1, -1), '.', '$');
+
+	// the first name is a type name, unless it follows the naming conventions of packages
+	if (firstDot == -1 || !Character.isLowerCase(firstName[0])) {
+		char[][] firstTypeNames = qualifiedTypeNames(firstName);
+		for (int i = 0, length = firstTypeNames.length; i < length; i++)
+			names.add(memberNames == null ? firstTypeNames[i] : CharOperation.concat(firstTypeNames[i], memberNames, '$'));
+	}
+	if (firstDot != -1) {
+		// the qualification is a package name, or a package name followed by a type name
+		int lastDot = CharOperation.lastIndexOf('.', typeName);
+		names.add(typeName);
+		if (lastDot != firstDot)
+			names.add(CharOperation.concat(CharOperation.subarray(typeName, 0, lastDot), CharOperation.subarray(typeName, lastDot + 1, -1), '$'));
+	}
+	char[][] result = new char[names.size()][];
+	names.toArray(result);
+	return result;
+}
+private char[][] qualifiedTypeNames(char[] simpleName) {
+	ArrayList names = new ArrayList();
+	char[] qualifiedPackageName = this.packageName.length == 0 ? CharOperation.NO_CHAR : CharOperation.append(this.packageName, '.');
+	for (int i = this.depth; i > 0; i--) {
+		char[][] enclosingNames = new char[i][];
+		System.arraycopy(this.enclosingTypeNames, 0, enclosingNames, 0, i);
+		char[] enclosingTypeName = CharOperation.concatWith(enclosingNames, '$');
+		names.add(CharOperation.concat(qualifiedPackageName, CharOperation.concat(enclosingTypeName, simpleName, '$')));
+	}
+	for (int i = 0, size = this.singleTypeImports.size(); i < size; i++) {
+		char[] importName = (char[]) this.singleTypeImports.get(i);
+		if (CharOperation.equals(simpleName, CharOperation.lastSegment(CharOperation.lastSegment(importName, '.'), '$'))) {
+			names.add(importName);
+			char[][] result = new char[names.size()][];
+			names.toArray(result);
+			return result; // shadows the types of the package and of the on-demand imports
+		}
+	}
+	names.add(CharOperation.concat(qualifiedPackageName, simpleName));
+	for (int i = 0, size = this.onDemandImports.size(); i < size; i++) {
+		char[] importName = (char[]) this.onDemandImports.get(i);
+		if (CharOperation.indexOf('$', importName) == -1) // a package name, or a type name
+			names.add(CharOperation.concat(importName, simpleName, '.'));
+		names.add(CharOperation.concat(importName, simpleName, '$'));
+	}
+	names.add(CharOperation.concat(JAVA_LANG_DOT, simpleName));
+	char[][] result = new char[names.size()][];
+	names.toArray(result);
+	return result;
+}
+/*
+ * Returns the given type name without its type arguments.
+ */
+private char[] erasure(char[] typeName) {
+	if (CharOperation.indexOf('<', typeName) == -1) return typeName;
+	StringBuffer buffer = new StringBuffer(typeName.length);
+	int depthCount = 0;
+	for (int i = 0, length = typeName.length; i < length; i++) {
+		char c = typeName[i];
+		if (c == '<') {
+			depthCount++;
+		} else if (c == '>') {
+			depthCount--;
+		} else if (depthCount == 0 && c != ' ') {
+			buffer.append(c);
+		}
+	}
+	char[] result = new char[buffer.length()];
+	buffer.getChars(0, result.length, result, 0);
+	return result;
+}
 public void popTypeName() {
 	if (depth > 0) {
 		enclosingTypeNames[--depth] = null;
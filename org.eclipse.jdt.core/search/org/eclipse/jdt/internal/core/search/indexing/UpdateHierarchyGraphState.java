@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.core.search.indexing;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.internal.core.index.Index;
+
+/*
+ * Records in the resolved reference index of a project whether its type hierarchy graph and resolved references may be stale,
+ * i.e. whether the project or one of its prerequisites changed since the project was last built.
+ * The mark is persisted with the index so that it survives a shutdown before the next build.
+ */
+class UpdateHierarchyGraphState extends IndexRequest implements IIndexConstants {
+	static final String STALE_DOCUMENT = ".hierarchy"; //$NON-NLS-1$
+	static final char[] STALE = "stale".toCharArray(); //$NON-NLS-1$
+	boolean isStale;
+
+	public UpdateHierarchyGraphState(IPath projectPath, boolean isStale, IndexManager manager) {
+		super(projectPath, manager);
+		this.isStale = isStale;
+	}
+	public void cancel() {
+		this.isCancelled = true; // the project index is not affected
+	}
+	public void ensureReadyToRun() {
+		// the project index is not affected
+	}
+	public boolean execute(IProgressMonitor progressMonitor) {
+
+		if (this.isCancelled || progressMonitor != null && progressMonitor.isCanceled()) return true;
+
+		Index index = this.manager.getResolvedReferenceIndex(this.containerPath, false /*don't create if none*/);
+		if (index == null) return true; // no graph
+		ReadWriteMonitor monitor = index.monitor;
+		if (monitor == null) return true; // index got deleted since acquired
+
+		try {
+			monitor.enterWrite(); // ask permission to write
+			index.remove(STALE_DOCUMENT);
+			if (this.isStale)
+				index.addIndexEntry(HIERARCHY_STALE, STALE, STALE_DOCUMENT);
+		} finally {
+			monitor.exitWrite(); // free write lock
+		}
+		return true;
+	}
+	public String toString() {
+		return (this.isStale ? "marking stale the type hierarchy graph of " : "marking current the type hierarchy graph of ") + this.containerPath; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
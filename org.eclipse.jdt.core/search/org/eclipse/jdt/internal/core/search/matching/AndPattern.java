@@ -73,6 +73,12 @@ public void findIndexMatches(Index index, IndexQueryRequestor requestor, SearchP
 		if (names[i] != null)
 			((InternalSearchPattern) this).acceptMatch((String) names[i], containerPath, null/*no pattern*/, requestor, participant, scope); // AndPatterns cannot provide the decoded result
 }
+/*
+ * The current query is stored in this pattern.
+ */
+boolean canQueryIndexesConcurrently() {
+	return false;
+}
 /**
  * Returns whether another query must be done.
  */
@@ -25,4 +25,7 @@ public DeclarationOfAccessedFieldsPattern(IJavaElement enclosingElement) {
 	this.knownFields = new SimpleSet();
 	((InternalSearchPattern)this).mustResolve = true;
 }
+boolean canLocateMatchesConcurrently() {
+	return false; // the known fields are updated by the match locators
+}
 }
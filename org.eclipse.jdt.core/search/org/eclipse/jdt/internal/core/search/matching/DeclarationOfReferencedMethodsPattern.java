@@ -27,4 +27,7 @@ public DeclarationOfReferencedMethodsPattern(IJavaElement enclosingElement) {
 	this.knownMethods = new SimpleSet();
 	((InternalSearchPattern)this).mustResolve = true;
 }
+boolean canLocateMatchesConcurrently() {
+	return false; // the known methods are updated by the match locators
+}
 }
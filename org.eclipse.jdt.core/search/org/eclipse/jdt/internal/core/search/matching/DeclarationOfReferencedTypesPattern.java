@@ -25,4 +25,7 @@ public DeclarationOfReferencedTypesPattern(IJavaElement enclosingElement) {
 	this.knownTypes = new SimpleSet();
 	((InternalSearchPattern)this).mustResolve = true;
 }
+boolean canLocateMatchesConcurrently() {
+	return false; // the known types are updated by the match locators
+}
 }
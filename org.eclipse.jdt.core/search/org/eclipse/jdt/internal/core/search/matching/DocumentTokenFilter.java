@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.core.search.matching;
+
+import java.io.IOException;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.core.search.IJavaSearchScope;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.internal.compiler.util.SimpleLookupTable;
+import org.eclipse.jdt.internal.core.JavaModelManager;
+import org.eclipse.jdt.internal.core.index.DocumentFilter;
+import org.eclipse.jdt.internal.core.index.EntryResult;
+import org.eclipse.jdt.internal.core.index.Index;
+import org.eclipse.jdt.internal.core.search.indexing.IIndexConstants;
+import org.eclipse.jdt.internal.core.search.indexing.IndexManager;
+import org.eclipse.jdt.internal.core.search.indexing.ReadWriteMonitor;
+
+/**
+ * Skips the candidate documents which cannot contain the names required by a pattern
+ * (see PatternLocator#requiredDocumentTokens), using the bloom filters the indexers stored with
+ * the entries of each document when IndexManager.INDEX_DOCUMENT_FILTERS is set (see DocumentFilter).
+ * <p>
+ * The filters of an index are read the first time one of its documents is checked. A document
+ * without filter, e.g. indexed by another participant, is never skipped.
+ * </p>
+ */
+public class DocumentTokenFilter implements IIndexConstants {
+
+	static final int EXACT_RULE = SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE;
+	static final SimpleLookupTable NO_FILTERS = new SimpleLookupTable(1);
+
+	char[][][] requiredTokens;
+
+	/*
+	 * key = a container path, value = a SimpleLookupTable (document name -> encoded filter)
+	 */
+	SimpleLookupTable containerFilters = new SimpleLookupTable(3);
+
+	int skippedDocuments;
+
+/**
+ * Creates the filter of the given locator, or answers null if it would not skip more documents than its index query.
+ */
+public static DocumentTokenFilter newFilter(PatternLocator locator) {
+	char[][][] requiredTokens = locator.requiredDocumentTokens();
+	if (requiredTokens == null) return null;
+	for (int i = 0, length = requiredTokens.length; i < length; i++)
+		if (requiredTokens[i].length > 1) // a single name is the key of the index query
+			return new DocumentTokenFilter(requiredTokens);
+	return null;
+}
+DocumentTokenFilter(char[][][] requiredTokens) {
+	this.requiredTokens = requiredTokens;
+}
+/**
+ * Answers whether the document with the given path may contain all the names of one of the required alternatives.
+ */
+public boolean mayMatch(String documentPath) {
+	String containerPath, relativePath;
+	int separatorIndex = documentPath.indexOf(IJavaSearchScope.JAR_FILE_ENTRY_SEPARATOR);
+	if (separatorIndex != -1) {
+		containerPath = documentPath.substring(0, separatorIndex);
+		relativePath = documentPath.substring(separatorIndex + 1);
+	} else {
+		IPath path = new Path(documentPath);
+		if (path.segmentCount() < 2) return true;
+		containerPath = path.uptoSegment(1).toString(); // the project
+		relativePath = path.removeFirstSegments(1).toString();
+	}
+	char[] filter = (char[]) getFilters(containerPath).get(relativePath);
+	if (filter == null) return true;
+
+	for (int i = 0, length = this.requiredTokens.length; i < length; i++)
+		if (DocumentFilter.mayContainAll(filter, this.requiredTokens[i]))
+			return true;
+	this.skippedDocuments++;
+	return false;
+}
+SimpleLookupTable getFilters(String containerPath) {
+	SimpleLookupTable filters = (SimpleLookupTable) this.containerFilters.get(containerPath);
+	if (filters == null) {
+		filters = readFilters(containerPath);
+		this.containerFilters.put(containerPath, filters);
+	}
+	return filters;
+}
+SimpleLookupTable readFilters(String containerPath) {
+	IndexManager indexManager = JavaModelManager.getJavaModelManager().getIndexManager();
+	Index index = indexManager.getIndex(indexManager.computeIndexLocation(new Path(containerPath))); // only if the query used it
+	if (index == null) return NO_FILTERS;
+	ReadWriteMonitor monitor = index.monitor;
+	if (monitor == null) return NO_FILTERS; // index got deleted since acquired
+
+	SimpleLookupTable filters = new SimpleLookupTable();
+	try {
+		monitor.enterRead(); // ask permission to read
+		index.startQuery();
+		try {
+			EntryResult[] entries = index.query(new char[][] {DOCUMENT_FILTER}, null, EXACT_RULE);
+			if (entries == null) return NO_FILTERS;
+			for (int i = 0, l = entries.length; i < l; i++) {
+				char[] filter = entries[i].getWord();
+				String[] documentNames = entries[i].getDocumentNames(index);
+				for (int j = 0, m = documentNames.length; j < m; j++)
+					filters.put(documentNames[j], filter);
+			}
+		} finally {
+			index.stopQuery();
+		}
+	} catch (IOException e) {
+		return NO_FILTERS; // no document is skipped
+	} finally {
+		monitor.exitRead(); // finished reading
+	}
+	return filters;
+}
+public String toString() {
+	return "Document token filter: " + this.containerFilters.elementSize + " indexes, " + this.skippedDocuments + " skipped documents"; //$NON-NLS-1$ //$NON-NLS-2$
+}
+}
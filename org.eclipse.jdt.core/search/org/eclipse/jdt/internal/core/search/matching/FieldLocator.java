@@ -31,6 +31,33 @@ public FieldLocator(FieldPattern pattern) {
 
 	this.isDeclarationOfAccessedFieldsPattern = this.pattern instanceof DeclarationOfAccessedFieldsPattern;
 }
+/*
+ * A reference to the field is recorded with its declaring type.
+ */
+public boolean addResolvedReferences(ResolvedReferenceFilter filter) {
+	if (!this.pattern.findReferences || this.pattern.findDeclarations || this.isDeclarationOfAccessedFieldsPattern) return false;
+	if (this.pattern.name == null || this.pattern.name.length == 0 || !Character.isJavaIdentifierStart(this.pattern.name[0])) return false;
+	FieldPattern fieldPattern = (FieldPattern) this.pattern;
+	char[] declaringTypeName = resolvedReferenceTypeName(fieldPattern.declaringQualification, fieldPattern.declaringSimpleName);
+	if (declaringTypeName == null) return false;
+
+	filter.addReference(RESOLVED_FIELD_REF, ResolvedReferenceCollector.fieldKey(this.pattern.name, declaringTypeName));
+	return true;
+}
+/*
+ * A field reference names the field, and a field declaration is also in the declaration of its declaring type
+ * since there is no dynamic lookup for fields.
+ */
+public char[][][] requiredDocumentTokens() {
+	if (this.isDeclarationOfAccessedFieldsPattern) return null;
+	char[][] name = exactTokens(this.pattern.name);
+	if (name == null) return null;
+	if (this.pattern.findReferences) return new char[][][] {name};
+
+	char[][] declaringType = exactTokens(((FieldPattern) this.pattern).declaringSimpleName);
+	if (declaringType == null) return new char[][][] {name};
+	return new char[][][] {CharOperation.arrayConcat(declaringType, name)};
+}
 public int match(ASTNode node, MatchingNodeSet nodeSet) {
 	int declarationsLevel = IMPOSSIBLE_MATCH;
 	if (this.pattern.findReferences) {
@@ -87,12 +87,26 @@ public abstract class InternalSearchPattern {
 					String[] names = entry.getDocumentNames(index);
 					for (int j = 0, n = names.length; j < n; j++)
 						acceptMatch(names[j], containerPath, decodedResult, requestor, participant, scope);
+					if (names.length > 0 && requestor.keepsIndexRecords())
+						decodedResult = pattern.getBlankPattern(); // do not overwrite the records kept by the requestor
 				}
 			}
 		} finally {
 			index.stopQuery();
 		}
 	}
+	/**
+	 * Returns whether several indexes can be queried at the same time with this pattern.
+	 */
+	boolean canQueryIndexesConcurrently() {
+		return true;
+	}
+	/**
+	 * Returns whether the possible matches of this pattern can be located by several match locators at the same time.
+	 */
+	boolean canLocateMatchesConcurrently() {
+		return true;
+	}
 	boolean isPolymorphicSearch() {
 		return false;
 	}
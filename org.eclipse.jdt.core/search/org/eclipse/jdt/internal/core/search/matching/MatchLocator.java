@@ -71,6 +71,7 @@ import org.eclipse.jdt.internal.core.SourceMethod;
 import org.eclipse.jdt.internal.core.SourceTypeElementInfo;
 import org.eclipse.jdt.internal.core.index.Index;
 import org.eclipse.jdt.internal.core.search.*;
+import org.eclipse.jdt.internal.core.search.indexing.IndexManager;
 import org.eclipse.jdt.internal.core.util.HandleFactory;
 import org.eclipse.jdt.internal.core.util.SimpleSet;
 import org.eclipse.jdt.internal.core.util.Util;
@@ -79,6 +80,18 @@ public class MatchLocator implements ITypeRequestor {
 
 public static final int MAX_AT_ONCE = 400;
 
+/*
+ * Maximum number of threads locating the possible matches of one project, including the thread running the search.
+ * The possible matches are located one batch after the other when 1, the default.
+ */
+public static int MAX_LOCATOR_THREADS = 1;
+
+/*
+ * Minimum number of possible matches located by one thread, as each partition of the possible matches
+ * has its own name environment, lookup environment and parser.
+ */
+public static int MIN_PARTITION_SIZE = 50;
+
 // permanent state
 public SearchPattern pattern;
 public PatternLocator patternLocator;
@@ -113,6 +126,11 @@ public PossibleMatch currentPossibleMatch;
  */
 public long resultCollectorTime = 0;
 
+/*
+ * Metrics of the search using this locator (see BasicSearchEngine#getLastSearchMetrics())
+ */
+public SearchMetrics metrics = SearchMetrics.current();
+
 // Progress information
 int progressStep;
 int progressWorked;
@@ -186,6 +204,177 @@ public class WrappedCoreException extends RuntimeException {
 	}
 }
 
+/*
+ * Locates the possible matches of one project with several threads. Each partition of the possible matches
+ * is located by its own match locator, thus with its own parser, lookup environment and name environment.
+ * The thread running the search takes the partitions in order and reports their matches directly to the requestor,
+ * while the other threads locate the following partitions into buffers that are replayed in the partition order.
+ * Thus the requestor is only called by the thread running the search and it gets the matches in a stable order.
+ */
+class ConcurrentMatchLocation implements Runnable {
+	JavaProject javaProject;
+	PossibleMatch[] possibleMatches;
+	int partitionSize;
+	int partitions;
+	int workers;
+	MatchBuffer[] buffers; // buffers of the partitions located by the other threads
+	int nextPartition = 0; // next partition which is not located yet
+	int currentPartition = 0; // partition which is being reported to the requestor
+	int maxPartitionsAhead; // bound the number of buffered partitions
+	volatile boolean stopped = false;
+	IProgressMonitor partitionMonitor = new NullProgressMonitor() {
+		// the progress is reported once a partition is done, only the cancellation is checked while locating
+		public boolean isCanceled() {
+			return ConcurrentMatchLocation.this.stopped
+				|| MatchLocator.this.progressMonitor != null && MatchLocator.this.progressMonitor.isCanceled();
+		}
+	};
+
+	ConcurrentMatchLocation(JavaProject javaProject, PossibleMatch[] possibleMatches, int partitionSize, int workers) {
+		this.javaProject = javaProject;
+		this.possibleMatches = possibleMatches;
+		this.partitionSize = partitionSize;
+		this.partitions = (possibleMatches.length + partitionSize - 1) / partitionSize;
+		this.workers = workers;
+		this.buffers = new MatchBuffer[this.partitions];
+		this.maxPartitionsAhead = 2 * workers;
+	}
+	void execute() throws CoreException {
+		Thread[] threads = new Thread[this.workers];
+		for (int i = 0; i < this.workers; i++) {
+			threads[i] = new Thread(this, "Java search match locator - " + i); //$NON-NLS-1$
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+		try {
+			for (int i = 0; i < this.partitions; i++) {
+				MatchBuffer buffer = null;
+				synchronized (this) {
+					this.currentPartition = i;
+					if (this.nextPartition == i) {
+						this.nextPartition++; // locate it in this thread
+					} else {
+						notifyAll(); // other threads can locate further
+						buffer = this.buffers[i];
+						while (!buffer.isDone) {
+							if (MatchLocator.this.progressMonitor != null && MatchLocator.this.progressMonitor.isCanceled())
+								throw new OperationCanceledException();
+							try {
+								wait(100);
+							} catch (InterruptedException e) {
+								// ignore
+							}
+						}
+						this.buffers[i] = null;
+					}
+				}
+				if (buffer == null)
+					locatePartition(i, MatchLocator.this.requestor);
+				else
+					buffer.replay();
+				int length = Math.min(this.partitionSize, this.possibleMatches.length - i * this.partitionSize);
+				if (MatchLocator.this.progressMonitor != null) {
+					if (MatchLocator.this.progressMonitor.isCanceled()) throw new OperationCanceledException();
+					for (int j = 0; j < length; j++) {
+						MatchLocator.this.progressWorked++;
+						if ((MatchLocator.this.progressWorked%MatchLocator.this.progressStep)==0) MatchLocator.this.progressMonitor.worked(MatchLocator.this.progressStep);
+					}
+				}
+			}
+		} finally {
+			synchronized (this) {
+				this.stopped = true;
+				notifyAll();
+			}
+			for (int i = 0; i < this.workers; i++) {
+				try {
+					threads[i].join();
+				} catch (InterruptedException e) {
+					// ignore
+				}
+			}
+		}
+	}
+	void locatePartition(int partition, SearchRequestor partitionRequestor) throws CoreException {
+		MatchLocator locator = new MatchLocator(MatchLocator.this.pattern, partitionRequestor, MatchLocator.this.scope, this.partitionMonitor);
+		locator.metrics = MatchLocator.this.metrics;
+		locator.workingCopies = MatchLocator.this.workingCopies;
+		locator.handleFactory = new HandleFactory();
+		locator.bindings = new SimpleLookupTable();
+		locator.progressStep = 1;
+		locator.patternLocator.initializePolymorphicSearch(MatchLocator.this.patternLocator);
+		int start = partition * this.partitionSize;
+		try {
+			locator.locateMatches(this.javaProject, this.possibleMatches, start, Math.min(this.partitionSize, this.possibleMatches.length - start));
+		} finally {
+			if (locator.nameEnvironment != null)
+				locator.nameEnvironment.cleanup();
+		}
+	}
+	public void run() {
+		JavaModelManager manager = JavaModelManager.getJavaModelManager();
+		manager.cacheZipFiles(); // the zip files are cached per thread
+		try {
+			while (true) {
+				int partition;
+				MatchBuffer buffer;
+				synchronized (this) {
+					while (!this.stopped && this.nextPartition < this.partitions && this.nextPartition > this.currentPartition + this.maxPartitionsAhead) {
+						try {
+							wait();
+						} catch (InterruptedException e) {
+							// ignore
+						}
+					}
+					if (this.stopped || this.nextPartition >= this.partitions) return;
+					partition = this.nextPartition++;
+					buffer = this.buffers[partition] = new MatchBuffer();
+				}
+				try {
+					locatePartition(partition, buffer);
+				} catch (CoreException e) {
+					buffer.exception = e;
+				} catch (RuntimeException e) { // includes cancellation
+					buffer.exception = e;
+				} catch (Error e) {
+					buffer.exception = e;
+				}
+				synchronized (this) {
+					buffer.isDone = true;
+					notifyAll();
+				}
+			}
+		} finally {
+			manager.flushZipFiles();
+		}
+	}
+}
+
+/*
+ * Records the matches of one partition until they can be reported to the requestor.
+ */
+class MatchBuffer extends SearchRequestor {
+	ArrayList matches = new ArrayList();
+	boolean isDone = false;
+	Throwable exception;
+
+	public void acceptSearchMatch(SearchMatch match) {
+		this.matches.add(match);
+	}
+	void replay() throws CoreException {
+		if (this.exception instanceof CoreException) throw (CoreException) this.exception;
+		if (this.exception instanceof RuntimeException) throw (RuntimeException) this.exception;
+		if (this.exception instanceof Error) throw (Error) this.exception;
+		long start = System.currentTimeMillis();
+		try {
+			for (int i = 0, length = this.matches.size(); i < length; i++)
+				MatchLocator.this.requestor.acceptSearchMatch((SearchMatch) this.matches.get(i));
+		} finally {
+			MatchLocator.this.metrics.addTime(SearchMetrics.REPORTING, System.currentTimeMillis() - start);
+		}
+	}
+}
+
 public static SearchDocument[] addWorkingCopies(InternalSearchPattern pattern, SearchDocument[] indexMatches, org.eclipse.jdt.core.ICompilationUnit[] copies, SearchParticipant participant) {
 	// working copies take precedence over corresponding compilation units
 	HashMap workingCopyDocuments = workingCopiesThatCanSeeFocus(copies, pattern.focus, pattern.isPolymorphicSearch(), participant);
@@ -300,6 +489,10 @@ public static SearchPattern createAndPattern(final SearchPattern leftPattern, fi
 	};
 }
 
+public static boolean canQueryIndexesConcurrently(InternalSearchPattern pattern) {
+	return pattern.canQueryIndexesConcurrently();
+}
+
 /**
  * Query a given index for matching entries. Assumes the sender has opened the index and will close when finished.
  */
@@ -993,6 +1186,14 @@ protected void locateMatches(JavaProject javaProject, PossibleMatchSet matchSet,
 		this.progressWorked += expected-length;
 		this.progressMonitor.worked( expected-length);
 	}
+	int threads = Math.min(MAX_LOCATOR_THREADS, length / MIN_PARTITION_SIZE);
+	// the other threads report their matches through the scope (see #encloses(IJavaElement))
+	if (threads > 1 && ((InternalSearchPattern) this.pattern).canLocateMatchesConcurrently() && PatternSearchJob.canBeQueriedConcurrently(this.scope)) {
+		// partitions are limited as batches are, but small enough to keep all the threads busy
+		int partitionSize = Math.max(MIN_PARTITION_SIZE, Math.min(MAX_AT_ONCE, (length + threads - 1) / threads));
+		new ConcurrentMatchLocation(javaProject, possibleMatches, partitionSize, threads - 1).execute();
+		return;
+	}
 	// locate matches (processed matches are limited to avoid problem while using VM default memory heap size)
 	for (int index = 0; index < length;) {
 		int max = Math.min(MAX_AT_ONCE, length - index);
@@ -1046,6 +1247,11 @@ public void locateMatches(SearchDocument[] searchDocuments) throws CoreException
 		// initialize pattern for polymorphic search (ie. method reference pattern)
 		this.patternLocator.initializePolymorphicSearch(this);
 
+		// skip the units which do not have the resolved references of the pattern, if the builder recorded them
+		ResolvedReferenceFilter referenceFilter = IndexManager.INDEX_RESOLVED_REFERENCES ? ResolvedReferenceFilter.newFilter(this.patternLocator, this.workingCopies) : null;
+		// skip the documents which do not contain the names required by the pattern
+		DocumentTokenFilter tokenFilter = IndexManager.INDEX_DOCUMENT_FILTERS ? DocumentTokenFilter.newFilter(this.patternLocator) : null;
+
 		JavaProject previousJavaProject = null;
 		PossibleMatchSet matchSet = new PossibleMatchSet();
 		Util.sort(searchDocuments, new Util.Comparer() {
@@ -1070,6 +1276,15 @@ public void locateMatches(SearchDocument[] searchDocuments) throws CoreException
 				displayed++;
 				continue;
 			}
+			if (tokenFilter != null && !(searchDocument instanceof WorkingCopyDocument) && !tokenFilter.mayMatch(pathString)) {
+				this.metrics.addCount(SearchMetrics.DOCUMENTS_SKIPPED_BY_TOKENS, 1);
+				if (this.progressMonitor != null) {
+					this.progressWorked++;
+					if ((this.progressWorked%this.progressStep)==0) this.progressMonitor.worked(this.progressStep);
+				}
+				displayed++;
+				continue; // cannot contain the searched names
+			}
 
 			Openable openable;
 			org.eclipse.jdt.core.ICompilationUnit workingCopy = null;
@@ -1107,6 +1322,15 @@ public void locateMatches(SearchDocument[] searchDocuments) throws CoreException
 				}
 				previousJavaProject = javaProject;
 			}
+			if (referenceFilter != null && workingCopy == null && !referenceFilter.mayMatch(resource, javaProject.getPath())) {
+				this.metrics.addCount(SearchMetrics.UNITS_SKIPPED_BY_REFERENCES, 1);
+				if (this.progressMonitor != null) {
+					this.progressWorked++;
+					if ((this.progressWorked%this.progressStep)==0) this.progressMonitor.worked(this.progressStep);
+				}
+				displayed++;
+				continue; // does not reference the searched element
+			}
 			matchSet.add(new PossibleMatch(this, resource, openable, searchDocument, ((InternalSearchPattern) this.pattern).mustResolve));
 		}
 
@@ -1395,6 +1619,7 @@ protected boolean parseAndBuildBindings(PossibleMatch possibleMatch, boolean mus
 	if (this.progressMonitor != null && this.progressMonitor.isCanceled())
 		throw new OperationCanceledException();
 
+	long start = System.currentTimeMillis();
 	try {
 		if (BasicSearchEngine.VERBOSE)
 			System.out.println("Parsing " + possibleMatch.openable.toStringWithAncestors()); //$NON-NLS-1$
@@ -1403,6 +1628,7 @@ protected boolean parseAndBuildBindings(PossibleMatch possibleMatch, boolean mus
 		CompilationResult unitResult = new CompilationResult(possibleMatch, 1, 1, this.options.maxProblemsPerUnit);
 		CompilationUnitDeclaration parsedUnit = this.parser.dietParse(possibleMatch, unitResult);
 		if (parsedUnit != null) {
+			this.metrics.addCount(SearchMetrics.UNITS_PARSED, 1);
 			if (!parsedUnit.isEmpty()) {
 				if (mustResolve) {
 					this.lookupEnvironment.buildTypeBindings(parsedUnit, null /*no access restriction*/);
@@ -1425,6 +1651,7 @@ protected boolean parseAndBuildBindings(PossibleMatch possibleMatch, boolean mus
 		}
 	} finally {
 		this.parser.nodeSet = null;
+		this.metrics.addTime(SearchMetrics.PARSING, System.currentTimeMillis() - start);
 	}
 	return true;
 }
@@ -1451,6 +1678,7 @@ protected void process(PossibleMatch possibleMatch, boolean bindingsWereCreated)
 
 		boolean mustResolve = ((InternalSearchPattern)this.pattern).mustResolve || possibleMatch.nodeSet.mustResolve;
 		if (bindingsWereCreated &&  mustResolve) {
+			long start = System.currentTimeMillis();
 			if (unit.types != null) {
 				if (BasicSearchEngine.VERBOSE)
 					System.out.println("Resolving " + this.currentPossibleMatch.openable.toStringWithAncestors()); //$NON-NLS-1$
@@ -1462,11 +1690,14 @@ protected void process(PossibleMatch possibleMatch, boolean bindingsWereCreated)
 					unit.scope.faultInTypes();
 				}
 				unit.resolve();
+				this.metrics.addCount(SearchMetrics.UNITS_RESOLVED, 1);
 			} else if (unit.isPackageInfo()) {
 				if (BasicSearchEngine.VERBOSE)
 					System.out.println("Resolving " + this.currentPossibleMatch.openable.toStringWithAncestors()); //$NON-NLS-1$
 				unit.resolve();
+				this.metrics.addCount(SearchMetrics.UNITS_RESOLVED, 1);
 			}
+			this.metrics.addTime(SearchMetrics.RESOLUTION, System.currentTimeMillis() - start);
 		}
 		reportMatching(unit, mustResolve);
 	} catch (AbortCompilation e) {
@@ -1556,7 +1787,15 @@ protected void report(SearchMatch match) throws CoreException {
 		}
 		System.out.println("\tRaw: "+match.isRaw()); //$NON-NLS-1$
 	}
-	this.requestor.acceptSearchMatch(match);
+	if (this.requestor instanceof MatchBuffer) {
+		// the time spent by the requestor is measured when the buffer is replayed
+		this.requestor.acceptSearchMatch(match);
+	} else {
+		long reportStart = System.currentTimeMillis();
+		this.requestor.acceptSearchMatch(match);
+		this.metrics.addTime(SearchMetrics.REPORTING, System.currentTimeMillis() - reportStart);
+	}
+	this.metrics.addCount(SearchMetrics.MATCHES, 1);
 	if (BasicSearchEngine.VERBOSE)
 		this.resultCollectorTime += System.currentTimeMillis()-start;
 }
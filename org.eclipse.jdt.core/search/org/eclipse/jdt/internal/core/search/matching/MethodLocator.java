@@ -40,6 +40,37 @@ public MethodLocator(MethodPattern pattern) {
 	this.pattern = pattern;
 	this.isDeclarationOfReferencedMethodsPattern = this.pattern instanceof DeclarationOfReferencedMethodsPattern;
 }
+/*
+ * A reference to the method is recorded with its number of parameters for its declaring type and all the supertypes
+ * of it, and the references to the methods it overrides may match too.
+ */
+public boolean addResolvedReferences(ResolvedReferenceFilter filter) {
+	if (!this.pattern.findReferences || this.pattern.findDeclarations || this.isDeclarationOfReferencedMethodsPattern) return false;
+	if (this.pattern.selector == null || this.pattern.parameterSimpleNames == null) return false;
+	if (this.pattern.selector.length == 0 || !Character.isJavaIdentifierStart(this.pattern.selector[0])) return false;
+	char[] declaringTypeName = resolvedReferenceTypeName(this.pattern.declaringQualification, this.pattern.declaringSimpleName);
+	if (declaringTypeName == null) return false;
+
+	char[] argumentCount = String.valueOf(this.pattern.parameterSimpleNames.length).toCharArray();
+	addResolvedReferences(filter, argumentCount, declaringTypeName);
+	if (this.allSuperDeclaringTypeNames != null)
+		for (int i = 0, length = this.allSuperDeclaringTypeNames.length; i < length; i++)
+			addResolvedReferences(filter, argumentCount, CharOperation.concatWith(this.allSuperDeclaringTypeNames[i], '.'));
+	return true;
+}
+private void addResolvedReferences(ResolvedReferenceFilter filter, char[] argumentCount, char[] typeName) {
+	filter.addReference(RESOLVED_METHOD_REF, ResolvedReferenceCollector.methodKey(this.pattern.selector, argumentCount, typeName));
+	filter.addReference(RESOLVED_METHOD_REF, ResolvedReferenceCollector.methodKey(this.pattern.selector, ResolvedReferenceCollector.ANY_ARGUMENT_COUNT, typeName)); // static import
+}
+/*
+ * Method references and declarations name the selector. The declaring type is not required since
+ * references may use an expression of this type, and declarations in its subtypes match too.
+ */
+public char[][][] requiredDocumentTokens() {
+	if (this.isDeclarationOfReferencedMethodsPattern) return null;
+	char[][] selector = exactTokens(this.pattern.selector);
+	return selector == null ? null : new char[][][] {selector};
+}
 /*
  * Clear caches
  */
@@ -60,6 +91,9 @@ public void initializePolymorphicSearch(MatchLocator locator) {
 		// inaccurate matches will be found
 	}
 }
+public void initializePolymorphicSearch(PatternLocator initializedLocator) {
+	this.allSuperDeclaringTypeNames = ((MethodLocator) initializedLocator).allSuperDeclaringTypeNames;
+}
 /*
  * Return whether a type name is in pattern all super declaring types names.
  */
@@ -43,10 +43,32 @@ public OrLocator(OrPattern pattern) {
 	for (int i = 0; i < length; i++)
 		this.patternLocators[i] = PatternLocator.patternLocator(patterns[i]);
 }
+public boolean addResolvedReferences(ResolvedReferenceFilter filter) {
+	for (int i = 0, length = this.patternLocators.length; i < length; i++)
+		if (!this.patternLocators[i].addResolvedReferences(filter))
+			return false;
+	return true;
+}
+public char[][][] requiredDocumentTokens() {
+	char[][][] requiredTokens = new char[0][][];
+	for (int i = 0, length = this.patternLocators.length; i < length; i++) {
+		char[][][] tokens = this.patternLocators[i].requiredDocumentTokens();
+		if (tokens == null) return null; // any document may match this pattern
+		int size = requiredTokens.length;
+		System.arraycopy(requiredTokens, 0, requiredTokens = new char[size + tokens.length][][], 0, size);
+		System.arraycopy(tokens, 0, requiredTokens, size, tokens.length);
+	}
+	return requiredTokens;
+}
 public void initializePolymorphicSearch(MatchLocator locator) {
 	for (int i = 0, length = this.patternLocators.length; i < length; i++)
 		this.patternLocators[i].initializePolymorphicSearch(locator);
 }
+public void initializePolymorphicSearch(PatternLocator initializedLocator) {
+	PatternLocator[] initializedLocators = ((OrLocator) initializedLocator).patternLocators;
+	for (int i = 0, length = this.patternLocators.length; i < length; i++)
+		this.patternLocators[i].initializePolymorphicSearch(initializedLocators[i]);
+}
 public int match(ASTNode node, MatchingNodeSet nodeSet) {
 	int level = IMPOSSIBLE_MATCH;
 	for (int i = 0, length = this.patternLocators.length; i < length; i++) {
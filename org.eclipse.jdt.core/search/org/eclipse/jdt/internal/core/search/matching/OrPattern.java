@@ -73,6 +73,18 @@ public class OrPattern extends SearchPattern implements IIndexConstants {
 		return null;
 	}
 
+	boolean canLocateMatchesConcurrently() {
+		for (int i = 0, length = this.patterns.length; i < length; i++)
+			if (!((InternalSearchPattern) this.patterns[i]).canLocateMatchesConcurrently()) return false;
+		return true;
+	}
+
+	boolean canQueryIndexesConcurrently() {
+		for (int i = 0, length = this.patterns.length; i < length; i++)
+			if (!((InternalSearchPattern) this.patterns[i]).canQueryIndexesConcurrently()) return false;
+		return true;
+	}
+
 	boolean isErasureMatch() {
 		return (this.matchCompatibility & R_ERASURE_MATCH) != 0;
 	}
@@ -107,6 +107,54 @@ public PatternLocator(SearchPattern pattern) {
 	this.matchMode = matchRule & JavaSearchPattern.MATCH_MODE_MASK;
 	this.mustResolve = ((InternalSearchPattern)pattern).mustResolve;
 }
+/**
+ * Adds to the given filter the resolved references that any unit matching this locator's pattern must have.
+ * Answers false if they cannot be known, in which case all the possible matches must be located.
+ */
+public boolean addResolvedReferences(ResolvedReferenceFilter filter) {
+	return false; // default is to locate all the possible matches
+}
+/**
+ * Answers the alternative sets of names which a document must contain to match this locator's pattern:
+ * a document which does not contain all the names of at least one set cannot match (see DocumentTokenFilter).
+ * Answers null if any document may match.
+ */
+public char[][][] requiredDocumentTokens() {
+	return null; // default is to locate all the possible matches
+}
+/*
+ * Answers the identifier tokens of the given exact name, e.g. the simple names of a qualified name,
+ * or null if the name is a pattern or names an anonymous or local type.
+ */
+protected char[][] exactTokens(char[] name) {
+	if (this.matchMode != SearchPattern.R_EXACT_MATCH || !this.isCaseSensitive) return null;
+	if (name == null || name.length == 0) return null;
+	char[][] tokens = CharOperation.splitOn('.', name);
+	for (int i = 0, length = tokens.length; i < length; i++) {
+		char[] token = tokens[i];
+		if (token.length == 0 || Character.isDigit(token[0])) return null;
+		for (int j = 0, l = token.length; j < l; j++)
+			if (!Character.isJavaIdentifierPart(token[j])) return null;
+	}
+	return tokens;
+}
+/*
+ * Answers the qualified name which the resolved references use for the type with the given qualification
+ * and simple name, or null if the name is not exact, e.g. it is a pattern or it names a local type.
+ */
+protected char[] resolvedReferenceTypeName(char[] qualification, char[] simpleName) {
+	if (this.matchMode != SearchPattern.R_EXACT_MATCH || !this.isCaseSensitive) return null;
+	if (qualification == null || simpleName == null || simpleName.length == 0) return null;
+	char[] typeName = qualification.length == 0 ? simpleName : CharOperation.concat(qualification, simpleName, '.');
+	char[][] segments = CharOperation.splitOn('.', typeName);
+	for (int i = 0, length = segments.length; i < length; i++) {
+		char[] segment = segments[i];
+		if (segment.length == 0 || Character.isDigit(segment[0])) return null; // anonymous or local type
+		for (int j = 0, l = segment.length; j < l; j++)
+			if (!Character.isJavaIdentifierPart(segment[j])) return null; // pattern or parameterized name
+	}
+	return typeName;
+}
 /*
  * Clear caches
  */
@@ -158,6 +206,13 @@ protected TypeBinding getTypeNameBinding(int index) {
 public void initializePolymorphicSearch(MatchLocator locator) {
 	// default is to do nothing
 }
+/**
+ * Initializes this locator for polymorphic search from a locator of the same pattern
+ * which was already initialized, instead of computing the same information again.
+ */
+public void initializePolymorphicSearch(PatternLocator initializedLocator) {
+	// default is to do nothing
+}
 public int match(Annotation node, MatchingNodeSet nodeSet) {
 	// each subtype should override if needed
 	return IMPOSSIBLE_MATCH;
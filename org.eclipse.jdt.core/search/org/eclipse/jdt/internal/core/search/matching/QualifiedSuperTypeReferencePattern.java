@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.core.search.matching;
+
+import java.io.IOException;
+
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.internal.core.index.EntryResult;
+import org.eclipse.jdt.internal.core.index.Index;
+import org.eclipse.jdt.internal.core.search.indexing.IIndexConstants;
+
+/**
+ * Matches the qualified super type references written by the indexers for the type hierarchies computed
+ * from the indexes only (see IndexOnlyHierarchyBuilder).
+ * <p>
+ * The super type references of source files only have the simple name of their supertype. A qualified reference
+ * also has the fully qualified names (where member type names use '$') that the supertype may have according to
+ * the imports and the package of the file, in the order of precedence of the Java scoping rules: the supertype is
+ * the first one which is declared. The qualified references of class files have the one name of their supertype.
+ * </p>
+ */
+public class QualifiedSuperTypeReferencePattern extends JavaSearchPattern implements IIndexConstants {
+
+public char[] superSimpleName;
+public char[][] superTypeNames;
+public char superClassOrInterface;
+
+public char[] pkgName;
+public char[] simpleName;
+public char[] enclosingTypeName;
+public char classOrInterface;
+public int modifiers;
+
+protected static char[][] CATEGORIES = { QUALIFIED_SUPER_REF };
+
+/*
+ * superSimpleName / superTypeName1:superTypeName2 / simpleName / enclosingTypeName / pkgName / superClassOrInterface classOrInterface modifiers
+ */
+public static char[] createIndexKey(
+	int modifiers,
+	char[] packageName,
+	char[] typeName,
+	char[][] enclosingTypeNames,
+	char classOrInterface,
+	char[][] superTypeNames,
+	char superClassOrInterface) {
+
+	char[] superTypeName = superTypeNames[0];
+	char[] superSimpleName = CharOperation.lastSegment(CharOperation.lastSegment(superTypeName, '.'), '$');
+	StringBuffer buffer = new StringBuffer();
+	buffer.append(superSimpleName).append(SEPARATOR);
+	for (int i = 0, length = superTypeNames.length; i < length; i++) {
+		if (i > 0) buffer.append(':');
+		buffer.append(superTypeNames[i]);
+	}
+	buffer.append(SEPARATOR).append(typeName);
+	buffer.append(SEPARATOR);
+	if (enclosingTypeNames != null)
+		buffer.append(CharOperation.concatWith(enclosingTypeNames, '$'));
+	buffer.append(SEPARATOR);
+	if (packageName != null)
+		buffer.append(packageName);
+	buffer.append(SEPARATOR);
+	buffer.append(superClassOrInterface).append(classOrInterface).append((char) modifiers);
+	char[] result = new char[buffer.length()];
+	buffer.getChars(0, result.length, result, 0);
+	return result;
+}
+/**
+ * Creates a pattern matching the qualified references to the supertypes with the given simple name
+ * (all the qualified references if null).
+ */
+public QualifiedSuperTypeReferencePattern(char[] superSimpleName, int matchRule) {
+	this(matchRule);
+	this.superSimpleName = superSimpleName;
+}
+QualifiedSuperTypeReferencePattern(int matchRule) {
+	super(SUPER_REF_PATTERN, matchRule);
+}
+public void decodeIndexKey(char[] key) {
+	int slash = CharOperation.indexOf(SEPARATOR, key, 0);
+	this.superSimpleName = CharOperation.subarray(key, 0, slash);
+
+	int start = slash + 1;
+	slash = CharOperation.indexOf(SEPARATOR, key, start);
+	this.superTypeNames = CharOperation.splitOn(':', key, start, slash);
+
+	slash = CharOperation.indexOf(SEPARATOR, key, start = slash + 1);
+	this.simpleName = CharOperation.subarray(key, start, slash);
+
+	slash = CharOperation.indexOf(SEPARATOR, key, start = slash + 1);
+	this.enclosingTypeName = CharOperation.subarray(key, start, slash);
+
+	slash = CharOperation.indexOf(SEPARATOR, key, start = slash + 1);
+	this.pkgName = CharOperation.subarray(key, start, slash);
+
+	this.superClassOrInterface = key[slash + 1];
+	this.classOrInterface = key[slash + 2];
+	this.modifiers = key[slash + 3]; // implicit cast to int type
+}
+public SearchPattern getBlankPattern() {
+	return new QualifiedSuperTypeReferencePattern(R_EXACT_MATCH | R_CASE_SENSITIVE);
+}
+public char[][] getIndexCategories() {
+	return CATEGORIES;
+}
+public boolean matchesDecodedKey(SearchPattern decodedPattern) {
+	QualifiedSuperTypeReferencePattern pattern = (QualifiedSuperTypeReferencePattern) decodedPattern;
+	return this.superSimpleName == null || CharOperation.equals(this.superSimpleName, pattern.superSimpleName);
+}
+EntryResult[] queryIn(Index index) throws IOException {
+	if (this.superSimpleName == null)
+		return index.query(getIndexCategories(), null, R_PREFIX_MATCH); // all the references
+	// do a prefix query with the superSimpleName
+	return index.query(getIndexCategories(), CharOperation.append(this.superSimpleName, SEPARATOR), R_PREFIX_MATCH | R_CASE_SENSITIVE);
+}
+protected StringBuffer print(StringBuffer output) {
+	output.append("QualifiedSuperTypeReferencePattern: <"); //$NON-NLS-1$
+	if (this.superSimpleName != null) {
+		output.append(this.superSimpleName);
+	} else {
+		output.append("*"); //$NON-NLS-1$
+	}
+	output.append(">"); //$NON-NLS-1$
+	return super.print(output);
+}
+}
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.core.search.matching;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.internal.compiler.util.SimpleLookupTable;
+import org.eclipse.jdt.internal.core.JavaModelManager;
+import org.eclipse.jdt.internal.core.index.EntryResult;
+import org.eclipse.jdt.internal.core.index.Index;
+import org.eclipse.jdt.internal.core.search.indexing.IIndexConstants;
+import org.eclipse.jdt.internal.core.search.indexing.IndexManager;
+import org.eclipse.jdt.internal.core.search.indexing.ReadWriteMonitor;
+import org.eclipse.jdt.internal.core.util.Util;
+
+/**
+ * Skips the compilation units which cannot match a precise reference pattern, using the resolved references
+ * recorded by the builder (see IndexManager.INDEX_RESOLVED_REFERENCES).
+ * <p>
+ * The locators add the resolved references that any matching unit must have (see PatternLocator#addResolvedReferences).
+ * A unit is skipped only if its resolved references were recorded after its last modification and none of them
+ * was added. Other units, including working copies and class files, are always located.
+ * </p><p>
+ * The references of a unit also depend on the other types it sees, e.g. a method reference depends on the
+ * supertypes of its receiver. So the filter is not used while a working copy has unsaved changes, and the recorded
+ * references of a project are ignored from a change to the project or to one of its prerequisites until the project
+ * is built again (see IndexManager#isHierarchyGraphStale(IPath)).
+ * </p>
+ */
+public class ResolvedReferenceFilter implements IIndexConstants {
+
+	static final int EXACT_RULE = SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE;
+	static final Object NO_REFERENCES = new Object();
+
+	ArrayList categories = new ArrayList();
+	ArrayList keys = new ArrayList();
+
+	/*
+	 * key = a project path, value = a ProjectReferences, or NO_REFERENCES if the project has no resolved reference index
+	 */
+	SimpleLookupTable projectReferences = new SimpleLookupTable(3);
+
+	static class ProjectReferences {
+		Index index;
+		SimpleLookupTable unitStamps; // document name -> modification stamp of the unit when its references were recorded
+		SimpleLookupTable referencingUnits; // document names which have one of the references
+
+		ProjectReferences(Index index) {
+			this.index = index;
+			this.unitStamps = new SimpleLookupTable();
+			this.referencingUnits = new SimpleLookupTable();
+		}
+	}
+
+/**
+ * Creates the filter of the given locator, or answers null if its pattern cannot be expressed with resolved references
+ * or if one of the given working copies has unsaved changes.
+ */
+public static ResolvedReferenceFilter newFilter(PatternLocator locator, ICompilationUnit[] workingCopies) {
+	for (int i = 0, length = workingCopies == null ? 0 : workingCopies.length; i < length; i++) {
+		try {
+			if (workingCopies[i].hasUnsavedChanges()) return null; // may change how the recorded units resolve
+		} catch (JavaModelException e) {
+			return null;
+		}
+	}
+	ResolvedReferenceFilter filter = new ResolvedReferenceFilter();
+	return locator.addResolvedReferences(filter) && !filter.keys.isEmpty() ? filter : null;
+}
+/**
+ * Adds a reference that matching units may have in the given category (one of RESOLVED_TYPE_REF,
+ * RESOLVED_METHOD_REF or RESOLVED_FIELD_REF).
+ */
+public void addReference(char[] category, char[] key) {
+	this.categories.add(category);
+	this.keys.add(key);
+}
+/**
+ * Answers whether the given source file of the given project may match, i.e. it is not known to miss all the references.
+ */
+public boolean mayMatch(IResource resource, IPath projectPath) {
+	if (resource == null || resource.getType() != IResource.FILE) return true;
+	ProjectReferences references = getProjectReferences(projectPath);
+	if (references == null) return true;
+
+	String documentName = Util.relativePath(resource.getFullPath(), 1/*remove project segment*/);
+	Object stamp = references.unitStamps.get(documentName);
+	if (stamp == null || !stamp.equals(Long.toString(resource.getModificationStamp())))
+		return true; // unknown or changed since its references were recorded
+	return references.referencingUnits.containsKey(documentName);
+}
+ProjectReferences getProjectReferences(IPath projectPath) {
+	Object references = this.projectReferences.get(projectPath);
+	if (references == null) {
+		references = readProjectReferences(projectPath);
+		this.projectReferences.put(projectPath, references == null ? NO_REFERENCES : references);
+	}
+	return references == NO_REFERENCES ? null : (ProjectReferences) references;
+}
+ProjectReferences readProjectReferences(IPath projectPath) {
+	IndexManager indexManager = JavaModelManager.getJavaModelManager().getIndexManager();
+	if (indexManager.isHierarchyGraphStale(projectPath)) return null; // changed since its last build
+	Index index = indexManager.getResolvedReferenceIndex(projectPath, false /*don't create if none*/);
+	if (index == null) return null;
+	ReadWriteMonitor monitor = index.monitor;
+	if (monitor == null) return null; // index got deleted since acquired
+
+	ProjectReferences references = new ProjectReferences(index);
+	try {
+		monitor.enterRead(); // ask permission to read
+		index.startQuery();
+		try {
+			EntryResult[] stale = index.query(new char[][] {HIERARCHY_STALE}, null, EXACT_RULE);
+			if (stale != null) return null; // changed since its last build in a previous session
+			EntryResult[] units = index.query(new char[][] {RESOLVED_UNIT}, null, EXACT_RULE);
+			if (units == null) return null;
+			for (int i = 0, l = units.length; i < l; i++) {
+				String stamp = new String(units[i].getWord());
+				String[] documentNames = units[i].getDocumentNames(index);
+				for (int j = 0, m = documentNames.length; j < m; j++)
+					references.unitStamps.put(documentNames[j], stamp);
+			}
+			for (int i = 0, l = this.keys.size(); i < l; i++) {
+				char[][] category = new char[][] {(char[]) this.categories.get(i)};
+				EntryResult[] entries = index.query(category, (char[]) this.keys.get(i), EXACT_RULE);
+				if (entries == null) continue;
+				for (int j = 0, m = entries.length; j < m; j++) {
+					String[] documentNames = entries[j].getDocumentNames(index);
+					for (int k = 0, n = documentNames.length; k < n; k++)
+						references.referencingUnits.put(documentNames[k], documentNames[k]);
+				}
+			}
+		} finally {
+			index.stopQuery();
+		}
+	} catch (IOException e) {
+		return null; // all units will be located
+	} finally {
+		monitor.exitRead(); // finished reading
+	}
+	return references;
+}
+public String toString() {
+	StringBuffer buffer = new StringBuffer("Resolved references:"); //$NON-NLS-1$
+	for (int i = 0, l = this.keys.size(); i < l; i++) {
+		buffer.append("\n\t").append((char[]) this.categories.get(i)); //$NON-NLS-1$
+		buffer.append(' ').append((char[]) this.keys.get(i));
+	}
+	return buffer.toString();
+}
+}
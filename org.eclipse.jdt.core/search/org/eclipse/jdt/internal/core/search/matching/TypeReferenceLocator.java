@@ -43,6 +43,34 @@ protected IJavaElement findElement(IJavaElement element, int accuracy) {
 		element = element.getParent();
 	return element;
 }
+/*
+ * A reference to the type is recorded with its qualified name.
+ */
+public boolean addResolvedReferences(ResolvedReferenceFilter filter) {
+	if (this.isDeclarationOfReferencedTypesPattern) return false;
+	char[] typeName = resolvedReferenceTypeName(this.pattern.qualification, this.pattern.simpleName);
+	if (typeName == null) return false;
+
+	filter.addReference(RESOLVED_TYPE_REF, ResolvedReferenceCollector.typeKey(typeName));
+	return true;
+}
+/*
+ * A reference to a top level type is in its package, imports the type or its package, or qualifies the type,
+ * so the document also contains the first name of the package, e.g. the package declaration or an import.
+ * The types of java.lang are the exception since they are referenced without import.
+ */
+public char[][][] requiredDocumentTokens() {
+	if (this.isDeclarationOfReferencedTypesPattern) return null;
+	IJavaElement focus = ((InternalSearchPattern) this.pattern).focus;
+	if (!(focus instanceof IType) || ((IType) focus).getDeclaringType() != null) return null;
+	char[][] simpleName = exactTokens(this.pattern.simpleName);
+	if (simpleName == null) return null;
+	String packageName = ((IType) focus).getPackageFragment().getElementName();
+	if (packageName.length() == 0 || packageName.equals("java.lang")) return new char[][][] {simpleName}; //$NON-NLS-1$
+	char[][] packageTokens = exactTokens(packageName.toCharArray());
+	if (packageTokens == null) return new char[][][] {simpleName};
+	return new char[][][] {CharOperation.arrayConcat(simpleName, packageTokens[0])};
+}
 public int match(Annotation node, MatchingNodeSet nodeSet) {
 	return match(node.type, nodeSet);
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2004 IBM Corporation and others.
+ * Copyright (c) 2000, 2005 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,8 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.core.search.processing;
 
+import java.util.ArrayList;
+
 import org.eclipse.core.runtime.*;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
@@ -24,12 +26,22 @@ public abstract class JobManager implements Runnable {
 	protected IJob[] awaitingJobs = new IJob[10];
 	protected int jobStart = 0;
 	protected int jobEnd = -1;
-	protected boolean executing = false;
+
+	/* number of jobs at the start of the queue which have been started, 
+	    they are removed from the queue once they and all jobs before them have completed */
+	protected int startedJobs = 0;
+	/* jobs being executed, either by the processing thread or by one of the concurrent job threads */
+	protected ArrayList executingJobs = new ArrayList();
 
 	/* background processing */
 	protected Thread processingThread;
+	protected Thread[] concurrentJobThreads;
 	protected Job progressJob;
 
+	/* maximum number of jobs executed at the same time, see concurrentJobKey(IJob)
+	    jobs are executed one after the other by the processing thread when 1, the default */
+	public static int MAX_CONCURRENT_JOBS = 1;
+
 	/* counter indicating whether job execution is enabled or not, disabled if <= 0 
 	    it cannot go beyond 1 */
 	private int enableCount = 1;
@@ -40,6 +52,41 @@ public abstract class JobManager implements Runnable {
 	
 	private int awaitingClients = 0;
 
+	/*
+	 * Executes the jobs which can run at the same time as the job of the processing thread.
+	 * The jobs which must be executed alone are left to the processing thread.
+	 */
+	class ConcurrentJobRunner implements Runnable {
+		public void run() {
+			while (true) {
+				IJob job;
+				synchronized (JobManager.this) {
+					if (JobManager.this.processingThread == null) return; // shutting down
+					if ((job = startNextJob(true)) == null) {
+						try {
+							JobManager.this.wait(); // wait until a new job is posted, or until a job has completed
+						} catch (InterruptedException e) {
+							// ignore
+						}
+						continue;
+					}
+				}
+				if (VERBOSE)
+					Util.verbose("STARTING concurrent background job - " + job); //$NON-NLS-1$
+				try {
+					job.execute(null);
+				} catch (RuntimeException e) {
+					// log exception and keep executing jobs, the index of this job will be inconsistent
+					Util.log(e, "Background Indexer Crash Recovery"); //$NON-NLS-1$
+				} finally {
+					if (VERBOSE)
+						Util.verbose("FINISHED concurrent background job - " + job); //$NON-NLS-1$
+					jobFinished(job);
+				}
+			}
+		}
+	}
+
 	/**
 	 * Invoked exactly once, in background, before starting processing any job
 	 */
@@ -53,6 +100,14 @@ public abstract class JobManager implements Runnable {
 		// pretend busy in case concurrent job attempts performing before activated
 		return this.activated ? this.jobEnd - this.jobStart + 1 : 1;
 	}
+	/**
+	 * Answers the key of the resource updated by the given job if it can be executed
+	 * at the same time as jobs updating other resources, or null if it must be executed alone.
+	 * Jobs with the same key are executed in the order they were requested.
+	 */
+	protected Object concurrentJobKey(IJob job) {
+		return null;
+	}
 	/**
 	 * Answers the first job in the queue, or null if there is no job available
 	 * Until the job has completed, the job manager will keep answering the same job.
@@ -78,16 +133,22 @@ public abstract class JobManager implements Runnable {
 
 		try {
 			IJob currentJob;
-			// cancel current job if it belongs to the given family
+			// cancel current jobs if they belong to the given family
+			ArrayList cancelledJobs = new ArrayList();
 			synchronized(this){
-				currentJob = this.currentJob();
+				for (int i = 0, length = this.executingJobs.size(); i < length; i++) {
+					currentJob = (IJob) this.executingJobs.get(i);
+					if (jobFamily == null || currentJob.belongsTo(jobFamily))
+						cancelledJobs.add(currentJob);
+				}
 				disable();
 			}
-			if (currentJob != null && (jobFamily == null || currentJob.belongsTo(jobFamily))) {
+			for (int i = 0, length = cancelledJobs.size(); i < length; i++) {
+				currentJob = (IJob) cancelledJobs.get(i);
 				currentJob.cancel();
 
 				// wait until current active job has finished
-				while (this.processingThread != null && this.executing){
+				while (this.processingThread != null && isJobExecuting(currentJob)){
 					try {
 						if (VERBOSE)
 							Util.verbose("-> waiting end of current background job - " + currentJob); //$NON-NLS-1$ 
@@ -101,12 +162,15 @@ public abstract class JobManager implements Runnable {
 			// flush and compact awaiting jobs
 			int loc = -1;
 			synchronized(this) {
+				int started = 0;
 				for (int i = this.jobStart; i <= this.jobEnd; i++) {
 					currentJob = this.awaitingJobs[i];
 					if (currentJob != null) { // sanity check
 						this.awaitingJobs[i] = null;
-						if (!(jobFamily == null || currentJob.belongsTo(jobFamily))) { // copy down, compacting
+						if (!(jobFamily == null || currentJob.belongsTo(jobFamily)) || isJobExecuting(currentJob)) { // copy down, compacting
 							this.awaitingJobs[++loc] = currentJob;
+							if (i < this.jobStart + this.startedJobs)
+								started++;
 						} else {
 							if (VERBOSE)
 								Util.verbose("-> discarding background job  - " + currentJob); //$NON-NLS-1$
@@ -116,6 +180,7 @@ public abstract class JobManager implements Runnable {
 				}
 				this.jobStart = 0;
 				this.jobEnd = loc;
+				this.startedJobs = started;
 			}
 		} finally {
 			enable();
@@ -129,11 +194,33 @@ public abstract class JobManager implements Runnable {
 			Util.verbose("ENABLING  background indexing"); //$NON-NLS-1$
 		this.notifyAll(); // wake up the background thread if it is waiting (context must be synchronized)			
 	}
+	protected synchronized boolean isJobExecuting(IJob job) {
+		for (int i = 0, length = this.executingJobs.size(); i < length; i++)
+			if (this.executingJobs.get(i) == job) return true;
+		return false;
+	}
 	protected synchronized boolean isJobWaiting(IJob request) {
-		for (int i = this.jobEnd; i > this.jobStart; i--) // don't check job at jobStart, as it may have already started
+		int firstWaitingJob = this.jobStart + Math.max(this.startedJobs, 1); // don't check job at jobStart, as it may have already started
+		for (int i = this.jobEnd; i >= firstWaitingJob; i--)
 			if (request.equals(this.awaitingJobs[i])) return true;
 		return false;
 	}
+	/**
+	 * Remembers that the given job has completed, and removes the completed jobs from the start of the queue.
+	 */
+	protected synchronized void jobFinished(IJob job) {
+		for (int i = 0, length = this.executingJobs.size(); i < length; i++) {
+			if (this.executingJobs.get(i) == job) {
+				this.executingJobs.remove(i);
+				break;
+			}
+		}
+		while (this.startedJobs > 0 && this.jobStart <= this.jobEnd && !isJobExecuting(this.awaitingJobs[this.jobStart])) {
+			this.startedJobs--;
+			moveToNextJob();
+		}
+		notifyAll(); // wake up the threads waiting for this job to complete
+	}
 	/**
 	 * Advance to the next available job, once the current one has been completed.
 	 * Note: clients awaiting until the job count is zero are still waiting at this point.
@@ -266,6 +353,32 @@ public abstract class JobManager implements Runnable {
 		return status;
 	}
 	public abstract String processName();
+	/**
+	 * Answers the next job to execute and marks it as started, or null if no job can be started now.
+	 * A job without concurrent job key is only started when no other job is being executed,
+	 * and no job is started while it is being executed.
+	 */
+	protected synchronized IJob startNextJob(boolean onlyConcurrentJob) {
+		if (this.enableCount <= 0) return null;
+		int next = this.jobStart + this.startedJobs;
+		if (next > this.jobEnd) return null;
+		IJob job = this.awaitingJobs[next];
+		int executingCount = this.executingJobs.size();
+		if (executingCount > 0) {
+			if (executingCount >= MAX_CONCURRENT_JOBS) return null;
+			Object key = concurrentJobKey(job);
+			if (key == null) return null;
+			for (int i = 0; i < executingCount; i++) {
+				Object executingKey = concurrentJobKey((IJob) this.executingJobs.get(i));
+				if (executingKey == null || executingKey.equals(key)) return null;
+			}
+		} else if (onlyConcurrentJob && concurrentJobKey(job) == null) {
+			return null; // leave it to the processing thread
+		}
+		this.startedJobs++;
+		this.executingJobs.add(job);
+		return job;
+	}
 	
 	public synchronized void request(IJob job) {
 
@@ -301,6 +414,17 @@ public abstract class JobManager implements Runnable {
 			// less prioritary by default, priority is raised if clients are actively waiting on it
 			this.processingThread.setPriority(Thread.NORM_PRIORITY-1); 
 			this.processingThread.start();
+
+			/* threads executing the jobs which can run concurrently with the job of the processing thread */
+			int threads = MAX_CONCURRENT_JOBS - 1;
+			this.concurrentJobThreads = new Thread[threads > 0 ? threads : 0];
+			for (int i = 0; i < threads; i++) {
+				Thread thread = new Thread(new ConcurrentJobRunner(), this.processName() + " - " + (i + 1)); //$NON-NLS-1$
+				thread.setDaemon(true);
+				thread.setPriority(Thread.NORM_PRIORITY-1);
+				thread.start();
+				this.concurrentJobThreads[i] = thread;
+			}
 		}
 	}
 	/**
@@ -332,29 +456,35 @@ public abstract class JobManager implements Runnable {
 			while (this.processingThread != null) {
 				try {
 					IJob job;
+					boolean idle = false;
 					synchronized (this) {
 						// handle shutdown case when notifyAll came before the wait but after the while loop was entered
 						if (this.processingThread == null) continue;
 
 						// must check for new job inside this sync block to avoid timing hole
-						if ((job = currentJob()) == null) {
-							if (this.progressJob != null) {
-								this.progressJob.cancel();
-								this.progressJob = null;
+						if ((job = startNextJob(false)) == null) {
+							if (currentJob() == null) {
+								idle = true;
+								if (this.progressJob != null) {
+									this.progressJob.cancel();
+									this.progressJob = null;
+								}
+								if (idlingStart < 0)
+									idlingStart = System.currentTimeMillis();
+								else
+									notifyIdle(System.currentTimeMillis() - idlingStart);
 							}
-							if (idlingStart < 0)
-								idlingStart = System.currentTimeMillis();
-							else
-								notifyIdle(System.currentTimeMillis() - idlingStart);
-							this.wait(); // wait until a new job is posted (or reenabled:38901)
+							this.wait(); // wait until a new job is posted (or reenabled:38901), or until a concurrent job has completed
 						} else {
 							idlingStart = -1;
 						}
 					}
 					if (job == null) {
-						notifyIdle(System.currentTimeMillis() - idlingStart);
-						// just woke up, delay before processing any new jobs, allow some time for the active thread to finish
-						Thread.sleep(500);
+						if (idle) {
+							notifyIdle(System.currentTimeMillis() - idlingStart);
+							// just woke up, delay before processing any new jobs, allow some time for the active thread to finish
+							Thread.sleep(500);
+						}
 						continue;
 					}
 					if (VERBOSE) {
@@ -362,7 +492,6 @@ public abstract class JobManager implements Runnable {
 						Util.verbose("STARTING background job - " + job); //$NON-NLS-1$
 					}
 					try {
-						this.executing = true;
 						if (this.progressJob == null) {
 							this.progressJob = new ProgressJob(Messages.manager_indexingInProgress); 
 							this.progressJob.setPriority(Job.LONG);
@@ -372,10 +501,9 @@ public abstract class JobManager implements Runnable {
 						/*boolean status = */job.execute(null);
 						//if (status == FAILED) request(job);
 					} finally {
-						this.executing = false;
 						if (VERBOSE)
 							Util.verbose("FINISHED background job - " + job); //$NON-NLS-1$
-						moveToNextJob();
+						jobFinished(job);
 						if (this.awaitingClients == 0)
 							Thread.sleep(50);
 					}
@@ -417,6 +545,7 @@ public abstract class JobManager implements Runnable {
 		disable();
 		discardJobs(null); // will wait until current executing job has completed
 		Thread thread = this.processingThread;
+		Thread[] threads = this.concurrentJobThreads;
 		try {
 			if (thread != null) { // see http://bugs.eclipse.org/bugs/show_bug.cgi?id=31858
 				synchronized (this) {
@@ -425,6 +554,9 @@ public abstract class JobManager implements Runnable {
 				}
 				// in case processing thread is handling a job
 				thread.join();
+				if (threads != null)
+					for (int i = 0, length = threads.length; i < length; i++)
+						threads[i].join();
 			}
 			Job job = this.progressJob;
 			if (job != null) {